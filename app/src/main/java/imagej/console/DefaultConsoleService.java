@@ -77,11 +77,16 @@ public class DefaultConsoleService extends AbstractService implements
 	public void processArgs(final String... args) {
 		// TODO: Implement handling of more command line arguments.
 		log.debug("Received command line arguments:");
+		// NB: "--lazy" applies to all subsequent "--open" arguments.
+		boolean lazy = false;
 		for (int i = 0; i < args.length; i++) {
 			final String arg = args[i];
 			log.debug("\t" + arg);
-			if (arg.equals("--open")) {
-				open(args[i + 1]);
+			if (arg.equals("--lazy")) {
+				lazy = true;
+			}
+			else if (arg.equals("--open")) {
+				open(args[i + 1], lazy);
 			}
 			else if (arg.equals("--run")) {
 				if (!run(args[i + 1])) {
@@ -93,10 +98,14 @@ else if (arg.equals("--run")) {
 
 	// -- Helper methods --
 
-	/** Implements the "--open" command line argument. */
-	private void open(final String source) {
+	/**
+	 * Implements the "--open" command line argument. Unless lazy, the
+	 * input/output options determine whether the dataset is opened lazily.
+	 */
+	private void open(final String source, final boolean lazy) {
 		try {
-			final Dataset dataset = datasetService.open(source);
+			final Dataset dataset =
+				lazy ? datasetService.open(source, true) : datasetService.open(source);
 			displayService.createDisplay(dataset.getName(), dataset);
 		}
 		catch (final IOException exc) {
@@ -37,6 +37,7 @@
 
 import imagej.Cancelable;
 import imagej.module.event.ModuleCanceledEvent;
+import imagej.module.event.ModuleErroredEvent;
 import imagej.module.event.ModuleExecutedEvent;
 import imagej.module.event.ModuleExecutingEvent;
 import imagej.module.event.ModuleFinishedEvent;
@@ -165,7 +166,17 @@ public void run() {
 
 		// execute module
 		if (es != null) es.publish(new ModuleExecutingEvent(module));
-		module.run();
+		try {
+			module.run();
+		}
+		catch (final RuntimeException exc) {
+			if (es != null) es.publish(new ModuleErroredEvent(module, exc));
+			throw exc;
+		}
+		catch (final Error err) {
+			if (es != null) es.publish(new ModuleErroredEvent(module, err));
+			throw err;
+		}
 		if (module instanceof Cancelable) {
 			final Cancelable cancelable = (Cancelable) module;
 			if (cancelable.isCanceled()) {
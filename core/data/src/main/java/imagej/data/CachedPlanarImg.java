@@ -0,0 +1,534 @@
+/*
+ * #%L
+ * ImageJ software for multidimensional image processing and analysis.
+ * %%
+ * Copyright (C) 2009 - 2013 Board of Regents of the University of
+ * Wisconsin-Madison, Broad Institute of MIT and Harvard, and Max Planck
+ * Institute of Molecular Cell Biology and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are
+ * those of the authors and should not be interpreted as representing official
+ * policies, either expressed or implied, of any organization.
+ * #L%
+ */
+
+package imagej.data;
+
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+
+import net.imglib2.Cursor;
+import net.imglib2.RandomAccess;
+import net.imglib2.img.Img;
+import net.imglib2.img.array.ArrayImg;
+import net.imglib2.img.array.ArrayImgFactory;
+import net.imglib2.img.basictypeaccess.array.ArrayDataAccess;
+import net.imglib2.img.basictypeaccess.array.BitArray;
+import net.imglib2.img.basictypeaccess.array.ByteArray;
+import net.imglib2.img.basictypeaccess.array.CharArray;
+import net.imglib2.img.basictypeaccess.array.DoubleArray;
+import net.imglib2.img.basictypeaccess.array.FloatArray;
+import net.imglib2.img.basictypeaccess.array.IntArray;
+import net.imglib2.img.basictypeaccess.array.LongArray;
+import net.imglib2.img.basictypeaccess.array.ShortArray;
+import net.imglib2.img.planar.PlanarImg;
+import net.imglib2.img.planar.PlanarImgFactory;
+import net.imglib2.type.NativeType;
+
+/**
+ * A {@link PlanarImg} whose planes are read from a source {@link Img} on first
+ * access, rather than up front.
+ * <p>
+ * At most a fixed number of planes are held at once. When another plane is
+ * needed, the least recently accessed plane is discarded, to be read again
+ * from the source if needed later. Since the source cannot be written back to,
+ * a plane which may have been written is never discarded: planes are held in
+ * data accesses which note any sample being set, or their storage array being
+ * handed out. Neither is a plane assigned with
+ * {@link #setPlane(int, ArrayDataAccess)} discarded, nor one in which a cursor
+ * or random access is currently positioned, since it may write there without
+ * asking for the plane again.
+ * </p>
+ * <p>
+ * The source is typically itself a lazily loading image, such as a cell image
+ * opened by SCIFIO, making this image a read-through plane cache over the
+ * file.
+ * </p>
+ * 
+ * @author Lee Kamentsky
+ */
+public class CachedPlanarImg<T extends NativeType<T>, A extends ArrayDataAccess<A>>
+	extends PlanarImg<T, A>
+{
+
+	private final Img<T> source;
+
+	private final int maxPlanes;
+
+	/** Unmodified planes currently held, least recently accessed first. */
+	private final LinkedHashMap<Integer, A> held =
+		new LinkedHashMap<Integer, A>(16, 0.75f, true);
+
+	/** Planes which may never be discarded. */
+	private final Set<Integer> pinned = new HashSet<Integer>();
+
+	/** The plane in which each live cursor or random access is positioned. */
+	private final Map<Object, Integer> positions =
+		new WeakHashMap<Object, Integer>();
+
+	private CachedPlanarImg(final Img<T> source, final long[] dim,
+		final int entitiesPerPixel, final int maxPlanes)
+	{
+		super(dim, entitiesPerPixel);
+		this.source = source;
+		this.maxPlanes = maxPlanes;
+	}
+
+	/**
+	 * Creates an image reading its planes from the given source on demand,
+	 * holding at most about the given number of bytes of unmodified planes.
+	 * At least two planes are always held.
+	 */
+	public static <T extends NativeType<T>> CachedPlanarImg<T, ?> create(
+		final Img<T> source, final long maxBytes)
+	{
+		final long[] dims = new long[source.numDimensions()];
+		source.dimensions(dims);
+		final T type = source.firstElement();
+		final long planeSize = dims.length < 2 ? dims[0] : dims[0] * dims[1];
+		final long planeBytes = Math.max(1, planeSize * type.getBitsPerPixel() / 8);
+		final int maxPlanes =
+			(int) Math.max(2, Math.min(Integer.MAX_VALUE, maxBytes / planeBytes));
+		final PlanarImg<T, ?> img =
+			new Factory<T>(source, maxPlanes).create(dims, type);
+		return (CachedPlanarImg<T, ?>) img;
+	}
+
+	// -- CachedPlanarImg methods --
+
+	/** Gets the source from which planes are read. */
+	public Img<T> getSource() {
+		return source;
+	}
+
+	/** Gets the number of planes currently held in memory. */
+	public synchronized int getHeldPlaneCount() {
+		return held.size() + pinned.size();
+	}
+
+	/**
+	 * Discards every held plane which may be read again from the source, to
+	 * free memory.
+	 * 
+	 * @return the number of planes discarded
+	 */
+	public synchronized int releasePlanes() {
+		final int count = getHeldPlaneCount();
+		discardPlanes(0);
+		return count - getHeldPlaneCount();
+	}
+
+	// -- PlanarImg methods --
+
+	@Override
+	public synchronized A update(final Object c) {
+		final int no = ((PlanarContainerSampler) c).getCurrentSliceIndex();
+		positions.put(c, no);
+		return getPlane(no);
+	}
+
+	@Override
+	public synchronized A getPlane(final int no) {
+		A plane = mirror.get(no);
+		if (plane != null) {
+			held.get(no); // mark as most recently accessed
+			return plane;
+		}
+		plane = readPlane(no);
+		mirror.set(no, plane);
+		held.put(no, plane);
+		discardPlanes(maxPlanes);
+		return plane;
+	}
+
+	@Override
+	public synchronized void setPlane(final int no, final A plane) {
+		super.setPlane(no, plane);
+		held.remove(no);
+		pinned.add(no);
+	}
+
+	// -- Helper methods --
+
+	/**
+	 * Discards the least recently accessed unmodified planes until no more than
+	 * the given number are held. Modified planes are pinned instead, and planes
+	 * in which a cursor or random access is positioned are kept.
+	 */
+	private void discardPlanes(final int limit) {
+		if (held.size() <= limit) return;
+		final Set<Integer> inUse = new HashSet<Integer>(positions.values());
+		final Iterator<Map.Entry<Integer, A>> iter = held.entrySet().iterator();
+		while (held.size() > limit && iter.hasNext()) {
+			final Map.Entry<Integer, A> entry = iter.next();
+			final int no = entry.getKey();
+			if (inUse.contains(no)) continue;
+			if (isModified(entry.getValue())) pinned.add(no);
+			else mirror.set(no, null);
+			iter.remove();
+		}
+	}
+
+	/** Reads the given plane from the source. */
+	@SuppressWarnings("unchecked")
+	private A readPlane(final int no) {
+		final int numDims = source.numDimensions();
+		final long width = source.dimension(0);
+		final long height = numDims < 2 ? 1 : source.dimension(1);
+		final ArrayImg<T, ?> plane =
+			new ArrayImgFactory<T>().create(new long[] { width, height }, source
+				.firstElement());
+
+		final RandomAccess<T> in = source.randomAccess();
+		long index = no;
+		for (int d = 2; d < numDims; d++) {
+			in.setPosition(source.min(d) + index % source.dimension(d), d);
+			index /= source.dimension(d);
+		}
+		final Cursor<T> out = plane.localizingCursor();
+		while (out.hasNext()) {
+			out.fwd();
+			in.setPosition(source.min(0) + out.getLongPosition(0), 0);
+			if (numDims > 1) in.setPosition(source.min(1) + out.getLongPosition(1), 1);
+			out.get().set(in.get());
+		}
+		return (A) track(plane.update(null));
+	}
+
+	/**
+	 * Wraps the storage array of the given access in one which notes when it is
+	 * written. Accesses of other kinds are returned as is, and deemed modified.
+	 */
+	private static Object track(final Object access) {
+		if (access instanceof BitArray) return access;
+		final Object data = ((ArrayDataAccess<?>) access).getCurrentStorageArray();
+		if (data instanceof byte[]) return new TrackedByteArray((byte[]) data);
+		if (data instanceof char[]) return new TrackedCharArray((char[]) data);
+		if (data instanceof short[]) return new TrackedShortArray((short[]) data);
+		if (data instanceof int[]) return new TrackedIntArray((int[]) data);
+		if (data instanceof long[]) return new TrackedLongArray((long[]) data);
+		if (data instanceof float[]) return new TrackedFloatArray((float[]) data);
+		if (data instanceof double[]) {
+			return new TrackedDoubleArray((double[]) data);
+		}
+		return access;
+	}
+
+	/** Tests whether the given plane may have been written since it was read. */
+	private static boolean isModified(final Object plane) {
+		return !(plane instanceof Tracked) || ((Tracked) plane).isModified();
+	}
+
+	// -- Helper classes --
+
+	/** A data access which notes whether it may have been written. */
+	private interface Tracked {
+
+		boolean isModified();
+	}
+
+	private static class TrackedByteArray extends ByteArray implements Tracked {
+
+		private boolean modified;
+
+		public TrackedByteArray(final byte[] data) {
+			super(data);
+		}
+
+		@Override
+		public boolean isModified() {
+			return modified;
+		}
+
+		@Override
+		public void setValue(final int index, final byte value) {
+			if (!modified) modified = true;
+			super.setValue(index, value);
+		}
+
+		@Override
+		public byte[] getCurrentStorageArray() {
+			modified = true;
+			return super.getCurrentStorageArray();
+		}
+	}
+
+	private static class TrackedCharArray extends CharArray implements Tracked {
+
+		private boolean modified;
+
+		public TrackedCharArray(final char[] data) {
+			super(data);
+		}
+
+		@Override
+		public boolean isModified() {
+			return modified;
+		}
+
+		@Override
+		public void setValue(final int index, final char value) {
+			if (!modified) modified = true;
+			super.setValue(index, value);
+		}
+
+		@Override
+		public char[] getCurrentStorageArray() {
+			modified = true;
+			return super.getCurrentStorageArray();
+		}
+	}
+
+	private static class TrackedShortArray extends ShortArray
+		implements Tracked
+	{
+
+		private boolean modified;
+
+		public TrackedShortArray(final short[] data) {
+			super(data);
+		}
+
+		@Override
+		public boolean isModified() {
+			return modified;
+		}
+
+		@Override
+		public void setValue(final int index, final short value) {
+			if (!modified) modified = true;
+			super.setValue(index, value);
+		}
+
+		@Override
+		public short[] getCurrentStorageArray() {
+			modified = true;
+			return super.getCurrentStorageArray();
+		}
+	}
+
+	private static class TrackedIntArray extends IntArray implements Tracked {
+
+		private boolean modified;
+
+		public TrackedIntArray(final int[] data) {
+			super(data);
+		}
+
+		@Override
+		public boolean isModified() {
+			return modified;
+		}
+
+		@Override
+		public void setValue(final int index, final int value) {
+			if (!modified) modified = true;
+			super.setValue(index, value);
+		}
+
+		@Override
+		public int[] getCurrentStorageArray() {
+			modified = true;
+			return super.getCurrentStorageArray();
+		}
+	}
+
+	private static class TrackedLongArray extends LongArray implements Tracked {
+
+		private boolean modified;
+
+		public TrackedLongArray(final long[] data) {
+			super(data);
+		}
+
+		@Override
+		public boolean isModified() {
+			return modified;
+		}
+
+		@Override
+		public void setValue(final int index, final long value) {
+			if (!modified) modified = true;
+			super.setValue(index, value);
+		}
+
+		@Override
+		public long[] getCurrentStorageArray() {
+			modified = true;
+			return super.getCurrentStorageArray();
+		}
+	}
+
+	private static class TrackedFloatArray extends FloatArray
+		implements Tracked
+	{
+
+		private boolean modified;
+
+		public TrackedFloatArray(final float[] data) {
+			super(data);
+		}
+
+		@Override
+		public boolean isModified() {
+			return modified;
+		}
+
+		@Override
+		public void setValue(final int index, final float value) {
+			if (!modified) modified = true;
+			super.setValue(index, value);
+		}
+
+		@Override
+		public float[] getCurrentStorageArray() {
+			modified = true;
+			return super.getCurrentStorageArray();
+		}
+	}
+
+	private static class TrackedDoubleArray extends DoubleArray
+		implements Tracked
+	{
+
+		private boolean modified;
+
+		public TrackedDoubleArray(final double[] data) {
+			super(data);
+		}
+
+		@Override
+		public boolean isModified() {
+			return modified;
+		}
+
+		@Override
+		public void setValue(final int index, final double value) {
+			if (!modified) modified = true;
+			super.setValue(index, value);
+		}
+
+		@Override
+		public double[] getCurrentStorageArray() {
+			modified = true;
+			return super.getCurrentStorageArray();
+		}
+	}
+
+	/**
+	 * Creates {@link CachedPlanarImg}s of the appropriate storage for their
+	 * type, such that they are linked to a type as usual.
+	 */
+	private static class Factory<T extends NativeType<T>> extends
+		PlanarImgFactory<T>
+	{
+
+		private final Img<T> source;
+		private final int maxPlanes;
+
+		public Factory(final Img<T> source, final int maxPlanes) {
+			this.source = source;
+			this.maxPlanes = maxPlanes;
+		}
+
+		@Override
+		public PlanarImg<T, BitArray> createBitInstance(final long[] dimensions,
+			final int entitiesPerPixel)
+		{
+			return new CachedPlanarImg<T, BitArray>(source, dimensions,
+				entitiesPerPixel, maxPlanes);
+		}
+
+		@Override
+		public PlanarImg<T, ByteArray> createByteInstance(
+			final long[] dimensions, final int entitiesPerPixel)
+		{
+			return new CachedPlanarImg<T, ByteArray>(source, dimensions,
+				entitiesPerPixel, maxPlanes);
+		}
+
+		@Override
+		public PlanarImg<T, CharArray> createCharInstance(
+			final long[] dimensions, final int entitiesPerPixel)
+		{
+			return new CachedPlanarImg<T, CharArray>(source, dimensions,
+				entitiesPerPixel, maxPlanes);
+		}
+
+		@Override
+		public PlanarImg<T, ShortArray> createShortInstance(
+			final long[] dimensions, final int entitiesPerPixel)
+		{
+			return new CachedPlanarImg<T, ShortArray>(source, dimensions,
+				entitiesPerPixel, maxPlanes);
+		}
+
+		@Override
+		public PlanarImg<T, IntArray> createIntInstance(final long[] dimensions,
+			final int entitiesPerPixel)
+		{
+			return new CachedPlanarImg<T, IntArray>(source, dimensions,
+				entitiesPerPixel, maxPlanes);
+		}
+
+		@Override
+		public PlanarImg<T, LongArray> createLongInstance(
+			final long[] dimensions, final int entitiesPerPixel)
+		{
+			return new CachedPlanarImg<T, LongArray>(source, dimensions,
+				entitiesPerPixel, maxPlanes);
+		}
+
+		@Override
+		public PlanarImg<T, FloatArray> createFloatInstance(
+			final long[] dimensions, final int entitiesPerPixel)
+		{
+			return new CachedPlanarImg<T, FloatArray>(source, dimensions,
+				entitiesPerPixel, maxPlanes);
+		}
+
+		@Override
+		public PlanarImg<T, DoubleArray> createDoubleInstance(
+			final long[] dimensions, final int entitiesPerPixel)
+		{
+			return new CachedPlanarImg<T, DoubleArray>(source, dimensions,
+				entitiesPerPixel, maxPlanes);
+		}
+	}
+
+}
@@ -67,6 +67,25 @@ public interface Dataset extends Data, ImgPlusMetadata, Interval {
 	/** TODO */
 	void setImgPlus(ImgPlus<? extends RealType<?>> imgPlus);
 
+	/**
+	 * Moves the samples to the given image, which must hold the same samples,
+	 * with the same dimensions and type, in other storage. Unlike
+	 * {@link #setImgPlus(ImgPlus)}, this does not count as a change: the
+	 * modification stamps are kept, and no events are published. Holders of
+	 * the previous image no longer see writes to the dataset, and vice versa.
+	 * <p>
+	 * The caller must ensure nothing still writes through the previous image:
+	 * an {@link net.imglib2.img.Img}, cursor, random access or plane array
+	 * obtained before the move. Such writes are lost if they land after the
+	 * samples were copied, all the more so as the modification stamps only
+	 * reveal writes followed by {@link #update()}.
+	 * </p>
+	 * 
+	 * @throws IllegalArgumentException if the image's dimensions or type
+	 *           differ from the dataset's.
+	 */
+	void setStorage(ImgPlus<? extends RealType<?>> imgPlus);
+
 	/**
 	 * gets a plane of data from the Dataset. The representation of the plane is
 	 * determined by the native ImgLib container. This method will create a copy
@@ -83,6 +102,15 @@ public interface Dataset extends Data, ImgPlusMetadata, Interval {
 	 */
 	Object getPlane(int planeNumber, boolean copyOK);
 
+	/**
+	 * Gets a view of a plane of data within the primitive array which stores
+	 * it, without copying. Planes of planar images occupy a whole array; planes
+	 * of array images, and of cell images whose cells span whole planes, are
+	 * ranges of a larger array. Returns null if the plane is not stored in a
+	 * single array, as in file backed images.
+	 */
+	PlaneBuffer getPlaneBuffer(int planeNumber);
+
 	/**
 	 * sets a plane of data within the dataset. generates an update event if the
 	 * plane reference differs from the current plane reference associated with
@@ -159,6 +187,56 @@ public interface Dataset extends Data, ImgPlusMetadata, Interval {
 	// TODO - move into Imglib
 	void setAxes(final CalibratedAxis[] axes);
 
+	/**
+	 * Informs interested parties that the samples within the given region of
+	 * the dataset have changed. Listeners may then refresh only that region,
+	 * rather than the whole dataset as with {@link #update()}.
+	 * 
+	 * @see imagej.data.event.DatasetUpdatedEvent#getRegion()
+	 */
+	void update(Interval region);
+
+	/**
+	 * Gets a counter which increases whenever the dataset's samples may have
+	 * changed: by {@link #update()}, {@link #update(Interval)},
+	 * {@link #setPlane(int, Object)}, {@link #setImgPlus(ImgPlus)} or
+	 * {@link #rebuild()}. Caches of data derived from the samples can compare
+	 * it with the stamp at which they were computed to check their validity.
+	 */
+	long getModificationStamp();
+
+	/**
+	 * Gets the stamp of the most recent change which may have affected the given
+	 * plane, numbered as in {@link #getPlane(int)}. It is no greater than
+	 * {@link #getModificationStamp()}, and changes confined to other planes do
+	 * not increase it.
+	 */
+	long getModificationStamp(long planeNumber);
+
+	/**
+	 * Takes a copy-on-write snapshot of the dataset's samples. No samples are
+	 * copied until planes are prepared for writing.
+	 * 
+	 * @see #prepareWrite(Interval)
+	 */
+	DatasetSnapshot snapshot();
+
+	/**
+	 * Takes a copy-on-write snapshot of the dataset's samples, like
+	 * {@link #snapshot()}, whose copied planes are optionally written to a
+	 * temporary file rather than held on the heap. The file is only created
+	 * once a plane is copied, and is deleted when the snapshot is disposed.
+	 */
+	DatasetSnapshot snapshot(boolean toFile);
+
+	/**
+	 * Informs the dataset that the samples within the given region are about to
+	 * be written, such that each live {@link DatasetSnapshot} first copies the
+	 * planes intersecting the region, if it still shares them. Callers should
+	 * follow the write with {@link #update(Interval)}.
+	 */
+	void prepareWrite(Interval region);
+
 	// -- Data methods --
 
 	/**
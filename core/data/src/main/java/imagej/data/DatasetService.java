@@ -87,7 +87,8 @@ Dataset create(long[] dims, String name, AxisType[] axes, int bitsPerPixel,
 		boolean signed, boolean floating);
 
 	/**
-	 * Creates a new dataset.
+	 * Creates a new dataset, whose data is stored in temporary files if it is
+	 * too large to hold in memory (see {@link #getImgFactory}).
 	 * 
 	 * @param <T> The type of the dataset.
 	 * @param type The type of the dataset.
@@ -100,7 +101,18 @@ <T extends RealType<T> & NativeType<T>> Dataset create(T type, long[] dims,
 		String name, AxisType[] axes);
 
 	/**
-	 * Creates a new dataset using the provided {@link ImgFactory}.
+	 * Gets a factory suitable for creating an image of the given type and
+	 * dimensions. Per the memory and threads options, this is a
+	 * {@link imagej.data.mapped.MappedImgFactory} if the image is too large to
+	 * hold in memory, and a planar image factory otherwise. No memory is
+	 * reserved or released.
+	 */
+	<T extends NativeType<T>> ImgFactory<T> getImgFactory(T type, long[] dims);
+
+	/**
+	 * Creates a new dataset using the provided {@link ImgFactory}. Unless the
+	 * factory stores images in temporary files, room is first made for the
+	 * image within the budget of the {@link imagej.data.memory.MemoryService}.
 	 * 
 	 * @param <T> The type of the dataset.
 	 * @param factory The ImgFactory to use to create the data.
@@ -133,9 +145,21 @@ <T extends RealType<T>> Dataset create(
 	 */
 	boolean canSave(String destination);
 
-	/** Loads a dataset from a source (such as a file on disk). */
+	/**
+	 * Loads a dataset from a source (such as a file on disk). Whether its planes
+	 * are read up front or on demand is determined by the input/output options.
+	 */
 	Dataset open(String source) throws IOException;
 
+	/**
+	 * Loads a dataset from a source (such as a file on disk).
+	 * 
+	 * @param lazy If true, the dataset's planes are read from the source only
+	 *          when first accessed, and only a limited number of them are held
+	 *          in memory at once. Otherwise all planes are read up front.
+	 */
+	Dataset open(String source, boolean lazy) throws IOException;
+
 	/** Reverts the given dataset to its original source. */
 	void revert(Dataset dataset) throws IOException;
 
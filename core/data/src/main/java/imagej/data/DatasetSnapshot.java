@@ -0,0 +1,295 @@
+/*
+ * #%L
+ * ImageJ software for multidimensional image processing and analysis.
+ * %%
+ * Copyright (C) 2009 - 2013 Board of Regents of the University of
+ * Wisconsin-Madison, Broad Institute of MIT and Harvard, and Max Planck
+ * Institute of Molecular Cell Biology and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are
+ * those of the authors and should not be interpreted as representing official
+ * policies, either expressed or implied, of any organization.
+ * #L%
+ */
+
+package imagej.data;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.reflect.Array;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A copy-on-write snapshot of the samples of a {@link Dataset}.
+ * <p>
+ * Taking a snapshot copies nothing: the snapshot shares every plane with its
+ * dataset. Before a plane is written, the writer calls
+ * {@link Dataset#prepareWrite(net.imglib2.Interval)}, which copies the plane,
+ * in its native type, into each live snapshot which still shares it. Restoring
+ * a snapshot therefore costs time and memory in proportion to the number of
+ * planes written since it was taken. The copies are held on the heap, or
+ * appended to a temporary file if the snapshot was taken with
+ * {@link Dataset#snapshot(boolean)}, so that only one plane at a time is on
+ * the heap. The file is created when the first plane is copied; should that
+ * fail, the copies are held on the heap instead.
+ * </p>
+ * <p>
+ * Writes which are not prepared are detected through the dataset's
+ * {@link Dataset#getModificationStamp(long) modification stamps}, making the
+ * snapshot no longer {@link #isIntact() intact}.
+ * </p>
+ * 
+ * @author Lee Kamentsky
+ */
+public class DatasetSnapshot {
+
+	private final Dataset dataset;
+
+	private final PlaneCopier copier;
+
+	private final long stamp;
+
+	private final long[] dims;
+
+	private final Class<?> type;
+
+	/** Whether the copied planes are written to a file. */
+	private final boolean toFile;
+
+	/** File holding the copied planes, or null if none was created yet. */
+	private File file;
+
+	private RandomAccessFile store;
+
+	/** Copies of the planes written since the snapshot, by plane number. */
+	private final Map<Long, Object> planes = new HashMap<Long, Object>();
+
+	/** Offsets in the file of the planes copied there, by plane number. */
+	private final Map<Long, Long> offsets = new HashMap<Long, Long>();
+
+	/** Type of the samples of the planes copied to the file. */
+	private Class<?> sampleType;
+
+	private int sampleCount;
+
+	private int planeBytes;
+
+	/** Whether a plane was written without being prepared. */
+	private boolean broken;
+
+	private boolean disposed;
+
+	DatasetSnapshot(final Dataset dataset, final boolean toFile) {
+		this.dataset = dataset;
+		this.toFile = toFile;
+		copier = new PlaneCopier(dataset);
+		stamp = dataset.getModificationStamp();
+		dims = new long[dataset.numDimensions()];
+		dataset.dimensions(dims);
+		type = dataset.getType().getClass();
+	}
+
+	// -- DatasetSnapshot methods --
+
+	/** Gets the dataset of which this is a snapshot. */
+	public Dataset getDataset() {
+		return dataset;
+	}
+
+	/** Gets the modification stamp of the dataset when the snapshot was taken. */
+	public long getStamp() {
+		return stamp;
+	}
+
+	/** Gets the number of planes copied since the snapshot was taken. */
+	public synchronized int getCopiedPlaneCount() {
+		return planes.size() + offsets.size();
+	}
+
+	/** Gets the numbers of the planes copied since the snapshot was taken. */
+	public synchronized List<Long> getCopiedPlanes() {
+		final List<Long> copied = new ArrayList<Long>(planes.keySet());
+		copied.addAll(offsets.keySet());
+		return copied;
+	}
+
+	/**
+	 * Gets the copy of the given plane as it was when the snapshot was taken, or
+	 * null if the plane has not been copied. The array must not be modified.
+	 * 
+	 * @throws IllegalStateException if the copy cannot be read from its file.
+	 */
+	public synchronized Object getCopiedPlane(final long planeNumber) {
+		final Long offset = offsets.get(planeNumber);
+		if (offset == null) return planes.get(planeNumber);
+		final ByteBuffer bytes = ByteBuffer.allocate(planeBytes);
+		try {
+			store.seek(offset);
+			store.readFully(bytes.array());
+		}
+		catch (final IOException exc) {
+			throw new IllegalStateException("Cannot read copy of plane " +
+				planeNumber, exc);
+		}
+		final Object samples = Array.newInstance(sampleType, sampleCount);
+		PlaneCopier.fromBytes(bytes, samples);
+		return samples;
+	}
+
+	/** Gets the number of bytes of the heap held by the copied planes. */
+	public synchronized long getMemoryUsage() {
+		final long planeCount = copier.planeCount();
+		if (planeCount == 0) return 0;
+		return (long) (dataset.getBytesOfInfo() / planeCount * planes.size());
+	}
+
+	/**
+	 * Gets whether restoring the snapshot would restore the dataset exactly as
+	 * it was: its structure and type are unchanged, and every plane written
+	 * since was prepared for writing.
+	 */
+	public synchronized boolean isIntact() {
+		if (disposed || broken || !sameStructure()) return false;
+		final long planeCount = copier.planeCount();
+		for (long p = 0; p < planeCount; p++) {
+			if (isCopied(p)) continue;
+			if (dataset.getModificationStamp(p) > stamp) return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Writes the copied planes back into the dataset, which then updates. The
+	 * snapshot remains usable, and may be restored again. The planes are
+	 * prepared for writing first, so that other snapshots keep their versions.
+	 * 
+	 * @throws IllegalStateException if the snapshot was disposed, or the
+	 *           dataset's dimensions or type have changed.
+	 */
+	public void restore() {
+		final List<Long> restored;
+		synchronized (this) {
+			checkRestorable();
+			restored = getCopiedPlanes();
+		}
+		for (final long p : restored) {
+			final Object samples;
+			synchronized (this) {
+				checkRestorable();
+				samples = getCopiedPlane(p);
+			}
+			// NB: Preparing locks every snapshot, so this one must not be locked.
+			dataset.prepareWrite(copier.interval(p));
+			copier.write(p, samples);
+		}
+		for (final long p : restored) {
+			dataset.update(copier.interval(p));
+		}
+	}
+
+	/**
+	 * Discards the copied planes, deleting their file if any; the snapshot can
+	 * no longer be restored.
+	 */
+	public synchronized void dispose() {
+		disposed = true;
+		planes.clear();
+		offsets.clear();
+		if (store != null) {
+			try {
+				store.close();
+			}
+			catch (final IOException exc) {
+				// NB: The file is deleted regardless.
+			}
+			store = null;
+		}
+		if (file != null && !file.delete()) file.deleteOnExit();
+	}
+
+	public synchronized boolean isDisposed() {
+		return disposed;
+	}
+
+	// -- Internal methods --
+
+	/** Copies the given plane, unless already copied, before it is written. */
+	synchronized void preserve(final long planeNumber) {
+		if (disposed || isCopied(planeNumber)) return;
+		if (!sameStructure()) return;
+		if (dataset.getModificationStamp(planeNumber) > stamp) broken = true;
+		final Object samples = copier.read(planeNumber);
+		if (!toFile) {
+			planes.put(planeNumber, samples);
+			return;
+		}
+		try {
+			if (store == null) {
+				if (file == null) file = File.createTempFile("imagej", ".snapshot");
+				store = new RandomAccessFile(file, "rw");
+			}
+			final byte[] bytes = PlaneCopier.toBytes(samples).array();
+			final long offset = store.length();
+			store.seek(offset);
+			store.write(bytes);
+			offsets.put(planeNumber, offset);
+			sampleType = samples.getClass().getComponentType();
+			sampleCount = Array.getLength(samples);
+			planeBytes = bytes.length;
+		}
+		catch (final IOException exc) {
+			// NB: The copy is kept on the heap rather than lost.
+			planes.put(planeNumber, samples);
+		}
+	}
+
+	// -- Helper methods --
+
+	private void checkRestorable() {
+		if (disposed) throw new IllegalStateException("Snapshot was disposed");
+		if (!sameStructure()) {
+			throw new IllegalStateException("Dataset structure has changed");
+		}
+	}
+
+	private boolean isCopied(final long planeNumber) {
+		return planes.containsKey(planeNumber) ||
+			offsets.containsKey(planeNumber);
+	}
+
+	private boolean sameStructure() {
+		if (dataset.getType().getClass() != type) return false;
+		if (dataset.numDimensions() != dims.length) return false;
+		for (int d = 0; d < dims.length; d++) {
+			if (dataset.dimension(d) != dims[d]) return false;
+		}
+		return true;
+	}
+
+}
@@ -35,14 +35,27 @@
 
 package imagej.data;
 
+import imagej.data.batch.UpdateBatchService;
 import imagej.data.event.DatasetCreatedEvent;
 import imagej.data.event.DatasetDeletedEvent;
 import imagej.data.event.DatasetRGBChangedEvent;
 import imagej.data.event.DatasetRestructuredEvent;
 import imagej.data.event.DatasetTypeChangedEvent;
 import imagej.data.event.DatasetUpdatedEvent;
+import imagej.data.mapped.MappedPlanarImg;
+import imagej.data.memory.MemoryService;
 import imagej.data.types.DataTypeService;
-import net.imglib2.Cursor;
+
+import java.lang.ref.WeakReference;
+import java.lang.reflect.Array;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+
+import net.imglib2.Interval;
 import net.imglib2.Positionable;
 import net.imglib2.RandomAccess;
 import net.imglib2.RealPositionable;
@@ -60,6 +73,9 @@
 import net.imglib2.img.basictypeaccess.array.IntArray;
 import net.imglib2.img.basictypeaccess.array.LongArray;
 import net.imglib2.img.basictypeaccess.array.ShortArray;
+import net.imglib2.img.cell.AbstractCell;
+import net.imglib2.img.cell.CellImg;
+import net.imglib2.img.cell.CellRandomAccess;
 import net.imglib2.meta.Axes;
 import net.imglib2.meta.AxisType;
 import net.imglib2.meta.CalibratedAxis;
@@ -75,6 +91,7 @@
 import org.scijava.Context;
 import org.scijava.log.LogService;
 import org.scijava.plugin.Parameter;
+import org.scijava.thread.ThreadService;
 
 /**
  * Default implementation of {@link Dataset}.
@@ -84,16 +101,48 @@
  */
 public class DefaultDataset extends AbstractData implements Dataset {
 
+	/**
+	 * Maximum number of planes whose stamps are bumped individually; changes
+	 * spanning more planes bump the stamp of the whole dataset.
+	 */
+	private static final long MAX_PLANE_STAMPS = 64;
+
 	@Parameter
 	private LogService log;
 
 	@Parameter
 	private DataTypeService dataTypeService;
 
+	@Parameter(required = false)
+	private ThreadService threadService;
+
+	@Parameter(required = false)
+	private UpdateBatchService updateBatchService;
+
+	@Parameter(required = false)
+	private MemoryService memoryService;
+
 	private ImgPlus<? extends RealType<?>> imgPlus;
 	private boolean rgbMerged;
 	private boolean isDirty;
 
+	/** Source of modification stamps. */
+	private final AtomicLong stamp = new AtomicLong();
+
+	/** Stamp of the most recent change to all planes. */
+	private volatile long datasetStamp;
+
+	/** Stamps of changes to individual planes since the last change to all. */
+	private final Map<Long, Long> planeStamps =
+		new ConcurrentHashMap<Long, Long>();
+
+	/** Stamp of each channel's planes when its minimum and maximum were set. */
+	private long[] channelRangeStamps = new long[0];
+
+	/** Snapshots which may still be restored. */
+	private final List<WeakReference<DatasetSnapshot>> snapshots =
+		new CopyOnWriteArrayList<WeakReference<DatasetSnapshot>>();
+
 	public DefaultDataset(final Context context,
 		final ImgPlus<? extends RealType<?>> imgPlus)
 	{
@@ -154,6 +203,9 @@ public void setImgPlus(final ImgPlus<? extends RealType<?>> imgPlus) {
 			typeChanged = true;
 		}
 
+		// NB: Snapshots keep the samples being replaced, if they can be restored.
+		if (!typeChanged && sameDimensions(imgPlus)) prepareWrite(this);
+
 		this.imgPlus = imgPlus;
 
 		// NB - keeping all the old metadata for now. TODO - revisit this?
@@ -172,6 +224,17 @@ public void setImgPlus(final ImgPlus<? extends RealType<?>> imgPlus) {
 		if (typeChanged) typeChange();
 	}
 
+	@Override
+	public void setStorage(final ImgPlus<? extends RealType<?>> imgPlus) {
+		if (!sameDimensions(imgPlus)) {
+			throw new IllegalArgumentException("Dimensions differ");
+		}
+		if (imgPlus.firstElement().getClass() != getType().getClass()) {
+			throw new IllegalArgumentException("Type differs");
+		}
+		this.imgPlus = imgPlus;
+	}
+
 	@Override
 	public Object getPlane(final int planeNumber) {
 		return getPlane(planeNumber, true);
@@ -186,14 +249,34 @@ public Object getPlane(final int planeNumber) {
 	 */
 	@Override
 	public Object getPlane(final int planeNumber, final boolean copyOK) {
+		final PlaneBuffer buffer = getPlaneBuffer(planeNumber);
+		if (buffer != null && buffer.isWholeArray()) return buffer.getArray();
+		if (!copyOK) return null;
+		if (buffer != null) return buffer.toArray();
+		return copyOfPlane(planeNumber);
+	}
+
+	@Override
+	public PlaneBuffer getPlaneBuffer(final int planeNumber) {
 		final Img<? extends RealType<?>> img = imgPlus.getImg();
+		if (img instanceof MappedPlanarImg) return null;
 		if (img instanceof PlanarAccess) {
-			final PlanarAccess<?> planarAccess = (PlanarAccess<?>) img;
-			final Object plane = planarAccess.getPlane(planeNumber);
-			if (plane instanceof ArrayDataAccess) return ((ArrayDataAccess<?>) plane)
-				.getCurrentStorageArray();
+			final Object array =
+				storageArray(((PlanarAccess<?>) img).getPlane(planeNumber));
+			if (array == null) return null;
+			return new PlaneBuffer(array, 0, Array.getLength(array));
+		}
+		if (img instanceof ArrayImg) {
+			final Object array = storageArray(((ArrayImg<?, ?>) img).update(null));
+			// NB: Types packing several samples per element can not be viewed.
+			if (array == null || Array.getLength(array) != img.size()) return null;
+			final long planeSize = img.dimension(0) * img.dimension(1);
+			return new PlaneBuffer(array, (int) (planeNumber * planeSize),
+				(int) planeSize);
+		}
+		if (img instanceof CellImg) {
+			return getCellPlaneBuffer((CellImg<?, ?, ?>) img, planeNumber);
 		}
-		if (copyOK) return copyOfPlane(planeNumber);
 		return null;
 	}
 
@@ -206,6 +289,10 @@ public boolean setPlaneSilently(final int planeNum, final Object newPlane) {
 			log.error("Cannot set plane for non-planar image");
 			return false;
 		}
+		if (img instanceof MappedPlanarImg) {
+			log.error("Cannot set plane for file backed image");
+			return false;
+		}
 		// TODO - copy the plane if it cannot be set by reference
 		@SuppressWarnings("rawtypes")
 		final PlanarAccess planarAccess = (PlanarAccess) img;
@@ -214,7 +301,9 @@ public boolean setPlaneSilently(final int planeNum, final Object newPlane) {
 		final Object currPlane = arrayAccess.getCurrentStorageArray();
 		if (newPlane == currPlane) return false;
 		final ArrayDataAccess<?> array = createArrayDataAccess(newPlane);
+		preserve(planeNum);
 		planarAccess.setPlane(planeNum, array);
+		planeStamps.put((long) planeNum, stamp.incrementAndGet());
 		return true;
 	}
 
@@ -258,6 +347,7 @@ public String getTypeLabelLong() {
 
 	@Override
 	public Dataset duplicate() {
+		reserve(getBytesOfInfo());
 		ImgPlus<? extends RealType<?>> newImgPlus = imgPlus.copy();
 		return new DefaultDataset(getContext(), newImgPlus);
 		// OLD WAY
@@ -270,6 +360,7 @@ public Dataset duplicate() {
 	public Dataset duplicateBlank() {
 		@SuppressWarnings("rawtypes")
 		final ImgPlus untypedImg = imgPlus;
+		reserve(getBytesOfInfo());
 		@SuppressWarnings("unchecked")
 		final Dataset d =
 			new DefaultDataset(getContext(), createBlankCopy(untypedImg));
@@ -279,6 +370,7 @@ public Dataset duplicateBlank() {
 
 	@Override
 	public void copyInto(final Dataset target) {
+		target.prepareWrite(target);
 		copyDataValues(imgPlus, target.getImgPlus());
 		target.update();
 	}
@@ -316,6 +408,7 @@ public void copyDataFrom(final Dataset other) {
 		// create a new img to hold data using our own factory
 		@SuppressWarnings("rawtypes")
 		final ImgFactory factory = getImgPlus().factory();
+		reserve(other.getBytesOfInfo());
 		@SuppressWarnings("unchecked")
 		final Img<? extends RealType<?>> newImg =
 			factory.create(IntervalUtils.getDims(other), other.getType());
@@ -342,6 +435,45 @@ public void copyDataFrom(final Dataset other) {
 		setImgPlus(newImgPlus);
 	}
 
+	@Override
+	public void update(final Interval region) {
+		modified(region);
+		setDirty(true);
+		publishUpdate(new DatasetUpdatedEvent(this, region));
+	}
+
+	@Override
+	public long getModificationStamp() {
+		return stamp.get();
+	}
+
+	@Override
+	public long getModificationStamp(final long planeNumber) {
+		final Long planeStamp = planeStamps.get(planeNumber);
+		if (planeStamp == null) return datasetStamp;
+		return Math.max(datasetStamp, planeStamp);
+	}
+
+	@Override
+	public DatasetSnapshot snapshot() {
+		return snapshot(false);
+	}
+
+	@Override
+	public DatasetSnapshot snapshot(final boolean toFile) {
+		final DatasetSnapshot snapshot = new DatasetSnapshot(this, toFile);
+		snapshots.add(new WeakReference<DatasetSnapshot>(snapshot));
+		return snapshot;
+	}
+
+	@Override
+	public void prepareWrite(final Interval region) {
+		if (snapshots.isEmpty()) return;
+		for (final long planeNumber : planeNumbers(region)) {
+			preserve(planeNumber);
+		}
+	}
+
 	// -- Data methods --
 
 	@Override
@@ -351,6 +483,7 @@ public void update() {
 
 	@Override
 	public void rebuild() {
+		modified();
 		setDirty(true);
 		publish(new DatasetRestructuredEvent(this));
 	}
@@ -550,22 +683,27 @@ public void setValidBits(final int bits) {
 
 	@Override
 	public double getChannelMinimum(final int c) {
+		// NB: A range from before the samples last changed is unknown.
+		if (isChannelRangeStale(c)) return Double.NaN;
 		return imgPlus.getChannelMinimum(c);
 	}
 
 	@Override
 	public void setChannelMinimum(final int c, final double min) {
 		imgPlus.setChannelMinimum(c, min);
+		channelRangeSet(c);
 	}
 
 	@Override
 	public double getChannelMaximum(final int c) {
+		if (isChannelRangeStale(c)) return Double.NaN;
 		return imgPlus.getChannelMaximum(c);
 	}
 
 	@Override
 	public void setChannelMaximum(final int c, final double max) {
 		imgPlus.setChannelMaximum(c, max);
+		channelRangeSet(c);
 	}
 
 	@Override
@@ -645,18 +783,48 @@ else if (newPlane instanceof double[]) {
 	private void copyDataValues(final Img<? extends RealType<?>> input,
 		final Img<? extends RealType<?>> output)
 	{
-		final long[] position = new long[output.numDimensions()];
-		final Cursor<? extends RealType<?>> outputCursor =
-			output.localizingCursor();
-		final RandomAccess<? extends RealType<?>> inputAccessor =
-			input.randomAccess();
-		while (outputCursor.hasNext()) {
-			outputCursor.next();
-			outputCursor.localize(position);
-			inputAccessor.setPosition(position);
-			final double value = inputAccessor.get().getRealDouble();
-			outputCursor.get().setReal(value);
+		new ImgCopier(threadService).copy(input, output);
+	}
+
+	/** Gets the primitive array of the given data access, if it has one. */
+	private Object storageArray(final Object access) {
+		if (!(access instanceof ArrayDataAccess)) return null;
+		return ((ArrayDataAccess<?>) access).getCurrentStorageArray();
+	}
+
+	/**
+	 * Gets a view of the given plane within the cell which stores it, if the
+	 * cells of the image span whole planes.
+	 */
+	private PlaneBuffer getCellPlaneBuffer(final CellImg<?, ?, ?> img,
+		final int planeNumber)
+	{
+		final int numDims = img.numDimensions();
+		final long[] pos = new long[numDims];
+		long index = planeNumber;
+		for (int d = 2; d < numDims; d++) {
+			pos[d] = index % img.dimension(d);
+			index /= img.dimension(d);
+		}
+		final CellRandomAccess<?, ?, ?> access = img.randomAccess();
+		access.setPosition(pos);
+		final AbstractCell<?> cell = access.getCell();
+		if (cell.dimension(0) != img.dimension(0) ||
+			cell.dimension(1) != img.dimension(1))
+		{
+			return null;
 		}
+		final Object array = storageArray(cell.getData());
+		if (array == null) return null;
+		final long planeSize = img.dimension(0) * img.dimension(1);
+		long offset = 0, stride = planeSize, cellSize = planeSize;
+		for (int d = 2; d < numDims; d++) {
+			offset += (pos[d] - cell.min(d)) * stride;
+			stride *= cell.dimension(d);
+			cellSize *= cell.dimension(d);
+		}
+		if (Array.getLength(array) != cellSize) return null;
+		return new PlaneBuffer(array, (int) offset, (int) planeSize);
 	}
 
 	private Object copyOfPlane(final int planeNum) {
@@ -688,9 +856,13 @@ private Object copyOfPlane(final int planeNum) {
 			planeIndexSpans[i] = dimensions[i + 2];
 		final Extents planeExtents = new Extents(planeIndexSpans);
 		final long[] planePos = new long[planeExtents.numDimensions()];
-		final Position pos = planeExtents.createPosition();
-		pos.setIndex(planeNum);
-		pos.localize(planePos);
+		if (planePos.length > 0 &&
+			(planeNum < 0 || planeNum >= planeExtents.numElements()))
+		{
+			throw new IllegalArgumentException("Plane number out of range: " +
+				planeNum);
+		}
+		planeExtents.indexToPosition(planeNum, planePos);
 		final long[] inputPos = new long[dimensions.length];
 		for (int i = 2; i < dimensions.length; i++)
 			inputPos[i] = planePos[i - 2];
@@ -722,6 +894,16 @@ private Object copyOfPlane(final int planeNum) {
 		return store.getCurrentStorageArray();
 	}
 
+	/**
+	 * Makes room within the memory budget for a new image of the given size,
+	 * created by the factory of this dataset's image.
+	 */
+	private void reserve(final double bytes) {
+		if (memoryService == null) return;
+		if (imgPlus.getImg() instanceof MappedPlanarImg) return;
+		memoryService.reserve((long) bytes);
+	}
+
 	/** Makes an image that has same type, container, and dimensions as refImage. */
 	private static <T extends RealType<T>> ImgPlus<T> createBlankCopy(
 		final ImgPlus<T> img)
@@ -740,8 +922,128 @@ private <T extends RealType<?>> ImgPlus<T> wrapAsImgPlus(
 	}
 
 	private void update(boolean metadataOnly) {
+		if (!metadataOnly) modified();
 		setDirty(true);
-		publish(new DatasetUpdatedEvent(this, metadataOnly));
+		publishUpdate(new DatasetUpdatedEvent(this, metadataOnly));
+	}
+
+	/** Publishes the given update, coalesced with others if possible. */
+	private void publishUpdate(final DatasetUpdatedEvent event) {
+		if (updateBatchService != null) updateBatchService.publish(event);
+		else publish(event);
+	}
+
+	/** Bumps the modification stamp of all planes. */
+	private void modified() {
+		datasetStamp = stamp.incrementAndGet();
+		planeStamps.clear();
+	}
+
+	/**
+	 * Bumps the modification stamps of the planes intersecting the given region,
+	 * or of all planes if the region spans many.
+	 */
+	private void modified(final Interval region) {
+		final int numDims = numDimensions();
+		long planes = 1;
+		for (int d = 2; d < numDims; d++) {
+			planes *= region.dimension(d);
+		}
+		if (planes > MAX_PLANE_STAMPS) {
+			modified();
+			return;
+		}
+		final long newStamp = stamp.incrementAndGet();
+		for (final long planeNumber : planeNumbers(region)) {
+			planeStamps.put(planeNumber, newStamp);
+		}
+	}
+
+	private boolean sameDimensions(final Interval interval) {
+		if (interval.numDimensions() != numDimensions()) return false;
+		for (int d = 0; d < numDimensions(); d++) {
+			if (interval.dimension(d) != dimension(d)) return false;
+		}
+		return true;
+	}
+
+	/** Gets the numbers of the planes intersecting the given region. */
+	private long[] planeNumbers(final Interval region) {
+		final int numDims = numDimensions();
+		long planes = 1;
+		for (int d = 2; d < numDims; d++) {
+			planes *= region.dimension(d);
+		}
+		final long[] planeNumbers = new long[(int) planes];
+		final long[] position = new long[numDims];
+		for (int d = 2; d < numDims; d++) {
+			position[d] = region.min(d);
+		}
+		for (int p = 0; p < planes; p++) {
+			long planeNumber = 0;
+			for (int d = numDims - 1; d >= 2; d--) {
+				planeNumber = planeNumber * dimension(d) + position[d] - min(d);
+			}
+			planeNumbers[p] = planeNumber;
+			// advance to the next plane of the region
+			for (int d = 2; d < numDims; d++) {
+				if (++position[d] <= region.max(d)) break;
+				position[d] = region.min(d);
+			}
+		}
+		return planeNumbers;
+	}
+
+	/** Copies the given plane into the live snapshots still sharing it. */
+	private void preserve(final long planeNumber) {
+		for (final WeakReference<DatasetSnapshot> ref : snapshots) {
+			final DatasetSnapshot snapshot = ref.get();
+			if (snapshot == null || snapshot.isDisposed()) snapshots.remove(ref);
+			else snapshot.preserve(planeNumber);
+		}
+	}
+
+	/**
+	 * Whether the samples may have changed since the given channel's minimum and
+	 * maximum were set, making them stale.
+	 */
+	private synchronized boolean isChannelRangeStale(final int c) {
+		final long rangeStamp =
+			c < channelRangeStamps.length ? channelRangeStamps[c] : 0;
+		return rangeStamp != channelStamp(c);
+	}
+
+	private synchronized void channelRangeSet(final int c) {
+		if (c >= channelRangeStamps.length) {
+			channelRangeStamps = Arrays.copyOf(channelRangeStamps, c + 1);
+		}
+		channelRangeStamps[c] = channelStamp(c);
+	}
+
+	/**
+	 * Gets the stamp of the most recent change to the planes of the given
+	 * channel, i.e. the greatest of their {@link #getModificationStamp(long)}.
+	 */
+	private long channelStamp(final int c) {
+		final int chIndex = dimensionIndex(Axes.CHANNEL);
+		long channelStamp = datasetStamp;
+		for (final Map.Entry<Long, Long> entry : planeStamps.entrySet()) {
+			if (entry.getValue() <= channelStamp) continue;
+			// NB: without a channel axis beyond XY, every plane spans channel c
+			if (chIndex < 2 || channel(entry.getKey(), chIndex) == c) {
+				channelStamp = entry.getValue();
+			}
+		}
+		return channelStamp;
+	}
+
+	/** Gets the channel of the given plane, along the given (non-XY) axis. */
+	private long channel(final long planeNumber, final int chIndex) {
+		long stride = 1;
+		for (int d = 2; d < chIndex; d++) {
+			stride *= dimension(d);
+		}
+		return planeNumber / stride % dimension(chIndex);
 	}
 
 	private boolean mergedColorCompatible() {
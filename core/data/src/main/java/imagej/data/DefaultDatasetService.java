@@ -35,9 +35,17 @@
 
 package imagej.data;
 
+import imagej.core.options.OptionsInputOutput;
+import imagej.core.options.OptionsMemoryAndThreads;
 import imagej.data.display.DataView;
 import imagej.data.display.ImageDisplay;
+import imagej.data.event.DatasetDeletedEvent;
+import imagej.data.mapped.MappedImgFactory;
+import imagej.data.mapped.MappedPlanarImg;
+import imagej.data.memory.MemoryConsumer;
+import imagej.data.memory.MemoryService;
 import imagej.data.types.DataTypeService;
+import imagej.options.OptionsService;
 import io.scif.FormatException;
 import io.scif.img.ImgIOException;
 import io.scif.img.ImgOpener;
@@ -50,7 +58,10 @@
 import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 
 import net.imglib2.exception.IncompatibleTypeException;
 import net.imglib2.img.Img;
@@ -59,6 +70,7 @@
 import net.imglib2.meta.AxisType;
 import net.imglib2.meta.ImgPlus;
 import net.imglib2.type.NativeType;
+import net.imglib2.type.Type;
 import net.imglib2.type.logic.BitType;
 import net.imglib2.type.numeric.RealType;
 import net.imglib2.type.numeric.integer.ByteType;
@@ -72,6 +84,7 @@
 import net.imglib2.type.numeric.real.DoubleType;
 import net.imglib2.type.numeric.real.FloatType;
 
+import org.scijava.event.EventHandler;
 import org.scijava.log.LogService;
 import org.scijava.object.ObjectService;
 import org.scijava.plugin.Parameter;
@@ -90,6 +103,15 @@ public final class DefaultDatasetService extends AbstractService implements
 	DatasetService
 {
 
+	/** Megabytes of planes to hold of lazily opened datasets, by default. */
+	private static final int DEFAULT_LAZY_CACHE_SIZE = 256;
+
+	/**
+	 * Largest dataset, in bytes, of which a snapshot is kept for reverting;
+	 * larger ones are read from their files again.
+	 */
+	private static final long MAX_SAVED_SNAPSHOT_BYTES = 64 * 1024 * 1024;
+
 	@Parameter
 	private LogService log;
 
@@ -99,11 +121,21 @@ public final class DefaultDatasetService extends AbstractService implements
 	@Parameter
 	private FormatService formatService;
 
+	@Parameter(required = false)
+	private OptionsService optionsService;
+
+	@Parameter(required = false)
+	private MemoryService memoryService;
+
 	// NB: The create(ImgPlus) method instantiates a
 	// DefaultDataset, which requires a DataTypeService.
 	@Parameter
 	private DataTypeService dataTypeService;
 
+	/** Snapshots of datasets as they were last opened or saved. */
+	private final Map<Dataset, DatasetSnapshot> savedSnapshots =
+		new HashMap<Dataset, DatasetSnapshot>();
+
 	// -- DatasetService methods --
 
 	@Override
@@ -174,8 +206,15 @@ public Dataset create(final long[] dims, final String name,
 	public <T extends RealType<T> & NativeType<T>> Dataset create(
 		final T type, final long[] dims, final String name, final AxisType[] axes)
 	{
-		final PlanarImgFactory<T> imgFactory = new PlanarImgFactory<T>();
-		return create(imgFactory, type, dims, name, axes);
+		return create(getImgFactory(type, dims), type, dims, name, axes);
+	}
+
+	@Override
+	public <T extends NativeType<T>> ImgFactory<T> getImgFactory(final T type,
+		final long[] dims)
+	{
+		if (isFileBacked(type, dims)) return new MappedImgFactory<T>();
+		return new PlanarImgFactory<T>();
 	}
 
 	@Override
@@ -183,6 +222,9 @@ public <T extends RealType<T>> Dataset create(
 		final ImgFactory<T> factory, final T type, final long[] dims,
 		final String name, final AxisType[] axes)
 	{
+		if (memoryService != null && !(factory instanceof MappedImgFactory)) {
+			memoryService.reserve(bytes(type, dims));
+		}
 		final Img<T> img = factory.create(dims, type);
 		final ImgPlus<T> imgPlus = new ImgPlus<T>(img, name, axes, null);
 		return create(imgPlus);
@@ -217,6 +259,18 @@ public boolean canSave(final String destination) {
 
 	@Override
 	public Dataset open(final String source) throws IOException {
+		final OptionsInputOutput options = getOptions();
+		return open(source, options != null && options.isLazyOpening());
+	}
+
+	@Override
+	public Dataset open(final String source, final boolean lazy)
+		throws IOException
+	{
+		if (!lazy && memoryService != null) {
+			// NB: The file size estimates the samples, unless they are compressed.
+			memoryService.reserve(new File(source).length());
+		}
 		final ImgOpener imageOpener = new ImgOpener(getContext());
 		// Restore this when NativeType can be eliminated from this class decl.
 		// TODO BDZ 7-17-12 Lowering reliance on NativeType. This cast is safe but
@@ -229,12 +283,14 @@ public Dataset open(final String source) throws IOException {
 				new ImgOptions().setIndex(0)
 												.setCheckMode(CheckMode.DEEP)
 												.setComputeMinMax(false)
-												.setImgModes(ImgMode.PLANAR);
+												.setImgModes(lazy ? ImgMode.CELL : ImgMode.PLANAR);
 		try {
 			@SuppressWarnings("rawtypes")
-			final ImgPlus imgPlus = imageOpener.openImg(source, options);
+			ImgPlus imgPlus = imageOpener.openImg(source, options);
+			if (lazy) imgPlus = cachePlanes(imgPlus);
 			@SuppressWarnings("unchecked")
 			final Dataset dataset = create(imgPlus);
+			rememberSaved(dataset);
 			return dataset;
 		}
 		catch (final ImgIOException exc) {
@@ -244,6 +300,16 @@ public Dataset open(final String source) throws IOException {
 
 	@Override
 	public void revert(final Dataset dataset) throws IOException {
+		final DatasetSnapshot snapshot;
+		synchronized (savedSnapshots) {
+			snapshot = savedSnapshots.get(dataset);
+		}
+		if (snapshot != null && snapshot.isIntact()) {
+			// only the planes written since opening or saving need restoring
+			snapshot.restore();
+			dataset.setDirty(false);
+			return;
+		}
 		final String source = dataset.getSource();
 		if (source == null || source.isEmpty()) {
 			// no way to revert
@@ -251,6 +317,7 @@ public void revert(final Dataset dataset) throws IOException {
 		}
 		final Dataset revertedDataset = open(source);
 		revertedDataset.copyInto(dataset);
+		rememberSaved(dataset);
 	}
 
 	@Override
@@ -274,10 +341,147 @@ public void save(final Dataset dataset, final String destination)
 		final String name = new File(destination).getName();
 		dataset.setName(name);
 		dataset.setDirty(false);
+		rememberSaved(dataset);
+	}
+
+	// -- Service methods --
+
+	@Override
+	public void initialize() {
+		if (memoryService == null) return;
+		// NB: Datasets can still be reverted from their files.
+		memoryService.addConsumer(new MemoryConsumer() {
+
+			@Override
+			public long getMemoryUsage() {
+				long usage = 0;
+				synchronized (savedSnapshots) {
+					for (final DatasetSnapshot snapshot : savedSnapshots.values()) {
+						usage += snapshot.getMemoryUsage();
+					}
+				}
+				return usage;
+			}
+
+			@Override
+			public long releaseMemory(final long bytes) {
+				long released = 0;
+				synchronized (savedSnapshots) {
+					final Iterator<DatasetSnapshot> iter =
+						savedSnapshots.values().iterator();
+					while (released < bytes && iter.hasNext()) {
+						final DatasetSnapshot snapshot = iter.next();
+						released += snapshot.getMemoryUsage();
+						snapshot.dispose();
+						iter.remove();
+					}
+				}
+				return released;
+			}
+		});
+	}
+
+	// -- Event handlers --
+
+	/** Discards the saved snapshots of deleted datasets. */
+	@EventHandler
+	protected void onEvent(final DatasetDeletedEvent event) {
+		final DatasetSnapshot snapshot;
+		synchronized (savedSnapshots) {
+			snapshot = savedSnapshots.remove(event.getObject());
+		}
+		if (snapshot != null) snapshot.dispose();
 	}
 
 	// -- Helper methods --
 
+	/**
+	 * Takes a snapshot of the given dataset as it now is in its file, for
+	 * reverting to without reading the file again. Since the snapshot copies
+	 * each plane to the heap when it is first written, it is only taken of
+	 * small datasets held in memory; datasets in temporary files or read on
+	 * demand are reverted from their files.
+	 */
+	private void rememberSaved(final Dataset dataset) {
+		final Img<?> img = dataset.getImgPlus().getImg();
+		final boolean inMemory =
+			!(img instanceof MappedPlanarImg) && !(img instanceof CachedPlanarImg);
+		final DatasetSnapshot snapshot =
+			inMemory && dataset.getBytesOfInfo() <= MAX_SAVED_SNAPSHOT_BYTES
+				? dataset.snapshot() : null;
+		final DatasetSnapshot old;
+		synchronized (savedSnapshots) {
+			old =
+				snapshot == null ? savedSnapshots.remove(dataset) : savedSnapshots
+					.put(dataset, snapshot);
+		}
+		if (old != null) old.dispose();
+	}
+
+	/**
+	 * Determines whether a new image of the given type and dimensions should be
+	 * stored in temporary files rather than in memory, as configured in the
+	 * memory and threads options: either beyond a fixed size, or when it would
+	 * not fit within the budget of the {@link MemoryService} even after other
+	 * datasets are moved to disk (or, without that service, when it would need
+	 * more than half the memory still available). Nothing is moved to disk
+	 * here; room is made when the image is created.
+	 */
+	private boolean isFileBacked(final NativeType<?> type, final long[] dims) {
+		if (optionsService == null || !MappedImgFactory.isSupported(type)) {
+			return false;
+		}
+		final OptionsMemoryAndThreads options =
+			optionsService.getOptions(OptionsMemoryAndThreads.class);
+		if (options == null || !options.isFileBackedImages()) return false;
+		final long bytes = bytes(type, dims);
+		final long threshold = options.getFileBackedThreshold() * 1024L * 1024L;
+		if (threshold > 0) return bytes > threshold;
+		if (memoryService != null) return bytes > memoryService.getAvailable();
+		final Runtime runtime = Runtime.getRuntime();
+		final long used = runtime.totalMemory() - runtime.freeMemory();
+		return bytes > (runtime.maxMemory() - used) / 2;
+	}
+
+	/** Gets the number of bytes of an image of the given type and dimensions. */
+	private long bytes(final Type<?> type, final long[] dims) {
+		long count = 1;
+		for (final long dim : dims) {
+			count *= dim;
+		}
+		final int bits =
+			type instanceof NativeType ? ((NativeType<?>) type).getBitsPerPixel()
+				: 64;
+		return (count * bits + 7) / 8;
+	}
+
+	private OptionsInputOutput getOptions() {
+		if (optionsService == null) return null;
+		return optionsService.getOptions(OptionsInputOutput.class);
+	}
+
+	/**
+	 * Wraps the given image, whose planes are read on demand, such that its
+	 * most recently accessed planes are held in memory, up to the configured
+	 * cache size.
+	 */
+	@SuppressWarnings({ "rawtypes", "unchecked" })
+	private ImgPlus cachePlanes(final ImgPlus imgPlus) {
+		final OptionsInputOutput options = getOptions();
+		final long cacheSize =
+			options == null ? DEFAULT_LAZY_CACHE_SIZE : options.getLazyCacheSize();
+		final Img img =
+			CachedPlanarImg.create((Img) imgPlus.getImg(), cacheSize * 1024 * 1024);
+		final ImgPlus cachedImgPlus = new ImgPlus(img, imgPlus);
+		cachedImgPlus.setSource(imgPlus.getSource());
+		final int count = imgPlus.getColorTableCount();
+		cachedImgPlus.initializeColorTables(count);
+		for (int i = 0; i < count; i++) {
+			cachedImgPlus.setColorTable(imgPlus.getColorTable(i), i);
+		}
+		return cachedImgPlus;
+	}
+
 	private void invalidParams(final int bitsPerPixel,
 		final boolean signed, final boolean floating)
 	{
@@ -40,6 +40,8 @@
 import imagej.render.TextRenderer.FontFamily;
 import imagej.render.TextRenderer.FontStyle;
 import imagej.render.TextRenderer.TextJustification;
+import net.imglib2.FinalInterval;
+import net.imglib2.Interval;
 import net.imglib2.RandomAccess;
 import net.imglib2.meta.Axes;
 import net.imglib2.type.numeric.RealType;
@@ -71,6 +73,9 @@ public class DrawingTool {
 	private long lineWidth;
 	private long u0, v0;
 	private long maxU, maxV;
+	private long dirtyMinU, dirtyMinV, dirtyMaxU, dirtyMaxV;
+	private long[] prepared;
+	private long preparedChannel;
 	private ChannelCollection channels;
 	private double intensity;
 
@@ -96,6 +101,7 @@ public DrawingTool(final Dataset ds, RenderingService service) {
 		this.v0 = 0;
 		this.preferredChannel = -1;
 		initAxisVariables();
+		resetDirtyRegion();
 	}
 
 	// -- public interface --
@@ -273,6 +279,7 @@ public void drawPixel(final long u, final long v) {
 		if (v > maxV) return;
 		accessor.setPosition(u, uAxis);
 		accessor.setPosition(v, vAxis);
+		prepareWrite();
 		// draw in single channel mode
 		if (preferredChannel >= 0) {
 			final double value = intensity * channels.getChannelValue(preferredChannel);
@@ -289,6 +296,10 @@ public void drawPixel(final long u, final long v) {
 			}
 		}
 		dataset.setDirty(true);
+		if (u < dirtyMinU) dirtyMinU = u;
+		if (u > dirtyMaxU) dirtyMaxU = u;
+		if (v < dirtyMinV) dirtyMinV = v;
+		if (v > dirtyMaxV) dirtyMaxV = v;
 	}
 
 	/**
@@ -474,8 +485,83 @@ public void drawText(final long anchorU, final long anchorV,
 		intensity = 1;
 	}
 
+	/**
+	 * Notifies interested parties of the region drawn since the last call, via
+	 * {@link Dataset#update(Interval)}. Only that region needs to be redisplayed.
+	 * Does nothing if nothing has been drawn.
+	 */
+	public void update() {
+		if (dirtyMinU > dirtyMaxU) return;
+		final int numDims = dataset.numDimensions();
+		final long[] min = new long[numDims];
+		final long[] max = new long[numDims];
+		for (int d = 0; d < numDims; d++) {
+			if (d == uAxis) {
+				min[d] = dirtyMinU;
+				max[d] = dirtyMaxU;
+			}
+			else if (d == vAxis) {
+				min[d] = dirtyMinV;
+				max[d] = dirtyMaxV;
+			}
+			else if (d == channelAxis && preferredChannel < 0) {
+				min[d] = 0;
+				max[d] = dataset.dimension(d) - 1;
+			}
+			else if (d == channelAxis) {
+				min[d] = max[d] = preferredChannel;
+			}
+			else {
+				min[d] = max[d] = accessor.getLongPosition(d);
+			}
+		}
+		resetDirtyRegion();
+		prepared = null;
+		dataset.update(new FinalInterval(min, max));
+	}
+
 	// -- private helpers --
 
+	/**
+	 * Prepares the planes about to be drawn on for writing, unless they were
+	 * prepared since the last {@link #update()}.
+	 */
+	private void prepareWrite() {
+		final int numDims = dataset.numDimensions();
+		if (prepared != null && preparedChannel == preferredChannel) {
+			boolean same = true;
+			for (int d = 0; d < numDims && same; d++) {
+				if (d == uAxis || d == vAxis || d == channelAxis) continue;
+				same = prepared[d] == accessor.getLongPosition(d);
+			}
+			if (same) return;
+		}
+		final long[] min = new long[numDims];
+		final long[] max = new long[numDims];
+		for (int d = 0; d < numDims; d++) {
+			if (d == uAxis || d == vAxis ||
+				(d == channelAxis && preferredChannel < 0))
+			{
+				min[d] = 0;
+				max[d] = dataset.dimension(d) - 1;
+			}
+			else if (d == channelAxis) {
+				min[d] = max[d] = preferredChannel;
+			}
+			else {
+				min[d] = max[d] = accessor.getLongPosition(d);
+			}
+		}
+		dataset.prepareWrite(new FinalInterval(min, max));
+		prepared = min;
+		preparedChannel = preferredChannel;
+	}
+
+	private void resetDirtyRegion() {
+		dirtyMinU = dirtyMinV = Long.MAX_VALUE;
+		dirtyMaxU = dirtyMaxV = Long.MIN_VALUE;
+	}
+
 	private void initAxisVariables() {
 		channelAxis = dataset.dimensionIndex(Axes.CHANNEL);
 		uAxis = -1;
@@ -48,6 +48,9 @@ public class Extents extends AbstractInterval {
 
 	private final long numElements;
 
+	/** Index distance between neighboring positions in each dimension. */
+	private final long[] strides;
+
 	/**
 	 * Constructor that takes a dimensional extent and sets min to a zero origin
 	 * and each max dim i to dims[i]-1.
@@ -55,6 +58,7 @@ public class Extents extends AbstractInterval {
 	public Extents(final long[] dims) {
 		super(dims);
 		numElements = calcNumElements();
+		strides = calcStrides();
 	}
 
 	/**
@@ -64,6 +68,7 @@ public Extents(final long[] dims) {
 	public Extents(final long[] min, final long[] max) {
 		super(min, max);
 		numElements = calcNumElements();
+		strides = calcStrides();
 	}
 
 	/**
@@ -81,6 +86,40 @@ public long numElements() {
 		return numElements;
 	}
 
+	/**
+	 * Returns the difference in index between two positions which are
+	 * neighbors in dimension d. The first dimension varies fastest.
+	 */
+	public long stride(final int d) {
+		return strides[d];
+	}
+
+	/**
+	 * Returns the index, from 0 to numElements()-1, of the given position. No
+	 * checking is done that the position lies within the extents.
+	 */
+	public long positionToIndex(final long[] pos) {
+		long index = 0;
+		for (int d = 0; d < strides.length; d++) {
+			index += strides[d] * (pos[d] - min[d]);
+		}
+		return index;
+	}
+
+	/**
+	 * Populates the given long[] with the position of the given index, which
+	 * ranges from 0 to numElements()-1. No checking is done that the index is
+	 * in range.
+	 */
+	public void indexToPosition(final long index, final long[] pos) {
+		long r = index;
+		for (int d = strides.length - 1; d >= 0; d--) {
+			final long q = r / strides[d];
+			pos[d] = q + min[d];
+			r -= q * strides[d];
+		}
+	}
+
 //	/**
 //	 * Returns a long[] containing a subset of the dimensions. The dimensions to
 //	 * choose are identified by offset and length. Throws exceptions when offset
@@ -118,4 +157,14 @@ private long calcNumElements() {
 			elements *= dimension(i);
 		return elements;
 	}
+
+	private long[] calcStrides() {
+		final long[] steps = new long[min.length];
+		long stride = 1;
+		for (int i = 0; i < min.length; i++) {
+			steps[i] = stride;
+			stride *= dimension(i);
+		}
+		return steps;
+	}
 }
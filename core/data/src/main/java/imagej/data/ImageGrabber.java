@@ -66,6 +66,7 @@ public ImageGrabber(DatasetService service) {
 	 * method uses the provided String name for the output {@link Dataset}.
 	 */
 	public Dataset grab(DatasetView view, String outputName) {
+		view.waitForRender();
 		ARGBScreenImage screenImage = view.getScreenImage();
 		long[] dims = new long[3];
 		screenImage.dimensions(dims);  // fill X count & Y count
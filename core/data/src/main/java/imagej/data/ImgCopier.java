@@ -0,0 +1,312 @@
+/*
+ * #%L
+ * ImageJ software for multidimensional image processing and analysis.
+ * %%
+ * Copyright (C) 2009 - 2013 Board of Regents of the University of
+ * Wisconsin-Madison, Broad Institute of MIT and Harvard, and Max Planck
+ * Institute of Molecular Cell Biology and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are
+ * those of the authors and should not be interpreted as representing official
+ * policies, either expressed or implied, of any organization.
+ * #L%
+ */
+
+package imagej.data;
+
+import imagej.data.mapped.MappedPlanarImg;
+
+import java.lang.reflect.Array;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+import net.imglib2.Cursor;
+import net.imglib2.RandomAccess;
+import net.imglib2.img.Img;
+import net.imglib2.img.array.ArrayImg;
+import net.imglib2.img.basictypeaccess.array.ArrayDataAccess;
+import net.imglib2.img.planar.PlanarImg;
+import net.imglib2.meta.ImgPlus;
+import net.imglib2.type.numeric.RealType;
+import net.imglib2.type.numeric.integer.ByteType;
+import net.imglib2.type.numeric.integer.IntType;
+import net.imglib2.type.numeric.integer.LongType;
+import net.imglib2.type.numeric.integer.ShortType;
+import net.imglib2.type.numeric.integer.UnsignedByteType;
+import net.imglib2.type.numeric.integer.UnsignedIntType;
+import net.imglib2.type.numeric.integer.UnsignedShortType;
+import net.imglib2.type.numeric.real.DoubleType;
+import net.imglib2.type.numeric.real.FloatType;
+
+import org.scijava.thread.ThreadService;
+
+/**
+ * Copies the sample values of one {@link Img} into another of the same
+ * dimensions, choosing the fastest strategy the two images allow.
+ * <ul>
+ * <li>If both images are {@link PlanarImg}s or {@link ArrayImg}s of the same
+ * type, with one sample per array element, their arrays are copied with
+ * {@link System#arraycopy}.</li>
+ * <li>Otherwise, if both images iterate in the same order, their cursors are
+ * walked in lockstep, converting each sample with
+ * {@link RealType#setReal(double)}.</li>
+ * <li>Otherwise each output sample is looked up in the input by position.</li>
+ * </ul>
+ * The first two strategies split the samples into contiguous ranges which are
+ * copied concurrently, if a {@link ThreadService} is available.
+ * 
+ * @author Lee Kamentsky
+ */
+public class ImgCopier {
+
+	/** Fewest samples worth copying on a thread of their own. */
+	private static final long MIN_SAMPLES_PER_THREAD = 1 << 18;
+
+	/** Types whose samples are each stored in one primitive array element. */
+	private static final Class<?>[] ARRAY_TYPES = { ByteType.class,
+		UnsignedByteType.class, ShortType.class, UnsignedShortType.class,
+		IntType.class, UnsignedIntType.class, LongType.class, FloatType.class,
+		DoubleType.class };
+
+	private final ThreadService threadService;
+
+	private final int threadCount;
+
+	/**
+	 * Creates a copier which copies concurrently on the given service's threads,
+	 * or on the calling thread only if the service is null.
+	 */
+	public ImgCopier(final ThreadService threadService) {
+		this(threadService, Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * Creates a copier which copies on up to the given number of the service's
+	 * threads, or on the calling thread only if the service is null.
+	 */
+	public ImgCopier(final ThreadService threadService, final int threadCount) {
+		this.threadService = threadService;
+		this.threadCount = Math.max(1, threadCount);
+	}
+
+	// -- ImgCopier methods --
+
+	/**
+	 * Copies the sample values of the input image into the output image. The
+	 * output image may be no larger than the input in any dimension.
+	 */
+	public void copy(final Img<? extends RealType<?>> input,
+		final Img<? extends RealType<?>> output)
+	{
+		final Img<? extends RealType<?>> in = unwrap(input);
+		final Img<? extends RealType<?>> out = unwrap(output);
+		if (!sameBounds(in, out)) {
+			copyByPosition(in, out);
+			return;
+		}
+		final List<Object> inArrays = getArrays(in);
+		final List<Object> outArrays = getArrays(out);
+		if (inArrays != null && outArrays != null && sameArrayType(in, out)) {
+			copyArrays(inArrays, outArrays, out.size());
+		}
+		else if (in.equalIterationOrder(out)) copyByCursor(in, out);
+		else copyByPosition(in, out);
+	}
+
+	// -- Helper methods --
+
+	/** Copies samples between lists of equally sized primitive arrays. */
+	private void copyArrays(final List<Object> inArrays,
+		final List<Object> outArrays, final long size)
+	{
+		final int inLength = arrayLength(inArrays);
+		final int outLength = arrayLength(outArrays);
+		forEachRange(size, new RangeCopier() {
+
+			@Override
+			public void copy(final long start, final long count) {
+				final long end = start + count;
+				long pos = start;
+				while (pos < end) {
+					final int inOffset = (int) (pos % inLength);
+					final int outOffset = (int) (pos % outLength);
+					final int n =
+						(int) Math.min(end - pos, Math.min(inLength - inOffset,
+							outLength - outOffset));
+					System.arraycopy(inArrays.get((int) (pos / inLength)), inOffset,
+						outArrays.get((int) (pos / outLength)), outOffset, n);
+					pos += n;
+				}
+			}
+		});
+	}
+
+	/** Copies samples between images which iterate in the same order. */
+	private void copyByCursor(final Img<? extends RealType<?>> in,
+		final Img<? extends RealType<?>> out)
+	{
+		forEachRange(out.size(), new RangeCopier() {
+
+			@Override
+			public void copy(final long start, final long count) {
+				final Cursor<? extends RealType<?>> inCursor = in.cursor();
+				final Cursor<? extends RealType<?>> outCursor = out.cursor();
+				inCursor.jumpFwd(start);
+				outCursor.jumpFwd(start);
+				for (long i = 0; i < count; i++) {
+					outCursor.next().setReal(inCursor.next().getRealDouble());
+				}
+			}
+		});
+	}
+
+	/** Copies each output sample from the input sample at the same position. */
+	private void copyByPosition(final Img<? extends RealType<?>> in,
+		final Img<? extends RealType<?>> out)
+	{
+		final long[] position = new long[out.numDimensions()];
+		final Cursor<? extends RealType<?>> outputCursor = out.localizingCursor();
+		final RandomAccess<? extends RealType<?>> inputAccessor = in.randomAccess();
+		while (outputCursor.hasNext()) {
+			outputCursor.next();
+			outputCursor.localize(position);
+			inputAccessor.setPosition(position);
+			final double value = inputAccessor.get().getRealDouble();
+			outputCursor.get().setReal(value);
+		}
+	}
+
+	/**
+	 * Splits the given number of samples into contiguous ranges, copying each
+	 * on a thread of its own, and waits for all ranges to be copied.
+	 */
+	private void forEachRange(final long size, final RangeCopier copier) {
+		final long maxThreads = Math.max(1, size / MIN_SAMPLES_PER_THREAD);
+		final int ranges = (int) Math.min(threadCount, maxThreads);
+		if (ranges <= 1 || threadService == null) {
+			copier.copy(0, size);
+			return;
+		}
+		final List<Future<?>> futures = new ArrayList<Future<?>>(ranges);
+		for (int r = 0; r < ranges; r++) {
+			final long start = r * size / ranges;
+			final long end = (r + 1) * size / ranges;
+			futures.add(threadService.run(new Runnable() {
+
+				@Override
+				public void run() {
+					copier.copy(start, end - start);
+				}
+			}));
+		}
+		for (final Future<?> future : futures) {
+			try {
+				future.get();
+			}
+			catch (final InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IllegalStateException("Interrupted while copying image", e);
+			}
+			catch (final ExecutionException e) {
+				throw new IllegalStateException("Error copying image", e.getCause());
+			}
+		}
+	}
+
+	/** Gets the image wrapped by any {@link ImgPlus}es. */
+	private static Img<? extends RealType<?>> unwrap(
+		final Img<? extends RealType<?>> img)
+	{
+		Img<? extends RealType<?>> result = img;
+		while (result instanceof ImgPlus) {
+			result = ((ImgPlus<? extends RealType<?>>) result).getImg();
+		}
+		return result;
+	}
+
+	private static boolean sameBounds(final Img<?> a, final Img<?> b) {
+		if (a.numDimensions() != b.numDimensions()) return false;
+		for (int d = 0; d < a.numDimensions(); d++) {
+			if (a.min(d) != b.min(d) || a.max(d) != b.max(d)) return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Tests whether both images have the same type, each of whose samples is
+	 * stored in a single array element.
+	 */
+	private static boolean sameArrayType(final Img<? extends RealType<?>> a,
+		final Img<? extends RealType<?>> b)
+	{
+		final Class<?> type = a.firstElement().getClass();
+		if (type != b.firstElement().getClass()) return false;
+		for (final Class<?> arrayType : ARRAY_TYPES) {
+			if (type == arrayType) return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Gets the primitive arrays storing the given image's samples, in iteration
+	 * order, or null if they are not accessible. All arrays are the same size.
+	 */
+	private static List<Object> getArrays(final Img<?> img) {
+		final List<Object> arrays = new ArrayList<Object>();
+		// NB: these load and write back planes on access, so grabbing their
+		// arrays would bypass it; their cursors handle it instead
+		if (img instanceof MappedPlanarImg || img instanceof CachedPlanarImg) {
+			return null;
+		}
+		if (img instanceof PlanarImg) {
+			final PlanarImg<?, ?> planarImg = (PlanarImg<?, ?>) img;
+			for (int i = 0; i < planarImg.numSlices(); i++) {
+				final Object plane = planarImg.getPlane(i);
+				if (!(plane instanceof ArrayDataAccess)) return null;
+				arrays.add(((ArrayDataAccess<?>) plane).getCurrentStorageArray());
+			}
+		}
+		else if (img instanceof ArrayImg) {
+			final Object access = ((ArrayImg<?, ?>) img).update(null);
+			if (!(access instanceof ArrayDataAccess)) return null;
+			arrays.add(((ArrayDataAccess<?>) access).getCurrentStorageArray());
+		}
+		return arrays.isEmpty() ? null : arrays;
+	}
+
+	private static int arrayLength(final List<Object> arrays) {
+		return Array.getLength(arrays.get(0));
+	}
+
+	// -- Helper classes --
+
+	/** Copies a contiguous range of samples, in iteration order. */
+	private interface RangeCopier {
+
+		void copy(long start, long count);
+	}
+
+}
@@ -0,0 +1,114 @@
+/*
+ * #%L
+ * ImageJ software for multidimensional image processing and analysis.
+ * %%
+ * Copyright (C) 2009 - 2013 Board of Regents of the University of
+ * Wisconsin-Madison, Broad Institute of MIT and Harvard, and Max Planck
+ * Institute of Molecular Cell Biology and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are
+ * those of the authors and should not be interpreted as representing official
+ * policies, either expressed or implied, of any organization.
+ * #L%
+ */
+
+package imagej.data;
+
+import java.lang.reflect.Array;
+
+/**
+ * A view of one plane of a {@link Dataset} within the primitive array which
+ * stores it: a range of the array, starting at an offset. The array is the
+ * dataset's own storage, so changes made through the view change the dataset;
+ * like any other write, they should be prepared and followed by an update.
+ * 
+ * @author Lee Kamentsky
+ * @see Dataset#getPlaneBuffer(int)
+ */
+public final class PlaneBuffer {
+
+	private final Object array;
+
+	private final int offset;
+
+	private final int length;
+
+	public PlaneBuffer(final Object array, final int offset, final int length) {
+		if (offset < 0 || length < 0 || offset + length > Array.getLength(array))
+		{
+			throw new IndexOutOfBoundsException("Range " + offset + "+" + length +
+				" is outside of the array");
+		}
+		this.array = array;
+		this.offset = offset;
+		this.length = length;
+	}
+
+	// -- PlaneBuffer methods --
+
+	/** Gets the primitive array which stores the plane. */
+	public Object getArray() {
+		return array;
+	}
+
+	/** Gets the index of the plane's first sample within the array. */
+	public int getOffset() {
+		return offset;
+	}
+
+	/** Gets the number of samples of the plane. */
+	public int getLength() {
+		return length;
+	}
+
+	/** Gets whether the plane occupies the whole array. */
+	public boolean isWholeArray() {
+		return offset == 0 && length == Array.getLength(array);
+	}
+
+	/** Copies the samples of the plane into a new primitive array. */
+	public Object toArray() {
+		final Object copy =
+			Array.newInstance(array.getClass().getComponentType(), length);
+		System.arraycopy(array, offset, copy, 0, length);
+		return copy;
+	}
+
+	/**
+	 * Copies the samples of the plane into the given primitive array, of the
+	 * same type, at the given index.
+	 */
+	public void copyTo(final Object dest, final int destOffset) {
+		System.arraycopy(array, offset, dest, destOffset, length);
+	}
+
+	/**
+	 * Copies the plane's worth of samples of the given primitive array, of the
+	 * same type, into the plane.
+	 */
+	public void copyFrom(final Object src, final int srcOffset) {
+		System.arraycopy(src, srcOffset, array, offset, length);
+	}
+
+}
@@ -0,0 +1,222 @@
+/*
+ * #%L
+ * ImageJ software for multidimensional image processing and analysis.
+ * %%
+ * Copyright (C) 2009 - 2013 Board of Regents of the University of
+ * Wisconsin-Madison, Broad Institute of MIT and Harvard, and Max Planck
+ * Institute of Molecular Cell Biology and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are
+ * those of the authors and should not be interpreted as representing official
+ * policies, either expressed or implied, of any organization.
+ * #L%
+ */
+
+package imagej.data;
+
+import java.lang.reflect.Array;
+import java.nio.ByteBuffer;
+
+import net.imglib2.Cursor;
+import net.imglib2.FinalInterval;
+import net.imglib2.IterableInterval;
+import net.imglib2.img.array.ArrayImg;
+import net.imglib2.img.array.ArrayImgFactory;
+import net.imglib2.img.basictypeaccess.array.ArrayDataAccess;
+import net.imglib2.type.NativeType;
+import net.imglib2.type.Type;
+import net.imglib2.view.Views;
+
+/**
+ * Copies whole planes of a {@link Dataset} to and from primitive arrays, in
+ * the dataset's native storage layout. Planes are numbered as in
+ * {@link Dataset#getPlane(int)}. Planes are copied straight from their
+ * {@link Dataset#getPlaneBuffer(int) storage array} where possible, and
+ * through an array image of the same type otherwise.
+ * 
+ * @author Lee Kamentsky
+ */
+public class PlaneCopier {
+
+	private final Dataset dataset;
+
+	public PlaneCopier(final Dataset dataset) {
+		this.dataset = dataset;
+	}
+
+	// -- PlaneCopier methods --
+
+	/** Copies the samples of the given plane into a new primitive array. */
+	public Object read(final long planeNumber) {
+		final PlaneBuffer buffer = dataset.getPlaneBuffer((int) planeNumber);
+		if (buffer != null) return buffer.toArray();
+		final ArrayImg<?, ?> img = createPlaneImg();
+		copy(planeView(planeNumber), img);
+		return storage(img);
+	}
+
+	/**
+	 * Copies the given primitive array, as returned by {@link #read(long)}, into
+	 * the given plane. The dataset is not updated.
+	 */
+	public void write(final long planeNumber, final Object samples) {
+		final PlaneBuffer buffer = dataset.getPlaneBuffer((int) planeNumber);
+		if (buffer != null) {
+			buffer.copyFrom(samples, 0);
+			return;
+		}
+		final ArrayImg<?, ?> img = createPlaneImg();
+		System.arraycopy(samples, 0, storage(img), 0, Array.getLength(samples));
+		copy(img, planeView(planeNumber));
+	}
+
+	/** Gets the interval of the dataset covered by the given plane. */
+	public FinalInterval interval(final long planeNumber) {
+		final int numDims = dataset.numDimensions();
+		final long[] min = new long[numDims];
+		final long[] max = new long[numDims];
+		for (int d = 0; d < 2; d++) {
+			min[d] = dataset.min(d);
+			max[d] = dataset.max(d);
+		}
+		long index = planeNumber;
+		for (int d = 2; d < numDims; d++) {
+			final long size = dataset.dimension(d);
+			min[d] = max[d] = dataset.min(d) + index % size;
+			index /= size;
+		}
+		return new FinalInterval(min, max);
+	}
+
+	/** Gets the number of planes of the dataset. */
+	public long planeCount() {
+		long count = 1;
+		for (int d = 2; d < dataset.numDimensions(); d++) {
+			count *= dataset.dimension(d);
+		}
+		return count;
+	}
+
+	// -- Utility methods --
+
+	/**
+	 * Copies the samples of the given primitive array, as returned by
+	 * {@link #read(long)}, into a new byte buffer.
+	 */
+	public static ByteBuffer toBytes(final Object array) {
+		if (array instanceof byte[]) {
+			return ByteBuffer.wrap(((byte[]) array).clone());
+		}
+		if (array instanceof short[]) {
+			final short[] a = (short[]) array;
+			final ByteBuffer buffer = ByteBuffer.allocate(2 * a.length);
+			buffer.asShortBuffer().put(a);
+			return buffer;
+		}
+		if (array instanceof char[]) {
+			final char[] a = (char[]) array;
+			final ByteBuffer buffer = ByteBuffer.allocate(2 * a.length);
+			buffer.asCharBuffer().put(a);
+			return buffer;
+		}
+		if (array instanceof int[]) {
+			final int[] a = (int[]) array;
+			final ByteBuffer buffer = ByteBuffer.allocate(4 * a.length);
+			buffer.asIntBuffer().put(a);
+			return buffer;
+		}
+		if (array instanceof float[]) {
+			final float[] a = (float[]) array;
+			final ByteBuffer buffer = ByteBuffer.allocate(4 * a.length);
+			buffer.asFloatBuffer().put(a);
+			return buffer;
+		}
+		if (array instanceof long[]) {
+			final long[] a = (long[]) array;
+			final ByteBuffer buffer = ByteBuffer.allocate(8 * a.length);
+			buffer.asLongBuffer().put(a);
+			return buffer;
+		}
+		if (array instanceof double[]) {
+			final double[] a = (double[]) array;
+			final ByteBuffer buffer = ByteBuffer.allocate(8 * a.length);
+			buffer.asDoubleBuffer().put(a);
+			return buffer;
+		}
+		throw new IllegalArgumentException("Unsupported plane: " + array);
+	}
+
+	/**
+	 * Copies the bytes of the given buffer, as returned by
+	 * {@link #toBytes(Object)}, back into a primitive array.
+	 */
+	public static void fromBytes(final ByteBuffer buffer, final Object array) {
+		if (array instanceof byte[]) buffer.get((byte[]) array);
+		else if (array instanceof short[]) {
+			buffer.asShortBuffer().get((short[]) array);
+		}
+		else if (array instanceof char[]) buffer.asCharBuffer().get((char[]) array);
+		else if (array instanceof int[]) buffer.asIntBuffer().get((int[]) array);
+		else if (array instanceof float[]) {
+			buffer.asFloatBuffer().get((float[]) array);
+		}
+		else if (array instanceof long[]) buffer.asLongBuffer().get((long[]) array);
+		else if (array instanceof double[]) {
+			buffer.asDoubleBuffer().get((double[]) array);
+		}
+		else throw new IllegalArgumentException("Unsupported plane: " + array);
+	}
+
+	// -- Helper methods --
+
+	@SuppressWarnings({ "rawtypes", "unchecked" })
+	private ArrayImg<?, ?> createPlaneImg() {
+		final NativeType type = (NativeType) dataset.getType();
+		return (ArrayImg<?, ?>) new ArrayImgFactory().create(new long[] {
+			dataset.dimension(0), dataset.dimension(1) }, type);
+	}
+
+	private Object storage(final ArrayImg<?, ?> img) {
+		return ((ArrayDataAccess<?>) img.update(null)).getCurrentStorageArray();
+	}
+
+	/** Copies samples between two intervals of the same size and type. */
+	@SuppressWarnings({ "rawtypes", "unchecked" })
+	private void copy(final IterableInterval<?> input,
+		final IterableInterval<?> output)
+	{
+		final Cursor<Type> in = (Cursor) input.cursor();
+		final Cursor<Type> out = (Cursor) output.cursor();
+		while (in.hasNext()) {
+			out.next().set(in.next());
+		}
+	}
+
+	/** Gets the samples of the given plane, in row-major order. */
+	private IterableInterval<?> planeView(final long planeNumber) {
+		return Views.flatIterable(Views.interval(dataset.getImgPlus(),
+			interval(planeNumber)));
+	}
+
+}
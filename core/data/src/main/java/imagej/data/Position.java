@@ -49,8 +49,15 @@ public class Position implements Localizable, Positionable, Iterator {
 
 	private final Extents parentSpace;
 	private final long[] position;
+	private final long[] min;
+	private final long[] max;
+	private final long[] strides;
+	private final long lastIndex;
 	private boolean isInvalid;
 
+	/** Index of the current position, kept up to date by every move. */
+	private long index;
+
 	/**
 	 * Constructor - takes an {@link Extents} object that represents the parent
 	 * space to iterate within.
@@ -58,6 +65,14 @@ public class Position implements Localizable, Positionable, Iterator {
 	public Position(final Extents parentSpace) {
 		this.parentSpace = parentSpace;
 		this.position = new long[parentSpace.numDimensions()];
+		this.min = new long[position.length];
+		this.max = new long[position.length];
+		this.strides = new long[position.length];
+		parentSpace.min(min);
+		parentSpace.max(max);
+		for (int i = 0; i < position.length; i++)
+			strides[i] = parentSpace.stride(i);
+		this.lastIndex = parentSpace.numElements() - 1;
 		// ImgLib convention - start out of bounds
 		reset();
 	}
@@ -65,10 +80,14 @@ public Position(final Extents parentSpace) {
 	/** Constructs a position that is a copy of the given position. */
 	public Position(final Position pos) {
 		this.parentSpace = pos.getExtents();
-		this.position = new long[pos.numDimensions()];
-		for (int i = 0; i < position.length; i++) {
-			position[i] = pos.position[i];
-		}
+		this.position = pos.position.clone();
+		// NB - the bounds never change, so they can be shared.
+		this.min = pos.min;
+		this.max = pos.max;
+		this.strides = pos.strides;
+		this.lastIndex = pos.lastIndex;
+		this.isInvalid = pos.isInvalid;
+		this.index = pos.index;
 	}
 
 	/**
@@ -101,10 +120,8 @@ public long dimension(final int i) {
 	 */
 	@Override
 	public boolean hasNext() {
-		if (this.isInvalid && position.length > 0) return true;
-		for (int i = 0; i < position.length; i++)
-			if (position[i] < parentSpace.max(i)) return true;
-		return false;
+		if (this.isInvalid) return position.length > 0;
+		return index < lastIndex;
 	}
 
 	/**
@@ -112,10 +129,8 @@ public boolean hasNext() {
 	 * first position).
 	 */
 	public boolean hasPrev() {
-		if (this.isInvalid && position.length > 0) return true;
-		for (int i = 0; i < position.length; i++)
-			if (position[i] > parentSpace.min(i)) return true;
-		return false;
+		if (this.isInvalid) return position.length > 0;
+		return index > 0;
 	}
 
 	/**
@@ -126,6 +141,7 @@ public void reset() {
 		this.isInvalid = true;
 		for (int i = 0; i < position.length; i++)
 			position[i] = Long.MIN_VALUE;
+		this.index = 0;
 	}
 
 	/**
@@ -134,7 +150,8 @@ public void reset() {
 	 */
 	public void first() {
 		for (int i = 0; i < position.length; i++)
-			position[i] = parentSpace.min(i);
+			position[i] = min[i];
+		this.index = 0;
 		this.isInvalid = false;
 	}
 
@@ -144,7 +161,8 @@ public void first() {
 	 */
 	public void last() {
 		for (int i = 0; i < position.length; i++)
-			position[i] = parentSpace.max(i);
+			position[i] = max[i];
+		this.index = Math.max(lastIndex, 0);
 		this.isInvalid = false;
 	}
 
@@ -160,10 +178,13 @@ public void fwd() {
 			first();
 			return;
 		}
+		// NB - each carry into dimension i also steps the index by one.
 		for (int i = 0; i < position.length; i++) {
-			position[i]++;
-			if (position[i] <= parentSpace.max(i)) return;
-			position[i] = parentSpace.min(i);
+			if (++position[i] <= max[i]) {
+				index++;
+				return;
+			}
+			position[i] = min[i];
 		}
 		last(); // reset position to where it was
 		throw new IllegalStateException("cannot move last position forward");
@@ -181,9 +202,11 @@ public void bck() {
 			return;
 		}
 		for (int i = 0; i < position.length; i++) {
-			position[i]--;
-			if (position[i] >= parentSpace.min(i)) return;
-			position[i] = parentSpace.max(i);
+			if (--position[i] >= min[i]) {
+				index--;
+				return;
+			}
+			position[i] = max[i];
 		}
 		first(); // reset position to where it was
 		throw new IllegalStateException("cannot move first position backward");
@@ -201,12 +224,13 @@ public void fwd(final int d) {
 				"Cannot move position : it is uninitialized");
 		}
 		final long newValue = position[d] + 1;
-		if (newValue > parentSpace.max(d)) {
+		if (newValue > max[d]) {
 			throw new IllegalArgumentException(
 				"cannot move specified dimension forward -"
 					+ " it would take position outside defined extents");
 		}
 		position[d]++;
+		index += strides[d];
 	}
 
 	/**
@@ -221,12 +245,13 @@ public void bck(final int d) {
 				"Cannot move position : it is uninitialized");
 		}
 		final long newValue = position[d] - 1;
-		if (newValue < parentSpace.min(d)) {
+		if (newValue < min[d]) {
 			throw new IllegalArgumentException(
 				"cannot move specified dimension backward -"
 					+ " it would take position outside defined extents");
 		}
 		position[d]--;
+		index -= strides[d];
 	}
 
 	/**
@@ -270,11 +295,12 @@ public void move(final long delta, final int dim) {
 				"Cannot move position : it is uninitialized");
 		}
 		final long newValue = position[dim] + delta;
-		if (newValue < parentSpace.min(dim) || newValue > parentSpace.max(dim)) {
+		if (newValue < min[dim] || newValue > max[dim]) {
 			throw new IllegalArgumentException(
 				"specified move would take position outside defined extents");
 		}
 		position[dim] = newValue;
+		index += delta * strides[dim];
 	}
 
 	/**
@@ -327,18 +353,23 @@ public void move(final Localizable localizable) {
 	 */
 	@Override
 	public void setPosition(final long value, final int dim) {
-		final long min = parentSpace.min(dim);
-		if (value < min) {
+		if (value < min[dim]) {
 			throw new IllegalArgumentException("invalid position for dimension #" +
-				dim + ": " + value + " < " + min);
+				dim + ": " + value + " < " + min[dim]);
 		}
-		final long max = parentSpace.max(dim);
-		if (value > max) {
+		if (value > max[dim]) {
 			throw new IllegalArgumentException("invalid position for dimension #" +
-				dim + ": " + value + " > " + max);
+				dim + ": " + value + " > " + max[dim]);
+		}
+		if (this.isInvalid) {
+			position[dim] = value;
+			this.isInvalid = isInvalid();
+			if (!this.isInvalid) index = parentSpace.positionToIndex(position);
+		}
+		else {
+			index += (value - position[dim]) * strides[dim];
+			position[dim] = value;
 		}
-		position[dim] = value;
-		if (this.isInvalid) this.isInvalid = isInvalid();
 	}
 
 	/**
@@ -389,19 +420,12 @@ public void setPosition(final Localizable localizable) {
 	 * to extents.numElements()-1. Throws an exception if index out of range.
 	 */
 	public void setIndex(final long index) {
-		if (index < 0 || index >= parentSpace.numElements()) {
+		if (index < 0 || index > lastIndex) {
 			throw new IllegalArgumentException(
 				"specified index value is outside bounds of extents");
 		}
-		long offset = 1;
-		long r = index;
-		for (int i = 0; i < position.length; i++) {
-			final long offset1 = offset * dimension(i);
-			final long q = i < position.length - 1 ? r % offset1 : r;
-			position[i] = (q / offset) + parentSpace.min(i);
-			r -= q;
-			offset = offset1;
-		}
+		parentSpace.indexToPosition(index, position);
+		this.index = index;
 		this.isInvalid = false;
 	}
 
@@ -414,13 +438,7 @@ public long getIndex() {
 			throw new IllegalArgumentException(
 				"Cannot get index value : position is uninitialized");
 		}
-		long offset = 1;
-		long index1D = 0;
-		for (int i = 0; i < position.length; i++) {
-			index1D += offset * (position[i] - parentSpace.min(i));
-			offset *= dimension(i);
-		}
-		return index1D;
+		return index;
 	}
 
 	/**
@@ -539,7 +557,7 @@ public String toString() {
 
 	private boolean isInvalid() {
 		for (int i = 0; i < position.length; i++)
-			if (position[i] < parentSpace.min(i) || position[i] > parentSpace.max(i))
+			if (position[i] < min[i] || position[i] > max[i])
 			{
 				return true;
 			}
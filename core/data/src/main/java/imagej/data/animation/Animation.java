@@ -36,29 +36,51 @@
 package imagej.data.animation;
 
 import imagej.data.display.ImageDisplay;
+
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
 import net.imglib2.meta.Axes;
 import net.imglib2.meta.AxisType;
 
-import org.scijava.log.LogService;
+import org.scijava.event.EventService;
 import org.scijava.plugin.Parameter;
 
 /**
  * The Animation class takes care of running an animation along an axis.
- * Multiple animations can be running concurrently. Each animation runs in its
- * own thread.
+ * Multiple animations can be running concurrently. Their frames are timed by
+ * the shared scheduler of the {@link AnimationService}.
+ * <p>
+ * Frames are kept to wall-clock deadlines: each frame shows the position due at
+ * that time, regardless of how long previous frames took to render. A frame
+ * whose deadline arrives while the previous frame is still being rendered is
+ * dropped, as are any frames skipped over to catch up. Achieved frame rate,
+ * dropped frames and render time are reported once a second via an
+ * {@link AnimationStatsEvent}.
+ * </p>
  * 
  * @author Barry DeZonia
  * @author Curtis Rueden
  */
 public class Animation implements Runnable {
 
+	/** Nanoseconds between reports of the animation's statistics. */
+	private static final long STATS_INTERVAL = TimeUnit.SECONDS.toNanos(1);
+
+	/** Nanoseconds after which an unacknowledged frame is taken as rendered. */
+	private static final long FRAME_TIMEOUT = TimeUnit.SECONDS.toNanos(1);
+
 	@Parameter
-	private LogService log;
+	private AnimationService animationService;
+
+	@Parameter(required = false)
+	private EventService eventService;
 
 	private final ImageDisplay display;
 
 	private boolean active;
-	private Thread thread;
+	private ScheduledFuture<?> future;
 
 	private AxisType axis;
 	private long first;
@@ -67,8 +89,22 @@ public class Animation implements Runnable {
 	private boolean backAndForth;
 
 	private long increment = 1;
-	private long delta = 1;
-	private boolean isRelative = true;
+
+	/** Time at which frame 0 was due, in nanoseconds. */
+	private long startTime;
+
+	/** Index of the last frame shown. */
+	private long frame;
+
+	/** Time at which the frame being rendered was shown, if any. */
+	private long pendingTime;
+	private boolean pending;
+
+	/** Statistics gathered since the last report. */
+	private long statsTime;
+	private int framesRendered;
+	private int framesDropped;
+	private long renderTime;
 
 	/** Creates an animation for the given {@link ImageDisplay}. */
 	public Animation(final ImageDisplay display) {
@@ -97,26 +133,22 @@ else if (display.dimensionIndex(Axes.Z) >= 0) {
 	// -- Animation methods --
 
 	/** Starts the animation. */
-	public void start() {
+	public synchronized void start() {
 		if (axis == null) return; // no axis over which to animate
+		if (active) return;
 		active = true;
-		if (thread == null) {
-			thread = new Thread(this);
-			thread.start();
-		}
+		pending = false;
+		restartClock();
+		resetStats(startTime);
+		scheduleNextFrame();
 	}
 
 	/** Stops the animation. */
-	public void stop() {
+	public synchronized void stop() {
 		active = false;
-		if (thread != null) {
-			try {
-				thread.join();
-			}
-			catch (final InterruptedException exc) {
-				log.error("Error stopping animation", exc);
-			}
-			thread = null;
+		if (future != null) {
+			future.cancel(false);
+			future = null;
 		}
 	}
 
@@ -144,8 +176,14 @@ public double getFPS() {
 		return fps;
 	}
 
-	public void setFPS(final double fps) {
+	public synchronized void setFPS(final double fps) {
 		this.fps = fps;
+		if (active) {
+			// NB: Frame deadlines are counted from the start of the clock.
+			restartClock();
+			if (future != null) future.cancel(false);
+			scheduleNextFrame();
+		}
 	}
 
 	public long getFirst() {
@@ -174,69 +212,114 @@ public void setBackAndForth(final boolean backAndForth) {
 		this.backAndForth = backAndForth;
 	}
 
+	/**
+	 * Gets the direction in which the animation is currently stepping: 1 for
+	 * forward and -1 for backward.
+	 */
+	public int getDirection() {
+		return increment < 0 ? -1 : 1;
+	}
+
+	/**
+	 * Notifies the animation that the last frame it showed has been rendered,
+	 * such that the next frame may be shown.
+	 */
+	public synchronized void frameRendered() {
+		if (!pending) return;
+		pending = false;
+		framesRendered++;
+		renderTime += System.nanoTime() - pendingTime;
+	}
+
 	// -- Runnable methods --
 
+	/** Shows the frame which is due now, dropping any frames missed. */
 	@Override
-	public void run() {
-		while (active) {
-			updatePosition();
-			try {
-				Thread.sleep((long) (1000 / fps));
-			}
-			catch (final InterruptedException e) {
-				// do nothing
+	public synchronized void run() {
+		if (!active) return;
+		final long now = System.nanoTime();
+		final long due = Math.max(frame + 1, (now - startTime) / getPeriod());
+
+		if (pending && now - pendingTime < FRAME_TIMEOUT) {
+			// previous frame still rendering; drop the frames due meanwhile
+			framesDropped += due - frame;
+			frame = due;
+		}
+		else {
+			if (pending) frameRendered(); // NB: Nobody is listening; assume shown.
+			framesDropped += due - frame - 1;
+			long pos = display.getLongPosition(axis);
+			for (long f = frame; f < due; f++) {
+				pos = nextPosition(pos);
 			}
+			frame = due;
+			pending = true;
+			pendingTime = now;
+			display.setPosition(pos, axis);
 		}
+
+		if (now - statsTime >= STATS_INTERVAL) reportStats(now);
+		scheduleNextFrame();
 	}
 
 	// -- Helper methods --
 
-	private synchronized void updatePosition() {
-		long currPos = display.getLongPosition(axis);
+	/** Gets the nanoseconds between frames. */
+	private long getPeriod() {
+		return Math.max(1, (long) (1e9 / fps));
+	}
+
+	/** Counts frames afresh from the current time. */
+	private void restartClock() {
+		startTime = System.nanoTime();
+		frame = 0;
+	}
+
+	/** Schedules the next frame at its deadline. */
+	private void scheduleNextFrame() {
+		final ScheduledExecutorService scheduler = animationService.getScheduler();
+		final long delay = startTime + (frame + 1) * getPeriod() - System.nanoTime();
+		future = scheduler.schedule(this, Math.max(0, delay), TimeUnit.NANOSECONDS);
+	}
+
+	private void resetStats(final long time) {
+		statsTime = time;
+		framesRendered = 0;
+		framesDropped = 0;
+		renderTime = 0;
+	}
+
+	private void reportStats(final long now) {
+		final double seconds = (now - statsTime) / 1e9;
+		final double achievedFPS = framesRendered / seconds;
+		final double msPerFrame =
+			framesRendered == 0 ? Double.NaN : renderTime / 1e6 / framesRendered;
+		if (eventService != null) {
+			eventService.publishLater(new AnimationStatsEvent(this, achievedFPS,
+				framesDropped, msPerFrame));
+		}
+		resetStats(now);
+	}
 
+	/**
+	 * Gets the position following the given one, reversing direction at the
+	 * ends if animating back and forth.
+	 */
+	private long nextPosition(final long currPos) {
 		// reached right end
-		if (increment > 0 && currPos == last) {
-			if (!backAndForth) {
-				isRelative = false;
-				delta = first;
-				currPos = first;
-			}
-			else {
-				increment = -increment;
-				isRelative = true;
-				delta = -1;
-				currPos--;
-			}
+		if (increment > 0 && currPos >= last) {
+			if (!backAndForth) return first;
+			increment = -increment;
+			return currPos - 1;
 		}
 		// reached left end
-		else if (increment < 0 && currPos == first) {
-			if (!backAndForth) {
-				isRelative = false;
-				delta = last;
-				currPos = last;
-			}
-			else {
-				increment = -increment;
-				isRelative = true;
-				delta = +1;
-				currPos++;
-			}
+		if (increment < 0 && currPos <= first) {
+			if (!backAndForth) return last;
+			increment = -increment;
+			return currPos + 1;
 		}
-		else { // somewhere in the middle
-			isRelative = true;
-			if (increment > 0) {
-				delta = +1;
-				currPos++;
-			}
-			else { // increment < 0
-				delta = -1;
-				currPos--;
-			}
-		}
-
-		final long pos =
-			isRelative ? display.getLongPosition(axis) + delta : delta;
-		display.setPosition(pos, axis);
+		// somewhere in the middle
+		return increment > 0 ? currPos + 1 : currPos - 1;
 	}
 
 	/** Ensures the position of the relevant axis is within the legal range. */
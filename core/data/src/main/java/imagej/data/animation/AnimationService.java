@@ -38,6 +38,8 @@
 import imagej.data.display.ImageDisplay;
 import imagej.service.ImageJService;
 
+import java.util.concurrent.ScheduledExecutorService;
+
 import org.scijava.event.EventService;
 
 /**
@@ -64,4 +66,7 @@ public interface AnimationService extends ImageJService {
 	/** Gets the given {@link ImageDisplay}'s corresponding {@link Animation}. */
 	Animation getAnimation(ImageDisplay display);
 
+	/** Gets the scheduler which times the frames of all animations. */
+	ScheduledExecutorService getScheduler();
+
 }
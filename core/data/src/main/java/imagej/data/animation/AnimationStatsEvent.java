@@ -0,0 +1,95 @@
+/*
+ * #%L
+ * ImageJ software for multidimensional image processing and analysis.
+ * %%
+ * Copyright (C) 2009 - 2013 Board of Regents of the University of
+ * Wisconsin-Madison, Broad Institute of MIT and Harvard, and Max Planck
+ * Institute of Molecular Cell Biology and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are
+ * those of the authors and should not be interpreted as representing official
+ * policies, either expressed or implied, of any organization.
+ * #L%
+ */
+
+package imagej.data.animation;
+
+import imagej.data.display.event.ImageDisplayEvent;
+
+/**
+ * An event reporting the performance of an {@link Animation} over the last
+ * second or so.
+ * 
+ * @author Lee Kamentsky
+ */
+public class AnimationStatsEvent extends ImageDisplayEvent {
+
+	private final Animation animation;
+	private final double fps;
+	private final int droppedFrames;
+	private final double renderTime;
+
+	public AnimationStatsEvent(final Animation animation, final double fps,
+		final int droppedFrames, final double renderTime)
+	{
+		super(animation.getDisplay());
+		this.animation = animation;
+		this.fps = fps;
+		this.droppedFrames = droppedFrames;
+		this.renderTime = renderTime;
+	}
+
+	// -- AnimationStatsEvent methods --
+
+	public Animation getAnimation() {
+		return animation;
+	}
+
+	/** Gets the number of frames per second actually rendered. */
+	public double getFPS() {
+		return fps;
+	}
+
+	/** Gets the number of frames dropped to keep to the frame rate. */
+	public int getDroppedFrames() {
+		return droppedFrames;
+	}
+
+	/**
+	 * Gets the mean time in milliseconds from showing a frame to its rendering,
+	 * or NaN if no frames were rendered.
+	 */
+	public double getRenderTime() {
+		return renderTime;
+	}
+
+	// -- Object methods --
+
+	@Override
+	public String toString() {
+		return super.toString() + "\n\tfps = " + fps + "\n\tdroppedFrames = " +
+			droppedFrames + "\n\trenderTime = " + renderTime;
+	}
+
+}
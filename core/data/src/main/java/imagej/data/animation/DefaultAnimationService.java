@@ -36,7 +36,10 @@
 package imagej.data.animation;
 
 import imagej.data.Data;
+import imagej.data.display.DataView;
+import imagej.data.display.DatasetView;
 import imagej.data.display.ImageDisplay;
+import imagej.data.display.event.DataViewUpdatedEvent;
 import imagej.data.event.DataRestructuredEvent;
 import imagej.display.Display;
 import imagej.display.event.DisplayDeletedEvent;
@@ -44,6 +47,11 @@
 
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+
+import net.imglib2.meta.AxisType;
 
 import org.scijava.app.StatusService;
 import org.scijava.event.EventHandler;
@@ -69,6 +77,9 @@ public class DefaultAnimationService extends AbstractService implements
 	private static final String STOPPED_STATUS =
 		"Animation stopped. Press '\\' to resume.";
 	private static final String ALL_STOPPED_STATUS = "All animations stopped.";
+	private static final String STATS_STATUS =
+		"Animating at %.1f of %.1f fps, %d frames dropped, %s ms/frame. " +
+			"Press '\\' or ESC to stop.";
 
 	@Parameter
 	private EventService eventService;
@@ -78,6 +89,8 @@ public class DefaultAnimationService extends AbstractService implements
 
 	private Map<ImageDisplay, Animation> animations;
 
+	private ScheduledExecutorService scheduler;
+
 	// -- AnimationService methods --
 
 	@Override
@@ -93,7 +106,9 @@ public void toggle(final ImageDisplay display) {
 
 	@Override
 	public void start(final ImageDisplay display) {
-		getAnimation(display).start();
+		final Animation animation = getAnimation(display);
+		animation.start();
+		setPrefetchHint(display, animation.getAxis(), animation.getDirection());
 		statusService.showStatus(STARTED_STATUS);
 	}
 
@@ -102,6 +117,7 @@ public void stop(final ImageDisplay display) {
 		final Animation animation = animations.get(display);
 		if (animation != null) {
 			animation.stop();
+			setPrefetchHint(display, null, 0);
 			statusService.showStatus(STOPPED_STATUS);
 		}
 	}
@@ -110,6 +126,7 @@ public void stop(final ImageDisplay display) {
 	public void stopAll() {
 		for (final Animation animation : animations.values()) {
 			animation.stop();
+			setPrefetchHint(animation.getDisplay(), null, 0);
 		}
 		statusService.showStatus(ALL_STOPPED_STATUS);
 	}
@@ -125,11 +142,26 @@ public Animation getAnimation(final ImageDisplay display) {
 		return animation;
 	}
 
+	@Override
+	public ScheduledExecutorService getScheduler() {
+		return scheduler;
+	}
+
 	// -- Service methods --
 
 	@Override
 	public void initialize() {
 		animations = new ConcurrentHashMap<ImageDisplay, Animation>();
+		scheduler =
+			Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+
+				@Override
+				public Thread newThread(final Runnable r) {
+					final Thread thread = new Thread(r, "Animation");
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
 	}
 
 	// -- Disposable methods --
@@ -137,6 +169,7 @@ public void initialize() {
 	@Override
 	public void dispose() {
 		stopAll();
+		scheduler.shutdownNow();
 	}
 
 	// -- Event handlers --
@@ -168,8 +201,46 @@ protected void onEvent(final DataRestructuredEvent event) {
 		}
 	}
 
+	/** Lets animations know when the frames they showed have been rendered. */
+	@EventHandler
+	protected void onEvent(final DataViewUpdatedEvent event) {
+		final DataView view = event.getView();
+		if (view instanceof DatasetView && ((DatasetView) view).isRendering()) {
+			return; // wait for the rendering to finish
+		}
+		for (final Animation animation : animations.values()) {
+			if (animation.isActive() && animation.getDisplay().contains(view)) {
+				animation.frameRendered();
+			}
+		}
+	}
+
+	/** Reports the performance of running animations. */
+	@EventHandler
+	protected void onEvent(final AnimationStatsEvent event) {
+		if (!event.getAnimation().isActive()) return;
+		final String renderTime =
+			Double.isNaN(event.getRenderTime()) ? "-" : String.format("%.1f", event
+				.getRenderTime());
+		statusService.showStatus(String.format(STATS_STATUS, event.getFPS(), event
+			.getAnimation().getFPS(), event.getDroppedFrames(), renderTime));
+	}
+
 	// -- Helper methods --
 
+	/**
+	 * Tells the dataset views of the given display which axis, if any, is being
+	 * animated, so that they can prefetch the planes ahead.
+	 */
+	private void setPrefetchHint(final ImageDisplay display,
+		final AxisType axis, final int direction)
+	{
+		for (final DataView view : display) {
+			if (!(view instanceof DatasetView)) continue;
+			((DatasetView) view).setPrefetchHint(axis, direction);
+		}
+	}
+
 	private ImageDisplay toImageDisplay(final Display<?> display) {
 		if (!(display instanceof ImageDisplay)) return null;
 		return (ImageDisplay) display;
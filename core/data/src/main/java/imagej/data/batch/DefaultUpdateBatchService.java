@@ -0,0 +1,327 @@
+/*
+ * #%L
+ * ImageJ software for multidimensional image processing and analysis.
+ * %%
+ * Copyright (C) 2009 - 2013 Board of Regents of the University of
+ * Wisconsin-Madison, Broad Institute of MIT and Harvard, and Max Planck
+ * Institute of Molecular Cell Biology and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are
+ * those of the authors and should not be interpreted as representing official
+ * policies, either expressed or implied, of any organization.
+ * #L%
+ */
+
+package imagej.data.batch;
+
+import imagej.data.Dataset;
+import imagej.data.event.DatasetDeletedEvent;
+import imagej.data.event.DatasetUpdatedEvent;
+import imagej.module.Module;
+import imagej.module.event.ModuleCanceledEvent;
+import imagej.module.event.ModuleErroredEvent;
+import imagej.module.event.ModuleExecutedEvent;
+import imagej.module.event.ModuleExecutingEvent;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import net.imglib2.FinalInterval;
+import net.imglib2.Interval;
+
+import org.scijava.event.EventHandler;
+import org.scijava.event.EventService;
+import org.scijava.plugin.Parameter;
+import org.scijava.plugin.Plugin;
+import org.scijava.service.AbstractService;
+import org.scijava.service.Service;
+
+/**
+ * Default service for coalescing {@link DatasetUpdatedEvent}s.
+ * <p>
+ * Merged events cover the bounding box of the merged regions, or the whole
+ * dataset if any merged update did; they are metadata-only only if all merged
+ * updates were. Subclasses of {@link DatasetUpdatedEvent}, such as type
+ * changes, are always published at once.
+ * </p>
+ * 
+ * @author Lee Kamentsky
+ */
+@Plugin(type = Service.class)
+public class DefaultUpdateBatchService extends AbstractService implements
+	UpdateBatchService
+{
+
+	/** Minimum time between two updates of a dataset, outside of a batch. */
+	private static final long FRAME_INTERVAL = TimeUnit.MILLISECONDS
+		.toNanos(1000 / 60);
+
+	@Parameter(required = false)
+	private EventService eventService;
+
+	/** Pending updates of each thread within a batch. */
+	private final ThreadLocal<Batch> batches = new ThreadLocal<Batch>();
+
+	/** Frame timing of each recently updated dataset. Guarded by this. */
+	private final Map<Dataset, Throttle> throttles =
+		new HashMap<Dataset, Throttle>();
+
+	private ScheduledExecutorService scheduler;
+
+	// -- UpdateBatchService methods --
+
+	@Override
+	public void publish(final DatasetUpdatedEvent event) {
+		if (eventService == null) return;
+		if (event.getClass() != DatasetUpdatedEvent.class) {
+			eventService.publish(event);
+			return;
+		}
+		final Batch batch = batches.get();
+		if (batch != null) {
+			batch.add(event);
+			return;
+		}
+		final Dataset dataset = event.getObject();
+		final long now = System.nanoTime();
+		synchronized (this) {
+			final Throttle throttle = getThrottle(dataset, now);
+			final long elapsed = now - throttle.lastPublish;
+			if (throttle.merged != null || elapsed < FRAME_INTERVAL) {
+				// publish with the other updates of this frame, at its end
+				final boolean scheduled = throttle.merged != null;
+				throttle.merged = merge(throttle.merged, event);
+				if (!scheduled) schedule(dataset, FRAME_INTERVAL - elapsed);
+				return;
+			}
+			throttle.lastPublish = now;
+		}
+		eventService.publish(event);
+	}
+
+	@Override
+	public void beginBatch() {
+		Batch batch = batches.get();
+		if (batch == null) {
+			batch = new Batch();
+			batches.set(batch);
+		}
+		batch.depth++;
+	}
+
+	@Override
+	public void endBatch() {
+		final Batch batch = batches.get();
+		if (batch == null) throw new IllegalStateException("No batch to end");
+		if (--batch.depth > 0) return;
+		batches.remove();
+		for (final DatasetUpdatedEvent event : batch.updates.values()) {
+			publishNow(event);
+		}
+	}
+
+	@Override
+	public boolean isBatching() {
+		return batches.get() != null;
+	}
+
+	@Override
+	public void flush() {
+		final List<Dataset> datasets;
+		synchronized (this) {
+			datasets = new ArrayList<Dataset>(throttles.keySet());
+		}
+		for (final Dataset dataset : datasets) {
+			flush(dataset);
+		}
+	}
+
+	// -- Service methods --
+
+	@Override
+	public void initialize() {
+		scheduler =
+			Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+
+				@Override
+				public Thread newThread(final Runnable r) {
+					final Thread thread = new Thread(r, "Update batcher");
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+	}
+
+	// -- Disposable methods --
+
+	@Override
+	public void dispose() {
+		scheduler.shutdownNow();
+	}
+
+	// -- Event handlers --
+
+	/** Holds back the updates made by executing modules. */
+	@EventHandler
+	protected void onEvent(final ModuleExecutingEvent event) {
+		beginBatch();
+		batches.get().modules.add(event.getModule());
+	}
+
+	@EventHandler
+	protected void onEvent(final ModuleExecutedEvent event) {
+		endBatch(event.getModule());
+	}
+
+	@EventHandler
+	protected void onEvent(final ModuleCanceledEvent event) {
+		endBatch(event.getModule());
+	}
+
+	@EventHandler
+	protected void onEvent(final ModuleErroredEvent event) {
+		endBatch(event.getModule());
+	}
+
+	/** Forgets the frame timing of deleted datasets. */
+	@EventHandler
+	protected void onEvent(final DatasetDeletedEvent event) {
+		synchronized (this) {
+			throttles.remove(event.getObject());
+		}
+	}
+
+	// -- Helper methods --
+
+	/** Ends the batch of the given module, if it is executing in one. */
+	private void endBatch(final Module module) {
+		final Batch batch = batches.get();
+		if (batch == null || !batch.modules.remove(module)) return;
+		endBatch();
+	}
+
+	private Throttle getThrottle(final Dataset dataset, final long now) {
+		Throttle throttle = throttles.get(dataset);
+		if (throttle == null) {
+			throttle = new Throttle();
+			throttle.lastPublish = now - FRAME_INTERVAL;
+			throttles.put(dataset, throttle);
+		}
+		return throttle;
+	}
+
+	/** Publishes the given event now, with any updates waiting for a frame. */
+	private void publishNow(final DatasetUpdatedEvent event) {
+		final long now = System.nanoTime();
+		DatasetUpdatedEvent merged;
+		synchronized (this) {
+			final Throttle throttle = getThrottle(event.getObject(), now);
+			merged = merge(throttle.merged, event);
+			throttle.merged = null;
+			throttle.lastPublish = now;
+		}
+		eventService.publish(merged);
+	}
+
+	/** Publishes the updates of the given dataset waiting for a frame. */
+	private void flush(final Dataset dataset) {
+		final DatasetUpdatedEvent merged;
+		synchronized (this) {
+			final Throttle throttle = throttles.get(dataset);
+			if (throttle == null || throttle.merged == null) return;
+			merged = throttle.merged;
+			throttle.merged = null;
+			throttle.lastPublish = System.nanoTime();
+		}
+		eventService.publish(merged);
+	}
+
+	private void schedule(final Dataset dataset, final long delay) {
+		scheduler.schedule(new Runnable() {
+
+			@Override
+			public void run() {
+				flush(dataset);
+			}
+		}, delay, TimeUnit.NANOSECONDS);
+	}
+
+	/** Merges two updates of the same dataset into one. */
+	static DatasetUpdatedEvent merge(final DatasetUpdatedEvent a,
+		final DatasetUpdatedEvent b)
+	{
+		if (a == null || a.isMetaDataOnly()) return b;
+		if (b.isMetaDataOnly()) return a;
+		final Dataset dataset = a.getObject();
+		final Interval ra = a.getRegion(), rb = b.getRegion();
+		if (ra == null || rb == null) return new DatasetUpdatedEvent(dataset, false);
+		final long[] min = new long[ra.numDimensions()];
+		final long[] max = new long[ra.numDimensions()];
+		for (int d = 0; d < min.length; d++) {
+			min[d] = Math.min(ra.min(d), rb.min(d));
+			max[d] = Math.max(ra.max(d), rb.max(d));
+		}
+		return new DatasetUpdatedEvent(dataset, new FinalInterval(min, max));
+	}
+
+	// -- Helper classes --
+
+	/** The updates held back by a thread within a batch. */
+	private static class Batch {
+
+		private int depth;
+
+		/** Modules executing within the batch. */
+		private final List<Module> modules = new ArrayList<Module>();
+
+		/** Merged updates, in order of first update. */
+		private final Map<Dataset, DatasetUpdatedEvent> updates =
+			new LinkedHashMap<Dataset, DatasetUpdatedEvent>();
+
+		public void add(final DatasetUpdatedEvent event) {
+			final Dataset dataset = event.getObject();
+			updates.put(dataset, merge(updates.get(dataset), event));
+		}
+
+	}
+
+	/** The frame timing of a dataset's updates. */
+	private static class Throttle {
+
+		/** Time of the last published update, in nanoseconds. */
+		private long lastPublish;
+
+		/** Updates waiting for the end of the frame, if any. */
+		private DatasetUpdatedEvent merged;
+
+	}
+
+}
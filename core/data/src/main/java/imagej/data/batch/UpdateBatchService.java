@@ -0,0 +1,81 @@
+/*
+ * #%L
+ * ImageJ software for multidimensional image processing and analysis.
+ * %%
+ * Copyright (C) 2009 - 2013 Board of Regents of the University of
+ * Wisconsin-Madison, Broad Institute of MIT and Harvard, and Max Planck
+ * Institute of Molecular Cell Biology and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are
+ * those of the authors and should not be interpreted as representing official
+ * policies, either expressed or implied, of any organization.
+ * #L%
+ */
+
+package imagej.data.batch;
+
+import imagej.data.Dataset;
+import imagej.data.event.DatasetUpdatedEvent;
+import imagej.service.ImageJService;
+
+/**
+ * Interface for services that coalesce bursts of {@link DatasetUpdatedEvent}s,
+ * such that each {@link Dataset} and its displays are refreshed once per burst
+ * rather than once per update.
+ * <p>
+ * Outside of a batch, the first update of a dataset is published at once, and
+ * any further updates within the following frame interval are merged into a
+ * single event published at its end. Within a batch, updates published by the
+ * batching thread are held back and merged until the batch ends. Modules are
+ * executed within a batch, so that a command causes a single refresh of each
+ * dataset it modifies.
+ * </p>
+ * 
+ * @author Lee Kamentsky
+ */
+public interface UpdateBatchService extends ImageJService {
+
+	/** Publishes the given update event, possibly merged with others. */
+	void publish(DatasetUpdatedEvent event);
+
+	/**
+	 * Starts holding back the update events published by the calling thread.
+	 * Batches may be nested; each call must be matched by a call to
+	 * {@link #endBatch()}, typically in a finally block.
+	 */
+	void beginBatch();
+
+	/**
+	 * Ends a batch started by the calling thread. When the outermost batch ends,
+	 * a single merged event is published for each dataset updated during it.
+	 */
+	void endBatch();
+
+	/** Gets whether the calling thread is within a batch. */
+	boolean isBatching();
+
+	/** Publishes all merged updates which are waiting for their frame. */
+	void flush();
+
+}
@@ -0,0 +1,395 @@
+/*
+ * #%L
+ * ImageJ software for multidimensional image processing and analysis.
+ * %%
+ * Copyright (C) 2009 - 2013 Board of Regents of the University of
+ * Wisconsin-Madison, Broad Institute of MIT and Harvard, and Max Planck
+ * Institute of Molecular Cell Biology and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are
+ * those of the authors and should not be interpreted as representing official
+ * policies, either expressed or implied, of any organization.
+ * #L%
+ */
+
+package imagej.data.display;
+
+import imagej.data.CachedPlanarImg;
+import imagej.data.Dataset;
+import imagej.data.mapped.MappedPlanarImg;
+
+import java.util.ArrayList;
+
+import net.imglib2.Binning;
+import net.imglib2.converter.Converter;
+import net.imglib2.display.ARGBScreenImage;
+import net.imglib2.display.ColorTable;
+import net.imglib2.display.CompositeXYProjector;
+import net.imglib2.display.RealLUTConverter;
+import net.imglib2.img.Img;
+import net.imglib2.img.array.ArrayImg;
+import net.imglib2.img.basictypeaccess.array.ArrayDataAccess;
+import net.imglib2.img.planar.PlanarImg;
+import net.imglib2.type.numeric.ARGBType;
+import net.imglib2.type.numeric.RealType;
+import net.imglib2.type.numeric.integer.ByteType;
+import net.imglib2.type.numeric.integer.IntType;
+import net.imglib2.type.numeric.integer.LongType;
+import net.imglib2.type.numeric.integer.ShortType;
+import net.imglib2.type.numeric.integer.UnsignedByteType;
+import net.imglib2.type.numeric.integer.UnsignedIntType;
+import net.imglib2.type.numeric.integer.UnsignedShortType;
+import net.imglib2.type.numeric.real.DoubleType;
+import net.imglib2.type.numeric.real.FloatType;
+
+/**
+ * As {@link CompositeXYProjector}, but reads the primitive plane arrays of a
+ * {@link PlanarImg} or {@link ArrayImg} directly.
+ * <p>
+ * Each channel is rendered through a precomputed table of ARGB values, built
+ * from the {@link RealLUTConverter} of that channel and rebuilt only when its
+ * range or color table changes. For 8- and 16-bit data the table is indexed by
+ * sample value, and shared with the channel's {@link IntegerLUTConverter} when
+ * it has one; for other types it is indexed by LUT bin. The per-pixel loops
+ * involve no {@link net.imglib2.RandomAccess}, no {@link ARGBType} and no
+ * converter calls.
+ * </p>
+ * 
+ * @author Lee Kamentsky
+ * @see #isSupported(Dataset)
+ */
+public class ArrayCompositeXYProjector<A extends RealType<A>> extends
+	CompositeXYProjector<A>
+{
+
+	private final Dataset dataset;
+
+	private final ARGBScreenImage target;
+
+	private final ArrayList<Converter<A, ARGBType>> converters;
+
+	private final int dimIndex;
+
+	private final int width, height;
+
+	/** Per-channel ARGB tables, and the state they were built from. */
+	private final int[][] tables;
+	private final double[] tableMins, tableMaxs;
+	private final ColorTable[] tableLUTs;
+
+	@SuppressWarnings({ "rawtypes", "unchecked" })
+	public ArrayCompositeXYProjector(final Dataset dataset,
+		final ARGBScreenImage target,
+		final ArrayList<Converter<A, ARGBType>> converters, final int dimIndex)
+	{
+		super((Img) dataset.getImgPlus(), target, converters, dimIndex);
+		this.dataset = dataset;
+		this.target = target;
+		this.converters = converters;
+		this.dimIndex = dimIndex;
+		width = (int) target.dimension(0);
+		height = (int) target.dimension(1);
+		final int channelCount = converters.size();
+		tables = new int[channelCount][];
+		tableMins = new double[channelCount];
+		tableMaxs = new double[channelCount];
+		tableLUTs = new ColorTable[channelCount];
+	}
+
+	// -- ArrayCompositeXYProjector methods --
+
+	/**
+	 * Gets whether the given dataset can be rendered by this projector: that is,
+	 * whether it is a {@link PlanarImg} or {@link ArrayImg} of a type backed by
+	 * one primitive array element per sample.
+	 */
+	public static boolean isSupported(final Dataset dataset) {
+		final Img<?> img = dataset.getImgPlus().getImg();
+		if (!(img instanceof PlanarImg) && !(img instanceof ArrayImg)) {
+			return false;
+		}
+		if (img instanceof MappedPlanarImg || img instanceof CachedPlanarImg) {
+			return false;
+		}
+		final Class<?> c = dataset.getType().getClass();
+		return c == ByteType.class || c == UnsignedByteType.class ||
+			c == ShortType.class || c == UnsignedShortType.class ||
+			c == IntType.class || c == UnsignedIntType.class ||
+			c == LongType.class || c == FloatType.class || c == DoubleType.class;
+	}
+
+	// -- Projector methods --
+
+	@Override
+	public void map() {
+		final Img<?> img = dataset.getImgPlus().getImg();
+		if (img.dimension(0) != width || img.dimension(1) != height) {
+			// NB: Only whole planes can be read directly.
+			super.map();
+			return;
+		}
+
+		final int size;
+		final long[] channels;
+		if (dimIndex < 0) {
+			size = 1;
+			channels = new long[] { 0 };
+		}
+		else {
+			size = updateCurrentArrays();
+			channels = currentPositions.clone();
+		}
+
+		final int[] data = target.getData();
+		for (int i = 0; i < size; i++) {
+			final int c = (int) channels[i];
+			final Object plane = getPlane(img, c);
+			if (plane == null) {
+				super.map();
+				return;
+			}
+			final int offset = getPlaneOffset(img, c);
+			final int[] table = getTable(c);
+			final boolean first = i == 0;
+			final boolean signed = dataset.isSigned();
+			if (plane instanceof byte[]) {
+				mapBytes((byte[]) plane, offset, signed, table, data, first);
+			}
+			else if (plane instanceof short[]) {
+				mapShorts((short[]) plane, offset, signed, table, data, first);
+			}
+			else {
+				final RealLUTConverter<?> converter = getConverter(c);
+				final double min = converter.getMin(), max = converter.getMax();
+				if (plane instanceof int[]) {
+					final boolean unsigned = dataset.getType() instanceof UnsignedIntType;
+					mapInts((int[]) plane, offset, unsigned, min, max, table, data,
+						first);
+				}
+				else if (plane instanceof long[]) {
+					mapLongs((long[]) plane, offset, min, max, table, data, first);
+				}
+				else if (plane instanceof float[]) {
+					mapFloats((float[]) plane, offset, min, max, table, data, first);
+				}
+				else if (plane instanceof double[]) {
+					mapDoubles((double[]) plane, offset, min, max, table, data, first);
+				}
+				else {
+					super.map();
+					return;
+				}
+			}
+		}
+	}
+
+	// -- Helper methods --
+
+	/** Gets the primitive array holding the given channel of the plane. */
+	private Object getPlane(final Img<?> img, final int c) {
+		if (img instanceof ArrayImg) {
+			final Object access = ((ArrayImg<?, ?>) img).update(null);
+			if (!(access instanceof ArrayDataAccess)) return null;
+			return ((ArrayDataAccess<?>) access).getCurrentStorageArray();
+		}
+		return dataset.getPlane(getPlaneIndex(img, c), false);
+	}
+
+	/** Gets the offset of the given channel of the plane within its array. */
+	private int getPlaneOffset(final Img<?> img, final int c) {
+		if (img instanceof ArrayImg) return getPlaneIndex(img, c) * width * height;
+		return 0;
+	}
+
+	/**
+	 * Gets the index of the current plane, at the given channel, in the planar
+	 * ordering of the image.
+	 */
+	private int getPlaneIndex(final Img<?> img, final int c) {
+		int index = 0, stride = 1;
+		for (int d = 2; d < img.numDimensions(); d++) {
+			final long pos = d == dimIndex ? c : position[d];
+			index += pos * stride;
+			stride *= img.dimension(d);
+		}
+		return index;
+	}
+
+	private RealLUTConverter<?> getConverter(final int c) {
+		return (RealLUTConverter<?>) converters.get(c);
+	}
+
+	/**
+	 * Gets the ARGB table for the given channel, rebuilding it if the range or
+	 * color table of its converter has changed. The table of an
+	 * {@link IntegerLUTConverter} is used as is.
+	 */
+	private int[] getTable(final int c) {
+		final RealLUTConverter<?> converter = getConverter(c);
+		if (converter instanceof IntegerLUTConverter) {
+			return ((IntegerLUTConverter<?>) converter).getTable();
+		}
+		final double min = converter.getMin(), max = converter.getMax();
+		final ColorTable lut = converter.getLUT();
+		if (tables[c] != null && tableLUTs[c] == lut && tableMins[c] == min &&
+			tableMaxs[c] == max)
+		{
+			return tables[c];
+		}
+		final RealType<?> type = dataset.getType();
+		final int[] table;
+		if (type instanceof ByteType || type instanceof UnsignedByteType ||
+			type instanceof ShortType || type instanceof UnsignedShortType)
+		{
+			// one entry per value, as for an IntegerLUTConverter
+			final long typeMin = (long) type.getMinValue();
+			final int length = (int) (type.getMaxValue() - typeMin + 1);
+			table = new int[length];
+			for (int i = 0; i < length; i++) {
+				table[i] = lut.lookupARGB(min, max, i + typeMin);
+			}
+		}
+		else {
+			// one entry per LUT bin
+			final int bins = lut.getLength();
+			table = new int[bins];
+			for (int i = 0; i < bins; i++) {
+				table[i] = lut.lookupARGB(0, bins, i + 0.5);
+			}
+		}
+		tables[c] = table;
+		tableMins[c] = min;
+		tableMaxs[c] = max;
+		tableLUTs[c] = lut;
+		return table;
+	}
+
+	/**
+	 * Maps a plane of bytes through a table indexed by value minus the type
+	 * minimum. For signed bytes, flipping the sign bit gives that index.
+	 */
+	private void mapBytes(final byte[] plane, final int offset,
+		final boolean signed, final int[] table, final int[] data,
+		final boolean first)
+	{
+		final int count = width * height;
+		final int flip = signed ? 0x80 : 0;
+		if (first) {
+			for (int i = 0; i < count; i++) {
+				data[i] = table[(plane[offset + i] ^ flip) & 0xff];
+			}
+		}
+		else {
+			for (int i = 0; i < count; i++) {
+				data[i] = add(data[i], table[(plane[offset + i] ^ flip) & 0xff]);
+			}
+		}
+	}
+
+	/** As {@link #mapBytes}, for a plane of shorts. */
+	private void mapShorts(final short[] plane, final int offset,
+		final boolean signed, final int[] table, final int[] data,
+		final boolean first)
+	{
+		final int count = width * height;
+		final int flip = signed ? 0x8000 : 0;
+		if (first) {
+			for (int i = 0; i < count; i++) {
+				data[i] = table[(plane[offset + i] ^ flip) & 0xffff];
+			}
+		}
+		else {
+			for (int i = 0; i < count; i++) {
+				data[i] = add(data[i], table[(plane[offset + i] ^ flip) & 0xffff]);
+			}
+		}
+	}
+
+	private void mapInts(final int[] plane, final int offset,
+		final boolean unsigned, final double min, final double max,
+		final int[] table, final int[] data, final boolean first)
+	{
+		final int count = width * height;
+		final int bins = table.length;
+		for (int i = 0; i < count; i++) {
+			final int v = plane[offset + i];
+			final double value = unsigned ? v & 0xffffffffL : v;
+			final int argb = table[Binning.valueToBin(bins, min, max, value)];
+			data[i] = first ? argb : add(data[i], argb);
+		}
+	}
+
+	private void mapLongs(final long[] plane, final int offset,
+		final double min, final double max, final int[] table, final int[] data,
+		final boolean first)
+	{
+		final int count = width * height;
+		final int bins = table.length;
+		for (int i = 0; i < count; i++) {
+			final double value = plane[offset + i];
+			final int argb = table[Binning.valueToBin(bins, min, max, value)];
+			data[i] = first ? argb : add(data[i], argb);
+		}
+	}
+
+	private void mapFloats(final float[] plane, final int offset,
+		final double min, final double max, final int[] table, final int[] data,
+		final boolean first)
+	{
+		final int count = width * height;
+		final int bins = table.length;
+		for (int i = 0; i < count; i++) {
+			final double value = plane[offset + i];
+			final int argb = table[Binning.valueToBin(bins, min, max, value)];
+			data[i] = first ? argb : add(data[i], argb);
+		}
+	}
+
+	private void mapDoubles(final double[] plane, final int offset,
+		final double min, final double max, final int[] table, final int[] data,
+		final boolean first)
+	{
+		final int count = width * height;
+		final int bins = table.length;
+		for (int i = 0; i < count; i++) {
+			final double value = plane[offset + i];
+			final int argb = table[Binning.valueToBin(bins, min, max, value)];
+			data[i] = first ? argb : add(data[i], argb);
+		}
+	}
+
+	/** Adds two ARGB values component-wise, saturating each at 255. */
+	private static int add(final int argb1, final int argb2) {
+		int a = ((argb1 >>> 24) & 0xff) + ((argb2 >>> 24) & 0xff);
+		int r = ((argb1 >> 16) & 0xff) + ((argb2 >> 16) & 0xff);
+		int g = ((argb1 >> 8) & 0xff) + ((argb2 >> 8) & 0xff);
+		int b = (argb1 & 0xff) + (argb2 & 0xff);
+		if (a > 255) a = 255;
+		if (r > 255) r = 255;
+		if (g > 255) g = 255;
+		if (b > 255) b = 255;
+		return (a << 24) | (r << 16) | (g << 8) | b;
+	}
+
+}
@@ -39,6 +39,7 @@
 import imagej.data.Dataset;
 import imagej.display.Display;
 import imagej.util.ColorRGB;
+import imagej.util.IntRect;
 
 import java.util.List;
 
@@ -47,6 +48,7 @@
 import net.imglib2.display.ARGBScreenImage;
 import net.imglib2.display.ColorTable;
 import net.imglib2.display.CompositeXYProjector;
+import net.imglib2.meta.AxisType;
 import net.imglib2.type.numeric.RealType;
 
 /**
@@ -61,6 +63,47 @@ public interface DatasetView extends DataView {
 
 	ARGBScreenImage getScreenImage();
 
+	/**
+	 * Gets the region of the current XY plane, in data coordinates, which is
+	 * rendered into the {@link #getScreenImage() screen image}. This is the
+	 * entire plane unless {@link #isViewportProjection() viewport projection} is
+	 * enabled, in which case the screen image may also be smaller than the
+	 * region, being resampled to the displayed zoom level.
+	 */
+	IntRect getScreenImageRegion();
+
+	/**
+	 * Gets whether the view projects only the region of the current plane which
+	 * is visible in its display's {@link ImageCanvas}.
+	 */
+	boolean isViewportProjection();
+
+	/**
+	 * Sets whether the view projects only the region of the current plane which
+	 * is visible in its display's {@link ImageCanvas}, at the displayed zoom
+	 * level, rather than the entire plane at full resolution.
+	 */
+	void setViewportProjection(boolean viewportProjection);
+
+	/**
+	 * Hints that the view is being stepped regularly along the given axis, as
+	 * by an animation, so that planes ahead of it should be prefetched.
+	 * 
+	 * @param axis The axis being animated, or null if none.
+	 * @param direction The direction of the animation: 1 or -1.
+	 */
+	void setPrefetchHint(AxisType axis, int direction);
+
+	/**
+	 * Blocks until any rendering of the view which is in progress in the
+	 * background has completed, such that the {@link #getScreenImage() screen
+	 * image} reflects the current position.
+	 */
+	void waitForRender();
+
+	/** Gets whether the view is rendering in the background. */
+	boolean isRendering();
+
 	int getCompositeDimIndex();
 
 	CompositeXYProjector<? extends RealType<?>> getProjector();
@@ -124,8 +167,10 @@ public interface DatasetView extends DataView {
 	 * <p>
 	 * NB: The <em>data</em> range is obtained first from
 	 * {@link Dataset#getChannelMinimum(int)} and
-	 * {@link Dataset#getChannelMaximum(int)}; if they are not set there, they are
-	 * computed and cached for later use.
+	 * {@link Dataset#getChannelMaximum(int)}; if they are not set there, or the
+	 * samples have changed since they were set (see
+	 * {@link Dataset#getModificationStamp()}), they are computed and cached for
+	 * later use.
 	 * </p>
 	 */
 	void autoscale(int c);
@@ -35,24 +35,36 @@
 
 package imagej.data.display;
 
+import imagej.core.options.OptionsMemoryAndThreads;
 import imagej.data.ChannelCollection;
 import imagej.data.Data;
 import imagej.data.Dataset;
 import imagej.data.Position;
 import imagej.data.autoscale.AutoscaleService;
 import imagej.data.autoscale.DataRange;
+import imagej.data.display.event.DataViewRenderedEvent;
 import imagej.data.display.event.DataViewUpdatedEvent;
 import imagej.data.display.event.LUTsChangedEvent;
+import imagej.data.display.event.PanZoomEvent;
+import imagej.data.display.event.ViewportResizeEvent;
 import imagej.data.event.DatasetRGBChangedEvent;
 import imagej.data.event.DatasetTypeChangedEvent;
 import imagej.data.event.DatasetUpdatedEvent;
+import imagej.data.options.OptionsRendering;
+import imagej.data.pyramid.DatasetPyramid;
+import imagej.data.pyramid.PyramidService;
+import imagej.options.OptionsService;
 import imagej.util.ColorRGB;
+import imagej.util.IntCoords;
+import imagej.util.IntRect;
+import imagej.util.RealCoords;
 
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 
 import net.imglib2.Binning;
+import net.imglib2.Interval;
 import net.imglib2.RandomAccessibleInterval;
 import net.imglib2.display.ARGBScreenImage;
 import net.imglib2.display.ColorTable;
@@ -84,6 +96,9 @@
 public class DefaultDatasetView extends AbstractDataView implements DatasetView
 {
 
+	/** Seconds of scrolling, at the recent speed, for which to prefetch. */
+	private static final double PREFETCH_LOOKAHEAD = 0.25;
+
 	@Parameter
 	private AutoscaleService autoscaleService;
 
@@ -93,6 +108,15 @@ public class DefaultDatasetView extends AbstractDataView implements DatasetView
 	@Parameter(required = false)
 	private EventService eventService;
 
+	@Parameter(required = false)
+	private ImageDisplayService imageDisplayService;
+
+	@Parameter(required = false)
+	private OptionsService optionsService;
+
+	@Parameter(required = false)
+	private PyramidService pyramidService;
+
 	/** The dimensional index representing channels, for compositing. */
 	private int channelDimIndex;
 
@@ -104,6 +128,36 @@ public class DefaultDatasetView extends AbstractDataView implements DatasetView
 
 	private ARGBScreenImage screenImage;
 
+	/** Region of the current plane which is rendered into the screen image. */
+	private IntRect screenImageRegion;
+
+	/** Whether to project only the visible region of the current plane. */
+	private boolean viewportProjection;
+
+	/** Whether to project zoomed out regions from the dataset's pyramid. */
+	private boolean usePyramids;
+
+	/** Whether to project changes of plane in the background. */
+	private boolean asyncRendering;
+
+	private RenderScheduler renderScheduler;
+
+	/** Number of neighboring planes to prefetch, or 0 to disable prefetching. */
+	private int prefetchDepth;
+
+	private PlanePrefetcher prefetcher;
+
+	/** Axis and direction along which the view is being animated, if any. */
+	private AxisType prefetchAxis;
+	private int prefetchDirection;
+
+	/** Recent motion of the view, which steers prefetching. */
+	private int motionDim = -1;
+	private int motionDirection = 1;
+	private long motionStep;
+	private long motionTime;
+	private double motionVelocity;
+
 	private CompositeXYProjector<? extends RealType<?>> projector;
 
 	private final ArrayList<RealLUTConverter<? extends RealType<?>>> converters =
@@ -122,6 +176,25 @@ public ARGBScreenImage getScreenImage() {
 		return screenImage;
 	}
 
+	@Override
+	public IntRect getScreenImageRegion() {
+		final IntRect r = screenImageRegion;
+		if (r == null) return null;
+		return new IntRect(r.x, r.y, r.width, r.height);
+	}
+
+	@Override
+	public boolean isViewportProjection() {
+		return viewportProjection;
+	}
+
+	@Override
+	public void setViewportProjection(final boolean viewportProjection) {
+		if (this.viewportProjection == viewportProjection) return;
+		this.viewportProjection = viewportProjection;
+		if (isInitialized()) rebuild();
+	}
+
 	@Override
 	public int getCompositeDimIndex() {
 		return channelDimIndex;
@@ -152,6 +225,7 @@ public void setChannelRange(final int c, final double min, final double max) {
 
 		converters.get(c).setMin(min);
 		converters.get(c).setMax(max);
+		invalidatePrefetch();
 	}
 
 	@Override
@@ -188,6 +262,7 @@ public void setComposite(final boolean composite) {
 		if (!isInitialized()) return;
 
 		projector.setComposite(composite);
+		invalidatePrefetch();
 	}
 
 	@Override
@@ -246,6 +321,7 @@ public void setColorMode(final ColorMode colorMode) {
 
 		resetColorTables(colorMode == ColorMode.GRAYSCALE);
 		projector.setComposite(colorMode == ColorMode.COMPOSITE);
+		invalidatePrefetch();
 		projector.map();
 	}
 
@@ -334,6 +410,36 @@ public RandomAccessibleInterval<? extends RealType<?>> xyPlane(
 
 	// -- DataView methods --
 
+	@Override
+	public void initialize(final Data data) {
+		super.initialize(data);
+		if (optionsService != null) {
+			final OptionsRendering options =
+				optionsService.getOptions(OptionsRendering.class);
+			if (options != null) {
+				viewportProjection = options.isViewportProjection();
+				usePyramids = options.isUsePyramids();
+				asyncRendering = options.isAsyncRendering();
+				prefetchDepth = options.getPrefetchDepth();
+			}
+		}
+		renderScheduler = new RenderScheduler(threadService, new Runnable() {
+
+			@Override
+			public void run() {
+				renderNow();
+			}
+		}, new Runnable() {
+
+			@Override
+			public void run() {
+				if (eventService == null) return;
+				eventService.publishLater(new DataViewRenderedEvent(
+					DefaultDatasetView.this));
+			}
+		});
+	}
+
 	@Override
 	public boolean isCompatible(final Data data) {
 		return data != null && Dataset.class.isAssignableFrom(data.getClass());
@@ -346,12 +452,12 @@ public Dataset getData() {
 
 	@Override
 	public int getPreferredWidth() {
-		return getScreenImage().image().getWidth(null);
+		return (int) getData().dimension(0);
 	}
 
 	@Override
 	public int getPreferredHeight() {
-		return getScreenImage().image().getHeight(null);
+		return (int) getData().dimension(1);
 	}
 
 	@Override
@@ -378,13 +484,35 @@ public synchronized void rebuild() {
 
 		final int width = (int) img.dimension(0);
 		final int height = (int) img.dimension(1);
-		screenImage = new ARGBScreenImage(width, height);
+		screenImageRegion = new IntRect(0, 0, width, height);
+		if (viewportProjection) {
+			final IntRect region = getVisibleRegion();
+			if (region != null) screenImageRegion = region;
+		}
+		screenImage = createScreenImage(screenImageRegion);
 
 		initializeView(isComposite());
 		updateLUTs();
+		prefetcher = createPrefetcher();
 		projector.map();
 	}
 
+	@Override
+	public void setPrefetchHint(final AxisType axis, final int direction) {
+		prefetchAxis = axis;
+		prefetchDirection = direction;
+	}
+
+	@Override
+	public void waitForRender() {
+		if (renderScheduler != null) renderScheduler.waitFor();
+	}
+
+	@Override
+	public boolean isRendering() {
+		return renderScheduler != null && renderScheduler.isRendering();
+	}
+
 	// -- PositionableByAxis methods --
 
 	@Override
@@ -407,18 +535,24 @@ public void setPosition(final long position, final AxisType axis) {
 		if (axis.isXY()) return;
 		final int dim = getData().dimensionIndex(axis);
 		if (dim < 0) return;
-		final long currentValue = projector.getLongPosition(dim);
-		if (position == currentValue) {
-			return; // no change
-		}
-		projector.setPosition(position, dim);
+		// NB: Background renders project under the same lock, so they never see
+		// a half-updated position or color tables.
+		synchronized (this) {
+			final long currentValue = projector.getLongPosition(dim);
+			if (position == currentValue) {
+				return; // no change
+			}
+			trackMotion(dim, position - currentValue);
+			projector.setPosition(position, dim);
 
-		// update color tables
-		if (dim != channelDimIndex) {
-			updateLUTs();
+			// update color tables
+			if (dim != channelDimIndex) {
+				updateLUTs();
+			}
 		}
 
-		projector.map();
+		if (!swapPrefetched()) render();
+		prefetch(dim);
 
 		super.setPosition(position, axis);
 	}
@@ -466,10 +600,30 @@ protected void onEvent(final DatasetUpdatedEvent event) {
 		}
 		if (getData() == event.getObject()) {
 			if (event.isMetaDataOnly()) return;
-			projector.map();
+			if (event.getRegion() != null) {
+				updateRegion(event.getRegion());
+				return;
+			}
+			// NB: Pyramid levels must be discarded before they are projected again.
+			final DatasetPyramid pyramid = getPyramid();
+			if (pyramid != null) pyramid.invalidate();
+			invalidatePrefetch();
+			render();
 		}
 	}
 
+	@EventHandler
+	protected void onEvent(final PanZoomEvent event) {
+		if (!event.getDisplay().contains(this)) return;
+		updateViewport();
+	}
+
+	@EventHandler
+	protected void onEvent(final ViewportResizeEvent event) {
+		if (!event.getDisplay().contains(this)) return;
+		updateViewport();
+	}
+
 	// -- Helper methods --
 
 	private int getChannelDimIndex() {
@@ -488,6 +642,7 @@ private boolean isInitialized() {
 	private void uninitializeView() {
 		converters.clear();
 		projector = null;
+		prefetcher = null;
 	}
 
 	/** Initializes the view. */
@@ -495,38 +650,339 @@ private void uninitializeView() {
 	private void initializeView(final boolean composite) {
 		converters.clear();
 		final int channelCount = getChannelCount();
+		final RealType<?> type = getData().getType();
+		final boolean integerLUTs = IntegerLUTConverter.isSupported(type);
 		for (int c = 0; c < channelCount; c++) {
 			autoscale(c);
+			final double min = getData().getImgPlus().getChannelMinimum(c);
+			final double max = getData().getImgPlus().getChannelMaximum(c);
 			final RealLUTConverter converter =
-				new RealLUTConverter(getData().getImgPlus().getChannelMinimum(c),
-					getData().getImgPlus().getChannelMaximum(c), null);
+				integerLUTs ? new IntegerLUTConverter(type, min, max, null)
+					: new RealLUTConverter(min, max, null);
 			converters.add(converter);
 		}
 
+		projector = createProjector(screenImage);
+		projector.setComposite(composite);
+	}
+
+	/**
+	 * Projects the current plane, in the background if rendering asynchronously.
+	 * Background renders are coalesced such that only the latest is completed.
+	 */
+	private void render() {
+		if (asyncRendering && renderScheduler != null) renderScheduler.request();
+		else projector.map();
+	}
+
+	/** Projects the current plane on the calling thread. */
+	private synchronized void renderNow() {
+		if (isInitialized()) projector.map();
+	}
+
+	/**
+	 * Re-projects the part of the current plane lying within the given region
+	 * of the dataset, whose samples have changed. Nothing is projected if the
+	 * region does not intersect the current plane.
+	 */
+	private void updateRegion(final Interval region) {
+		final DatasetPyramid pyramid = getPyramid();
+		if (pyramid != null) pyramid.invalidate(region);
+		invalidatePrefetch();
+		if (!isInitialized() || !intersectsPlane(region)) return;
+
+		final IntRect r = screenImageRegion;
+		final long x0 = Math.max(region.min(0), r.x);
+		final long y0 = Math.max(region.min(1), r.y);
+		final long x1 = Math.min(region.max(0) + 1, r.x + r.width);
+		final long y1 = Math.min(region.max(1) + 1, r.y + r.height);
+		if (x0 >= x1 || y0 >= y1) return; // outside the projected region
+		final IntRect dirty =
+			new IntRect((int) x0, (int) y0, (int) (x1 - x0), (int) (y1 - y0));
+
+		// NB: Screen images of a viewport may be reduced in resolution.
+		if (viewportProjection) renderNow();
+		else mapRegion(dirty);
+		publish(new DataViewUpdatedEvent(this, dirty));
+	}
+
+	/**
+	 * Tests whether the given region of the dataset intersects the current
+	 * plane, or any of its channels when compositing.
+	 */
+	private boolean intersectsPlane(final Interval region) {
+		for (int d = 2; d < region.numDimensions(); d++) {
+			if (d == channelDimIndex && projector.isComposite()) continue;
+			final long pos = projector.getLongPosition(d);
+			if (pos < region.min(d) || pos > region.max(d)) return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Projects the given rectangle of the current plane into the corresponding
+	 * part of the full plane screen image, leaving the rest untouched.
+	 */
+	@SuppressWarnings({ "rawtypes", "unchecked" })
+	private synchronized void mapRegion(final IntRect rect) {
+		final long[] min = { rect.x, rect.y };
+		final long[] max = { rect.x + rect.width - 1, rect.y + rect.height - 1 };
+		final CompositeXYProjector<?> regionProjector =
+			new CompositeXYProjector(getData().getImgPlus(), Views
+				.flatIterable(Views.interval(screenImage, min, max)), converters,
+				channelDimIndex);
+		final long[] pos = new long[projector.numDimensions()];
+		projector.localize(pos);
+		regionProjector.setPosition(pos);
+		regionProjector.setComposite(projector.isComposite());
+		regionProjector.map();
+	}
+
+	/**
+	 * Creates the prefetcher of neighboring planes, if enabled. Prefetching
+	 * applies only to full planes, not to the visible region of a viewport.
+	 */
+	private PlanePrefetcher createPrefetcher() {
+		if (prefetchDepth <= 0 || viewportProjection) return null;
+		return new PlanePrefetcher(threadService,
+			new PlanePrefetcher.ProjectorFactory() {
+
+				@Override
+				public CompositeXYProjector<?> createProjector(
+					final ARGBScreenImage target)
+				{
+					return DefaultDatasetView.this.createProjector(target);
+				}
+			}, (int) screenImage.dimension(0), (int) screenImage.dimension(1),
+			prefetchDepth);
+	}
+
+	private void invalidatePrefetch() {
+		final PlanePrefetcher p = prefetcher;
+		if (p != null) p.invalidate();
+	}
+
+	/** Records a step of the view along the given dimension. */
+	private void trackMotion(final int dim, final long delta) {
+		final long now = System.nanoTime();
+		final double seconds = (now - motionTime) / 1e9;
+		motionTime = now;
+		motionDirection = delta < 0 ? -1 : 1;
+		motionStep = Math.abs(delta);
+		final double velocity = Math.abs(delta) / Math.max(seconds, 1e-3);
+		if (dim != motionDim || seconds > 1) {
+			motionDim = dim;
+			motionVelocity = velocity;
+		}
+		else motionVelocity = (motionVelocity + velocity) / 2;
+	}
+
+	/**
+	 * Swaps in the prefetched rendering of the current plane, if there is one.
+	 * 
+	 * @return true if the prefetched plane was swapped in
+	 */
+	@SuppressWarnings({ "rawtypes", "unchecked" })
+	private boolean swapPrefetched() {
+		final PlanePrefetcher.PlaneBuffer buffer;
+		synchronized (this) {
+			if (prefetcher == null) return false;
+			final long[] pos = new long[projector.numDimensions()];
+			projector.localize(pos);
+			buffer = prefetcher.take(pos, screenImage, projector);
+			if (buffer == null) return false;
+			screenImage = buffer.getImage();
+			projector = (CompositeXYProjector) buffer.getProjector();
+		}
+		if (eventService != null) {
+			eventService.publishLater(new DataViewRenderedEvent(this));
+		}
+		return true;
+	}
+
+	/**
+	 * Prefetches the planes following the current one along the given
+	 * dimension. When animating, the planes ahead of the animation are fetched
+	 * as deep as possible; otherwise the depth follows the recent scroll speed.
+	 */
+	private void prefetch(final int dim) {
+		final PlanePrefetcher p = prefetcher;
+		if (p == null || dim == channelDimIndex) return;
+		final boolean animating =
+			prefetchAxis != null && getData().dimensionIndex(prefetchAxis) == dim;
+		final int direction;
+		final int depth;
+		if (animating) {
+			// NB: A jump means the animation wrapped; otherwise follow its steps,
+			// which reverse at the ends when animating back and forth.
+			direction = motionStep == 1 ? motionDirection : prefetchDirection;
+			depth = p.getSize();
+		}
+		else {
+			direction = motionDirection;
+			final double planes = Math.ceil(motionVelocity * PREFETCH_LOOKAHEAD);
+			depth = (int) Math.min(p.getSize(), Math.max(1, planes));
+		}
+		final long[] pos = new long[projector.numDimensions()];
+		projector.localize(pos);
+		p.prefetch(pos, dim, direction, depth, getData().dimension(dim),
+			animating, projector.isComposite());
+	}
+
+	/** Creates a projector from the data to the given screen image. */
+	@SuppressWarnings({ "rawtypes", "unchecked" })
+	private CompositeXYProjector<? extends RealType<?>> createProjector(
+		final ARGBScreenImage target)
+	{
 		final ImgPlus<?> img = getData().getImgPlus();
 
+		if (viewportProjection) {
+			final ViewportXYProjector viewportProjector =
+				new ViewportXYProjector(img, target, converters, channelDimIndex);
+			viewportProjector.setRegion(screenImageRegion);
+			viewportProjector.setPyramid(getPyramid());
+			return viewportProjector;
+		}
+		if (ArrayCompositeXYProjector.isSupported(getData())) {
+			return new ArrayCompositeXYProjector(getData(), target, converters,
+				channelDimIndex);
+		}
+		final int threadCount = getProjectionThreads();
+		if (threadCount > 1) {
+			return new ParallelCompositeXYProjector(img, target, converters,
+				channelDimIndex, threadService, threadCount);
+		}
 		if (AbstractCellImg.class.isAssignableFrom(img.getImg().getClass())) {
-			projector =
-				new SourceOptimizedCompositeXYProjector(getData().getImgPlus(),
-					screenImage, converters, channelDimIndex);
+			return new SourceOptimizedCompositeXYProjector(img, target,
+				converters, channelDimIndex);
+		}
+		return new CompositeXYProjector(img, target, converters,
+			channelDimIndex);
+	}
+
+	/**
+	 * Gets the number of threads with which to project full planes, as
+	 * configured in the memory and threads options.
+	 */
+	private int getProjectionThreads() {
+		if (optionsService == null) return 1;
+		final OptionsMemoryAndThreads options =
+			optionsService.getOptions(OptionsMemoryAndThreads.class);
+		return options == null ? 1 : options.getStackThreads();
+	}
+
+	/**
+	 * Re-projects the current plane to match the visible region of the canvas,
+	 * reallocating the screen image only if its dimensions must change.
+	 */
+	private synchronized void updateViewport() {
+		if (!viewportProjection || !isInitialized()) return;
+		final IntRect region = getVisibleRegion();
+		if (region == null) return;
+		final int[] size = getScreenImageSize(region);
+		if (region.equals(screenImageRegion) &&
+			size[0] == screenImage.dimension(0) &&
+			size[1] == screenImage.dimension(1))
+		{
+			return; // no change
+		}
+		screenImageRegion = region;
+
+		if (size[0] != screenImage.dimension(0) ||
+			size[1] != screenImage.dimension(1))
+		{
+			// NB: The projector is bound to its target, so must be recreated.
+			final long[] pos = new long[projector.numDimensions()];
+			projector.localize(pos);
+			final boolean composite = projector.isComposite();
+			screenImage = createScreenImage(region);
+			projector = createProjector(screenImage);
+			projector.setPosition(pos);
+			projector.setComposite(composite);
 		}
 		else {
-			projector =
-				new CompositeXYProjector(getData().getImgPlus(), screenImage,
-					converters, channelDimIndex);
+			((ViewportXYProjector<?>) projector).setRegion(region);
+		}
+		projector.map();
+		update();
+	}
+
+	/**
+	 * Gets the region of the current plane which is visible in the canvas of
+	 * the display containing this view, clipped to the plane bounds. Returns
+	 * null if the view does not belong to a display.
+	 */
+	private IntRect getVisibleRegion() {
+		final ImageDisplay display = getImageDisplay();
+		if (display == null) return null;
+		final ImageCanvas canvas = display.getCanvas();
+		final RealCoords topLeft = canvas.panelToDataCoords(new IntCoords(0, 0));
+		final RealCoords bottomRight =
+			canvas.panelToDataCoords(new IntCoords(canvas.getViewportWidth(), canvas
+				.getViewportHeight()));
+		final long width = getData().dimension(0);
+		final long height = getData().dimension(1);
+		final int x0 = (int) clamp((long) Math.floor(topLeft.x), 0, width - 1);
+		final int y0 = (int) clamp((long) Math.floor(topLeft.y), 0, height - 1);
+		final int x1 = (int) clamp((long) Math.ceil(bottomRight.x), x0 + 1, width);
+		final int y1 = (int) clamp((long) Math.ceil(bottomRight.y), y0 + 1, height);
+		return new IntRect(x0, y0, x1 - x0, y1 - y0);
+	}
+
+	/**
+	 * Gets the dimensions of the screen image needed to show the given region at
+	 * the current zoom level. Regions are never magnified; the canvas does that.
+	 */
+	private int[] getScreenImageSize(final IntRect region) {
+		final ImageDisplay display =
+			viewportProjection ? getImageDisplay() : null;
+		final double zoom = display == null ? 1 : display.getCanvas().getZoomFactor();
+		if (zoom >= 1) return new int[] { region.width, region.height };
+		final int w = (int) Math.max(1, Math.ceil(region.width * zoom));
+		final int h = (int) Math.max(1, Math.ceil(region.height * zoom));
+		return new int[] { w, h };
+	}
+
+	private ARGBScreenImage createScreenImage(final IntRect region) {
+		final int[] size = getScreenImageSize(region);
+		return new ARGBScreenImage(size[0], size[1]);
+	}
+
+	/** Gets the pyramid to project zoomed out regions from, if any. */
+	private DatasetPyramid getPyramid() {
+		if (!viewportProjection || !usePyramids) return null;
+		if (pyramidService == null) return null;
+		return pyramidService.getPyramid(getData());
+	}
+
+	/** Gets the {@link ImageDisplay} containing this view, if any. */
+	private ImageDisplay getImageDisplay() {
+		if (imageDisplayService == null) return null;
+		for (final ImageDisplay display : imageDisplayService.getImageDisplays()) {
+			if (display.contains(this)) return display;
 		}
+		return null;
+	}
 
-		projector.setComposite(composite);
+	private static long clamp(final long value, final long min, final long max) {
+		if (value < min) return min;
+		if (value > max) return max;
+		return value;
 	}
 
 	private void updateLUTs() {
 		if (!isInitialized()) return;
 
 		final int channelCount = getChannelCount();
+		boolean changed = false;
 		for (int c = 0; c < channelCount; c++) {
 			final ColorTable lut = getCurrentLUT(c);
+			// NB: Setting a LUT discards any table precomputed from it.
+			if (converters.get(c).getLUT() == lut) continue;
 			converters.get(c).setLUT(lut);
+			changed = true;
 		}
+		if (changed) invalidatePrefetch();
 
 		final Context context = getContext();
 		if (context == null) return;
@@ -40,6 +40,7 @@
 import imagej.data.display.event.AxisPositionEvent;
 import imagej.data.event.DataRestructuredEvent;
 import imagej.data.event.DataUpdatedEvent;
+import imagej.data.event.DatasetUpdatedEvent;
 import imagej.data.lut.LUTService;
 import imagej.display.AbstractDisplay;
 import imagej.display.Display;
@@ -669,6 +670,12 @@ public void run() {
 
 	@EventHandler
 	protected void onEvent(final DataUpdatedEvent event) {
+		// NB: Dataset views re-project and repaint changed regions themselves.
+		if (event instanceof DatasetUpdatedEvent &&
+			((DatasetUpdatedEvent) event).getRegion() != null)
+		{
+			return;
+		}
 		for (final DataView view : this) {
 			if (event.getObject() == view.getData()) {
 				// BDZ removed 2013-03-15: update() updates all views. Addresses #1220.
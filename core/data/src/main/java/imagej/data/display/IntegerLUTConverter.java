@@ -0,0 +1,162 @@
+/*
+ * #%L
+ * ImageJ software for multidimensional image processing and analysis.
+ * %%
+ * Copyright (C) 2009 - 2013 Board of Regents of the University of
+ * Wisconsin-Madison, Broad Institute of MIT and Harvard, and Max Planck
+ * Institute of Molecular Cell Biology and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are
+ * those of the authors and should not be interpreted as representing official
+ * policies, either expressed or implied, of any organization.
+ * #L%
+ */
+
+package imagej.data.display;
+
+import net.imglib2.display.ColorTable;
+import net.imglib2.display.RealLUTConverter;
+import net.imglib2.type.numeric.ARGBType;
+import net.imglib2.type.numeric.IntegerType;
+import net.imglib2.type.numeric.RealType;
+
+/**
+ * A {@link RealLUTConverter} for integer types of small range, which converts
+ * each sample by looking up a precomputed table of ARGB values rather than
+ * scaling it into the color table.
+ * <p>
+ * The table holds one entry per value of the type, and is rebuilt lazily after
+ * the range or color table changes. Once built it is never modified, so the
+ * converter may be shared between threads. A table built while the range or
+ * color table was being changed is used for that conversion only, and is
+ * never kept.
+ * </p>
+ * 
+ * @author Lee Kamentsky
+ */
+public class IntegerLUTConverter<R extends RealType<?>> extends
+	RealLUTConverter<R>
+{
+
+	/** The largest number of distinct values for which a table is built. */
+	public static final int MAX_LENGTH = 65536;
+
+	private final long offset;
+
+	private final int length;
+
+	private volatile int[] table;
+
+	/** Counts changes to the range and color table. */
+	private volatile long version;
+
+	public IntegerLUTConverter(final R type, final double min, final double max,
+		final ColorTable lut)
+	{
+		super(min, max, lut);
+		if (!isSupported(type)) {
+			throw new IllegalArgumentException("Unsupported type: " +
+				type.getClass().getName());
+		}
+		offset = (long) type.getMinValue();
+		length = (int) (type.getMaxValue() - type.getMinValue() + 1);
+	}
+
+	// -- IntegerLUTConverter methods --
+
+	/**
+	 * Gets whether the given type is an integer type whose range is small
+	 * enough to be converted through a table.
+	 */
+	public static boolean isSupported(final RealType<?> type) {
+		if (!(type instanceof IntegerType)) return false;
+		return type.getMaxValue() - type.getMinValue() + 1 <= MAX_LENGTH;
+	}
+
+	/** Gets the smallest value of the type, which maps to table index 0. */
+	public long getOffset() {
+		return offset;
+	}
+
+	/**
+	 * Gets the table of ARGB values, indexed by sample value minus
+	 * {@link #getOffset()}, building it first if needed. The returned table
+	 * must not be modified.
+	 */
+	public int[] getTable() {
+		int[] t = table;
+		if (t == null) {
+			final long v = version;
+			t = buildTable();
+			synchronized (this) {
+				// NB: a setter may have run while the table was being built
+				if (version == v) table = t;
+			}
+		}
+		return t;
+	}
+
+	// -- RealLUTConverter methods --
+
+	@Override
+	public synchronized void setMin(final double min) {
+		super.setMin(min);
+		version++;
+		table = null;
+	}
+
+	@Override
+	public synchronized void setMax(final double max) {
+		super.setMax(max);
+		version++;
+		table = null;
+	}
+
+	@Override
+	public synchronized void setLUT(final ColorTable lut) {
+		super.setLUT(lut);
+		version++;
+		table = null;
+	}
+
+	// -- Converter methods --
+
+	@Override
+	public void convert(final R input, final ARGBType output) {
+		output.set(getTable()[(int) ((long) input.getRealDouble() - offset)]);
+	}
+
+	// -- Helper methods --
+
+	private int[] buildTable() {
+		final double min = getMin(), max = getMax();
+		final ColorTable lut = getLUT();
+		final int[] t = new int[length];
+		for (int i = 0; i < length; i++) {
+			t[i] = lut.lookupARGB(min, max, i + offset);
+		}
+		return t;
+	}
+
+}
@@ -0,0 +1,275 @@
+/*
+ * #%L
+ * ImageJ software for multidimensional image processing and analysis.
+ * %%
+ * Copyright (C) 2009 - 2013 Board of Regents of the University of
+ * Wisconsin-Madison, Broad Institute of MIT and Harvard, and Max Planck
+ * Institute of Molecular Cell Biology and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are
+ * those of the authors and should not be interpreted as representing official
+ * policies, either expressed or implied, of any organization.
+ * #L%
+ */
+
+package imagej.data.display;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import net.imglib2.RandomAccess;
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.converter.Converter;
+import net.imglib2.display.ARGBScreenImage;
+import net.imglib2.display.ColorTable;
+import net.imglib2.display.CompositeXYProjector;
+import net.imglib2.display.RealLUTConverter;
+import net.imglib2.type.numeric.ARGBType;
+
+import org.scijava.thread.ThreadService;
+
+/**
+ * As {@link CompositeXYProjector}, but splits the target image into bands of
+ * rows which are projected concurrently.
+ * <p>
+ * Each band is projected by its own worker, with its own source accessors,
+ * which walk each row with {@link RandomAccess#fwd(int)} rather than
+ * repositioning for every pixel. Workers are also given their own copies of
+ * any {@link RealLUTConverter}s, except {@link IntegerLUTConverter}s; other
+ * converters are shared, and so must be safe to call concurrently. The
+ * {@link #map()} method returns only once every band has been projected, or
+ * has been cancelled if the projection was interrupted or failed.
+ * </p>
+ * 
+ * @author Lee Kamentsky
+ */
+public class ParallelCompositeXYProjector<A> extends CompositeXYProjector<A> {
+
+	private final RandomAccessibleInterval<A> source;
+
+	private final ARGBScreenImage target;
+
+	private final ArrayList<Converter<A, ARGBType>> converters;
+
+	private final int dimIndex;
+
+	private final ThreadService threadService;
+
+	private final int threadCount;
+
+	public ParallelCompositeXYProjector(final RandomAccessibleInterval<A> source,
+		final ARGBScreenImage target,
+		final ArrayList<Converter<A, ARGBType>> converters, final int dimIndex,
+		final ThreadService threadService, final int threadCount)
+	{
+		super(source, target, converters, dimIndex);
+		this.source = source;
+		this.target = target;
+		this.converters = converters;
+		this.dimIndex = dimIndex;
+		this.threadService = threadService;
+		this.threadCount = threadCount;
+	}
+
+	// -- ParallelCompositeXYProjector methods --
+
+	/** Gets the maximum number of bands projected concurrently. */
+	public int getThreadCount() {
+		return threadCount;
+	}
+
+	// -- Projector methods --
+
+	@Override
+	public void map() {
+		final int size;
+		final long[] channels;
+		final Converter<A, ARGBType>[] convs;
+		if (dimIndex < 0) {
+			size = 1;
+			channels = null;
+			convs = createConverterArray(1);
+			convs[0] = converters.get(0);
+		}
+		else {
+			size = updateCurrentArrays();
+			channels = currentPositions.clone();
+			convs = createConverterArray(size);
+			for (int i = 0; i < size; i++) {
+				convs[i] = currentConverters[i];
+			}
+		}
+
+		final int height = (int) target.dimension(1);
+		final int bands = Math.min(threadCount, height);
+		if (bands <= 1 || threadService == null) {
+			mapRows(0, height, channels, convs, new AtomicBoolean());
+			return;
+		}
+
+		final AtomicBoolean cancelled = new AtomicBoolean();
+		final List<Future<?>> futures = new ArrayList<Future<?>>(bands);
+		for (int b = 0; b < bands; b++) {
+			final int minY = (int) ((long) b * height / bands);
+			final int maxY = (int) ((long) (b + 1) * height / bands);
+			final Converter<A, ARGBType>[] bandConvs = copyConverters(convs);
+			futures.add(threadService.run(new Runnable() {
+
+				@Override
+				public void run() {
+					mapRows(minY, maxY, channels, bandConvs, cancelled);
+				}
+			}));
+		}
+		for (final Future<?> future : futures) {
+			try {
+				future.get();
+			}
+			catch (final InterruptedException e) {
+				cancel(cancelled, futures);
+				Thread.currentThread().interrupt();
+				return;
+			}
+			catch (final ExecutionException e) {
+				cancel(cancelled, futures);
+				throw new IllegalStateException("Error projecting image band", e
+					.getCause());
+			}
+		}
+	}
+
+	// -- Helper methods --
+
+	/**
+	 * Stops the bands still projecting, and waits for them to notice, so none
+	 * writes into the target once {@link #map()} has returned.
+	 */
+	private void cancel(final AtomicBoolean cancelled,
+		final List<Future<?>> futures)
+	{
+		cancelled.set(true);
+		boolean interrupted = false;
+		for (final Future<?> future : futures) {
+			while (true) {
+				try {
+					future.get();
+					break;
+				}
+				catch (final InterruptedException e) {
+					interrupted = true;
+				}
+				catch (final ExecutionException e) {
+					// NB: only the first failure is reported
+					break;
+				}
+			}
+		}
+		if (interrupted) Thread.currentThread().interrupt();
+	}
+
+	/**
+	 * Projects the given band of rows of the target, stopping between rows once
+	 * the projection is cancelled.
+	 */
+	private void mapRows(final int minY, final int maxY, final long[] channels,
+		final Converter<A, ARGBType>[] convs, final AtomicBoolean cancelled)
+	{
+		final int size = convs.length;
+		final int width = (int) target.dimension(0);
+		final long minX = target.min(0);
+
+		// one accessor per composited channel, positioned on the current plane
+		final List<RandomAccess<A>> accessors = new ArrayList<RandomAccess<A>>();
+		for (int i = 0; i < size; i++) {
+			final RandomAccess<A> access = source.randomAccess();
+			for (int d = 2; d < position.length; d++) {
+				access.setPosition(position[d], d);
+			}
+			if (channels != null) access.setPosition(channels[i], dimIndex);
+			accessors.add(access);
+		}
+
+		final int[] data = target.getData();
+		final ARGBType argb = new ARGBType();
+		for (int y = minY; y < maxY; y++) {
+			if (cancelled.get()) return;
+			for (int i = 0; i < size; i++) {
+				final RandomAccess<A> access = accessors.get(i);
+				access.setPosition(minX, 0);
+				access.setPosition(target.min(1) + y, 1);
+			}
+			final int offset = y * width;
+			for (int x = 0; x < width; x++) {
+				int aSum = 0, rSum = 0, gSum = 0, bSum = 0;
+				for (int i = 0; i < size; i++) {
+					final RandomAccess<A> access = accessors.get(i);
+					convs[i].convert(access.get(), argb);
+					access.fwd(0);
+					final int value = argb.get();
+					aSum += ARGBType.alpha(value);
+					rSum += ARGBType.red(value);
+					gSum += ARGBType.green(value);
+					bSum += ARGBType.blue(value);
+				}
+				if (aSum > 255) aSum = 255;
+				if (rSum > 255) rSum = 255;
+				if (gSum > 255) gSum = 255;
+				if (bSum > 255) bSum = 255;
+				data[offset + x] = ARGBType.rgba(rSum, gSum, bSum, aSum);
+			}
+		}
+	}
+
+	/**
+	 * Copies the given converters for use by a single worker. Only
+	 * {@link RealLUTConverter}s are copied; others, including the thread-safe
+	 * {@link IntegerLUTConverter}s, are shared.
+	 */
+	@SuppressWarnings({ "rawtypes", "unchecked" })
+	private Converter<A, ARGBType>[] copyConverters(
+		final Converter<A, ARGBType>[] convs)
+	{
+		final Converter<A, ARGBType>[] copies = createConverterArray(convs.length);
+		for (int i = 0; i < convs.length; i++) {
+			if (convs[i] instanceof RealLUTConverter &&
+				!(convs[i] instanceof IntegerLUTConverter))
+			{
+				final RealLUTConverter<?> c = (RealLUTConverter<?>) convs[i];
+				final ColorTable lut = c.getLUT();
+				copies[i] = new RealLUTConverter(c.getMin(), c.getMax(), lut);
+			}
+			else copies[i] = convs[i];
+		}
+		return copies;
+	}
+
+	@SuppressWarnings("unchecked")
+	private Converter<A, ARGBType>[] createConverterArray(final int size) {
+		return new Converter[size];
+	}
+
+}
@@ -0,0 +1,259 @@
+/*
+ * #%L
+ * ImageJ software for multidimensional image processing and analysis.
+ * %%
+ * Copyright (C) 2009 - 2013 Board of Regents of the University of
+ * Wisconsin-Madison, Broad Institute of MIT and Harvard, and Max Planck
+ * Institute of Molecular Cell Biology and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are
+ * those of the authors and should not be interpreted as representing official
+ * policies, either expressed or implied, of any organization.
+ * #L%
+ */
+
+package imagej.data.display;
+
+import java.util.Arrays;
+
+import net.imglib2.display.ARGBScreenImage;
+import net.imglib2.display.CompositeXYProjector;
+
+import org.scijava.thread.ThreadService;
+
+/**
+ * Renders the planes neighboring a view's current position in the background,
+ * into a small ring of screen images, so that stepping onto one of them costs
+ * no more than swapping buffers.
+ * <p>
+ * Each buffer of the ring has its own projector, created by the view. Any
+ * change to how planes are rendered (ranges, color tables, compositing or the
+ * data itself) must {@link #invalidate()} the prefetched planes.
+ * </p>
+ * 
+ * @author Lee Kamentsky
+ */
+public class PlanePrefetcher {
+
+	/** Creates the projectors which render into the ring buffers. */
+	public interface ProjectorFactory {
+
+		CompositeXYProjector<?> createProjector(ARGBScreenImage target);
+	}
+
+	/** A screen image together with the projector which renders into it. */
+	public static class PlaneBuffer {
+
+		private ARGBScreenImage image;
+		private CompositeXYProjector<?> projector;
+
+		/** Position of the prefetched plane, or null if none. */
+		private long[] position;
+
+		/** Invalidation stamp in effect when the plane was requested. */
+		private long stamp;
+
+		private boolean busy;
+		private boolean ready;
+
+		public ARGBScreenImage getImage() {
+			return image;
+		}
+
+		public CompositeXYProjector<?> getProjector() {
+			return projector;
+		}
+	}
+
+	private final ThreadService threadService;
+
+	private final ProjectorFactory factory;
+
+	private final int width, height;
+
+	private final PlaneBuffer[] ring;
+
+	/** Incremented whenever prefetched planes become invalid. */
+	private long stamp;
+
+	public PlanePrefetcher(final ThreadService threadService,
+		final ProjectorFactory factory, final int width, final int height,
+		final int size)
+	{
+		this.threadService = threadService;
+		this.factory = factory;
+		this.width = width;
+		this.height = height;
+		ring = new PlaneBuffer[size];
+		for (int i = 0; i < size; i++) {
+			ring[i] = new PlaneBuffer();
+		}
+	}
+
+	// -- PlanePrefetcher methods --
+
+	/** Gets the number of planes which can be prefetched at once. */
+	public int getSize() {
+		return ring.length;
+	}
+
+	/** Discards all prefetched planes, including those still rendering. */
+	public synchronized void invalidate() {
+		stamp++;
+		for (final PlaneBuffer buffer : ring) {
+			buffer.ready = false;
+			buffer.position = null;
+		}
+	}
+
+	/**
+	 * Takes the prefetched plane at the given position, if it is ready. The
+	 * given screen image and projector, which are no longer needed by the
+	 * caller, take its place in the ring.
+	 * 
+	 * @return The buffer holding the prefetched plane, or null if the plane has
+	 *         not been prefetched.
+	 */
+	public synchronized PlaneBuffer take(final long[] position,
+		final ARGBScreenImage image, final CompositeXYProjector<?> projector)
+	{
+		for (final PlaneBuffer buffer : ring) {
+			if (!buffer.ready || !Arrays.equals(buffer.position, position)) continue;
+			final PlaneBuffer taken = new PlaneBuffer();
+			taken.image = buffer.image;
+			taken.projector = buffer.projector;
+			buffer.image = image;
+			buffer.projector = projector;
+			buffer.position = null;
+			buffer.ready = false;
+			return taken;
+		}
+		return null;
+	}
+
+	/**
+	 * Prefetches planes following the given position along one dimension.
+	 * 
+	 * @param position The current position of the view.
+	 * @param dim The dimension along which to prefetch.
+	 * @param direction The direction in which to step: 1 or -1.
+	 * @param depth The number of planes to prefetch, at most {@link #getSize()}.
+	 * @param size The size of the dimension.
+	 * @param wrap Whether to wrap around from one end of the dimension to the
+	 *          other, as looping animations do.
+	 * @param composite Whether the planes are rendered as composites.
+	 */
+	public synchronized void prefetch(final long[] position, final int dim,
+		final int direction, final int depth, final long size,
+		final boolean wrap, final boolean composite)
+	{
+		final long[][] wanted = new long[Math.min(depth, ring.length)][];
+		int count = 0;
+		long p = position[dim];
+		for (int i = 0; i < wanted.length; i++) {
+			p += direction;
+			if (p < 0 || p >= size) {
+				if (!wrap) break;
+				p = p < 0 ? size - 1 : 0;
+			}
+			if (p == position[dim]) break; // wrapped all the way around
+			final long[] pos = position.clone();
+			pos[dim] = p;
+			wanted[count++] = pos;
+		}
+
+		for (int i = 0; i < count; i++) {
+			if (find(wanted[i]) != null) continue; // already prefetched or pending
+			final PlaneBuffer buffer = findFree(wanted, count, position);
+			if (buffer == null) return; // ring is busy
+			submit(buffer, wanted[i], composite);
+		}
+	}
+
+	// -- Helper methods --
+
+	/** Finds the buffer holding or rendering the plane at the given position. */
+	private PlaneBuffer find(final long[] position) {
+		for (final PlaneBuffer buffer : ring) {
+			if (Arrays.equals(buffer.position, position)) return buffer;
+		}
+		return null;
+	}
+
+	/** Finds a buffer which is idle and not holding a wanted plane. */
+	private PlaneBuffer findFree(final long[][] wanted, final int count,
+		final long[] current)
+	{
+		for (final PlaneBuffer buffer : ring) {
+			if (buffer.busy) continue;
+			if (buffer.position == null) return buffer;
+		}
+		for (final PlaneBuffer buffer : ring) {
+			if (buffer.busy) continue;
+			boolean keep = Arrays.equals(buffer.position, current);
+			for (int i = 0; i < count && !keep; i++) {
+				keep = Arrays.equals(buffer.position, wanted[i]);
+			}
+			if (!keep) return buffer;
+		}
+		return null;
+	}
+
+	/** Renders the plane at the given position into the given buffer. */
+	private void submit(final PlaneBuffer buffer, final long[] position,
+		final boolean composite)
+	{
+		if (buffer.image == null) buffer.image = new ARGBScreenImage(width, height);
+		if (buffer.projector == null) {
+			buffer.projector = factory.createProjector(buffer.image);
+		}
+		final CompositeXYProjector<?> projector = buffer.projector;
+		projector.setPosition(position);
+		projector.setComposite(composite);
+		buffer.position = position;
+		buffer.stamp = stamp;
+		buffer.ready = false;
+		buffer.busy = true;
+		threadService.run(new Runnable() {
+
+			@Override
+			public void run() {
+				try {
+					projector.map();
+				}
+				finally {
+					finish(buffer);
+				}
+			}
+		});
+	}
+
+	/** Marks a buffer as ready, if its plane is still valid. */
+	private synchronized void finish(final PlaneBuffer buffer) {
+		buffer.busy = false;
+		if (buffer.stamp == stamp && buffer.position != null) buffer.ready = true;
+		else buffer.position = null;
+	}
+
+}
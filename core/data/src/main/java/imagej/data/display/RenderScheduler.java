@@ -0,0 +1,152 @@
+/*
+ * #%L
+ * ImageJ software for multidimensional image processing and analysis.
+ * %%
+ * Copyright (C) 2009 - 2013 Board of Regents of the University of
+ * Wisconsin-Madison, Broad Institute of MIT and Harvard, and Max Planck
+ * Institute of Molecular Cell Biology and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are
+ * those of the authors and should not be interpreted as representing official
+ * policies, either expressed or implied, of any organization.
+ * #L%
+ */
+
+package imagej.data.display;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.scijava.thread.ThreadService;
+
+/**
+ * Schedules the rendering of a view in the background, such that only the
+ * latest request is ever completed.
+ * <p>
+ * Requests made while a render is in progress are coalesced: once it finishes,
+ * a single further render picks up the latest state of the view. A render
+ * overtaken by a newer request is considered stale: it triggers no
+ * notification, and the newer render begins immediately. Renderers draw into
+ * their target as they go, so the pixels of a stale render may be on screen
+ * until the newer render overwrites them. Only a render which is still
+ * current when it finishes triggers the completion callback.
+ * </p>
+ * 
+ * @author Lee Kamentsky
+ */
+public class RenderScheduler {
+
+	private final ThreadService threadService;
+
+	/** Renders the latest state of the view. */
+	private final Runnable renderer;
+
+	/** Notifies listeners of a completed, current render. */
+	private final Runnable completion;
+
+	/** Number of requests made so far. */
+	private final AtomicLong requests = new AtomicLong();
+
+	/** Whether a worker is currently rendering. Guarded by this. */
+	private boolean running;
+
+	public RenderScheduler(final ThreadService threadService,
+		final Runnable renderer, final Runnable completion)
+	{
+		this.threadService = threadService;
+		this.renderer = renderer;
+		this.completion = completion;
+	}
+
+	// -- RenderScheduler methods --
+
+	/**
+	 * Requests a render of the latest state of the view, returning immediately.
+	 */
+	public void request() {
+		requests.incrementAndGet();
+		synchronized (this) {
+			if (running) return; // the running worker will pick up the request
+			running = true;
+		}
+		threadService.run(new Runnable() {
+
+			@Override
+			public void run() {
+				renderLatest();
+			}
+		});
+	}
+
+	/** Gets whether a render is pending or in progress. */
+	public synchronized boolean isRendering() {
+		return running;
+	}
+
+	/** Blocks until all requested rendering has completed. */
+	public synchronized void waitFor() {
+		while (running) {
+			try {
+				wait();
+			}
+			catch (final InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return;
+			}
+		}
+	}
+
+	// -- Helper methods --
+
+	/** Gets whether a render begun at the given request has been overtaken. */
+	private boolean isStale(final long request) {
+		return requests.get() != request;
+	}
+
+	/** Renders until no request newer than the last render remains. */
+	private void renderLatest() {
+		try {
+			while (true) {
+				final long request = requests.get();
+				renderer.run();
+				synchronized (this) {
+					if (!isStale(request)) {
+						running = false;
+						notifyAll();
+						break;
+					}
+				}
+				// NB: Stale; skip notification and render the latest request.
+			}
+		}
+		catch (final RuntimeException e) {
+			synchronized (this) {
+				running = false;
+				notifyAll();
+			}
+			throw e;
+		}
+		completion.run();
+	}
+
+}
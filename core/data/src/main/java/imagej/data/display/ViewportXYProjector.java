@@ -0,0 +1,299 @@
+/*
+ * #%L
+ * ImageJ software for multidimensional image processing and analysis.
+ * %%
+ * Copyright (C) 2009 - 2013 Board of Regents of the University of
+ * Wisconsin-Madison, Broad Institute of MIT and Harvard, and Max Planck
+ * Institute of Molecular Cell Biology and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are
+ * those of the authors and should not be interpreted as representing official
+ * policies, either expressed or implied, of any organization.
+ * #L%
+ */
+
+package imagej.data.display;
+
+import imagej.data.pyramid.DatasetPyramid;
+import imagej.util.IntRect;
+
+import java.util.ArrayList;
+
+import net.imglib2.RandomAccess;
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.converter.Converter;
+import net.imglib2.display.ARGBScreenImage;
+import net.imglib2.display.CompositeXYProjector;
+import net.imglib2.display.RealLUTConverter;
+import net.imglib2.type.numeric.ARGBType;
+import net.imglib2.type.numeric.RealType;
+import net.imglib2.type.numeric.real.FloatType;
+
+/**
+ * As {@link CompositeXYProjector}, but only projects a rectangular region of
+ * the current XY plane, resampled to the dimensions of the target image.
+ * <p>
+ * This makes it possible to render just the visible portion of a large plane,
+ * at the resolution it is actually displayed, rather than the entire plane at
+ * full resolution. When the region is larger than the target, source samples
+ * are taken at the center of each target pixel (i.e., nearest neighbor
+ * sampling); when it is the same size, the projection is one-to-one.
+ * </p>
+ * <p>
+ * If a {@link DatasetPyramid} of the source is given, regions which are
+ * downsampled by a factor of two or more are instead sampled from the
+ * appropriate pyramid level, whose samples are block averages of the source.
+ * In that case the converters must accept any {@link RealType} (as
+ * {@link RealLUTConverter} does), since they are fed {@link FloatType}
+ * samples.
+ * </p>
+ * 
+ * @author Lee Kamentsky
+ */
+public class ViewportXYProjector<A> extends CompositeXYProjector<A> {
+
+	private final RandomAccessibleInterval<A> source;
+
+	private final ARGBScreenImage target;
+
+	private final ArrayList<Converter<A, ARGBType>> converters;
+
+	private final int dimIndex;
+
+	/** Region of the source plane which is projected into the target. */
+	private final IntRect region = new IntRect();
+
+	/** Source X coordinate sampled by each column of the target. */
+	private long[] sourceX;
+
+	/** Source Y coordinate sampled by each row of the target. */
+	private long[] sourceY;
+
+	/** Pyramid to sample from when the region is downsampled, or null. */
+	private DatasetPyramid pyramid;
+
+	public ViewportXYProjector(final RandomAccessibleInterval<A> source,
+		final ARGBScreenImage target,
+		final ArrayList<Converter<A, ARGBType>> converters, final int dimIndex)
+	{
+		super(source, target, converters, dimIndex);
+		this.source = source;
+		this.target = target;
+		this.converters = converters;
+		this.dimIndex = dimIndex;
+		setRegion(new IntRect(0, 0, (int) target.dimension(0), (int) target
+			.dimension(1)));
+	}
+
+	// -- ViewportXYProjector methods --
+
+	/** Gets the region of the source plane which is projected. */
+	public IntRect getRegion() {
+		return new IntRect(region.x, region.y, region.width, region.height);
+	}
+
+	/**
+	 * Sets the region of the source plane to project into the target. The
+	 * region is resampled to fit the dimensions of the target.
+	 */
+	public void setRegion(final IntRect r) {
+		if (r.width <= 0 || r.height <= 0) {
+			throw new IllegalArgumentException("Invalid region: " + r);
+		}
+		region.x = r.x;
+		region.y = r.y;
+		region.width = r.width;
+		region.height = r.height;
+		sourceX = samplePositions(r.x, r.width, (int) target.dimension(0));
+		sourceY = samplePositions(r.y, r.height, (int) target.dimension(1));
+	}
+
+	/** Gets the pyramid sampled when the region is downsampled, if any. */
+	public DatasetPyramid getPyramid() {
+		return pyramid;
+	}
+
+	/**
+	 * Sets the pyramid to sample from when the region is downsampled. The
+	 * pyramid must be that of the source image, or null to always sample the
+	 * source at full resolution.
+	 */
+	public void setPyramid(final DatasetPyramid pyramid) {
+		this.pyramid = pyramid;
+	}
+
+	// -- Projector methods --
+
+	@Override
+	public void map() {
+		final int size;
+		final long[] channels;
+		final Converter<A, ARGBType>[] convs;
+		if (dimIndex < 0) {
+			size = 1;
+			channels = null;
+			convs = createConverterArray(1);
+			convs[0] = converters.get(0);
+		}
+		else {
+			size = updateCurrentArrays();
+			channels = currentPositions;
+			convs = createConverterArray(size);
+			for (int i = 0; i < size; i++) {
+				convs[i] = currentConverters[i];
+			}
+		}
+
+		final int level = getPyramidLevel();
+		if (level > 0) {
+			mapLevel(level, size, channels, convs);
+			return;
+		}
+
+		// one accessor per composited channel, positioned on the current plane
+		final ArrayList<RandomAccess<A>> accessors =
+			new ArrayList<RandomAccess<A>>(size);
+		for (int i = 0; i < size; i++) {
+			final RandomAccess<A> access = source.randomAccess();
+			for (int d = 2; d < position.length; d++) {
+				access.setPosition(position[d], d);
+			}
+			if (channels != null) access.setPosition(channels[i], dimIndex);
+			accessors.add(access);
+		}
+
+		final int[] data = target.getData();
+		final int width = sourceX.length;
+		final ARGBType argb = new ARGBType();
+		for (int y = 0; y < sourceY.length; y++) {
+			for (int i = 0; i < size; i++) {
+				accessors.get(i).setPosition(sourceY[y], 1);
+			}
+			final int offset = y * width;
+			for (int x = 0; x < width; x++) {
+				int aSum = 0, rSum = 0, gSum = 0, bSum = 0;
+				for (int i = 0; i < size; i++) {
+					final RandomAccess<A> access = accessors.get(i);
+					access.setPosition(sourceX[x], 0);
+					convs[i].convert(access.get(), argb);
+					final int value = argb.get();
+					aSum += ARGBType.alpha(value);
+					rSum += ARGBType.red(value);
+					gSum += ARGBType.green(value);
+					bSum += ARGBType.blue(value);
+				}
+				data[offset + x] = rgba(rSum, gSum, bSum, aSum);
+			}
+		}
+	}
+
+	// -- Helper methods --
+
+	/** Gets the pyramid level to sample from, or 0 for the source itself. */
+	private int getPyramidLevel() {
+		if (pyramid == null) return 0;
+		final double xZoom = (double) sourceX.length / region.width;
+		final double yZoom = (double) sourceY.length / region.height;
+		return pyramid.getLevel(Math.max(xZoom, yZoom));
+	}
+
+	/** Projects the region from the given level of the pyramid. */
+	@SuppressWarnings({ "rawtypes", "unchecked" })
+	private void mapLevel(final int level, final int size,
+		final long[] channels, final Converter<A, ARGBType>[] convs)
+	{
+		final int levelWidth = pyramid.getWidth(level);
+		final int levelHeight = pyramid.getHeight(level);
+		final float[][] planes = new float[size][];
+		for (int i = 0; i < size; i++) {
+			final long[] pos = position.clone();
+			if (channels != null) pos[dimIndex] = channels[i];
+			planes[i] = pyramid.getPlane(pos, level);
+		}
+		final int[] levelX = levelPositions(sourceX, level, levelWidth);
+		final int[] levelY = levelPositions(sourceY, level, levelHeight);
+
+		final int[] data = target.getData();
+		final int width = levelX.length;
+		final FloatType sample = new FloatType();
+		final ARGBType argb = new ARGBType();
+		for (int y = 0; y < levelY.length; y++) {
+			final int offset = y * width;
+			final int levelOffset = levelY[y] * levelWidth;
+			for (int x = 0; x < width; x++) {
+				int aSum = 0, rSum = 0, gSum = 0, bSum = 0;
+				for (int i = 0; i < size; i++) {
+					sample.set(planes[i][levelOffset + levelX[x]]);
+					((Converter) convs[i]).convert(sample, argb);
+					final int value = argb.get();
+					aSum += ARGBType.alpha(value);
+					rSum += ARGBType.red(value);
+					gSum += ARGBType.green(value);
+					bSum += ARGBType.blue(value);
+				}
+				data[offset + x] = rgba(rSum, gSum, bSum, aSum);
+			}
+		}
+	}
+
+	/** Maps source coordinates to the coordinates of a pyramid level. */
+	private int[] levelPositions(final long[] positions, final int level,
+		final int levelSize)
+	{
+		final int[] levelPositions = new int[positions.length];
+		for (int i = 0; i < positions.length; i++) {
+			levelPositions[i] = (int) Math.min(levelSize - 1, positions[i] >> level);
+		}
+		return levelPositions;
+	}
+
+	/** Packs composited channel sums, saturating each at 255. */
+	private static int rgba(final int r, final int g, final int b, final int a) {
+		return ARGBType.rgba(r > 255 ? 255 : r, g > 255 ? 255 : g, b > 255 ? 255
+			: b, a > 255 ? 255 : a);
+	}
+
+	/**
+	 * Computes the source coordinate to sample for each of the given number of
+	 * target pixels, spread evenly across the given source span.
+	 */
+	private long[] samplePositions(final long start, final long span,
+		final int count)
+	{
+		final long[] positions = new long[count];
+		final double step = (double) span / count;
+		for (int i = 0; i < count; i++) {
+			long p = (long) ((i + 0.5) * step);
+			if (p >= span) p = span - 1;
+			positions[i] = start + p;
+		}
+		return positions;
+	}
+
+	@SuppressWarnings("unchecked")
+	private Converter<A, ARGBType>[] createConverterArray(final int size) {
+		return new Converter[size];
+	}
+
+}
@@ -36,6 +36,7 @@
 package imagej.data.display.event;
 
 import imagej.data.display.DataView;
+import imagej.util.IntRect;
 
 /**
  * This event signals that a {@link DataView}'s appearance has changed.
@@ -44,8 +45,25 @@
  */
 public class DataViewUpdatedEvent extends DataViewEvent {
 
+	private final IntRect region;
+
 	public DataViewUpdatedEvent(final DataView view) {
+		this(view, null);
+	}
+
+	public DataViewUpdatedEvent(final DataView view, final IntRect region) {
 		super(view);
+		this.region = region;
+	}
+
+	// -- DataViewUpdatedEvent methods --
+
+	/**
+	 * Gets the area of the view, in data coordinates, whose appearance changed,
+	 * or null if the whole view may have changed.
+	 */
+	public IntRect getRegion() {
+		return region;
 	}
 
 }
@@ -36,6 +36,7 @@
 package imagej.data.event;
 
 import imagej.data.Dataset;
+import net.imglib2.Interval;
 
 /**
  * An event indicating a {@link Dataset}'s data has been updated. This means
@@ -43,6 +44,8 @@
  * same as before.
  * <p>
  * This event is typically fired as part of a call to {@link Dataset#update()}.
+ * If the event was fired by {@link Dataset#update(Interval)}, only the samples
+ * within its {@link #getRegion() region} have changed.
  * </p>
  * 
  * @author Curtis Rueden
@@ -51,11 +54,20 @@ public class DatasetUpdatedEvent extends DataUpdatedEvent {
 
 	private final Dataset dataset;
 	private final boolean metadataOnly;
+	private final Interval region;
 
 	public DatasetUpdatedEvent(final Dataset dataset, boolean metadataOnly) {
 		super(dataset);
 		this.dataset = dataset;
 		this.metadataOnly = metadataOnly;
+		this.region = null;
+	}
+
+	public DatasetUpdatedEvent(final Dataset dataset, final Interval region) {
+		super(dataset);
+		this.dataset = dataset;
+		this.metadataOnly = false;
+		this.region = region;
 	}
 
 	// -- ObjectEvent methods --
@@ -68,4 +80,12 @@ public Dataset getObject() {
 	public boolean isMetaDataOnly() {
 		return metadataOnly;
 	}
+
+	/**
+	 * Gets the region of the dataset whose samples changed, or null if the
+	 * change may span the whole dataset.
+	 */
+	public Interval getRegion() {
+		return region;
+	}
 }
@@ -0,0 +1,97 @@
+/*
+ * #%L
+ * ImageJ software for multidimensional image processing and analysis.
+ * %%
+ * Copyright (C) 2009 - 2013 Board of Regents of the University of
+ * Wisconsin-Madison, Broad Institute of MIT and Harvard, and Max Planck
+ * Institute of Molecular Cell Biology and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are
+ * those of the authors and should not be interpreted as representing official
+ * policies, either expressed or implied, of any organization.
+ * #L%
+ */
+
+package imagej.data.mapped;
+
+import java.io.File;
+import java.nio.DoubleBuffer;
+
+import net.imglib2.img.basictypeaccess.array.DoubleArray;
+
+/**
+ * A {@link DoubleArray} whose samples are stored in a memory-mapped temporary
+ * file.
+ * 
+ * @author Lee Kamentsky
+ */
+class MappedDoubleArray extends DoubleArray {
+
+	private final File directory;
+
+	private final DoubleBuffer buffer;
+
+	/** Creates an array which only serves to create other arrays. */
+	MappedDoubleArray(final File directory) {
+		this(directory, null);
+	}
+
+	private MappedDoubleArray(final File directory, final DoubleBuffer buffer) {
+		super(0);
+		this.directory = directory;
+		this.buffer = buffer;
+	}
+
+	@Override
+	public double getValue(final int index) {
+		return buffer.get(index);
+	}
+
+	@Override
+	public void setValue(final int index, final double value) {
+		buffer.put(index, value);
+	}
+
+	@Override
+	public MappedDoubleArray createArray(final int numEntities) {
+		return new MappedDoubleArray(directory, MappedStorage.allocate(directory,
+			8L * numEntities).asDoubleBuffer());
+	}
+
+	/**
+	 * Gets a copy of the samples, since they are not stored in an array. Writes
+	 * to the copy are not stored back; samples must be set with
+	 * {@link #setValue(int, double)}.
+	 */
+	@Override
+	public double[] getCurrentStorageArray() {
+		if (buffer == null) return new double[0];
+		final double[] samples = new double[buffer.capacity()];
+		final DoubleBuffer view = buffer.duplicate();
+		view.rewind();
+		view.get(samples);
+		return samples;
+	}
+
+}
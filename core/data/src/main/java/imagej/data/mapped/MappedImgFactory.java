@@ -0,0 +1,174 @@
+/*
+ * #%L
+ * ImageJ software for multidimensional image processing and analysis.
+ * %%
+ * Copyright (C) 2009 - 2013 Board of Regents of the University of
+ * Wisconsin-Madison, Broad Institute of MIT and Harvard, and Max Planck
+ * Institute of Molecular Cell Biology and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are
+ * those of the authors and should not be interpreted as representing official
+ * policies, either expressed or implied, of any organization.
+ * #L%
+ */
+
+package imagej.data.mapped;
+
+import java.io.File;
+
+import net.imglib2.exception.IncompatibleTypeException;
+import net.imglib2.img.ImgFactory;
+import net.imglib2.img.basictypeaccess.array.ByteArray;
+import net.imglib2.img.basictypeaccess.array.DoubleArray;
+import net.imglib2.img.basictypeaccess.array.FloatArray;
+import net.imglib2.img.basictypeaccess.array.IntArray;
+import net.imglib2.img.basictypeaccess.array.LongArray;
+import net.imglib2.img.basictypeaccess.array.ShortArray;
+import net.imglib2.img.planar.PlanarImg;
+import net.imglib2.img.planar.PlanarImgFactory;
+import net.imglib2.type.NativeType;
+import net.imglib2.type.numeric.integer.ByteType;
+import net.imglib2.type.numeric.integer.IntType;
+import net.imglib2.type.numeric.integer.LongType;
+import net.imglib2.type.numeric.integer.ShortType;
+import net.imglib2.type.numeric.integer.UnsignedByteType;
+import net.imglib2.type.numeric.integer.UnsignedIntType;
+import net.imglib2.type.numeric.integer.UnsignedShortType;
+import net.imglib2.type.numeric.real.DoubleType;
+import net.imglib2.type.numeric.real.FloatType;
+
+/**
+ * Creates {@link MappedPlanarImg}s, whose planes are stored in memory-mapped
+ * temporary files rather than on the Java heap.
+ * <p>
+ * Only types storing one sample per primitive array element are file backed
+ * (see {@link #isSupported(NativeType)}); images of other types, such as
+ * {@link net.imglib2.type.logic.BitType}, are created on the heap as by a
+ * {@link PlanarImgFactory}.
+ * </p>
+ * 
+ * @author Lee Kamentsky
+ */
+public class MappedImgFactory<T extends NativeType<T>> extends
+	PlanarImgFactory<T>
+{
+
+	private final File directory;
+
+	/** Creates a factory storing planes in the default temporary directory. */
+	public MappedImgFactory() {
+		this(null);
+	}
+
+	/**
+	 * Creates a factory storing planes in the given directory, or the default
+	 * temporary directory if null.
+	 */
+	public MappedImgFactory(final File directory) {
+		this.directory = directory;
+	}
+
+	// -- MappedImgFactory methods --
+
+	/** Gets whether images of the given type are file backed. */
+	public static boolean isSupported(final NativeType<?> type) {
+		final Class<?> c = type.getClass();
+		return c == ByteType.class || c == UnsignedByteType.class ||
+			c == ShortType.class || c == UnsignedShortType.class ||
+			c == IntType.class || c == UnsignedIntType.class ||
+			c == LongType.class || c == FloatType.class || c == DoubleType.class;
+	}
+
+	// -- ImgFactory methods --
+
+	@Override
+	public PlanarImg<T, ?> create(final long[] dim, final T type) {
+		if (!isSupported(type)) return new PlanarImgFactory<T>().create(dim, type);
+		return super.create(dim, type);
+	}
+
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	@Override
+	public <S> ImgFactory<S> imgFactory(final S type)
+		throws IncompatibleTypeException
+	{
+		if (NativeType.class.isInstance(type)) {
+			return new MappedImgFactory(directory);
+		}
+		throw new IncompatibleTypeException(this, type.getClass()
+			.getCanonicalName() +
+			" does not implement NativeType.");
+	}
+
+	// -- NativeImgFactory methods --
+
+	@Override
+	public PlanarImg<T, ByteArray> createByteInstance(final long[] dimensions,
+		final int entitiesPerPixel)
+	{
+		return new MappedPlanarImg<T, ByteArray>(new MappedByteArray(directory),
+			dimensions, entitiesPerPixel, this);
+	}
+
+	@Override
+	public PlanarImg<T, ShortArray> createShortInstance(
+		final long[] dimensions, final int entitiesPerPixel)
+	{
+		return new MappedPlanarImg<T, ShortArray>(new MappedShortArray(directory),
+			dimensions, entitiesPerPixel, this);
+	}
+
+	@Override
+	public PlanarImg<T, IntArray> createIntInstance(final long[] dimensions,
+		final int entitiesPerPixel)
+	{
+		return new MappedPlanarImg<T, IntArray>(new MappedIntArray(directory),
+			dimensions, entitiesPerPixel, this);
+	}
+
+	@Override
+	public PlanarImg<T, LongArray> createLongInstance(final long[] dimensions,
+		final int entitiesPerPixel)
+	{
+		return new MappedPlanarImg<T, LongArray>(new MappedLongArray(directory),
+			dimensions, entitiesPerPixel, this);
+	}
+
+	@Override
+	public PlanarImg<T, FloatArray> createFloatInstance(
+		final long[] dimensions, final int entitiesPerPixel)
+	{
+		return new MappedPlanarImg<T, FloatArray>(new MappedFloatArray(directory),
+			dimensions, entitiesPerPixel, this);
+	}
+
+	@Override
+	public PlanarImg<T, DoubleArray> createDoubleInstance(
+		final long[] dimensions, final int entitiesPerPixel)
+	{
+		return new MappedPlanarImg<T, DoubleArray>(new MappedDoubleArray(
+			directory), dimensions, entitiesPerPixel, this);
+	}
+
+}
@@ -0,0 +1,89 @@
+/*
+ * #%L
+ * ImageJ software for multidimensional image processing and analysis.
+ * %%
+ * Copyright (C) 2009 - 2013 Board of Regents of the University of
+ * Wisconsin-Madison, Broad Institute of MIT and Harvard, and Max Planck
+ * Institute of Molecular Cell Biology and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are
+ * those of the authors and should not be interpreted as representing official
+ * policies, either expressed or implied, of any organization.
+ * #L%
+ */
+
+package imagej.data.mapped;
+
+import net.imglib2.img.basictypeaccess.array.ArrayDataAccess;
+import net.imglib2.img.planar.PlanarImg;
+import net.imglib2.type.NativeType;
+
+/**
+ * A {@link PlanarImg} whose planes are stored in memory-mapped temporary
+ * files, rather than on the Java heap, so that it may be larger than the
+ * maximum heap size. The operating system pages samples in and out of memory
+ * as they are accessed.
+ * <p>
+ * The planes of this image are not backed by primitive arrays, so cannot be
+ * shared by reference as those of other planar images can. Asking a plane for
+ * its storage array yields a copy of its samples, to which writes are not
+ * stored back, so samples must be written through the image's cursors and
+ * random accesses.
+ * </p>
+ * 
+ * @author Lee Kamentsky
+ * @see MappedImgFactory
+ */
+public class MappedPlanarImg<T extends NativeType<T>, A extends ArrayDataAccess<A>>
+	extends PlanarImg<T, A>
+{
+
+	private final MappedImgFactory<T> factory;
+
+	MappedPlanarImg(final A creator, final long[] dim,
+		final int entitiesPerPixel, final MappedImgFactory<T> factory)
+	{
+		super(dim, entitiesPerPixel);
+		this.factory = factory;
+		long planeSize = entitiesPerPixel;
+		for (int d = 0; d < Math.min(2, dim.length); d++) {
+			planeSize *= dim[d];
+		}
+		for (int i = 0; i < numSlices(); i++) {
+			setPlane(i, creator.createArray((int) planeSize));
+		}
+	}
+
+	// -- Img methods --
+
+	/**
+	 * Gets a factory creating further file backed images, such that copies of
+	 * this image are file backed too.
+	 */
+	@Override
+	public MappedImgFactory<T> factory() {
+		return factory;
+	}
+
+}
@@ -0,0 +1,88 @@
+/*
+ * #%L
+ * ImageJ software for multidimensional image processing and analysis.
+ * %%
+ * Copyright (C) 2009 - 2013 Board of Regents of the University of
+ * Wisconsin-Madison, Broad Institute of MIT and Harvard, and Max Planck
+ * Institute of Molecular Cell Biology and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are
+ * those of the authors and should not be interpreted as representing official
+ * policies, either expressed or implied, of any organization.
+ * #L%
+ */
+
+package imagej.data.mapped;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+
+/**
+ * Allocates the memory-mapped temporary files which back the planes of a
+ * {@link MappedPlanarImg}.
+ * 
+ * @author Lee Kamentsky
+ */
+final class MappedStorage {
+
+	private MappedStorage() {
+		// prevent instantiation of utility class
+	}
+
+	/**
+	 * Maps a new, zero-filled temporary file of the given size in the given
+	 * directory (or the default temporary directory, if null). The file is
+	 * deleted straight away where the platform allows it, its space being
+	 * reclaimed once the returned buffer is garbage collected; elsewhere it is
+	 * deleted on exit.
+	 * 
+	 * @throws IllegalStateException if the file cannot be created or mapped.
+	 */
+	static ByteBuffer allocate(final File directory, final long bytes) {
+		try {
+			final File file = File.createTempFile("imagej", ".plane", directory);
+			final RandomAccessFile raf = new RandomAccessFile(file, "rw");
+			final ByteBuffer buffer;
+			try {
+				final FileChannel channel = raf.getChannel();
+				buffer = channel.map(MapMode.READ_WRITE, 0, bytes);
+			}
+			finally {
+				raf.close();
+			}
+			if (!file.delete()) file.deleteOnExit();
+			return buffer.order(ByteOrder.nativeOrder());
+		}
+		catch (final IOException exc) {
+			throw new IllegalStateException("Cannot create file backed plane of " +
+				bytes + " bytes", exc);
+		}
+	}
+
+}
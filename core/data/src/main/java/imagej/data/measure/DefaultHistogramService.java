@@ -0,0 +1,552 @@
+/*
+ * #%L
+ * ImageJ software for multidimensional image processing and analysis.
+ * %%
+ * Copyright (C) 2009 - 2013 Board of Regents of the University of
+ * Wisconsin-Madison, Broad Institute of MIT and Harvard, and Max Planck
+ * Institute of Molecular Cell Biology and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are
+ * those of the authors and should not be interpreted as representing official
+ * policies, either expressed or implied, of any organization.
+ * #L%
+ */
+
+package imagej.data.measure;
+
+import imagej.data.Dataset;
+import imagej.data.PlaneCopier;
+import imagej.data.autoscale.DataRange;
+import imagej.data.event.DatasetDeletedEvent;
+import imagej.data.memory.MemoryConsumer;
+import imagej.data.memory.MemoryService;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.Callable;
+
+import net.imglib2.Cursor;
+import net.imglib2.histogram.BinMapper1d;
+import net.imglib2.histogram.Histogram1d;
+import net.imglib2.histogram.Real1dBinMapper;
+import net.imglib2.meta.Axes;
+import net.imglib2.meta.IntervalUtils;
+import net.imglib2.type.numeric.RealType;
+import net.imglib2.type.numeric.integer.LongType;
+import net.imglib2.view.Views;
+
+import org.scijava.event.EventHandler;
+import org.scijava.plugin.Parameter;
+import org.scijava.plugin.Plugin;
+import org.scijava.service.AbstractService;
+import org.scijava.service.Service;
+import org.scijava.thread.ThreadService;
+
+/**
+ * Default service for computing and caching histograms of {@link Dataset}s.
+ * <p>
+ * Stale planes are scanned concurrently if a {@link ThreadService} is
+ * available, gathering their statistics and bin counts in the same pass.
+ * Plane counts are kept as arrays, so merging them reads no samples; each
+ * {@link Histogram1d} is filled in bulk from the (summed) counts of its planes.
+ * Only the counts for the most recently requested bins are kept per plane, and
+ * the merged histogram for the most recent bins per channel. The bin counts
+ * count against the budget of the {@link MemoryService}, which may drop the
+ * caches of whole datasets.
+ * </p>
+ * 
+ * @author Lee Kamentsky
+ */
+@Plugin(type = Service.class)
+public class DefaultHistogramService extends AbstractService implements
+	HistogramService
+{
+
+	/** The channel number standing for all channels. */
+	private static final long ALL_CHANNELS = -1;
+
+	@Parameter(required = false)
+	private ThreadService threadService;
+
+	@Parameter(required = false)
+	private MemoryService memoryService;
+
+	private final Map<Dataset, Cache> caches = new WeakHashMap<Dataset, Cache>();
+
+	// -- HistogramService methods --
+
+	@Override
+	public synchronized Statistics getPlaneStatistics(final Dataset ds,
+		final long planeNumber)
+	{
+		final Plane plane =
+			planes(ds, Collections.singletonList(planeNumber), null).get(0);
+		return plane.statistics;
+	}
+
+	@Override
+	public synchronized Statistics getChannelStatistics(final Dataset ds,
+		final long channel)
+	{
+		if (channel < 0) throw new IllegalArgumentException("No such channel: " +
+			channel);
+		return merged(ds, channel, null).statistics;
+	}
+
+	@Override
+	public synchronized Statistics getStatistics(final Dataset ds) {
+		return merged(ds, ALL_CHANNELS, null).statistics;
+	}
+
+	@Override
+	public DataRange getPlaneDataRange(final Dataset ds, final long planeNumber)
+	{
+		return range(getPlaneStatistics(ds, planeNumber));
+	}
+
+	@Override
+	public DataRange getDataRange(final Dataset ds) {
+		return range(getStatistics(ds));
+	}
+
+	@Override
+	public synchronized <T extends RealType<T>> Histogram1d<T>
+		getPlaneHistogram(final Dataset ds, final long planeNumber,
+			final double min, final double max, final long binCount)
+	{
+		final Bins bins = new Bins(min, max, binCount);
+		final Plane plane =
+			planes(ds, Collections.singletonList(planeNumber), bins).get(0);
+		if (plane.histogram == null) {
+			plane.histogram = histogram(bins, plane.counts);
+		}
+		return cast(plane.histogram);
+	}
+
+	@Override
+	public synchronized <T extends RealType<T>> Histogram1d<T>
+		getChannelHistogram(final Dataset ds, final long channel,
+			final double min, final double max, final long binCount)
+	{
+		if (channel < 0) throw new IllegalArgumentException("No such channel: " +
+			channel);
+		return cast(merged(ds, channel, new Bins(min, max, binCount)).histogram);
+	}
+
+	@Override
+	public synchronized <T extends RealType<T>> Histogram1d<T> getHistogram(
+		final Dataset ds, final double min, final double max, final long binCount)
+	{
+		final Bins bins = new Bins(min, max, binCount);
+		return cast(merged(ds, ALL_CHANNELS, bins).histogram);
+	}
+
+	@Override
+	public synchronized void clear(final Dataset ds) {
+		caches.remove(ds);
+	}
+
+	// -- Service methods --
+
+	@Override
+	public void initialize() {
+		if (memoryService == null) return;
+		// NB: Dropped histograms are computed again when next requested.
+		memoryService.addConsumer(new MemoryConsumer() {
+
+			@Override
+			public long getMemoryUsage() {
+				synchronized (DefaultHistogramService.this) {
+					long usage = 0;
+					for (final Cache cache : caches.values()) {
+						usage += cache.getMemoryUsage();
+					}
+					return usage;
+				}
+			}
+
+			@Override
+			public long releaseMemory(final long bytes) {
+				synchronized (DefaultHistogramService.this) {
+					long released = 0;
+					final Iterator<Cache> iter = caches.values().iterator();
+					while (released < bytes && iter.hasNext()) {
+						released += iter.next().getMemoryUsage();
+						iter.remove();
+					}
+					return released;
+				}
+			}
+		});
+	}
+
+	// -- Event handlers --
+
+	@EventHandler
+	protected void onEvent(final DatasetDeletedEvent evt) {
+		clear(evt.getObject());
+	}
+
+	// -- Helper methods --
+
+	/** Gets the cache of a Dataset, starting afresh if it was restructured. */
+	private Cache cache(final Dataset ds) {
+		final long[] dims = IntervalUtils.getDims(ds);
+		final Class<?> type = ds.getType().getClass();
+		Cache cache = caches.get(ds);
+		if (cache == null || !Arrays.equals(cache.dims, dims) ||
+			cache.type != type)
+		{
+			cache = new Cache(dims, type);
+			caches.put(ds, cache);
+		}
+		return cache;
+	}
+
+	/**
+	 * Gets the up-to-date entries of the given planes, scanning those whose
+	 * statistics, or histogram with the given bins, are missing.
+	 */
+	private List<Plane> planes(final Dataset ds, final List<Long> planeNumbers,
+		final Bins bins)
+	{
+		final Cache cache = cache(ds);
+		final PlaneCopier copier = new PlaneCopier(ds);
+		final List<Plane> planes = new ArrayList<Plane>(planeNumbers.size());
+		final List<Plane> stale = new ArrayList<Plane>();
+		for (final long planeNumber : planeNumbers) {
+			if (planeNumber < 0 || planeNumber >= copier.planeCount()) {
+				throw new IllegalArgumentException("Plane number out of range: " +
+					planeNumber);
+			}
+			final long stamp = ds.getModificationStamp(planeNumber);
+			Plane plane = cache.planes.get(planeNumber);
+			if (plane == null || plane.stamp != stamp) {
+				plane = new Plane(planeNumber, stamp);
+				cache.planes.put(planeNumber, plane);
+			}
+			planes.add(plane);
+			if (plane.statistics == null || bins != null && !bins.equals(plane.bins))
+			{
+				stale.add(plane);
+			}
+		}
+		scan(ds, copier, stale, bins);
+		return planes;
+	}
+
+	/** Scans the given planes, splitting them among threads if there are many. */
+	private void scan(final Dataset ds, final PlaneCopier copier,
+		final List<Plane> planes, final Bins bins)
+	{
+		if (planes.isEmpty()) return;
+		final long samples = planes.size() * ds.dimension(0) * ds.dimension(1);
+		final int parts =
+			threadService == null ? 1 : Math.min(planes.size(), Partitions
+				.count(samples));
+		final List<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+		for (int p = 0; p < parts; p++) {
+			final List<Plane> group =
+				planes.subList(p * planes.size() / parts, (p + 1) * planes.size() /
+					parts);
+			tasks.add(new Callable<Void>() {
+
+				@Override
+				public Void call() {
+					for (final Plane plane : group) {
+						scan(ds, copier, plane, bins);
+					}
+					return null;
+				}
+			});
+		}
+		Partitions.run(threadService, tasks);
+	}
+
+	/** Gathers the missing statistics and bin counts of a plane in one pass. */
+	@SuppressWarnings({ "rawtypes", "unchecked" })
+	private void scan(final Dataset ds, final PlaneCopier copier,
+		final Plane plane, final Bins bins)
+	{
+		final Statistics statistics =
+			plane.statistics == null ? new Statistics(stats()) : null;
+		final boolean needCounts = bins != null && !bins.equals(plane.bins);
+		final BinMapper1d mapper = needCounts ? bins.createMapper() : null;
+		final long[] counts = needCounts ? new long[(int) bins.count] : null;
+		final Cursor<? extends RealType> cursor =
+			Views.iterable(
+				Views.interval(ds.getImgPlus(), copier.interval(plane.number)))
+				.cursor();
+		while (cursor.hasNext()) {
+			final RealType value = cursor.next();
+			if (statistics != null) statistics.add(value.getRealDouble());
+			if (counts != null) {
+				final long bin = mapper.map(value);
+				if (bin >= 0 && bin < bins.count) counts[(int) bin]++;
+			}
+		}
+		if (statistics != null) plane.statistics = statistics;
+		if (counts != null) {
+			plane.bins = bins;
+			plane.counts = counts;
+			plane.histogram = null;
+		}
+	}
+
+	/**
+	 * Gets the statistics (if bins is null) or histogram of the planes of a
+	 * channel, merging those of its planes if the Dataset changed.
+	 */
+	private Merged merged(final Dataset ds, final long channel, final Bins bins)
+	{
+		final Cache cache = cache(ds);
+		final MergeKey key = new MergeKey(channel, bins);
+		final long stamp = ds.getModificationStamp();
+		Merged merged = cache.merged.get(key);
+		if (merged != null && merged.stamp == stamp) return merged;
+		final List<Plane> planes = planes(ds, planeNumbers(ds, channel), bins);
+		merged = new Merged(stamp);
+		if (bins == null) {
+			merged.statistics = new Statistics(stats());
+			for (final Plane plane : planes) {
+				merged.statistics.merge(plane.statistics);
+			}
+		}
+		else {
+			final long[] counts = new long[(int) bins.count];
+			for (final Plane plane : planes) {
+				for (int bin = 0; bin < counts.length; bin++) {
+					counts[bin] += plane.counts[bin];
+				}
+			}
+			merged.histogram = histogram(bins, counts);
+			// NB: Only the most recent bins of each channel are kept.
+			final Iterator<MergeKey> iter = cache.merged.keySet().iterator();
+			while (iter.hasNext()) {
+				final MergeKey other = iter.next();
+				if (other.channel == channel && other.bins != null) iter.remove();
+			}
+		}
+		cache.merged.put(key, merged);
+		return merged;
+	}
+
+	/** Lists the planes of a channel, or of the whole Dataset. */
+	private List<Long> planeNumbers(final Dataset ds, final long channel) {
+		final int chIndex = ds.dimensionIndex(Axes.CHANNEL);
+		if (channel != ALL_CHANNELS) {
+			if (chIndex < 0 ? channel != 0 : channel >= ds.dimension(chIndex)) {
+				throw new IllegalArgumentException("No such channel: " + channel);
+			}
+			if (chIndex >= 0 && chIndex < 2) {
+				throw new IllegalArgumentException(
+					"Channels do not span whole planes");
+			}
+		}
+		final PlaneCopier copier = new PlaneCopier(ds);
+		final List<Long> planeNumbers = new ArrayList<Long>();
+		for (long p = 0; p < copier.planeCount(); p++) {
+			if (channel == ALL_CHANNELS || chIndex < 0 ||
+				copier.interval(p).min(chIndex) - ds.min(chIndex) == channel)
+			{
+				planeNumbers.add(p);
+			}
+		}
+		return planeNumbers;
+	}
+
+	/** Creates a histogram holding the given counts, one per bin. */
+	@SuppressWarnings({ "rawtypes", "unchecked" })
+	private Histogram1d<?> histogram(final Bins bins, final long[] counts) {
+		final Histogram1d histogram = new Histogram1d(bins.createMapper());
+		final Cursor<LongType> cursor = histogram.dfd().cursor();
+		for (int bin = 0; bin < counts.length; bin++) {
+			cursor.next().set(counts[bin]);
+		}
+		return histogram;
+	}
+
+	private DataRange range(final Statistics statistics) {
+		final double min = statistics.get(Stat.MINIMUM);
+		double max = statistics.get(Stat.MAXIMUM);
+		// NB - never return a display range of zero
+		if (min == max) max += 0.000000000000001;
+		return new DataRange(min, max);
+	}
+
+	private EnumSet<Stat> stats() {
+		return EnumSet.of(Stat.COUNT, Stat.MINIMUM, Stat.MAXIMUM,
+			Stat.ARITHMETIC_MEAN, Stat.SAMPLE_STD_DEV);
+	}
+
+	@SuppressWarnings("unchecked")
+	private <T extends RealType<T>> Histogram1d<T> cast(
+		final Histogram1d<?> histogram)
+	{
+		return (Histogram1d<T>) histogram;
+	}
+
+	// -- Helper classes --
+
+	/** The cached histograms and statistics of one Dataset. */
+	private static class Cache {
+
+		private final long[] dims;
+
+		private final Class<?> type;
+
+		private final Map<Long, Plane> planes = new HashMap<Long, Plane>();
+
+		private final Map<MergeKey, Merged> merged =
+			new HashMap<MergeKey, Merged>();
+
+		private Cache(final long[] dims, final Class<?> type) {
+			this.dims = dims;
+			this.type = type;
+		}
+
+		/** Estimates the bytes held by bin counts, of planes and histograms. */
+		private long getMemoryUsage() {
+			long usage = 0;
+			for (final Plane plane : planes.values()) {
+				if (plane.counts == null) continue;
+				usage += 8L * plane.counts.length;
+				if (plane.histogram != null) usage += 8L * plane.counts.length;
+			}
+			for (final Map.Entry<MergeKey, Merged> entry : merged.entrySet()) {
+				final Bins bins = entry.getKey().bins;
+				if (bins != null) usage += 8L * bins.count;
+			}
+			return usage;
+		}
+	}
+
+	/**
+	 * The statistics and bin counts of one plane, as of a stamp, for the bins
+	 * last requested.
+	 */
+	private static class Plane {
+
+		private final long number;
+
+		private final long stamp;
+
+		private Statistics statistics;
+
+		private Bins bins;
+
+		private long[] counts;
+
+		private Histogram1d<?> histogram;
+
+		private Plane(final long number, final long stamp) {
+			this.number = number;
+			this.stamp = stamp;
+		}
+	}
+
+	/** The statistics or histogram merged from many planes, as of a stamp. */
+	private static class Merged {
+
+		private final long stamp;
+
+		private Statistics statistics;
+
+		private Histogram1d<?> histogram;
+
+		private Merged(final long stamp) {
+			this.stamp = stamp;
+		}
+	}
+
+	/** A mapping of values to bins. */
+	private static class Bins {
+
+		private final double min, max;
+
+		private final long count;
+
+		private Bins(final double min, final double max, final long count) {
+			if (count < 1 || count > Integer.MAX_VALUE) {
+				throw new IllegalArgumentException("Bad bin count: " + count);
+			}
+			this.min = min;
+			this.max = max;
+			this.count = count;
+		}
+
+		@SuppressWarnings("rawtypes")
+		private BinMapper1d createMapper() {
+			return new Real1dBinMapper(min, max, count, false);
+		}
+
+		@Override
+		public boolean equals(final Object o) {
+			if (!(o instanceof Bins)) return false;
+			final Bins other = (Bins) o;
+			return Double.compare(min, other.min) == 0 &&
+				Double.compare(max, other.max) == 0 && count == other.count;
+		}
+
+		@Override
+		public int hashCode() {
+			return Arrays.hashCode(new double[] { min, max, count });
+		}
+	}
+
+	/** Identifies merged statistics (without bins) or histograms. */
+	private static class MergeKey {
+
+		private final long channel;
+
+		private final Bins bins;
+
+		private MergeKey(final long channel, final Bins bins) {
+			this.channel = channel;
+			this.bins = bins;
+		}
+
+		@Override
+		public boolean equals(final Object o) {
+			if (!(o instanceof MergeKey)) return false;
+			final MergeKey other = (MergeKey) o;
+			return channel == other.channel &&
+				(bins == null ? other.bins == null : bins.equals(other.bins));
+		}
+
+		@Override
+		public int hashCode() {
+			return 31 * (int) (channel ^ (channel >>> 32)) +
+				(bins == null ? 0 : bins.hashCode());
+		}
+	}
+
+}
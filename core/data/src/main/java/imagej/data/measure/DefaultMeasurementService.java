@@ -36,18 +36,33 @@
 package imagej.data.measure;
 
 import imagej.data.Dataset;
+import imagej.data.display.ImageDisplay;
+import imagej.data.display.ImageDisplayService;
+import imagej.data.display.OverlayService;
+import imagej.data.overlay.Overlay;
+import imagej.data.table.DefaultResultsTable;
+import imagej.data.table.ResultsTable;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
 import java.util.List;
+import java.util.concurrent.Callable;
 
+import net.imglib2.RandomAccess;
 import net.imglib2.img.Img;
+import net.imglib2.meta.IntervalUtils;
 import net.imglib2.ops.function.Function;
 import net.imglib2.ops.function.real.RealImageFunction;
 import net.imglib2.ops.pointset.PointSet;
+import net.imglib2.ops.pointset.RoiPointSet;
 import net.imglib2.type.numeric.RealType;
 
+import org.scijava.plugin.Parameter;
 import org.scijava.plugin.Plugin;
 import org.scijava.service.AbstractService;
 import org.scijava.service.Service;
+import org.scijava.thread.ThreadService;
 
 // TODO - this service and all related classes do not have to be in the
 // imagej.data package (ij-data subproject). There is only the one reliance on
@@ -66,6 +81,15 @@ public class DefaultMeasurementService extends AbstractService implements
 	MeasurementService
 {
 
+	@Parameter(required = false)
+	private ThreadService threadService;
+
+	@Parameter(required = false)
+	private ImageDisplayService imageDisplayService;
+
+	@Parameter(required = false)
+	private OverlayService overlayService;
+
 	// -- MeasurementService methods --
 
 	/**
@@ -83,6 +107,48 @@ public class DefaultMeasurementService extends AbstractService implements
 		func.compute(region, output);
 	}
 
+	/**
+	 * Measures the value of a {@link Function} given an input region
+	 * {@link PointSet}, splitting large regions into parts which are measured
+	 * concurrently, and places it in a given output value.
+	 * 
+	 * @param func The function to measure.
+	 * @param reducer The combiner of partial results.
+	 * @param region The set of points over which to evaluate the function.
+	 * @param output The variable to place the measurement result in.
+	 */
+	@Override
+	public <T> void measure(final Function<PointSet, T> func,
+		final Reducer<T> reducer, final PointSet region, final T output)
+	{
+		final List<PointSet> parts =
+			threadService == null ? Collections.singletonList(region) : Partitions
+				.split(region, Partitions.count(region.size()));
+		if (parts.size() == 1) {
+			func.compute(region, output);
+			return;
+		}
+		final List<Callable<T>> tasks = new ArrayList<Callable<T>>();
+		for (int i = 0; i < parts.size(); i++) {
+			final PointSet part = parts.get(i);
+			// NB: The first part is measured straight into the output.
+			final Function<PointSet, T> partFunc = i == 0 ? func : func.copy();
+			final T partOutput = i == 0 ? output : func.createOutput();
+			tasks.add(new Callable<T>() {
+
+				@Override
+				public T call() {
+					partFunc.compute(part, partOutput);
+					return partOutput;
+				}
+			});
+		}
+		final List<T> results = Partitions.run(threadService, tasks);
+		for (int i = 1; i < results.size(); i++) {
+			reducer.reduce(results.get(i), output);
+		}
+	}
+
 	/**
 	 * Measures the values of a list of {@link Function}s given an input region
 	 * {@link PointSet} and places the computed values in the given output list.
@@ -105,6 +171,33 @@ public <T> void measure(List<Function<PointSet, T>> funcs, PointSet region,
 		measure(group, region, set);
 	}
 
+	@Override
+	public ResultsTable measure(final Dataset ds,
+		final List<? extends PointSet> regions, final EnumSet<Stat> stats)
+	{
+		return measure(ds, regions, new long[ds.numDimensions()], stats);
+	}
+
+	@Override
+	public ResultsTable measure(final ImageDisplay display,
+		final EnumSet<Stat> stats)
+	{
+		if (imageDisplayService == null || overlayService == null) {
+			throw new IllegalStateException(
+				"Measuring overlays requires the display and overlay services");
+		}
+		final Dataset ds = imageDisplayService.getActiveDataset(display);
+		final long[] plane = new long[ds.numDimensions()];
+		for (int d = 0; d < plane.length; d++) {
+			plane[d] = display.getLongPosition(ds.axis(d).type());
+		}
+		final List<PointSet> regions = new ArrayList<PointSet>();
+		for (final Overlay overlay : overlayService.getOverlays(display)) {
+			regions.add(new RoiPointSet(overlay.getRegionOfInterest()));
+		}
+		return measure(ds, regions, plane, stats);
+	}
+
 	/**
 	 * Creates a {@link RealImageFunction} from an {@link Img} and a given output
 	 * type. This is a convenience constructor. RealImageFunctions give read
@@ -140,4 +233,77 @@ public <T extends RealType<T>> RealImageFunction<?, T> imgFunction(
 		return imgFunction(ds.getImgPlus(), outputType);
 	}
 
+	// -- Helper methods --
+
+	/**
+	 * Measures many regions in one sweep, taking the coordinates which the
+	 * regions lack from the given plane.
+	 */
+	private ResultsTable measure(final Dataset ds,
+		final List<? extends PointSet> regions, final long[] plane,
+		final EnumSet<Stat> stats)
+	{
+		final LabelRuns runs = new LabelRuns(IntervalUtils.getDims(ds));
+		for (int label = 0; label < regions.size(); label++) {
+			runs.add(regions.get(label), label, plane);
+		}
+		final int parts =
+			threadService == null ? 1 : Partitions.count(runs.size());
+		final AccumulatorFactory<Statistics> factory =
+			new AccumulatorFactory<Statistics>()
+		{
+
+			@Override
+			public Statistics create() {
+				return new Statistics(stats);
+			}
+		};
+		final List<Callable<Statistics[]>> tasks =
+			new ArrayList<Callable<Statistics[]>>();
+		for (final List<LabelRuns.Row> rows : runs.split(parts)) {
+			tasks.add(new Callable<Statistics[]>() {
+
+				@Override
+				public Statistics[] call() {
+					final Statistics[] partials = new Statistics[regions.size()];
+					final RandomAccess<? extends RealType<?>> access =
+						ds.getImgPlus().randomAccess();
+					for (final LabelRuns.Row row : rows) {
+						row.sweep(access, factory, partials);
+					}
+					return partials;
+				}
+			});
+		}
+		final List<Statistics[]> results = Partitions.run(threadService, tasks);
+		final Statistics[] totals = results.get(0);
+		for (int i = 1; i < results.size(); i++) {
+			final Statistics[] partials = results.get(i);
+			for (int label = 0; label < totals.length; label++) {
+				if (partials[label] == null) continue;
+				if (totals[label] == null) totals[label] = partials[label];
+				else totals[label].merge(partials[label]);
+			}
+		}
+
+		final ResultsTable table =
+			new DefaultResultsTable(stats.size(), regions.size());
+		int col = 0;
+		for (final Stat stat : stats) {
+			table.setColumnHeader(col, header(stat));
+			for (int label = 0; label < totals.length; label++) {
+				if (totals[label] == null) totals[label] = factory.create();
+				table.setValue(col, label, totals[label].get(stat));
+			}
+			col++;
+		}
+		return table;
+	}
+
+	/** Turns a statistic's name, such as SAMPLE_STD_DEV, into a column header. */
+	private String header(final Stat stat) {
+		final String name = stat.name().replace('_', ' ').toLowerCase();
+		return Character.toUpperCase(name.charAt(0)) + name.substring(1);
+	}
+
 }
@@ -36,55 +36,40 @@
 package imagej.data.measure;
 
 import imagej.data.Dataset;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.concurrent.Callable;
+
+import net.imglib2.Cursor;
+import net.imglib2.RandomAccess;
 import net.imglib2.img.Img;
 import net.imglib2.meta.IntervalUtils;
 import net.imglib2.ops.function.Function;
 import net.imglib2.ops.function.real.RealAlphaTrimmedMeanFunction;
-import net.imglib2.ops.function.real.RealArithmeticMeanFunction;
 import net.imglib2.ops.function.real.RealContraharmonicMeanFunction;
-import net.imglib2.ops.function.real.RealGeometricMeanFunction;
-import net.imglib2.ops.function.real.RealHarmonicMeanFunction;
 import net.imglib2.ops.function.real.RealImageFunction;
-import net.imglib2.ops.function.real.RealMaxFunction;
 import net.imglib2.ops.function.real.RealMedianFunction;
-import net.imglib2.ops.function.real.RealMidpointFunction;
-import net.imglib2.ops.function.real.RealMinFunction;
-import net.imglib2.ops.function.real.RealPopulationKurtosisExcessFunction;
-import net.imglib2.ops.function.real.RealPopulationKurtosisFunction;
-import net.imglib2.ops.function.real.RealPopulationSkewFunction;
-import net.imglib2.ops.function.real.RealPopulationStdDevFunction;
-import net.imglib2.ops.function.real.RealPopulationVarianceFunction;
-import net.imglib2.ops.function.real.RealProductFunction;
-import net.imglib2.ops.function.real.RealSampleKurtosisExcessFunction;
-import net.imglib2.ops.function.real.RealSampleKurtosisFunction;
-import net.imglib2.ops.function.real.RealSampleSkewFunction;
-import net.imglib2.ops.function.real.RealSampleStdDevFunction;
-import net.imglib2.ops.function.real.RealSampleVarianceFunction;
-import net.imglib2.ops.function.real.RealSumFunction;
-import net.imglib2.ops.function.real.RealSumOfSquaredDeviationsFunction;
 import net.imglib2.ops.function.real.RealTrimmedMeanFunction;
 import net.imglib2.ops.function.real.RealWeightedAverageFunction;
 import net.imglib2.ops.function.real.RealWeightedSumFunction;
 import net.imglib2.ops.pointset.HyperVolumePointSet;
 import net.imglib2.ops.pointset.PointSet;
+import net.imglib2.ops.pointset.PointSetIterator;
 import net.imglib2.type.numeric.RealType;
 import net.imglib2.type.numeric.real.DoubleType;
 
+import org.scijava.plugin.Parameter;
 import org.scijava.plugin.Plugin;
 import org.scijava.service.AbstractService;
 import org.scijava.service.Service;
-
-// TODO - make MeasurementService smarter. Compute values without always
-// revisiting the pixels. This current impl goes over pixels once for each
-// measurement. I will mock something up soon. BDZ
+import org.scijava.thread.ThreadService;
 
 // TODO - this service is limited to only the kinds of stats it knows. It can't
 // measure a user provided statistic. This can be done by calling the
 // MeasurementService more directly.
-// Also this service calcs one measure at a time. Our future MeasurementService
-// should be able to batch them together. It also might be nice to be able to
-// specify to this service gather min,var,stdev,median in an array of output
-// doubles.
 
 // TODO - see what IJ1 calculates and provide such methods here and in OPS
 
@@ -92,6 +77,13 @@
 
 /**
  * A service for computing some statistics upon regions of {@link Dataset}s.
+ * Statistics derived from sums and moments are gathered in a single pass by
+ * {@link Statistics}. Large regions are split into parts gathered concurrently
+ * and merged, if a {@link ThreadService} is available. Medians and trimmed
+ * means of integer types of up to 16 bits are read from an exact
+ * {@link IntegerHistogram}, and quantiles of any type are estimated by a
+ * {@link QuantileSketch}. Other order statistics and weighted means are
+ * computed by the corresponding OPS functions.
  * 
  * @author Barry DeZonia
  */
@@ -102,12 +94,51 @@ public class DefaultStatisticsService extends AbstractService implements
 
 	// -- Parameters --
 
+	@Parameter(required = false)
+	private ThreadService threadService;
+
 	// later
 	// @Parameter
 	// private MeasurementService mSrv;
 
 	// -- StatisticsService methods --
 
+	@Override
+	public Statistics compute(final Dataset ds, final PointSet region,
+		final EnumSet<Stat> stats)
+	{
+		return gather(ds, region, new AccumulatorFactory<Statistics>() {
+
+			@Override
+			public Statistics create() {
+				return new Statistics(stats);
+			}
+		});
+	}
+
+	@Override
+	public Statistics compute(final Dataset ds, final EnumSet<Stat> stats) {
+		return gather(ds, new AccumulatorFactory<Statistics>() {
+
+			@Override
+			public Statistics create() {
+				return new Statistics(stats);
+			}
+		});
+	}
+
+	@Override
+	public QuantileSketch sketch(final Dataset ds, final PointSet region,
+		final double epsilon)
+	{
+		return gather(ds, region, sketches(epsilon));
+	}
+
+	@Override
+	public QuantileSketch sketch(final Dataset ds, final double epsilon) {
+		return gather(ds, sketches(epsilon));
+	}
+
 	@Override
 	public double alphaTrimmedMean(final Dataset ds, final PointSet region,
 		final double alpha)
@@ -125,15 +156,12 @@ public double alphaTrimmedMean(final Dataset ds, final double alpha) {
 
 	@Override
 	public double arithmeticMean(final Dataset ds, final PointSet region) {
-		final Function<long[], DoubleType> imgFunc = imgFunc(ds);
-		final Function<PointSet, DoubleType> func =
-			new RealArithmeticMeanFunction<DoubleType>(imgFunc);
-		return measure(func, region);
+		return statistic(ds, region, Stat.ARITHMETIC_MEAN);
 	}
 
 	@Override
 	public double arithmeticMean(final Dataset ds) {
-		return arithmeticMean(ds, allOf(ds));
+		return statistic(ds, Stat.ARITHMETIC_MEAN);
 	}
 
 	@Override
@@ -153,45 +181,38 @@ public double contraharmomicMean(final Dataset ds, final double order) {
 
 	@Override
 	public double geometricMean(final Dataset ds, final PointSet region) {
-		final Function<long[], DoubleType> imgFunc = imgFunc(ds);
-		final Function<PointSet, DoubleType> func =
-			new RealGeometricMeanFunction<DoubleType>(imgFunc);
-		return measure(func, region);
+		return statistic(ds, region, Stat.GEOMETRIC_MEAN);
 	}
 
 	@Override
 	public double geometricMean(final Dataset ds) {
-		return geometricMean(ds, allOf(ds));
+		return statistic(ds, Stat.GEOMETRIC_MEAN);
 	}
 
 	@Override
 	public double harmonicMean(final Dataset ds, final PointSet region) {
-		final Function<long[], DoubleType> imgFunc = imgFunc(ds);
-		final Function<PointSet, DoubleType> func =
-			new RealHarmonicMeanFunction<DoubleType>(imgFunc);
-		return measure(func, region);
+		return statistic(ds, region, Stat.HARMONIC_MEAN);
 	}
 
 	@Override
 	public double harmonicMean(final Dataset ds) {
-		return harmonicMean(ds, allOf(ds));
+		return statistic(ds, Stat.HARMONIC_MEAN);
 	}
 
 	@Override
 	public double maximum(final Dataset ds, final PointSet region) {
-		final Function<long[], DoubleType> imgFunc = imgFunc(ds);
-		final Function<PointSet, DoubleType> func =
-			new RealMaxFunction<DoubleType>(imgFunc);
-		return measure(func, region);
+		return statistic(ds, region, Stat.MAXIMUM);
 	}
 
 	@Override
 	public double maximum(final Dataset ds) {
-		return maximum(ds, allOf(ds));
+		return statistic(ds, Stat.MAXIMUM);
 	}
 
 	@Override
 	public double median(final Dataset ds, final PointSet region) {
+		final AccumulatorFactory<IntegerHistogram> histograms = histograms(ds);
+		if (histograms != null) return gather(ds, region, histograms).median();
 		final Function<long[], DoubleType> imgFunc = imgFunc(ds);
 		final Function<PointSet, DoubleType> func =
 			new RealMedianFunction<DoubleType>(imgFunc);
@@ -200,209 +221,185 @@ public double median(final Dataset ds, final PointSet region) {
 
 	@Override
 	public double median(final Dataset ds) {
+		final AccumulatorFactory<IntegerHistogram> histograms = histograms(ds);
+		if (histograms != null) return gather(ds, histograms).median();
 		return median(ds, allOf(ds));
 	}
 
 	@Override
 	public double midpoint(final Dataset ds, final PointSet region) {
-		final Function<long[], DoubleType> imgFunc = imgFunc(ds);
-		final Function<PointSet, DoubleType> func =
-			new RealMidpointFunction<DoubleType>(imgFunc);
-		return measure(func, region);
+		return statistic(ds, region, Stat.MIDPOINT);
 	}
 
 	@Override
 	public double midpoint(final Dataset ds) {
-		return midpoint(ds, allOf(ds));
+		return statistic(ds, Stat.MIDPOINT);
 	}
 
 	@Override
 	public double minimum(final Dataset ds, final PointSet region) {
-		final Function<long[], DoubleType> imgFunc = imgFunc(ds);
-		final Function<PointSet, DoubleType> func =
-			new RealMinFunction<DoubleType>(imgFunc);
-		return measure(func, region);
+		return statistic(ds, region, Stat.MINIMUM);
 	}
 
 	@Override
 	public double minimum(final Dataset ds) {
-		return minimum(ds, allOf(ds));
+		return statistic(ds, Stat.MINIMUM);
 	}
 
 	@Override
 	public double populationKurtosis(final Dataset ds, final PointSet region) {
-		final Function<long[], DoubleType> imgFunc = imgFunc(ds);
-		final Function<PointSet, DoubleType> func =
-			new RealPopulationKurtosisFunction<DoubleType>(imgFunc);
-		return measure(func, region);
+		return statistic(ds, region, Stat.POPULATION_KURTOSIS);
 	}
 
 	@Override
 	public double populationKurtosis(final Dataset ds) {
-		return populationKurtosis(ds, allOf(ds));
+		return statistic(ds, Stat.POPULATION_KURTOSIS);
 	}
 
 	@Override
-	public double
-		populationKurtosisExcess(final Dataset ds, final PointSet region)
+	public double populationKurtosisExcess(final Dataset ds,
+		final PointSet region)
 	{
-		final Function<long[], DoubleType> imgFunc = imgFunc(ds);
-		final Function<PointSet, DoubleType> func =
-			new RealPopulationKurtosisExcessFunction<DoubleType>(imgFunc);
-		return measure(func, region);
+		return statistic(ds, region, Stat.POPULATION_KURTOSIS_EXCESS);
 	}
 
 	@Override
 	public double populationKurtosisExcess(final Dataset ds) {
-		return populationKurtosisExcess(ds, allOf(ds));
+		return statistic(ds, Stat.POPULATION_KURTOSIS_EXCESS);
 	}
 
 	@Override
 	public double populationSkew(final Dataset ds, final PointSet region) {
-		final Function<long[], DoubleType> imgFunc = imgFunc(ds);
-		final Function<PointSet, DoubleType> func =
-			new RealPopulationSkewFunction<DoubleType>(imgFunc);
-		return measure(func, region);
+		return statistic(ds, region, Stat.POPULATION_SKEW);
 	}
 
 	@Override
 	public double populationSkew(final Dataset ds) {
-		return populationSkew(ds, allOf(ds));
+		return statistic(ds, Stat.POPULATION_SKEW);
 	}
 
 	@Override
 	public double populationStdDev(final Dataset ds, final PointSet region) {
-		final Function<long[], DoubleType> imgFunc = imgFunc(ds);
-		final Function<PointSet, DoubleType> func =
-			new RealPopulationStdDevFunction<DoubleType>(imgFunc);
-		return measure(func, region);
+		return statistic(ds, region, Stat.POPULATION_STD_DEV);
 	}
 
 	@Override
 	public double populationStdDev(final Dataset ds) {
-		return populationStdDev(ds, allOf(ds));
+		return statistic(ds, Stat.POPULATION_STD_DEV);
 	}
 
 	@Override
 	public double populationVariance(final Dataset ds, final PointSet region) {
-		final Function<long[], DoubleType> imgFunc = imgFunc(ds);
-		final Function<PointSet, DoubleType> func =
-			new RealPopulationVarianceFunction<DoubleType>(imgFunc);
-		return measure(func, region);
+		return statistic(ds, region, Stat.POPULATION_VARIANCE);
 	}
 
 	@Override
 	public double populationVariance(final Dataset ds) {
-		return populationVariance(ds, allOf(ds));
+		return statistic(ds, Stat.POPULATION_VARIANCE);
 	}
 
 	@Override
 	public double product(final Dataset ds, final PointSet region) {
-		final Function<long[], DoubleType> imgFunc = imgFunc(ds);
-		final Function<PointSet, DoubleType> func =
-			new RealProductFunction<DoubleType>(imgFunc);
-		return measure(func, region);
+		return statistic(ds, region, Stat.PRODUCT);
 	}
 
 	@Override
 	public double product(final Dataset ds) {
-		return product(ds, allOf(ds));
+		return statistic(ds, Stat.PRODUCT);
+	}
+
+	@Override
+	public double quantile(final Dataset ds, final PointSet region,
+		final double q, final double epsilon)
+	{
+		return sketch(ds, region, epsilon).quantile(q);
+	}
+
+	@Override
+	public double quantile(final Dataset ds, final double q,
+		final double epsilon)
+	{
+		return sketch(ds, epsilon).quantile(q);
 	}
 
 	@Override
 	public double sampleKurtosis(final Dataset ds, final PointSet region) {
-		final Function<long[], DoubleType> imgFunc = imgFunc(ds);
-		final Function<PointSet, DoubleType> func =
-			new RealSampleKurtosisFunction<DoubleType>(imgFunc);
-		return measure(func, region);
+		return statistic(ds, region, Stat.SAMPLE_KURTOSIS);
 	}
 
 	@Override
 	public double sampleKurtosis(final Dataset ds) {
-		return sampleKurtosis(ds, allOf(ds));
+		return statistic(ds, Stat.SAMPLE_KURTOSIS);
 	}
 
 	@Override
 	public double sampleKurtosisExcess(final Dataset ds, final PointSet region) {
-		final Function<long[], DoubleType> imgFunc = imgFunc(ds);
-		final Function<PointSet, DoubleType> func =
-			new RealSampleKurtosisExcessFunction<DoubleType>(imgFunc);
-		return measure(func, region);
+		return statistic(ds, region, Stat.SAMPLE_KURTOSIS_EXCESS);
 	}
 
 	@Override
 	public double sampleKurtosisExcess(final Dataset ds) {
-		return sampleKurtosisExcess(ds, allOf(ds));
+		return statistic(ds, Stat.SAMPLE_KURTOSIS_EXCESS);
 	}
 
 	@Override
 	public double sampleSkew(final Dataset ds, final PointSet region) {
-		final Function<long[], DoubleType> imgFunc = imgFunc(ds);
-		final Function<PointSet, DoubleType> func =
-			new RealSampleSkewFunction<DoubleType>(imgFunc);
-		return measure(func, region);
+		return statistic(ds, region, Stat.SAMPLE_SKEW);
 	}
 
 	@Override
 	public double sampleSkew(final Dataset ds) {
-		return sampleSkew(ds, allOf(ds));
+		return statistic(ds, Stat.SAMPLE_SKEW);
 	}
 
 	@Override
 	public double sampleStdDev(final Dataset ds, final PointSet region) {
-		final Function<long[], DoubleType> imgFunc = imgFunc(ds);
-		final Function<PointSet, DoubleType> func =
-			new RealSampleStdDevFunction<DoubleType>(imgFunc);
-		return measure(func, region);
+		return statistic(ds, region, Stat.SAMPLE_STD_DEV);
 	}
 
 	@Override
 	public double sampleStdDev(final Dataset ds) {
-		return sampleStdDev(ds, allOf(ds));
+		return statistic(ds, Stat.SAMPLE_STD_DEV);
 	}
 
 	@Override
 	public double sampleVariance(final Dataset ds, final PointSet region) {
-		final Function<long[], DoubleType> imgFunc = imgFunc(ds);
-		final Function<PointSet, DoubleType> func =
-			new RealSampleVarianceFunction<DoubleType>(imgFunc);
-		return measure(func, region);
+		return statistic(ds, region, Stat.SAMPLE_VARIANCE);
 	}
 
 	@Override
 	public double sampleVariance(final Dataset ds) {
-		return sampleVariance(ds, allOf(ds));
+		return statistic(ds, Stat.SAMPLE_VARIANCE);
 	}
 
 	@Override
 	public double sum(final Dataset ds, final PointSet region) {
-		final Function<long[], DoubleType> imgFunc = imgFunc(ds);
-		final Function<PointSet, DoubleType> func =
-			new RealSumFunction<DoubleType>(imgFunc);
-		return measure(func, region);
+		return statistic(ds, region, Stat.SUM);
 	}
 
 	@Override
 	public double sum(final Dataset ds) {
-		return sum(ds, allOf(ds));
+		return statistic(ds, Stat.SUM);
 	}
 
 	@Override
-	public double sumOfSquaredDeviations(final Dataset ds, final PointSet region)
+	public double sumOfSquaredDeviations(final Dataset ds,
+		final PointSet region)
 	{
-		final Function<long[], DoubleType> imgFunc = imgFunc(ds);
-		final Function<PointSet, DoubleType> func =
-			new RealSumOfSquaredDeviationsFunction<DoubleType>(imgFunc);
-		return measure(func, region);
+		return statistic(ds, region, Stat.SUM_OF_SQUARED_DEVIATIONS);
 	}
 
 	@Override
 	public double sumOfSquaredDeviations(final Dataset ds) {
-		return sumOfSquaredDeviations(ds, allOf(ds));
+		return statistic(ds, Stat.SUM_OF_SQUARED_DEVIATIONS);
 	}
 
 	@Override
 	public double trimmedMean(Dataset ds, PointSet region, int halfTrimSize) {
+		final AccumulatorFactory<IntegerHistogram> histograms = histograms(ds);
+		if (histograms != null) {
+			return gather(ds, region, histograms).trimmedMean(halfTrimSize);
+		}
 		final Function<long[], DoubleType> imgFunc = imgFunc(ds);
 		final Function<PointSet, DoubleType> func =
 			new RealTrimmedMeanFunction<DoubleType>(imgFunc, halfTrimSize);
@@ -411,6 +408,10 @@ public double trimmedMean(Dataset ds, PointSet region, int halfTrimSize) {
 
 	@Override
 	public double trimmedMean(Dataset ds, int halfTrimSize) {
+		final AccumulatorFactory<IntegerHistogram> histograms = histograms(ds);
+		if (histograms != null) {
+			return gather(ds, histograms).trimmedMean(halfTrimSize);
+		}
 		return trimmedMean(ds, allOf(ds), halfTrimSize);
 	}
 
@@ -441,6 +442,118 @@ public PointSet allOf(final Dataset ds) {
 
 	// -- private helpers --
 
+	/**
+	 * Accumulates the values within a region, gathering parts of the region
+	 * concurrently if it is large.
+	 */
+	private <A extends Accumulator<A>> A gather(final Dataset ds,
+		final PointSet region, final AccumulatorFactory<A> factory)
+	{
+		final List<PointSet> parts =
+			threadService == null ? Collections.singletonList(region) : Partitions
+				.split(region, Partitions.count(region.size()));
+		final List<Callable<A>> tasks = new ArrayList<Callable<A>>();
+		for (final PointSet part : parts) {
+			tasks.add(new Callable<A>() {
+
+				@Override
+				public A call() {
+					final A accumulator = factory.create();
+					final RandomAccess<? extends RealType<?>> access =
+						ds.getImgPlus().randomAccess();
+					final PointSetIterator iter = part.iterator();
+					while (iter.hasNext()) {
+						access.setPosition(iter.next());
+						accumulator.add(access.get().getRealDouble());
+					}
+					return accumulator;
+				}
+			});
+		}
+		return merge(tasks);
+	}
+
+	/**
+	 * Accumulates all the values of a Dataset, gathering contiguous ranges of
+	 * them concurrently if there are many.
+	 */
+	private <A extends Accumulator<A>> A gather(final Dataset ds,
+		final AccumulatorFactory<A> factory)
+	{
+		final long size = ds.getImgPlus().size();
+		final int parts = threadService == null ? 1 : Partitions.count(size);
+		final List<Callable<A>> tasks = new ArrayList<Callable<A>>();
+		for (int p = 0; p < parts; p++) {
+			final long start = p * size / parts;
+			final long end = (p + 1) * size / parts;
+			tasks.add(new Callable<A>() {
+
+				@Override
+				public A call() {
+					final A accumulator = factory.create();
+					final Cursor<? extends RealType<?>> cursor =
+						ds.getImgPlus().cursor();
+					cursor.jumpFwd(start);
+					for (long i = start; i < end; i++) {
+						accumulator.add(cursor.next().getRealDouble());
+					}
+					return accumulator;
+				}
+			});
+		}
+		return merge(tasks);
+	}
+
+	/**
+	 * Runs the tasks accumulating parts of a region, and merges their results
+	 * into the accumulation of the whole region.
+	 */
+	private <A extends Accumulator<A>> A merge(final List<Callable<A>> tasks) {
+		final List<A> partials = Partitions.run(threadService, tasks);
+		final A total = partials.get(0);
+		for (int i = 1; i < partials.size(); i++) {
+			total.merge(partials.get(i));
+		}
+		return total;
+	}
+
+	private AccumulatorFactory<QuantileSketch> sketches(final double epsilon) {
+		return new AccumulatorFactory<QuantileSketch>() {
+
+			@Override
+			public QuantileSketch create() {
+				return new QuantileSketch(epsilon);
+			}
+		};
+	}
+
+	/**
+	 * Gets a factory of exact histograms of the values of the given Dataset, or
+	 * null if its type has too many values to count them all.
+	 */
+	private AccumulatorFactory<IntegerHistogram> histograms(final Dataset ds) {
+		if (!ds.isInteger() || ds.getType().getBitsPerPixel() > 16) return null;
+		final long min = (long) ds.getType().getMinValue();
+		final long max = (long) ds.getType().getMaxValue();
+		return new AccumulatorFactory<IntegerHistogram>() {
+
+			@Override
+			public IntegerHistogram create() {
+				return new IntegerHistogram(min, max);
+			}
+		};
+	}
+
+	private double statistic(final Dataset ds, final PointSet region,
+		final Stat stat)
+	{
+		return compute(ds, region, EnumSet.of(stat)).get(stat);
+	}
+
+	private double statistic(final Dataset ds, final Stat stat) {
+		return compute(ds, EnumSet.of(stat)).get(stat);
+	}
+
 	@SuppressWarnings({ "unchecked", "rawtypes" })
 	private RealImageFunction<?, DoubleType> imgFunc(final Dataset ds) {
 		final Img<? extends RealType<?>> imgPlus = ds.getImgPlus();
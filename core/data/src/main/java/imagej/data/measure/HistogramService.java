@@ -0,0 +1,110 @@
+/*
+ * #%L
+ * ImageJ software for multidimensional image processing and analysis.
+ * %%
+ * Copyright (C) 2009 - 2013 Board of Regents of the University of
+ * Wisconsin-Madison, Broad Institute of MIT and Harvard, and Max Planck
+ * Institute of Molecular Cell Biology and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are
+ * those of the authors and should not be interpreted as representing official
+ * policies, either expressed or implied, of any organization.
+ * #L%
+ */
+
+package imagej.data.measure;
+
+import imagej.data.Dataset;
+import imagej.data.autoscale.DataRange;
+import imagej.service.ImageJService;
+import net.imglib2.histogram.Histogram1d;
+import net.imglib2.type.numeric.RealType;
+
+/**
+ * A service that computes and caches histograms of {@link Dataset}s, so that
+ * the tools showing them share a single scan of the data.
+ * <p>
+ * Each plane, numbered as in {@link Dataset#getPlane(int)}, is scanned at most
+ * once per change: the {@link Statistics} of its samples (count, minimum,
+ * maximum, mean and sample standard deviation) and its histograms are cached
+ * until {@link Dataset#getModificationStamp(long)} reports that the plane
+ * changed. Histograms and statistics of channels and of whole datasets are
+ * merged from those of their planes without reading the samples again.
+ * </p>
+ * <p>
+ * Histograms are binned by a {@link net.imglib2.histogram.Real1dBinMapper}
+ * from a minimum to a maximum value, without tail bins. The returned
+ * histograms and statistics are shared and must not be modified. The bin
+ * frequencies of the histograms are filled in bulk, so their total counts are
+ * not tracked; sum the frequencies (e.g. of {@link Histogram1d#toLongArray()})
+ * instead.
+ * </p>
+ * 
+ * @author Lee Kamentsky
+ */
+public interface HistogramService extends ImageJService {
+
+	/** Gets the statistics of the samples of one plane of a {@link Dataset}. */
+	Statistics getPlaneStatistics(Dataset ds, long planeNumber);
+
+	/**
+	 * Gets the statistics of the samples of one channel of a {@link Dataset}.
+	 * A Dataset without a channel axis has only channel 0.
+	 */
+	Statistics getChannelStatistics(Dataset ds, long channel);
+
+	/** Gets the statistics of all the samples of a {@link Dataset}. */
+	Statistics getStatistics(Dataset ds);
+
+	/**
+	 * Gets the range of the samples of one plane of a {@link Dataset}. As with
+	 * the default autoscale method, the range is never empty.
+	 */
+	DataRange getPlaneDataRange(Dataset ds, long planeNumber);
+
+	/**
+	 * Gets the range of all the samples of a {@link Dataset}. As with the
+	 * default autoscale method, the range is never empty.
+	 */
+	DataRange getDataRange(Dataset ds);
+
+	/** Gets a histogram of the samples of one plane of a {@link Dataset}. */
+	<T extends RealType<T>> Histogram1d<T> getPlaneHistogram(Dataset ds,
+		long planeNumber, double min, double max, long binCount);
+
+	/**
+	 * Gets a histogram of the samples of one channel of a {@link Dataset}. A
+	 * Dataset without a channel axis has only channel 0.
+	 */
+	<T extends RealType<T>> Histogram1d<T> getChannelHistogram(Dataset ds,
+		long channel, double min, double max, long binCount);
+
+	/** Gets a histogram of all the samples of a {@link Dataset}. */
+	<T extends RealType<T>> Histogram1d<T> getHistogram(Dataset ds,
+		double min, double max, long binCount);
+
+	/** Discards the cached histograms and statistics of a {@link Dataset}. */
+	void clear(Dataset ds);
+
+}
@@ -0,0 +1,151 @@
+/*
+ * #%L
+ * ImageJ software for multidimensional image processing and analysis.
+ * %%
+ * Copyright (C) 2009 - 2013 Board of Regents of the University of
+ * Wisconsin-Madison, Broad Institute of MIT and Harvard, and Max Planck
+ * Institute of Molecular Cell Biology and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are
+ * those of the authors and should not be interpreted as representing official
+ * policies, either expressed or implied, of any organization.
+ * #L%
+ */
+
+package imagej.data.measure;
+
+/**
+ * An exact histogram of integer samples with up to
+ * {@value #MAX_BINS} distinct values, such as those of 16-bit and smaller
+ * integer types. Order statistics such as the median are read from the
+ * counts, without keeping the samples themselves.
+ * 
+ * @author Lee Kamentsky
+ */
+public class IntegerHistogram implements Accumulator<IntegerHistogram> {
+
+	/** The largest number of distinct values a histogram may count. */
+	public static final int MAX_BINS = 1 << 16;
+
+	private final long min;
+
+	private final long[] counts;
+
+	private long n;
+
+	/** Creates an empty histogram of the integers from min to max. */
+	public IntegerHistogram(final long min, final long max) {
+		if (max < min || max - min >= MAX_BINS) {
+			throw new IllegalArgumentException("Cannot count the values from " +
+				min + " to " + max);
+		}
+		this.min = min;
+		counts = new long[(int) (max - min + 1)];
+	}
+
+	// -- IntegerHistogram methods --
+
+	/** Gets the number of samples added. */
+	public long getCount() {
+		return n;
+	}
+
+	/** Gets the number of samples of the given value. */
+	public long getCount(final long value) {
+		final long bin = value - min;
+		return bin < 0 || bin >= counts.length ? 0 : counts[(int) bin];
+	}
+
+	/** Gets the sample of the given rank, from 0 to the count - 1. */
+	public long value(final long rank) {
+		if (rank < 0 || rank >= n) {
+			throw new IllegalArgumentException("Rank out of range: " + rank);
+		}
+		long seen = 0;
+		for (int bin = 0; bin < counts.length; bin++) {
+			seen += counts[bin];
+			if (seen > rank) return min + bin;
+		}
+		throw new IllegalStateException("Counts do not add up");
+	}
+
+	/**
+	 * Gets the median of the samples: the middle sample, or the mean of the
+	 * middle two. Returns NaN if there are none.
+	 */
+	public double median() {
+		if (n == 0) return Double.NaN;
+		if (n % 2 == 1) return value(n / 2);
+		return (value(n / 2 - 1) + value(n / 2)) / 2.0;
+	}
+
+	/**
+	 * Gets the mean of the samples once the given number of smallest and
+	 * largest samples are discarded. Returns NaN if none remain.
+	 */
+	public double trimmedMean(final long trim) {
+		final long first = trim, last = n - trim; // ranks [first, last)
+		if (trim < 0 || first >= last) return Double.NaN;
+		double sum = 0;
+		long seen = 0;
+		for (int bin = 0; bin < counts.length && seen < last; bin++) {
+			final long start = Math.max(seen, first);
+			seen += counts[bin];
+			final long end = Math.min(seen, last);
+			if (end > start) sum += (double) (end - start) * (min + bin);
+		}
+		return sum / (last - first);
+	}
+
+	// -- Accumulator methods --
+
+	@Override
+	public void add(final double value) {
+		final long bin = (long) value - min;
+		if (bin < 0 || bin >= counts.length) {
+			throw new IllegalArgumentException("Value out of range: " + value);
+		}
+		counts[(int) bin]++;
+		n++;
+	}
+
+	/**
+	 * Adds the counts of another histogram.
+	 * 
+	 * @throws IllegalArgumentException if the histograms count different
+	 *           values.
+	 */
+	@Override
+	public void merge(final IntegerHistogram other) {
+		if (other.min != min || other.counts.length != counts.length) {
+			throw new IllegalArgumentException(
+				"Cannot merge histograms of different values");
+		}
+		for (int bin = 0; bin < counts.length; bin++) {
+			counts[bin] += other.counts[bin];
+		}
+		n += other.n;
+	}
+
+}
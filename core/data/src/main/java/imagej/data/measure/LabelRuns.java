@@ -0,0 +1,263 @@
+/*
+ * #%L
+ * ImageJ software for multidimensional image processing and analysis.
+ * %%
+ * Copyright (C) 2009 - 2013 Board of Regents of the University of
+ * Wisconsin-Madison, Broad Institute of MIT and Harvard, and Max Planck
+ * Institute of Molecular Cell Biology and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are
+ * those of the authors and should not be interpreted as representing official
+ * policies, either expressed or implied, of any organization.
+ * #L%
+ */
+
+package imagej.data.measure;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.TreeMap;
+
+import net.imglib2.RandomAccess;
+import net.imglib2.ops.pointset.PointSet;
+import net.imglib2.ops.pointset.PointSetIterator;
+import net.imglib2.type.numeric.RealType;
+
+/**
+ * The points of many labeled regions of an image, rasterized as runs of
+ * consecutive points along the first dimension and grouped by row. Sweeping
+ * the rows visits every point of every region reading each sample once, even
+ * where regions overlap.
+ * 
+ * @author Lee Kamentsky
+ */
+final class LabelRuns {
+
+	private final long[] dims;
+
+	/** The rows holding runs, ordered as the samples are laid out. */
+	private final TreeMap<long[], Row> rows = new TreeMap<long[], Row>(
+		new Comparator<long[]>() {
+
+			@Override
+			public int compare(final long[] a, final long[] b) {
+				for (int d = a.length - 1; d >= 0; d--) {
+					if (a[d] != b[d]) return a[d] < b[d] ? -1 : 1;
+				}
+				return 0;
+			}
+		});
+
+	private long size;
+
+	/** Creates an empty set of runs within an image of the given dimensions. */
+	LabelRuns(final long[] dims) {
+		this.dims = dims.clone();
+	}
+
+	/** Gets the total length of the runs. */
+	long size() {
+		return size;
+	}
+
+	/**
+	 * Adds the points of a region under the given label. Regions with fewer
+	 * dimensions than the image take their remaining coordinates from the
+	 * origin. Points outside the image are dropped.
+	 */
+	void add(final PointSet region, final int label, final long[] origin) {
+		final long[] pos = origin.clone();
+		Row row = null;
+		long start = 0, end = -1;
+		final PointSetIterator iter = region.iterator();
+		while (iter.hasNext()) {
+			final long[] point = iter.next();
+			final int n = Math.min(point.length, dims.length);
+			boolean sameRow = row != null;
+			boolean inside = true;
+			for (int d = 0; d < n; d++) {
+				if (d > 0 && pos[d] != point[d]) sameRow = false;
+				pos[d] = point[d];
+				if (pos[d] < 0 || pos[d] >= dims[d]) inside = false;
+			}
+			if (!inside) continue;
+			if (sameRow && pos[0] == end + 1) {
+				end++;
+				continue;
+			}
+			if (row != null) add(row, start, end, label);
+			row = row(pos);
+			start = end = pos[0];
+		}
+		if (row != null) add(row, start, end, label);
+	}
+
+	/**
+	 * Splits the rows into up to the given number of groups of consecutive
+	 * rows, each holding about the same total length of runs.
+	 */
+	List<List<Row>> split(final int parts) {
+		final List<List<Row>> groups = new ArrayList<List<Row>>();
+		List<Row> group = new ArrayList<Row>();
+		long seen = 0;
+		for (final Row row : rows.values()) {
+			group.add(row);
+			seen += row.size;
+			if (seen * parts >= (groups.size() + 1) * size) {
+				groups.add(group);
+				group = new ArrayList<Row>();
+			}
+		}
+		if (!group.isEmpty() || groups.isEmpty()) groups.add(group);
+		return groups;
+	}
+
+	// -- Helper methods --
+
+	private Row row(final long[] pos) {
+		final long[] key = pos.clone();
+		key[0] = 0;
+		Row row = rows.get(key);
+		if (row == null) {
+			row = new Row(key);
+			rows.put(key, row);
+		}
+		return row;
+	}
+
+	private void add(final Row row, final long start, final long end,
+		final int label)
+	{
+		row.add(start, end, label);
+		size += end - start + 1;
+	}
+
+	// -- Helper classes --
+
+	/** The runs of one row of an image. */
+	static final class Row {
+
+		private final long[] position;
+
+		private long[] starts = new long[4];
+
+		private long[] ends = new long[4];
+
+		private int[] labels = new int[4];
+
+		private int count;
+
+		private long size;
+
+		private boolean sorted = true;
+
+		private Row(final long[] position) {
+			this.position = position;
+		}
+
+		/**
+		 * Adds the samples of each run of the row to the accumulator of its
+		 * label, creating accumulators as needed.
+		 */
+		<A extends Accumulator<A>> void sweep(
+			final RandomAccess<? extends RealType<?>> access,
+			final AccumulatorFactory<A> factory, final A[] accumulators)
+		{
+			sort();
+			access.setPosition(position);
+			final int[] active = new int[count];
+			int activeCount = 0;
+			int next = 0;
+			long x = 0;
+			while (next < count || activeCount > 0) {
+				if (activeCount == 0) {
+					x = starts[next];
+					access.setPosition(x, 0);
+				}
+				while (next < count && starts[next] <= x) {
+					active[activeCount++] = next++;
+				}
+				final double value = access.get().getRealDouble();
+				int kept = 0;
+				for (int i = 0; i < activeCount; i++) {
+					final int run = active[i];
+					final int label = labels[run];
+					if (accumulators[label] == null) {
+						accumulators[label] = factory.create();
+					}
+					accumulators[label].add(value);
+					if (ends[run] > x) active[kept++] = run;
+				}
+				activeCount = kept;
+				x++;
+				access.fwd(0);
+			}
+		}
+
+		private void add(final long start, final long end, final int label) {
+			if (count == starts.length) {
+				starts = Arrays.copyOf(starts, 2 * count);
+				ends = Arrays.copyOf(ends, 2 * count);
+				labels = Arrays.copyOf(labels, 2 * count);
+			}
+			if (count > 0 && start < starts[count - 1]) sorted = false;
+			starts[count] = start;
+			ends[count] = end;
+			labels[count++] = label;
+			size += end - start + 1;
+		}
+
+		/** Orders the runs by where they start. */
+		private void sort() {
+			if (sorted) return;
+			final Integer[] order = new Integer[count];
+			for (int i = 0; i < count; i++) {
+				order[i] = i;
+			}
+			Arrays.sort(order, new Comparator<Integer>() {
+
+				@Override
+				public int compare(final Integer a, final Integer b) {
+					if (starts[a] == starts[b]) return 0;
+					return starts[a] < starts[b] ? -1 : 1;
+				}
+			});
+			final long[] sortedStarts = new long[count];
+			final long[] sortedEnds = new long[count];
+			final int[] sortedLabels = new int[count];
+			for (int i = 0; i < count; i++) {
+				sortedStarts[i] = starts[order[i]];
+				sortedEnds[i] = ends[order[i]];
+				sortedLabels[i] = labels[order[i]];
+			}
+			starts = sortedStarts;
+			ends = sortedEnds;
+			labels = sortedLabels;
+			sorted = true;
+		}
+	}
+
+}
@@ -36,8 +36,12 @@
 package imagej.data.measure;
 
 import imagej.data.Dataset;
+import imagej.data.display.ImageDisplay;
+import imagej.data.overlay.Overlay;
+import imagej.data.table.ResultsTable;
 import imagej.service.ImageJService;
 
+import java.util.EnumSet;
 import java.util.List;
 
 import net.imglib2.img.Img;
@@ -70,6 +74,22 @@ public interface MeasurementService extends ImageJService {
 	 */
 	<T> void measure(Function<PointSet, T> func, PointSet region, T output);
 
+	/**
+	 * Measures the value of a {@link Function} given an input region
+	 * {@link PointSet}, splitting large regions into parts which are measured
+	 * concurrently, and places it in a given output value. Each part is measured
+	 * by a {@link Function#copy()} of the function into its own
+	 * {@link Function#createOutput()}, and the partial results are combined by
+	 * the reducer. Only hyper-volume regions are split.
+	 * 
+	 * @param func The function to measure.
+	 * @param reducer The combiner of partial results.
+	 * @param region The set of points over which to evaluate the function.
+	 * @param output The variable to place the measurement result in.
+	 */
+	<T> void measure(Function<PointSet, T> func, Reducer<T> reducer,
+		PointSet region, T output);
+
 	/**
 	 * Measures the values of a list of {@link Function}s given an input region
 	 * {@link PointSet} and places the computed values in the given output list.
@@ -81,6 +101,36 @@ public interface MeasurementService extends ImageJService {
 	<T> void measure(List<Function<PointSet, T>> funcs, PointSet region,
 		List<T> outputs);
 
+	/**
+	 * Gathers a set of statistics for each of many {@link PointSet} regions of a
+	 * {@link Dataset} in a single sweep of its samples, rather than a pass per
+	 * region. The regions are first rasterized into runs along each row, so the
+	 * samples shared by overlapping regions are read once. Regions with fewer
+	 * dimensions than the Dataset are measured in its first plane.
+	 * 
+	 * @param ds The Dataset to measure.
+	 * @param regions The regions to measure.
+	 * @param stats The statistics to gather for each region.
+	 * @return A table with a row per region, in order, and a column per
+	 *         statistic.
+	 */
+	ResultsTable measure(Dataset ds, List<? extends PointSet> regions,
+		EnumSet<Stat> stats);
+
+	/**
+	 * Gathers a set of statistics for each {@link Overlay} of an
+	 * {@link ImageDisplay}, measuring its active {@link Dataset} in the
+	 * display's current plane in a single sweep.
+	 * 
+	 * @param display The display whose overlays to measure.
+	 * @param stats The statistics to gather for each overlay.
+	 * @return A table with a row per overlay, in the order of
+	 *         {@link imagej.data.display.OverlayService#getOverlays(ImageDisplay)},
+	 *         and a column per statistic.
+	 * @see #measure(Dataset, List, EnumSet)
+	 */
+	ResultsTable measure(ImageDisplay display, EnumSet<Stat> stats);
+
 	/**
 	 * Creates a {@link RealImageFunction} from an {@link Img} and a given output
 	 * type. This is a convenience constructor. RealImageFunctions give read
@@ -0,0 +1,134 @@
+/*
+ * #%L
+ * ImageJ software for multidimensional image processing and analysis.
+ * %%
+ * Copyright (C) 2009 - 2013 Board of Regents of the University of
+ * Wisconsin-Madison, Broad Institute of MIT and Harvard, and Max Planck
+ * Institute of Molecular Cell Biology and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are
+ * those of the authors and should not be interpreted as representing official
+ * policies, either expressed or implied, of any organization.
+ * #L%
+ */
+
+package imagej.data.measure;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+import net.imglib2.ops.pointset.HyperVolumePointSet;
+import net.imglib2.ops.pointset.PointSet;
+
+import org.scijava.thread.ThreadService;
+
+/**
+ * Splits regions into parts which can be measured concurrently, and runs the
+ * measurements of the parts on a {@link ThreadService}.
+ * 
+ * @author Lee Kamentsky
+ */
+final class Partitions {
+
+	/** Fewest samples worth measuring on a thread of their own. */
+	static final long MIN_SAMPLES_PER_THREAD = 1 << 18;
+
+	private Partitions() {
+		// prevent instantiation of utility class
+	}
+
+	/** Gets the number of parts worth splitting the given number of samples. */
+	static int count(final long size) {
+		final long maxParts = Math.max(1, size / MIN_SAMPLES_PER_THREAD);
+		return (int) Math.min(Runtime.getRuntime().availableProcessors(), maxParts);
+	}
+
+	/**
+	 * Splits a region into up to the given number of disjoint parts, as slabs
+	 * along the outermost dimension with more than one point. Only
+	 * {@link HyperVolumePointSet}s are split; other regions, whose points can
+	 * only be found by iterating them, are returned whole.
+	 */
+	static List<PointSet> split(final PointSet region, final int parts) {
+		if (parts <= 1 || !(region instanceof HyperVolumePointSet)) {
+			return Collections.singletonList(region);
+		}
+		final long[] min = region.findBoundMin();
+		final long[] max = region.findBoundMax();
+		int d = min.length - 1;
+		while (d >= 0 && max[d] == min[d]) d--;
+		if (d < 0) return Collections.singletonList(region);
+		final long extent = max[d] - min[d] + 1;
+		final int count = (int) Math.min(parts, extent);
+		final List<PointSet> slabs = new ArrayList<PointSet>(count);
+		for (int i = 0; i < count; i++) {
+			final long[] slabMin = min.clone();
+			final long[] slabMax = max.clone();
+			slabMin[d] = min[d] + i * extent / count;
+			slabMax[d] = min[d] + (i + 1) * extent / count - 1;
+			slabs.add(new HyperVolumePointSet(slabMin, slabMax));
+		}
+		return slabs;
+	}
+
+	/**
+	 * Runs the given tasks, all but the first on the service's threads and the
+	 * first on the calling thread, and gets their results in order. A single
+	 * task needs no service.
+	 */
+	static <T> List<T> run(final ThreadService threadService,
+		final List<Callable<T>> tasks)
+	{
+		final List<Future<T>> futures = new ArrayList<Future<T>>();
+		for (int i = 1; i < tasks.size(); i++) {
+			futures.add(threadService.run(tasks.get(i)));
+		}
+		final List<T> results = new ArrayList<T>(tasks.size());
+		try {
+			results.add(tasks.get(0).call());
+			for (final Future<T> future : futures) {
+				results.add(future.get());
+			}
+		}
+		catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while measuring", e);
+		}
+		catch (final ExecutionException e) {
+			throw new IllegalStateException("Error measuring region", e.getCause());
+		}
+		catch (final RuntimeException e) {
+			throw e;
+		}
+		catch (final Exception e) {
+			throw new IllegalStateException("Error measuring region", e);
+		}
+		return results;
+	}
+
+}
@@ -0,0 +1,225 @@
+/*
+ * #%L
+ * ImageJ software for multidimensional image processing and analysis.
+ * %%
+ * Copyright (C) 2009 - 2013 Board of Regents of the University of
+ * Wisconsin-Madison, Broad Institute of MIT and Harvard, and Max Planck
+ * Institute of Molecular Cell Biology and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are
+ * those of the authors and should not be interpreted as representing official
+ * policies, either expressed or implied, of any organization.
+ * #L%
+ */
+
+package imagej.data.measure;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * A mergeable sketch of a stream of samples, from which quantiles can be
+ * estimated in memory independent of the number of samples.
+ * <p>
+ * Samples are kept in a stack of buffers, each sample at level h standing for
+ * 2<sup>h</sup> of the original samples. When a buffer fills up it is sorted
+ * and compacted: every other sample moves up a level, alternately starting
+ * from the first or the second, and the rest are discarded. Each compaction
+ * at level h moves the rank of any value by at most 2<sup>h</sup>, so sizing
+ * the buffers by the requested error keeps the rank of every estimated
+ * quantile within epsilon times the number of samples, for up to
+ * 2<sup>{@value #MAX_LEVELS}</sup> buffers' worth of samples. Sketches of
+ * separate parts of a stream are merged by pooling their buffers level by
+ * level.
+ * </p>
+ * 
+ * @author Lee Kamentsky
+ */
+public class QuantileSketch implements Accumulator<QuantileSketch> {
+
+	/** The default bound on the rank error, as a fraction of the count. */
+	public static final double DEFAULT_EPSILON = 0.01;
+
+	/** The number of levels for which the error bound holds. */
+	public static final int MAX_LEVELS = 32;
+
+	private final double epsilon;
+
+	private final int capacity;
+
+	private final List<Level> levels = new ArrayList<Level>();
+
+	private long n;
+
+	/** Creates a sketch whose quantiles are within the given rank error. */
+	public QuantileSketch(final double epsilon) {
+		if (!(epsilon > 0 && epsilon < 1)) {
+			throw new IllegalArgumentException("Error bound must be in (0, 1): " +
+				epsilon);
+		}
+		this.epsilon = epsilon;
+		final int size = (int) Math.ceil(MAX_LEVELS / epsilon);
+		capacity = size + size % 2;
+	}
+
+	// -- QuantileSketch methods --
+
+	/** Gets the bound on the rank error, as a fraction of the count. */
+	public double getEpsilon() {
+		return epsilon;
+	}
+
+	/** Gets the number of samples added. */
+	public long getCount() {
+		return n;
+	}
+
+	/**
+	 * Estimates the q-quantile of the samples: a sample whose rank differs from
+	 * q times the count by at most epsilon times the count. Returns NaN if no
+	 * samples were added.
+	 */
+	public double quantile(final double q) {
+		if (q < 0 || q > 1) {
+			throw new IllegalArgumentException("Quantile must be in [0, 1]: " + q);
+		}
+		if (n == 0) return Double.NaN;
+		int total = 0;
+		for (final Level level : levels) {
+			total += level.size;
+		}
+		final double[] values = new double[total];
+		final long[] weights = new long[total];
+		int i = 0;
+		for (int h = 0; h < levels.size(); h++) {
+			final Level level = levels.get(h);
+			for (int j = 0; j < level.size; j++) {
+				values[i] = level.items[j];
+				weights[i++] = 1L << h;
+			}
+		}
+		final Integer[] order = new Integer[total];
+		for (int j = 0; j < total; j++) {
+			order[j] = j;
+		}
+		Arrays.sort(order, new Comparator<Integer>() {
+
+			@Override
+			public int compare(final Integer a, final Integer b) {
+				return Double.compare(values[a], values[b]);
+			}
+		});
+		final double rank = q * n;
+		long cumulative = 0;
+		for (final int j : order) {
+			cumulative += weights[j];
+			if (cumulative > rank) return values[j];
+		}
+		return values[order[total - 1]];
+	}
+
+	// -- Accumulator methods --
+
+	@Override
+	public void add(final double value) {
+		n++;
+		level(0).add(value);
+		if (levels.get(0).size >= capacity) compact(0);
+	}
+
+	/**
+	 * Adds the samples summarized by another sketch.
+	 * 
+	 * @throws IllegalArgumentException if the sketches have different error
+	 *           bounds.
+	 */
+	@Override
+	public void merge(final QuantileSketch other) {
+		if (other.capacity != capacity) {
+			throw new IllegalArgumentException(
+				"Cannot merge sketches with different error bounds");
+		}
+		n += other.n;
+		for (int h = 0; h < other.levels.size(); h++) {
+			final Level theirs = other.levels.get(h);
+			final Level ours = level(h);
+			for (int j = 0; j < theirs.size; j++) {
+				ours.add(theirs.items[j]);
+			}
+		}
+		for (int h = 0; h < levels.size(); h++) {
+			if (levels.get(h).size >= capacity) compact(h);
+		}
+	}
+
+	// -- Helper methods --
+
+	private Level level(final int h) {
+		while (levels.size() <= h) {
+			levels.add(new Level(capacity));
+		}
+		return levels.get(h);
+	}
+
+	/** Moves every other sample of a full level up to the next level. */
+	private void compact(final int h) {
+		final Level level = level(h);
+		final Level up = level(h + 1);
+		Arrays.sort(level.items, 0, level.size);
+		// NB: An odd sample out stays behind, so no weight is lost.
+		final int paired = level.size - level.size % 2;
+		for (int j = level.odd ? 1 : 0; j < paired; j += 2) {
+			up.add(level.items[j]);
+		}
+		level.odd = !level.odd;
+		if (paired < level.size) level.items[0] = level.items[paired];
+		level.size -= paired;
+		if (up.size >= capacity) compact(h + 1);
+	}
+
+	// -- Helper classes --
+
+	/** The samples of one weight. */
+	private static class Level {
+
+		private double[] items;
+
+		private int size;
+
+		/** Whether the next compaction keeps the odd-numbered samples. */
+		private boolean odd;
+
+		private Level(final int capacity) {
+			items = new double[capacity];
+		}
+
+		private void add(final double value) {
+			if (size == items.length) items = Arrays.copyOf(items, 2 * size);
+			items[size++] = value;
+		}
+	}
+
+}
@@ -0,0 +1,109 @@
+/*
+ * #%L
+ * ImageJ software for multidimensional image processing and analysis.
+ * %%
+ * Copyright (C) 2009 - 2013 Board of Regents of the University of
+ * Wisconsin-Madison, Broad Institute of MIT and Harvard, and Max Planck
+ * Institute of Molecular Cell Biology and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are
+ * those of the authors and should not be interpreted as representing official
+ * policies, either expressed or implied, of any organization.
+ * #L%
+ */
+
+package imagej.data.measure;
+
+import net.imglib2.type.numeric.RealType;
+
+/**
+ * Common {@link Reducer}s for combining partial measurements.
+ * 
+ * @author Lee Kamentsky
+ */
+public final class Reducers {
+
+	private Reducers() {
+		// prevent instantiation of utility class
+	}
+
+	/** Gets a reducer which adds partial sums. */
+	public static <T extends RealType<T>> Reducer<T> sum() {
+		return new Reducer<T>() {
+
+			@Override
+			public void reduce(final T partial, final T total) {
+				total.add(partial);
+			}
+		};
+	}
+
+	/** Gets a reducer which multiplies partial products. */
+	public static <T extends RealType<T>> Reducer<T> product() {
+		return new Reducer<T>() {
+
+			@Override
+			public void reduce(final T partial, final T total) {
+				total.mul(partial);
+			}
+		};
+	}
+
+	/** Gets a reducer which keeps the smallest partial minimum. */
+	public static <T extends RealType<T>> Reducer<T> min() {
+		return new Reducer<T>() {
+
+			@Override
+			public void reduce(final T partial, final T total) {
+				if (partial.compareTo(total) < 0) total.set(partial);
+			}
+		};
+	}
+
+	/** Gets a reducer which keeps the largest partial maximum. */
+	public static <T extends RealType<T>> Reducer<T> max() {
+		return new Reducer<T>() {
+
+			@Override
+			public void reduce(final T partial, final T total) {
+				if (partial.compareTo(total) > 0) total.set(partial);
+			}
+		};
+	}
+
+	/**
+	 * Gets a reducer which merges partial {@link Statistics}, covering sums,
+	 * moments and extrema alike.
+	 */
+	public static Reducer<Statistics> statistics() {
+		return new Reducer<Statistics>() {
+
+			@Override
+			public void reduce(final Statistics partial, final Statistics total) {
+				total.merge(partial);
+			}
+		};
+	}
+
+}
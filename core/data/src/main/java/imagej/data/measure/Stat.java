@@ -0,0 +1,120 @@
+/*
+ * #%L
+ * ImageJ software for multidimensional image processing and analysis.
+ * %%
+ * Copyright (C) 2009 - 2013 Board of Regents of the University of
+ * Wisconsin-Madison, Broad Institute of MIT and Harvard, and Max Planck
+ * Institute of Molecular Cell Biology and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are
+ * those of the authors and should not be interpreted as representing official
+ * policies, either expressed or implied, of any organization.
+ * #L%
+ */
+
+package imagej.data.measure;
+
+/**
+ * The statistics which {@link StatisticsService#compute} can gather together
+ * in a single pass over a region.
+ * 
+ * @author Lee Kamentsky
+ */
+public enum Stat {
+
+	/** The number of samples. */
+	COUNT(0),
+
+	/** The sum of the samples. */
+	SUM(0),
+
+	/** The product of the samples. */
+	PRODUCT(0),
+
+	/** The smallest sample. */
+	MINIMUM(0),
+
+	/** The largest sample. */
+	MAXIMUM(0),
+
+	/** The point midway between the smallest and largest samples. */
+	MIDPOINT(0),
+
+	/** The arithmetic mean of the samples. */
+	ARITHMETIC_MEAN(1),
+
+	/** The geometric mean of the samples. */
+	GEOMETRIC_MEAN(0),
+
+	/** The harmonic mean of the samples. */
+	HARMONIC_MEAN(0),
+
+	/** The sum of squared deviations from the mean. */
+	SUM_OF_SQUARED_DEVIATIONS(2),
+
+	/** The (biased) variance: the sum of squared deviations divided by N. */
+	POPULATION_VARIANCE(2),
+
+	/** The (unbiased) variance: the sum of squared deviations divided by N-1. */
+	SAMPLE_VARIANCE(2),
+
+	/** The square root of the (biased) variance. */
+	POPULATION_STD_DEV(2),
+
+	/** The square root of the (unbiased) variance. */
+	SAMPLE_STD_DEV(2),
+
+	/** The (biased) skew. */
+	POPULATION_SKEW(3),
+
+	/** The (unbiased) skew. */
+	SAMPLE_SKEW(3),
+
+	/** The (biased) kurtosis. */
+	POPULATION_KURTOSIS(4),
+
+	/** The (biased) kurtosis excess. */
+	POPULATION_KURTOSIS_EXCESS(4),
+
+	/** The (unbiased) kurtosis. */
+	SAMPLE_KURTOSIS(4),
+
+	/** The (unbiased) kurtosis excess. */
+	SAMPLE_KURTOSIS_EXCESS(4);
+
+	private final int moment;
+
+	private Stat(final int moment) {
+		this.moment = moment;
+	}
+
+	/**
+	 * Gets the highest central moment from which the statistic is derived, or 0
+	 * if it needs none.
+	 */
+	public int getMoment() {
+		return moment;
+	}
+
+}
@@ -0,0 +1,241 @@
+/*
+ * #%L
+ * ImageJ software for multidimensional image processing and analysis.
+ * %%
+ * Copyright (C) 2009 - 2013 Board of Regents of the University of
+ * Wisconsin-Madison, Broad Institute of MIT and Harvard, and Max Planck
+ * Institute of Molecular Cell Biology and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are
+ * those of the authors and should not be interpreted as representing official
+ * policies, either expressed or implied, of any organization.
+ * #L%
+ */
+
+package imagej.data.measure;
+
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * Gathers a chosen set of {@link Stat}istics from a stream of samples in a
+ * single pass. Central moments are updated incrementally with the numerically
+ * stable recurrences of Welford and Terriberry, only up to the highest order
+ * any chosen statistic needs; sums of logarithms, reciprocals and products
+ * are only kept when asked for. The statistics are derived from these sums
+ * on request.
+ * 
+ * @author Lee Kamentsky
+ */
+public class Statistics implements Accumulator<Statistics> {
+
+	private final EnumSet<Stat> stats;
+
+	/** The highest central moment to keep. */
+	private final int moment;
+
+	private final boolean extrema, logs, reciprocals, product;
+
+	private long n;
+	private double sum;
+	private double prod = 1;
+	private double min = Double.POSITIVE_INFINITY;
+	private double max = Double.NEGATIVE_INFINITY;
+	private double sumOfLogs;
+	private double sumOfReciprocals;
+
+	/** The mean, and the sums of the 2nd, 3rd and 4th powers of deviations. */
+	private double mean, m2, m3, m4;
+
+	/** Creates an empty set of the given statistics. */
+	public Statistics(final Set<Stat> stats) {
+		this.stats =
+			stats.isEmpty() ? EnumSet.noneOf(Stat.class) : EnumSet.copyOf(stats);
+		int highest = 0;
+		for (final Stat stat : stats) {
+			highest = Math.max(highest, stat.getMoment());
+		}
+		moment = highest;
+		extrema =
+			stats.contains(Stat.MINIMUM) || stats.contains(Stat.MAXIMUM) ||
+				stats.contains(Stat.MIDPOINT);
+		logs = stats.contains(Stat.GEOMETRIC_MEAN);
+		reciprocals = stats.contains(Stat.HARMONIC_MEAN);
+		product = stats.contains(Stat.PRODUCT);
+	}
+
+	// -- Statistics methods --
+
+	/** Gets the statistics being gathered. */
+	public Set<Stat> getStats() {
+		return EnumSet.copyOf(stats);
+	}
+
+	/** Gets the number of samples added. */
+	public long getCount() {
+		return n;
+	}
+
+	/** Adds a sample. */
+	@Override
+	public void add(final double x) {
+		n++;
+		sum += x;
+		if (extrema) {
+			if (x < min) min = x;
+			if (x > max) max = x;
+		}
+		if (logs) sumOfLogs += Math.log(x);
+		if (reciprocals) sumOfReciprocals += 1 / x;
+		if (product) prod *= x;
+		if (moment == 0) return;
+		final double delta = x - mean;
+		final double deltaN = delta / n;
+		mean += deltaN;
+		if (moment == 1) return;
+		final double term = delta * deltaN * (n - 1);
+		if (moment >= 4) {
+			final double deltaN2 = deltaN * deltaN;
+			m4 +=
+				term * deltaN2 * ((double) n * n - 3 * n + 3) + 6 * deltaN2 * m2 - 4 *
+					deltaN * m3;
+		}
+		if (moment >= 3) m3 += term * deltaN * (n - 2) - 3 * deltaN * m2;
+		m2 += term;
+	}
+
+	/**
+	 * Adds the samples gathered by another set of the same statistics, as if
+	 * they had been added to this one. Sets gathered from separate parts of a
+	 * region can thus be computed concurrently and merged.
+	 * 
+	 * @throws IllegalArgumentException if the other set gathers different
+	 *           statistics.
+	 */
+	@Override
+	public void merge(final Statistics other) {
+		if (!stats.equals(other.stats)) {
+			throw new IllegalArgumentException("Cannot merge different statistics");
+		}
+		if (other.n == 0) return;
+		// NB: Counts are doubles, since their products overflow longs.
+		final double na = n, nb = other.n, nn = na + nb;
+		n += other.n;
+		sum += other.sum;
+		prod *= other.prod;
+		min = Math.min(min, other.min);
+		max = Math.max(max, other.max);
+		sumOfLogs += other.sumOfLogs;
+		sumOfReciprocals += other.sumOfReciprocals;
+		if (moment == 0) return;
+		final double delta = other.mean - mean;
+		final double delta2 = delta * delta;
+		mean += delta * nb / nn;
+		if (moment == 1) return;
+		// NB: Each moment is merged using the lower moments before their merge.
+		if (moment >= 4) {
+			m4 +=
+				other.m4 + delta2 * delta2 * na * nb * (na * na - na * nb + nb * nb) /
+					(nn * nn * nn) + 6 * delta2 * (na * na * other.m2 + nb * nb * m2) /
+					(nn * nn) + 4 * delta * (na * other.m3 - nb * m3) / nn;
+		}
+		if (moment >= 3) {
+			m3 +=
+				other.m3 + delta2 * delta * na * nb * (na - nb) / (nn * nn) + 3 *
+					delta * (na * other.m2 - nb * m2) / nn;
+		}
+		m2 += other.m2 + delta2 * na * nb / nn;
+	}
+
+	/**
+	 * Gets the value of the given statistic. Statistics which are undefined for
+	 * the number of samples added, such as the mean of none, are NaN.
+	 * 
+	 * @throws IllegalArgumentException if the statistic is not being gathered.
+	 */
+	public double get(final Stat stat) {
+		if (!stats.contains(stat)) {
+			throw new IllegalArgumentException(stat + " was not gathered");
+		}
+		switch (stat) {
+			case COUNT:
+				return n;
+			case SUM:
+				return sum;
+			case PRODUCT:
+				return prod;
+			case MINIMUM:
+				return n == 0 ? Double.NaN : min;
+			case MAXIMUM:
+				return n == 0 ? Double.NaN : max;
+			case MIDPOINT:
+				return n == 0 ? Double.NaN : (min + max) / 2;
+			case ARITHMETIC_MEAN:
+				return n == 0 ? Double.NaN : mean;
+			case GEOMETRIC_MEAN:
+				return Math.exp(sumOfLogs / n);
+			case HARMONIC_MEAN:
+				return n / sumOfReciprocals;
+			case SUM_OF_SQUARED_DEVIATIONS:
+				return m2;
+			case POPULATION_VARIANCE:
+				return m2 / n;
+			case SAMPLE_VARIANCE:
+				return m2 / (n - 1);
+			case POPULATION_STD_DEV:
+				return Math.sqrt(m2 / n);
+			case SAMPLE_STD_DEV:
+				return Math.sqrt(m2 / (n - 1));
+			case POPULATION_SKEW:
+				return populationSkew();
+			case SAMPLE_SKEW:
+				return populationSkew() * Math.sqrt(n * (n - 1.0)) / (n - 2);
+			case POPULATION_KURTOSIS:
+				return populationKurtosis();
+			case POPULATION_KURTOSIS_EXCESS:
+				return populationKurtosis() - 3;
+			case SAMPLE_KURTOSIS:
+				return sampleKurtosisExcess() + 3;
+			case SAMPLE_KURTOSIS_EXCESS:
+				return sampleKurtosisExcess();
+		}
+		throw new IllegalArgumentException("Unknown statistic: " + stat);
+	}
+
+	// -- Helper methods --
+
+	private double populationSkew() {
+		return Math.sqrt(n) * m3 / Math.pow(m2, 1.5);
+	}
+
+	private double populationKurtosis() {
+		return n * m4 / (m2 * m2);
+	}
+
+	private double sampleKurtosisExcess() {
+		final double g2 = populationKurtosis() - 3;
+		return (n - 1.0) / ((n - 2.0) * (n - 3.0)) * ((n + 1) * g2 + 6);
+	}
+
+}
@@ -37,19 +37,14 @@
 
 import imagej.data.Dataset;
 import imagej.service.ImageJService;
-import net.imglib2.ops.pointset.PointSet;
 
-// TODO - make MeasurementService smarter. Compute values without always
-// revisiting the pixels. This current impl goes over pixels once for each
-// measurement. I will mock something up soon. BDZ
+import java.util.EnumSet;
+
+import net.imglib2.ops.pointset.PointSet;
 
 // TODO - this service is limited to only the kinds of stats it knows. It can't
 // measure a user provided statistic. This can be done by calling the
 // MeasurementService more directly.
-// Also this service calcs one measure at a time. Our future MeasurementService
-// should be able to batch them together. It also might be nice to be able to
-// specify to this service gather min,var,stdev,median in an array of output
-// doubles.
 
 // TODO - see what IJ1 calculates and provide such methods here and in OPS
 
@@ -64,6 +59,52 @@ public interface StatisticsService extends ImageJService {
 
 	// -- StatisticsService methods --
 
+	/**
+	 * Gathers a set of statistics of the values within a {@link PointSet} region
+	 * of a {@link Dataset}, visiting each value once however many statistics
+	 * are requested.
+	 * 
+	 * @param ds The Dataset to measure
+	 * @param region The PointSet region upon which to calculate
+	 * @param stats The statistics to gather
+	 * @return The gathered statistics
+	 */
+	Statistics compute(Dataset ds, PointSet region, EnumSet<Stat> stats);
+
+	/**
+	 * Gathers a set of statistics of the values of a {@link Dataset}, visiting
+	 * each value once however many statistics are requested.
+	 * 
+	 * @param ds The Dataset to measure
+	 * @param stats The statistics to gather
+	 * @return The gathered statistics
+	 */
+	Statistics compute(Dataset ds, EnumSet<Stat> stats);
+
+	/**
+	 * Summarizes the values within a {@link PointSet} region of a
+	 * {@link Dataset} in a {@link QuantileSketch}, from which any number of
+	 * quantiles can be estimated. Sketches of separate regions can be merged.
+	 * 
+	 * @param ds The Dataset to measure
+	 * @param region The PointSet region upon which to calculate
+	 * @param epsilon The bound on the rank error of the estimated quantiles, as
+	 *          a fraction of the number of values
+	 * @return The sketch of the values
+	 */
+	QuantileSketch sketch(Dataset ds, PointSet region, double epsilon);
+
+	/**
+	 * Summarizes the values of a {@link Dataset} in a {@link QuantileSketch},
+	 * from which any number of quantiles can be estimated.
+	 * 
+	 * @param ds The Dataset to measure
+	 * @param epsilon The bound on the rank error of the estimated quantiles, as
+	 *          a fraction of the number of values
+	 * @return The sketch of the values
+	 */
+	QuantileSketch sketch(Dataset ds, double epsilon);
+
 	/**
 	 * Returns an estimate of the alpha trimmed mean of the values within a
 	 * {@link PointSet} region of a {@link Dataset}. Alpha must range be >= 0 and
@@ -355,6 +396,35 @@ public interface StatisticsService extends ImageJService {
 	 */
 	double product(Dataset ds);
 
+	/**
+	 * Returns an estimate of the q-quantile of the values within a
+	 * {@link PointSet} region of a {@link Dataset}, using memory independent of
+	 * the size of the region. The rank of the returned value is within epsilon
+	 * times the number of values of the exact rank.
+	 * 
+	 * @param ds The Dataset to measure
+	 * @param region The PointSet region upon which to calculate
+	 * @param q The quantile, from 0 (the minimum) to 1 (the maximum)
+	 * @param epsilon The bound on the rank error, as a fraction of the number of
+	 *          values
+	 * @return The measured value
+	 */
+	double quantile(Dataset ds, PointSet region, double q, double epsilon);
+
+	/**
+	 * Returns an estimate of the q-quantile of the values of a {@link Dataset},
+	 * using memory independent of the size of the Dataset. The rank of the
+	 * returned value is within epsilon times the number of values of the exact
+	 * rank.
+	 * 
+	 * @param ds The Dataset to measure
+	 * @param q The quantile, from 0 (the minimum) to 1 (the maximum)
+	 * @param epsilon The bound on the rank error, as a fraction of the number of
+	 *          values
+	 * @return The measured value
+	 */
+	double quantile(Dataset ds, double q, double epsilon);
+
 	/**
 	 * Returns the (unbiased) kurtosis of all the values within a {@link PointSet}
 	 * region of a {@link Dataset}
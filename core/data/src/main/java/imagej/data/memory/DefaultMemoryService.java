@@ -0,0 +1,472 @@
+/*
+ * #%L
+ * ImageJ software for multidimensional image processing and analysis.
+ * %%
+ * Copyright (C) 2009 - 2013 Board of Regents of the University of
+ * Wisconsin-Madison, Broad Institute of MIT and Harvard, and Max Planck
+ * Institute of Molecular Cell Biology and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are
+ * those of the authors and should not be interpreted as representing official
+ * policies, either expressed or implied, of any organization.
+ * #L%
+ */
+
+package imagej.data.memory;
+
+import imagej.core.options.OptionsMemoryAndThreads;
+import imagej.data.CachedPlanarImg;
+import imagej.data.Dataset;
+import imagej.data.ImgCopier;
+import imagej.data.display.DataView;
+import imagej.data.display.ImageDisplay;
+import imagej.data.display.ImageDisplayService;
+import imagej.data.event.DatasetCreatedEvent;
+import imagej.data.event.DatasetDeletedEvent;
+import imagej.data.event.DatasetRestructuredEvent;
+import imagej.data.event.DatasetUpdatedEvent;
+import imagej.data.mapped.MappedImgFactory;
+import imagej.data.mapped.MappedPlanarImg;
+import imagej.display.event.DisplayActivatedEvent;
+import imagej.module.Module;
+import imagej.module.event.ModuleCanceledEvent;
+import imagej.module.event.ModuleErroredEvent;
+import imagej.module.event.ModuleExecutedEvent;
+import imagej.module.event.ModuleExecutingEvent;
+import imagej.options.OptionsService;
+import imagej.options.event.OptionsEvent;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import net.imglib2.img.Img;
+import net.imglib2.img.array.ArrayImg;
+import net.imglib2.img.planar.PlanarImg;
+import net.imglib2.meta.ImgPlus;
+import net.imglib2.type.NativeType;
+
+import org.scijava.event.EventHandler;
+import org.scijava.event.EventService;
+import org.scijava.log.LogService;
+import org.scijava.plugin.Parameter;
+import org.scijava.plugin.Plugin;
+import org.scijava.service.AbstractService;
+import org.scijava.service.Service;
+import org.scijava.thread.ThreadService;
+
+/**
+ * Default service for keeping the memory held by {@link Dataset}s and caches
+ * within a global budget.
+ * <p>
+ * The budget is three quarters of the maximum memory from
+ * {@link OptionsMemoryAndThreads}, or of the Java heap if no maximum is set.
+ * Datasets are tracked from their creation to their deletion, ordered by when
+ * they were last displayed or modified. Planar and array images of the least
+ * recently viewed datasets are moved to memory-mapped temporary files when
+ * the budget would be exceeded, after the registered {@link MemoryConsumer}s
+ * (the pyramid and histogram caches and the in-memory revert and undo
+ * snapshots) have released what they can, and datasets read on demand have
+ * dropped their unmodified planes. Datasets already backed by files are left
+ * alone. The dataset service and datasets {@link #reserve}
+ * the bytes of each new image before allocating it; datasets created by other
+ * means are accounted for once created.
+ * </p>
+ * <p>
+ * Since holders of a dataset's previous image would no longer see its writes,
+ * only datasets which are neither displayed (which includes those shared with
+ * the legacy layer) nor used by an executing module are moved. Their samples
+ * are copied on another thread, and the copy replaces the image only if the
+ * dataset did not change meanwhile; the move is not a change, so neither the
+ * modification stamps nor any event reveal it. Code which keeps writing
+ * through an image, cursor or plane array of an idle dataset, without
+ * updating it, must therefore hold the dataset in a display or an executing
+ * module; otherwise its writes may land in the discarded copy (see
+ * {@link Dataset#setStorage}).
+ * </p>
+ * 
+ * @author Lee Kamentsky
+ */
+@Plugin(type = Service.class)
+public class DefaultMemoryService extends AbstractService implements
+	MemoryService
+{
+
+	private static final long MB = 1024 * 1024;
+
+	/** Fraction of the maximum memory which datasets and caches may occupy. */
+	private static final double BUDGET_FRACTION = 0.75;
+
+	@Parameter
+	private LogService log;
+
+	@Parameter(required = false)
+	private EventService eventService;
+
+	@Parameter(required = false)
+	private OptionsService optionsService;
+
+	@Parameter(required = false)
+	private ThreadService threadService;
+
+	@Parameter(required = false)
+	private ImageDisplayService imageDisplayService;
+
+	/** Live datasets, from least to most recently viewed. */
+	private final LinkedHashSet<Dataset> datasets = new LinkedHashSet<Dataset>();
+
+	/** Datasets used by each executing module: inputs, and those it created. */
+	private final Map<Module, List<Dataset>> running =
+		new HashMap<Module, List<Dataset>>();
+
+	/** Datasets being copied to temporary files. */
+	private final Set<Dataset> spilling = new HashSet<Dataset>();
+
+	/** Heap bytes to be freed once the datasets being copied are moved. */
+	private long spillingBytes;
+
+	private final List<MemoryConsumer> consumers =
+		new CopyOnWriteArrayList<MemoryConsumer>();
+
+	// -- MemoryService methods --
+
+	@Override
+	public long getBudget() {
+		long max = Runtime.getRuntime().maxMemory();
+		if (optionsService != null) {
+			final OptionsMemoryAndThreads options =
+				optionsService.getOptions(OptionsMemoryAndThreads.class);
+			if (options != null && options.getMaxMemory() > 0) {
+				max = options.getMaxMemory() * MB;
+			}
+		}
+		return (long) (BUDGET_FRACTION * max);
+	}
+
+	@Override
+	public synchronized long getUsage() {
+		long usage = 0;
+		for (final Dataset dataset : datasets) {
+			usage += getHeapBytes(dataset);
+		}
+		for (final MemoryConsumer consumer : consumers) {
+			usage += consumer.getMemoryUsage();
+		}
+		return usage;
+	}
+
+	@Override
+	public synchronized long getAvailable() {
+		long reclaimable = spillingBytes;
+		for (final MemoryConsumer consumer : consumers) {
+			reclaimable += consumer.getMemoryUsage();
+		}
+		for (final Dataset dataset : datasets) {
+			if (spilling.contains(dataset) || !isSpillable(dataset)) continue;
+			reclaimable += getHeapBytes(dataset);
+		}
+		return getBudget() - getUsage() + reclaimable;
+	}
+
+	@Override
+	public boolean reserve(final long bytes) {
+		final List<Runnable> spills = new ArrayList<Runnable>();
+		final boolean fits;
+		synchronized (this) {
+			fits = makeRoom(bytes, null, spills);
+		}
+		start(spills);
+		publishUsage();
+		return fits;
+	}
+
+	@Override
+	public void addConsumer(final MemoryConsumer consumer) {
+		consumers.add(consumer);
+	}
+
+	@Override
+	public void removeConsumer(final MemoryConsumer consumer) {
+		consumers.remove(consumer);
+	}
+
+	// -- Event handlers --
+
+	/**
+	 * Starts accounting for new datasets, spilling others to make room for those
+	 * whose bytes were not reserved up front.
+	 */
+	@EventHandler
+	protected void onEvent(final DatasetCreatedEvent event) {
+		final Dataset dataset = event.getObject();
+		final List<Runnable> spills = new ArrayList<Runnable>();
+		synchronized (this) {
+			datasets.add(dataset);
+			// NB: an executing module may be filling in a dataset it created
+			for (final List<Dataset> used : running.values()) {
+				used.add(dataset);
+			}
+			makeRoom(0, dataset, spills);
+		}
+		start(spills);
+		publishUsage();
+	}
+
+	/** Stops accounting for deleted datasets. */
+	@EventHandler
+	protected void onEvent(final DatasetDeletedEvent event) {
+		synchronized (this) {
+			datasets.remove(event.getObject());
+		}
+		publishUsage();
+	}
+
+	/** Keeps the input datasets of executing modules where they are. */
+	@EventHandler
+	protected synchronized void onEvent(final ModuleExecutingEvent event) {
+		final List<Dataset> used = new ArrayList<Dataset>();
+		for (final Object input : event.getModule().getInputs().values()) {
+			if (input instanceof Dataset) used.add((Dataset) input);
+		}
+		running.put(event.getModule(), used);
+	}
+
+	@EventHandler
+	protected void onEvent(final ModuleExecutedEvent event) {
+		finished(event.getModule());
+	}
+
+	@EventHandler
+	protected void onEvent(final ModuleCanceledEvent event) {
+		finished(event.getModule());
+	}
+
+	@EventHandler
+	protected void onEvent(final ModuleErroredEvent event) {
+		finished(event.getModule());
+	}
+
+	/** Reports the new usage when a dataset's image is replaced. */
+	@EventHandler
+	protected void onEvent(final DatasetRestructuredEvent event) {
+		publishUsage();
+	}
+
+	/** Marks modified datasets as recently viewed. */
+	@EventHandler
+	protected void onEvent(final DatasetUpdatedEvent event) {
+		touch(event.getObject());
+	}
+
+	/** Marks the datasets of newly activated displays as recently viewed. */
+	@EventHandler
+	protected void onEvent(final DisplayActivatedEvent event) {
+		if (!(event.getDisplay() instanceof ImageDisplay)) return;
+		for (final DataView view : (ImageDisplay) event.getDisplay()) {
+			if (view.getData() instanceof Dataset) touch((Dataset) view.getData());
+		}
+	}
+
+	/** Applies changes to the maximum memory. */
+	@EventHandler
+	protected void onEvent(final OptionsEvent event) {
+		if (!(event.getOptions() instanceof OptionsMemoryAndThreads)) return;
+		reserve(0);
+	}
+
+	// -- Helper methods --
+
+	/**
+	 * Releases memory from consumers and the unmodified planes of datasets read
+	 * on demand, then schedules spilling the least recently viewed datasets
+	 * other than the given one, until the given number of additional bytes fits
+	 * within the budget. The bytes of datasets being spilled count as free.
+	 * 
+	 * @param spills receives the spills to {@link #start} once this service is
+	 *          unlocked
+	 */
+	private boolean makeRoom(final long bytes, final Dataset exclude,
+		final List<Runnable> spills)
+	{
+		long excess = getUsage() - spillingBytes + bytes - getBudget();
+		for (final MemoryConsumer consumer : consumers) {
+			if (excess <= 0) break;
+			excess -= consumer.releaseMemory(excess);
+		}
+		for (final Dataset dataset : new ArrayList<Dataset>(datasets)) {
+			if (excess <= 0) break;
+			final Img<?> img = dataset.getImgPlus().getImg();
+			if (!(img instanceof CachedPlanarImg)) continue;
+			final CachedPlanarImg<?, ?> cached = (CachedPlanarImg<?, ?>) img;
+			final long planeBytes =
+				(long) (dataset.getBytesOfInfo() / Math.max(1, cached.numSlices()));
+			excess -= planeBytes * cached.releasePlanes();
+		}
+		for (final Dataset dataset : new ArrayList<Dataset>(datasets)) {
+			if (excess <= 0) break;
+			if (dataset == exclude || spilling.contains(dataset)) continue;
+			if (!isSpillable(dataset)) continue;
+			final long freed = getHeapBytes(dataset);
+			spilling.add(dataset);
+			spillingBytes += freed;
+			spills.add(spill(dataset, freed));
+			excess -= freed;
+		}
+		return excess <= 0;
+	}
+
+	/** Runs the given spills, on other threads if possible. */
+	private void start(final List<Runnable> spills) {
+		for (final Runnable spill : spills) {
+			if (threadService == null) spill.run();
+			else threadService.run(spill);
+		}
+	}
+
+	private synchronized void finished(final Module module) {
+		running.remove(module);
+	}
+
+	private synchronized void touch(final Dataset dataset) {
+		if (datasets.remove(dataset)) datasets.add(dataset);
+	}
+
+	/** Gets the number of bytes of the dataset's samples held on the heap. */
+	private long getHeapBytes(final Dataset dataset) {
+		final Img<?> img = dataset.getImgPlus().getImg();
+		if (img instanceof MappedPlanarImg) return 0;
+		if (img instanceof CachedPlanarImg) {
+			final CachedPlanarImg<?, ?> cached = (CachedPlanarImg<?, ?>) img;
+			return (long) (dataset.getBytesOfInfo() * cached.getHeldPlaneCount() /
+				Math.max(1, cached.numSlices()));
+		}
+		return (long) dataset.getBytesOfInfo();
+	}
+
+	/**
+	 * Tests whether the samples of the given dataset may be moved to
+	 * memory-mapped temporary files: its image allows it, and nothing but the
+	 * dataset refers to the image.
+	 */
+	private boolean isSpillable(final Dataset dataset) {
+		final Img<?> img = dataset.getImgPlus().getImg();
+		if (!(img instanceof PlanarImg) && !(img instanceof ArrayImg)) {
+			return false;
+		}
+		if (img instanceof MappedPlanarImg || img instanceof CachedPlanarImg) {
+			return false;
+		}
+		final Object type = img.firstElement();
+		if (!(type instanceof NativeType)) return false;
+		if (!MappedImgFactory.isSupported((NativeType<?>) type)) return false;
+		for (final List<Dataset> used : running.values()) {
+			if (used.contains(dataset)) return false;
+		}
+		return !isDisplayed(dataset);
+	}
+
+	private boolean isDisplayed(final Dataset dataset) {
+		if (imageDisplayService == null) return false;
+		for (final ImageDisplay display : imageDisplayService.getImageDisplays()) {
+			for (final DataView view : display) {
+				if (view.getData() == dataset) return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Creates a task moving the samples of the given dataset to memory-mapped
+	 * temporary files, freeing the given number of heap bytes.
+	 */
+	private Runnable spill(final Dataset dataset, final long bytes) {
+		return new Runnable() {
+
+			@Override
+			public void run() {
+				try {
+					moveToFiles(dataset);
+				}
+				catch (final RuntimeException exc) {
+					log.error("Cannot move \"" + dataset.getName() +
+						"\" to temporary files", exc);
+				}
+				finally {
+					synchronized (DefaultMemoryService.this) {
+						spilling.remove(dataset);
+						spillingBytes -= bytes;
+					}
+					publishUsage();
+				}
+			}
+		};
+	}
+
+	/**
+	 * Copies the samples of the given dataset to memory-mapped temporary files,
+	 * then moves the dataset to the copy, unless it changed or came into use
+	 * while being copied.
+	 */
+	@SuppressWarnings({ "rawtypes", "unchecked" })
+	private void moveToFiles(final Dataset dataset) {
+		final long stamp = dataset.getModificationStamp();
+		final ImgPlus imgPlus = dataset.getImgPlus();
+		final Img img = imgPlus.getImg();
+		final long[] dims = new long[img.numDimensions()];
+		img.dimensions(dims);
+		final Img mapped =
+			new MappedImgFactory().create(dims, ((NativeType) img.firstElement())
+				.createVariable());
+		new ImgCopier(threadService).copy(imgPlus, mapped);
+		final ImgPlus mappedImgPlus = new ImgPlus(mapped, imgPlus);
+		mappedImgPlus.setSource(imgPlus.getSource());
+		final int count = imgPlus.getColorTableCount();
+		mappedImgPlus.initializeColorTables(count);
+		for (int i = 0; i < count; i++) {
+			mappedImgPlus.setColorTable(imgPlus.getColorTable(i), i);
+		}
+
+		synchronized (this) {
+			if (!datasets.contains(dataset) || dataset.getImgPlus() != imgPlus ||
+				dataset.getModificationStamp() != stamp || !isSpillable(dataset))
+			{
+				return;
+			}
+			dataset.setStorage(mappedImgPlus);
+		}
+		log.info("Moved \"" + dataset.getName() +
+			"\" to temporary files to stay within the memory budget");
+	}
+
+	private void publishUsage() {
+		if (eventService == null) return;
+		eventService.publishLater(new MemoryUsageEvent(getUsage(), getBudget()));
+	}
+
+}
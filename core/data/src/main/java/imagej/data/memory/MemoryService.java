@@ -0,0 +1,81 @@
+/*
+ * #%L
+ * ImageJ software for multidimensional image processing and analysis.
+ * %%
+ * Copyright (C) 2009 - 2013 Board of Regents of the University of
+ * Wisconsin-Madison, Broad Institute of MIT and Harvard, and Max Planck
+ * Institute of Molecular Cell Biology and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are
+ * those of the authors and should not be interpreted as representing official
+ * policies, either expressed or implied, of any organization.
+ * #L%
+ */
+
+package imagej.data.memory;
+
+import imagej.data.Dataset;
+import imagej.service.ImageJService;
+
+/**
+ * Interface for services that keep the memory held by {@link Dataset}s and
+ * caches within a global budget.
+ * <p>
+ * When the budget would be exceeded, {@link MemoryConsumer}s such as caches
+ * are asked to release memory first, and then the least recently viewed
+ * datasets are moved to temporary files on disk.
+ * </p>
+ * 
+ * @author Lee Kamentsky
+ */
+public interface MemoryService extends ImageJService {
+
+	/** Gets the number of bytes which datasets and caches may occupy. */
+	long getBudget();
+
+	/** Gets the number of bytes currently held by datasets and caches. */
+	long getUsage();
+
+	/**
+	 * Gets the number of additional bytes which would fit within the budget once
+	 * caches are released and idle datasets moved to disk. Nothing is released
+	 * or moved.
+	 */
+	long getAvailable();
+
+	/**
+	 * Makes room for the given number of additional bytes, releasing caches and
+	 * spilling datasets to disk as necessary.
+	 * 
+	 * @return true if the bytes now fit within the budget
+	 */
+	boolean reserve(long bytes);
+
+	/** Registers a consumer whose memory counts against the budget. */
+	void addConsumer(MemoryConsumer consumer);
+
+	/** Unregisters a consumer previously added with {@link #addConsumer}. */
+	void removeConsumer(MemoryConsumer consumer);
+
+}
@@ -35,6 +35,10 @@
 
 package imagej.data.operator;
 
+import imagej.data.DatasetService;
+import imagej.data.mapped.MappedImgFactory;
+import imagej.data.memory.MemoryService;
+
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
@@ -42,12 +46,14 @@
 import java.util.Map;
 
 import net.imglib2.img.Img;
-import net.imglib2.img.array.ArrayImgFactory;
+import net.imglib2.img.ImgFactory;
+import net.imglib2.img.planar.PlanarImgFactory;
 import net.imglib2.ops.img.ImageCombiner;
 import net.imglib2.type.numeric.RealType;
 import net.imglib2.type.numeric.real.DoubleType;
 
 import org.scijava.plugin.AbstractSingletonService;
+import org.scijava.plugin.Parameter;
 import org.scijava.plugin.Plugin;
 import org.scijava.service.Service;
 
@@ -61,6 +67,12 @@ public class DefaultCalculatorService extends
 	AbstractSingletonService<CalculatorOp<?, ?>> implements CalculatorService
 {
 
+	@Parameter(required = false)
+	private DatasetService datasetService;
+
+	@Parameter(required = false)
+	private MemoryService memoryService;
+
 	// -- instance variables --
 
 	private Map<String, CalculatorOp<?, ?>> operators;
@@ -87,9 +99,16 @@ public List<String> getOperatorNames() {
 	public <U extends RealType<U>, V extends RealType<V>> Img<DoubleType>
 		combine(final Img<U> img1, final Img<V> img2, final CalculatorOp<U, V> op)
 	{
-		// TODO - limited by ArrayImg size constraints
-		return ImageCombiner.applyOp(op, img1, img2,
-			new ArrayImgFactory<DoubleType>(), new DoubleType());
+		final DoubleType type = new DoubleType();
+		final long[] dims = new long[img1.numDimensions()];
+		img1.dimensions(dims);
+		final ImgFactory<DoubleType> factory =
+			datasetService == null ? new PlanarImgFactory<DoubleType>()
+				: datasetService.getImgFactory(type, dims);
+		if (memoryService != null && !(factory instanceof MappedImgFactory)) {
+			memoryService.reserve(img1.size() * type.getBitsPerPixel() / 8);
+		}
+		return ImageCombiner.applyOp(op, img1, img2, factory, type);
 	}
 
 	// -- PTService methods --
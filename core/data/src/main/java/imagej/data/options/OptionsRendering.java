@@ -0,0 +1,151 @@
+/*
+ * #%L
+ * ImageJ software for multidimensional image processing and analysis.
+ * %%
+ * Copyright (C) 2009 - 2013 Board of Regents of the University of
+ * Wisconsin-Madison, Broad Institute of MIT and Harvard, and Max Planck
+ * Institute of Molecular Cell Biology and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are
+ * those of the authors and should not be interpreted as representing official
+ * policies, either expressed or implied, of any organization.
+ * #L%
+ */
+
+package imagej.data.options;
+
+import imagej.menu.MenuConstants;
+import imagej.options.OptionsPlugin;
+
+import org.scijava.plugin.Menu;
+import org.scijava.plugin.Parameter;
+import org.scijava.plugin.Plugin;
+
+/**
+ * Runs the Edit::Options::Rendering dialog.
+ * 
+ * @author Lee Kamentsky
+ */
+@Plugin(type = OptionsPlugin.class, menu = {
+	@Menu(label = MenuConstants.EDIT_LABEL, weight = MenuConstants.EDIT_WEIGHT,
+		mnemonic = MenuConstants.EDIT_MNEMONIC),
+	@Menu(label = "Options", mnemonic = 'o'),
+	@Menu(label = "Rendering...", weight = 18) })
+public class OptionsRendering extends OptionsPlugin {
+
+	/** Default number of neighboring planes to prefetch. */
+	public static final int DEFAULT_PREFETCH_DEPTH = 4;
+
+	/** Default memory budget of the image pyramid cache, in megabytes. */
+	public static final int DEFAULT_PYRAMID_MEMORY = 256;
+
+	@Parameter(label = "Render plane changes in the background")
+	private boolean asyncRendering = true;
+
+	@Parameter(label = "Planes to prefetch when scrolling", min = "0",
+		max = "16")
+	private int prefetchDepth = DEFAULT_PREFETCH_DEPTH;
+
+	@Parameter(label = "Render visible region only")
+	private boolean viewportProjection = false;
+
+	@Parameter(label = "Use image pyramids when zoomed out")
+	private boolean usePyramids = true;
+
+	@Parameter(label = "Image pyramid cache (MB)", min = "0")
+	private int pyramidMemory = DEFAULT_PYRAMID_MEMORY;
+
+	// -- OptionsRendering methods --
+
+	/**
+	 * Returns true if image views should render changes of plane in the
+	 * background, skipping any planes superseded before they were rendered.
+	 */
+	public boolean isAsyncRendering() {
+		return asyncRendering;
+	}
+
+	/**
+	 * Sets whether image views should render changes of plane in the
+	 * background.
+	 */
+	public void setAsyncRendering(final boolean asyncRendering) {
+		this.asyncRendering = asyncRendering;
+	}
+
+	/**
+	 * Gets the number of planes ahead of the current one which image views
+	 * render in the background while scrolling or animating. Zero disables
+	 * prefetching.
+	 */
+	public int getPrefetchDepth() {
+		return prefetchDepth;
+	}
+
+	/** Sets the number of planes ahead of the current one to prefetch. */
+	public void setPrefetchDepth(final int prefetchDepth) {
+		this.prefetchDepth = prefetchDepth;
+	}
+
+	/**
+	 * Returns true if image views should only render the portion of the current
+	 * plane which is visible in their canvas, at the displayed zoom level.
+	 */
+	public boolean isViewportProjection() {
+		return viewportProjection;
+	}
+
+	/**
+	 * Sets whether image views should only render the portion of the current
+	 * plane which is visible in their canvas, at the displayed zoom level.
+	 */
+	public void setViewportProjection(final boolean viewportProjection) {
+		this.viewportProjection = viewportProjection;
+	}
+
+	/**
+	 * Returns true if zoomed out views should render from downsampled image
+	 * pyramid levels rather than full resolution data. This applies only when
+	 * rendering the visible region only.
+	 */
+	public boolean isUsePyramids() {
+		return usePyramids;
+	}
+
+	/** Sets whether zoomed out views should render from image pyramids. */
+	public void setUsePyramids(final boolean usePyramids) {
+		this.usePyramids = usePyramids;
+	}
+
+	/** Returns the memory budget of the image pyramid cache, in megabytes. */
+	public int getPyramidMemory() {
+		return pyramidMemory;
+	}
+
+	/** Sets the memory budget of the image pyramid cache, in megabytes. */
+	public void setPyramidMemory(final int pyramidMemory) {
+		this.pyramidMemory = pyramidMemory;
+	}
+
+}
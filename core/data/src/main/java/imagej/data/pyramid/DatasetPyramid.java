@@ -0,0 +1,306 @@
+/*
+ * #%L
+ * ImageJ software for multidimensional image processing and analysis.
+ * %%
+ * Copyright (C) 2009 - 2013 Board of Regents of the University of
+ * Wisconsin-Madison, Broad Institute of MIT and Harvard, and Max Planck
+ * Institute of Molecular Cell Biology and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are
+ * those of the authors and should not be interpreted as representing official
+ * policies, either expressed or implied, of any organization.
+ * #L%
+ */
+
+package imagej.data.pyramid;
+
+import imagej.data.Dataset;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import net.imglib2.Interval;
+import net.imglib2.RandomAccess;
+import net.imglib2.type.numeric.RealType;
+
+/**
+ * A multi-resolution pyramid of a {@link Dataset}'s XY planes.
+ * <p>
+ * Level 0 is the dataset itself. Each subsequent level halves the resolution
+ * in X and Y, each of its samples being the mean of the corresponding block of
+ * full resolution samples. Levels are computed lazily, one plane (and hence
+ * one channel) at a time, and are held in a memory-bounded cache shared with
+ * the other pyramids of the {@link PyramidService}. A level is computed from
+ * the nearest cached lower level if there is one, or from the dataset
+ * otherwise, so intermediate levels never need to be materialized.
+ * </p>
+ * 
+ * @author Lee Kamentsky
+ */
+public class DatasetPyramid {
+
+	/** Most planes to discard one by one before discarding all levels. */
+	private static final long MAX_PLANE_INVALIDATIONS = 64;
+
+	private final Dataset dataset;
+
+	private final PyramidCache cache;
+
+	/** Counts invalidations, so planes computed across one are not cached. */
+	private final AtomicLong invalidations = new AtomicLong();
+
+	DatasetPyramid(final Dataset dataset, final PyramidCache cache) {
+		this.dataset = dataset;
+		this.cache = cache;
+	}
+
+	// -- DatasetPyramid methods --
+
+	/** Gets the {@link Dataset} this pyramid downsamples. */
+	public Dataset getDataset() {
+		return dataset;
+	}
+
+	/**
+	 * Gets the number of levels in the pyramid, including the full resolution
+	 * level 0. The topmost level is a single pixel.
+	 */
+	public int getLevelCount() {
+		long w = dataset.dimension(0), h = dataset.dimension(1);
+		int levels = 1;
+		while (w > 1 || h > 1) {
+			w = (w + 1) / 2;
+			h = (h + 1) / 2;
+			levels++;
+		}
+		return levels;
+	}
+
+	/** Gets the width of the given level. */
+	public int getWidth(final int level) {
+		return (int) levelSize(dataset.dimension(0), level);
+	}
+
+	/** Gets the height of the given level. */
+	public int getHeight(final int level) {
+		return (int) levelSize(dataset.dimension(1), level);
+	}
+
+	/**
+	 * Gets the highest level whose resolution is at least that needed to
+	 * display the data at the given zoom factor.
+	 */
+	public int getLevel(final double zoom) {
+		if (zoom >= 1) return 0;
+		int level = 0;
+		double scale = 1;
+		final int max = getLevelCount() - 1;
+		while (level < max && scale / 2 >= zoom) {
+			scale /= 2;
+			level++;
+		}
+		return level;
+	}
+
+	/**
+	 * Gets the samples of the given level of the plane containing the given
+	 * position, computing them if they are not already cached. Only the
+	 * non-planar (i.e., index 2 and above) components of the position are
+	 * used. The samples are in row-major order, with
+	 * {@link #getWidth(int)} samples per row.
+	 * 
+	 * @throws IllegalArgumentException if the level is 0 or out of range.
+	 */
+	public float[] getPlane(final long[] position, final int level) {
+		if (level < 1 || level >= getLevelCount()) {
+			throw new IllegalArgumentException("Invalid pyramid level: " + level);
+		}
+		final long plane = planeIndex(position);
+		float[] data = cache.get(this, plane, level);
+		if (data != null) return data;
+
+		// NB: the plane may change, and be invalidated, while it is downsampled
+		final long stamp = dataset.getModificationStamp(plane);
+		final long invalidationCount = invalidations.get();
+
+		// downsample from the nearest cached lower level, if any
+		for (int below = level - 1; below > 0; below--) {
+			final float[] lower = cache.get(this, plane, below);
+			if (lower == null) continue;
+			data =
+				downsample(lower, getWidth(below), getHeight(below), level - below);
+			break;
+		}
+		if (data == null) data = downsampleSource(position, level);
+
+		synchronized (this) {
+			if (invalidations.get() == invalidationCount &&
+				dataset.getModificationStamp(plane) == stamp)
+			{
+				cache.put(this, plane, level, data);
+			}
+		}
+		return data;
+	}
+
+	/** Discards all cached levels, e.g. because the dataset's data changed. */
+	public void invalidate() {
+		synchronized (this) {
+			invalidations.incrementAndGet();
+		}
+		cache.remove(this);
+	}
+
+	/**
+	 * Discards the cached levels of the plane containing the given position.
+	 * Only the non-planar components of the position are used.
+	 */
+	public void invalidate(final long[] position) {
+		synchronized (this) {
+			invalidations.incrementAndGet();
+		}
+		cache.remove(this, planeIndex(position));
+	}
+
+	/**
+	 * Discards the cached levels of the planes intersecting the given region of
+	 * the dataset. If the region spans many planes, all levels are discarded.
+	 */
+	public void invalidate(final Interval region) {
+		final int numDims = dataset.numDimensions();
+		long planes = 1;
+		for (int d = 2; d < numDims; d++) {
+			planes *= region.dimension(d);
+		}
+		if (planes > MAX_PLANE_INVALIDATIONS) {
+			invalidate();
+			return;
+		}
+		final long[] position = new long[numDims];
+		for (int d = 2; d < numDims; d++) {
+			position[d] = region.min(d);
+		}
+		for (long p = 0; p < planes; p++) {
+			invalidate(position);
+			// advance to the next plane of the region
+			for (int d = 2; d < numDims; d++) {
+				if (++position[d] <= region.max(d)) break;
+				position[d] = region.min(d);
+			}
+		}
+	}
+
+	// -- Helper methods --
+
+	private long levelSize(final long size, final int level) {
+		long s = size;
+		for (int l = 0; l < level; l++) {
+			s = (s + 1) / 2;
+		}
+		return s;
+	}
+
+	/** Computes a unique index for the plane containing the given position. */
+	private long planeIndex(final long[] position) {
+		long index = 0;
+		for (int d = dataset.numDimensions() - 1; d >= 2; d--) {
+			index = index * dataset.dimension(d) + position[d] - dataset.min(d);
+		}
+		return index;
+	}
+
+	/**
+	 * Downsamples the given plane of the dataset by 2^levels, averaging each
+	 * block of samples. The plane is read one row at a time, so only a single
+	 * row of sums is needed beyond the output itself.
+	 */
+	private float[] downsampleSource(final long[] position, final int levels) {
+		final int factor = 1 << levels;
+		final int w = (int) dataset.dimension(0);
+		final int h = (int) dataset.dimension(1);
+		final int lw = getWidth(levels);
+		final int lh = getHeight(levels);
+		final float[] out = new float[lw * lh];
+		final double[] sums = new double[lw];
+
+		final RandomAccess<? extends RealType<?>> access =
+			dataset.getImgPlus().randomAccess();
+		for (int d = 2; d < position.length; d++) {
+			access.setPosition(position[d], d);
+		}
+		for (int ly = 0; ly < lh; ly++) {
+			final int y0 = ly * factor;
+			final int y1 = Math.min(h, y0 + factor);
+			for (int y = y0; y < y1; y++) {
+				access.setPosition(0, 0);
+				access.setPosition(y, 1);
+				for (int x = 0; x < w; x++) {
+					sums[x / factor] += access.get().getRealDouble();
+					access.fwd(0);
+				}
+			}
+			storeRow(out, ly, sums, w, y1 - y0, factor);
+		}
+		return out;
+	}
+
+	/** Downsamples the given plane by 2^levels, averaging each block. */
+	private float[] downsample(final float[] in, final int w, final int h,
+		final int levels)
+	{
+		final int factor = 1 << levels;
+		final int lw = (int) levelSize(w, levels);
+		final int lh = (int) levelSize(h, levels);
+		final float[] out = new float[lw * lh];
+		final double[] sums = new double[lw];
+		for (int ly = 0; ly < lh; ly++) {
+			final int y0 = ly * factor;
+			final int y1 = Math.min(h, y0 + factor);
+			for (int y = y0; y < y1; y++) {
+				final int offset = y * w;
+				for (int x = 0; x < w; x++) {
+					sums[x / factor] += in[offset + x];
+				}
+			}
+			storeRow(out, ly, sums, w, y1 - y0, factor);
+		}
+		return out;
+	}
+
+	/**
+	 * Stores the means of the given row of block sums into the output, then
+	 * clears the sums for the next row.
+	 */
+	private void storeRow(final float[] out, final int row, final double[] sums,
+		final int w, final int rows, final int factor)
+	{
+		final int lw = sums.length;
+		final int offset = row * lw;
+		for (int lx = 0; lx < lw; lx++) {
+			final int cols = Math.min(w, (lx + 1) * factor) - lx * factor;
+			out[offset + lx] = (float) (sums[lx] / (cols * rows));
+			sums[lx] = 0;
+		}
+	}
+
+}
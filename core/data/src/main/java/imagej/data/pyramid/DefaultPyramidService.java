@@ -0,0 +1,169 @@
+/*
+ * #%L
+ * ImageJ software for multidimensional image processing and analysis.
+ * %%
+ * Copyright (C) 2009 - 2013 Board of Regents of the University of
+ * Wisconsin-Madison, Broad Institute of MIT and Harvard, and Max Planck
+ * Institute of Molecular Cell Biology and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are
+ * those of the authors and should not be interpreted as representing official
+ * policies, either expressed or implied, of any organization.
+ * #L%
+ */
+
+package imagej.data.pyramid;
+
+import imagej.data.Dataset;
+import imagej.data.event.DatasetDeletedEvent;
+import imagej.data.event.DatasetRestructuredEvent;
+import imagej.data.event.DatasetUpdatedEvent;
+import imagej.data.memory.MemoryService;
+import imagej.data.options.OptionsRendering;
+import imagej.options.OptionsService;
+import imagej.options.event.OptionsEvent;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.scijava.event.EventHandler;
+import org.scijava.plugin.Parameter;
+import org.scijava.plugin.Plugin;
+import org.scijava.service.AbstractService;
+import org.scijava.service.Service;
+
+/**
+ * Default service for maintaining multi-resolution pyramids of
+ * {@link Dataset}s.
+ * <p>
+ * Pyramid levels are discarded whenever their dataset's data changes, and all
+ * pyramids share a single cache whose size is bounded by the memory budget
+ * from {@link OptionsRendering}. The cache also gives up planes when the
+ * {@link MemoryService} needs room.
+ * </p>
+ * 
+ * @author Lee Kamentsky
+ */
+@Plugin(type = Service.class)
+public class DefaultPyramidService extends AbstractService implements
+	PyramidService
+{
+
+	private static final long MB = 1024 * 1024;
+
+	@Parameter(required = false)
+	private OptionsService optionsService;
+
+	@Parameter(required = false)
+	private MemoryService memoryService;
+
+	private ConcurrentMap<Dataset, DatasetPyramid> pyramids;
+
+	private PyramidCache cache;
+
+	// -- PyramidService methods --
+
+	@Override
+	public DatasetPyramid getPyramid(final Dataset dataset) {
+		final DatasetPyramid pyramid = pyramids.get(dataset);
+		if (pyramid != null) return pyramid;
+		final DatasetPyramid newPyramid = new DatasetPyramid(dataset, cache);
+		final DatasetPyramid existing = pyramids.putIfAbsent(dataset, newPyramid);
+		return existing == null ? newPyramid : existing;
+	}
+
+	@Override
+	public void removePyramid(final Dataset dataset) {
+		final DatasetPyramid pyramid = pyramids.remove(dataset);
+		if (pyramid != null) pyramid.invalidate();
+	}
+
+	@Override
+	public long getMemoryBudget() {
+		return cache.getBudget();
+	}
+
+	@Override
+	public void setMemoryBudget(final long bytes) {
+		cache.setBudget(bytes);
+	}
+
+	@Override
+	public long getMemoryUsage() {
+		return cache.getUsage();
+	}
+
+	// -- Service methods --
+
+	@Override
+	public void initialize() {
+		pyramids = new ConcurrentHashMap<Dataset, DatasetPyramid>();
+		cache = new PyramidCache(getBudgetOption());
+		if (memoryService != null) memoryService.addConsumer(cache);
+	}
+
+	// -- Event handlers --
+
+	/** Discards pyramid levels whose pixels are no longer valid. */
+	@EventHandler
+	protected void onEvent(final DatasetUpdatedEvent event) {
+		if (event.isMetaDataOnly()) return;
+		final DatasetPyramid pyramid = pyramids.get(event.getObject());
+		if (pyramid == null) return;
+		if (event.getRegion() != null) pyramid.invalidate(event.getRegion());
+		else pyramid.invalidate();
+	}
+
+	/** Discards pyramids of datasets whose structure has changed. */
+	@EventHandler
+	protected void onEvent(final DatasetRestructuredEvent event) {
+		removePyramid(event.getObject());
+	}
+
+	/** Discards pyramids of deleted datasets. */
+	@EventHandler
+	protected void onEvent(final DatasetDeletedEvent event) {
+		removePyramid(event.getObject());
+	}
+
+	/** Applies changes to the pyramid memory budget. */
+	@EventHandler
+	protected void onEvent(final OptionsEvent event) {
+		if (!(event.getOptions() instanceof OptionsRendering)) return;
+		setMemoryBudget(getBudgetOption());
+	}
+
+	// -- Helper methods --
+
+	private long getBudgetOption() {
+		long megabytes = OptionsRendering.DEFAULT_PYRAMID_MEMORY;
+		if (optionsService != null) {
+			final OptionsRendering options =
+				optionsService.getOptions(OptionsRendering.class);
+			if (options != null) megabytes = options.getPyramidMemory();
+		}
+		return megabytes * MB;
+	}
+
+}
@@ -0,0 +1,187 @@
+/*
+ * #%L
+ * ImageJ software for multidimensional image processing and analysis.
+ * %%
+ * Copyright (C) 2009 - 2013 Board of Regents of the University of
+ * Wisconsin-Madison, Broad Institute of MIT and Harvard, and Max Planck
+ * Institute of Molecular Cell Biology and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are
+ * those of the authors and should not be interpreted as representing official
+ * policies, either expressed or implied, of any organization.
+ * #L%
+ */
+
+package imagej.data.pyramid;
+
+import imagej.data.memory.MemoryConsumer;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A memory-bounded, least recently used cache of downsampled planes, shared by
+ * all {@link DatasetPyramid}s of a {@link PyramidService}.
+ * 
+ * @author Lee Kamentsky
+ */
+class PyramidCache implements MemoryConsumer {
+
+	/** Cached planes, in least to most recently used order. */
+	private final LinkedHashMap<Key, float[]> planes =
+		new LinkedHashMap<Key, float[]>(16, 0.75f, true);
+
+	private long budget;
+
+	private long usage;
+
+	public PyramidCache(final long budget) {
+		this.budget = budget;
+	}
+
+	// -- PyramidCache methods --
+
+	public synchronized float[] get(final DatasetPyramid pyramid,
+		final long plane, final int level)
+	{
+		return planes.get(new Key(pyramid, plane, level));
+	}
+
+	public synchronized void put(final DatasetPyramid pyramid, final long plane,
+		final int level, final float[] data)
+	{
+		final float[] old = planes.put(new Key(pyramid, plane, level), data);
+		if (old != null) usage -= bytes(old);
+		usage += bytes(data);
+		evict();
+	}
+
+	/** Discards all cached planes of the given pyramid. */
+	public synchronized void remove(final DatasetPyramid pyramid) {
+		final Iterator<Map.Entry<Key, float[]>> iter =
+			planes.entrySet().iterator();
+		while (iter.hasNext()) {
+			final Map.Entry<Key, float[]> entry = iter.next();
+			if (entry.getKey().pyramid != pyramid) continue;
+			usage -= bytes(entry.getValue());
+			iter.remove();
+		}
+	}
+
+	/** Discards all cached levels of the given plane of the given pyramid. */
+	public synchronized void remove(final DatasetPyramid pyramid,
+		final long plane)
+	{
+		final Iterator<Map.Entry<Key, float[]>> iter =
+			planes.entrySet().iterator();
+		while (iter.hasNext()) {
+			final Map.Entry<Key, float[]> entry = iter.next();
+			final Key key = entry.getKey();
+			if (key.pyramid != pyramid || key.plane != plane) continue;
+			usage -= bytes(entry.getValue());
+			iter.remove();
+		}
+	}
+
+	public synchronized long getBudget() {
+		return budget;
+	}
+
+	public synchronized void setBudget(final long budget) {
+		this.budget = budget;
+		evict();
+	}
+
+	public synchronized long getUsage() {
+		return usage;
+	}
+
+	// -- MemoryConsumer methods --
+
+	@Override
+	public long getMemoryUsage() {
+		return getUsage();
+	}
+
+	@Override
+	public synchronized long releaseMemory(final long bytes) {
+		final long before = usage;
+		final Iterator<float[]> iter = planes.values().iterator();
+		while (before - usage < bytes && iter.hasNext()) {
+			usage -= bytes(iter.next());
+			iter.remove();
+		}
+		return before - usage;
+	}
+
+	// -- Helper methods --
+
+	/** Discards least recently used planes until usage is within budget. */
+	private void evict() {
+		final Iterator<float[]> iter = planes.values().iterator();
+		while (usage > budget && iter.hasNext()) {
+			usage -= bytes(iter.next());
+			iter.remove();
+		}
+	}
+
+	private long bytes(final float[] data) {
+		return 4L * data.length;
+	}
+
+	// -- Helper classes --
+
+	private static class Key {
+
+		private final DatasetPyramid pyramid;
+		private final long plane;
+		private final int level;
+
+		public Key(final DatasetPyramid pyramid, final long plane, final int level)
+		{
+			this.pyramid = pyramid;
+			this.plane = plane;
+			this.level = level;
+		}
+
+		@Override
+		public boolean equals(final Object o) {
+			if (!(o instanceof Key)) return false;
+			final Key key = (Key) o;
+			return pyramid == key.pyramid && plane == key.plane &&
+				level == key.level;
+		}
+
+		@Override
+		public int hashCode() {
+			int hash = System.identityHashCode(pyramid);
+			hash = 31 * hash + (int) (plane ^ (plane >>> 32));
+			hash = 31 * hash + level;
+			return hash;
+		}
+
+	}
+
+}
@@ -0,0 +1,73 @@
+/*
+ * #%L
+ * ImageJ software for multidimensional image processing and analysis.
+ * %%
+ * Copyright (C) 2009 - 2013 Board of Regents of the University of
+ * Wisconsin-Madison, Broad Institute of MIT and Harvard, and Max Planck
+ * Institute of Molecular Cell Biology and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are
+ * those of the authors and should not be interpreted as representing official
+ * policies, either expressed or implied, of any organization.
+ * #L%
+ */
+
+package imagej.data.pyramid;
+
+import imagej.data.Dataset;
+import imagej.service.ImageJService;
+
+/**
+ * Interface for services that maintain multi-resolution pyramids of
+ * {@link Dataset}s, for fast display of large images when zoomed out.
+ * 
+ * @author Lee Kamentsky
+ */
+public interface PyramidService extends ImageJService {
+
+	/**
+	 * Gets the pyramid of the given {@link Dataset}, creating it if necessary.
+	 * Pyramid levels are computed lazily, as they are requested.
+	 */
+	DatasetPyramid getPyramid(Dataset dataset);
+
+	/** Discards the pyramid of the given {@link Dataset}, if any. */
+	void removePyramid(Dataset dataset);
+
+	/**
+	 * Gets the maximum number of bytes used to cache pyramid levels, across all
+	 * datasets.
+	 */
+	long getMemoryBudget();
+
+	/**
+	 * Sets the maximum number of bytes used to cache pyramid levels, across all
+	 * datasets. Least recently used levels are discarded to stay within budget.
+	 */
+	void setMemoryBudget(long bytes);
+
+	/** Gets the number of bytes currently used to cache pyramid levels. */
+	long getMemoryUsage();
+
+}
@@ -0,0 +1,492 @@
+/*
+ * #%L
+ * ImageJ software for multidimensional image processing and analysis.
+ * %%
+ * Copyright (C) 2009 - 2013 Board of Regents of the University of
+ * Wisconsin-Madison, Broad Institute of MIT and Harvard, and Max Planck
+ * Institute of Molecular Cell Biology and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are
+ * those of the authors and should not be interpreted as representing official
+ * policies, either expressed or implied, of any organization.
+ * #L%
+ */
+
+package imagej.data.undo;
+
+import imagej.core.options.OptionsMemoryAndThreads;
+import imagej.data.Dataset;
+import imagej.data.DatasetSnapshot;
+import imagej.data.display.DataView;
+import imagej.data.display.DatasetView;
+import imagej.data.display.ImageDisplay;
+import imagej.data.event.DatasetDeletedEvent;
+import imagej.data.memory.MemoryConsumer;
+import imagej.data.memory.MemoryService;
+import imagej.module.Module;
+import imagej.module.event.ModuleCanceledEvent;
+import imagej.module.event.ModuleErroredEvent;
+import imagej.module.event.ModuleExecutedEvent;
+import imagej.module.event.ModuleExecutingEvent;
+import imagej.module.event.ModulePreprocessEvent;
+import imagej.module.event.ModuleStartedEvent;
+import imagej.options.OptionsService;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.scijava.event.EventHandler;
+import org.scijava.log.LogService;
+import org.scijava.plugin.Parameter;
+import org.scijava.plugin.Plugin;
+import org.scijava.service.AbstractService;
+import org.scijava.service.Service;
+
+/**
+ * Default service for undoing and redoing the changes made to
+ * {@link Dataset}s.
+ * <p>
+ * When an edit begins, a copy-on-write {@link DatasetSnapshot} is taken of
+ * each dataset it edits, which costs nothing until planes are written; as
+ * each plane is prepared for writing, the snapshot appends it to a temporary
+ * file rather than holding it on the heap. When the edit ends, the difference
+ * between each copied plane and its new samples is compressed into another
+ * temporary file, one plane at a time, and the copies are deleted; undoing or
+ * redoing the edit then reads and applies those differences only. A module's
+ * edit begins before it is preprocessed, so that changes made by previews are
+ * recorded too, and covers the datasets among its inputs and outputs, directly
+ * or through image displays and dataset views. Each dataset keeps
+ * {@value #MAX_LEVELS} edits if {@link OptionsMemoryAndThreads} asks for
+ * multiple undo buffers, otherwise one; the oldest edits of all datasets are
+ * discarded once the history exceeds {@value #MAX_HISTORY_BYTES} bytes.
+ * </p>
+ * 
+ * @author Lee Kamentsky
+ */
+@Plugin(type = Service.class)
+public class DefaultUndoService extends AbstractService implements UndoService
+{
+
+	/** Number of edits kept per dataset when multiple buffers are kept. */
+	public static final int MAX_LEVELS = 20;
+
+	/** Maximum number of bytes of history kept across all datasets. */
+	public static final long MAX_HISTORY_BYTES = 1024L * 1024 * 1024;
+
+	@Parameter
+	private LogService log;
+
+	@Parameter(required = false)
+	private OptionsService optionsService;
+
+	@Parameter(required = false)
+	private MemoryService memoryService;
+
+	/** The snapshots of the edits in progress on all threads. */
+	private final Set<DatasetSnapshot> live = new HashSet<DatasetSnapshot>();
+
+	/** The edit in progress on each thread, if any. */
+	private final ThreadLocal<Recording> recordings =
+		new ThreadLocal<Recording>();
+
+	private final Map<Dataset, History> histories =
+		new HashMap<Dataset, History>();
+
+	/** All edits of all datasets, from oldest to newest. */
+	private final LinkedHashSet<Edit> edits = new LinkedHashSet<Edit>();
+
+	private long historySize;
+
+	// -- UndoService methods --
+
+	@Override
+	public void beginEdit(final Dataset... datasets) {
+		Recording recording = recordings.get();
+		if (recording == null) {
+			recording = new Recording();
+			recordings.set(recording);
+		}
+		recording.depth++;
+		include(recording, Arrays.asList(datasets));
+	}
+
+	@Override
+	public void endEdit() {
+		final Recording recording = finish();
+		if (recording == null) return;
+		for (final DatasetSnapshot snapshot : recording.snapshots.values()) {
+			try {
+				record(snapshot);
+			}
+			finally {
+				dispose(snapshot);
+			}
+		}
+	}
+
+	@Override
+	public void cancelEdit() {
+		final Recording recording = finish();
+		if (recording == null) return;
+		for (final DatasetSnapshot snapshot : recording.snapshots.values()) {
+			final Dataset dataset = snapshot.getDataset();
+			// NB: Changes made by a canceled edit can no longer be undone.
+			if (dataset.getModificationStamp() != snapshot.getStamp()) {
+				clear(dataset);
+			}
+			dispose(snapshot);
+		}
+	}
+
+	@Override
+	public synchronized boolean canUndo(final Dataset dataset) {
+		final History history = histories.get(dataset);
+		return history != null && !history.done.isEmpty();
+	}
+
+	@Override
+	public synchronized boolean canRedo(final Dataset dataset) {
+		final History history = histories.get(dataset);
+		return history != null && !history.undone.isEmpty();
+	}
+
+	@Override
+	public boolean undo(final Dataset dataset) {
+		final Edit edit;
+		synchronized (this) {
+			final History history = histories.get(dataset);
+			if (history == null || history.done.isEmpty()) return false;
+			edit = history.done.removeLast();
+			history.undone.addLast(edit);
+		}
+		return apply(edit);
+	}
+
+	@Override
+	public boolean redo(final Dataset dataset) {
+		final Edit edit;
+		synchronized (this) {
+			final History history = histories.get(dataset);
+			if (history == null || history.undone.isEmpty()) return false;
+			edit = history.undone.removeLast();
+			history.done.addLast(edit);
+		}
+		return apply(edit);
+	}
+
+	@Override
+	public synchronized void clear(final Dataset dataset) {
+		final History history = histories.remove(dataset);
+		if (history == null) return;
+		for (final Edit edit : history.done) {
+			discard(edit);
+		}
+		for (final Edit edit : history.undone) {
+			discard(edit);
+		}
+	}
+
+	@Override
+	public synchronized long getHistorySize() {
+		return historySize;
+	}
+
+	// -- Service methods --
+
+	@Override
+	public void initialize() {
+		if (memoryService == null) return;
+		// NB: Copies held on the heap, as when no temporary file could be
+		// written, are needed until their edit ends, so none can be released.
+		memoryService.addConsumer(new MemoryConsumer() {
+
+			@Override
+			public long getMemoryUsage() {
+				long usage = 0;
+				synchronized (live) {
+					for (final DatasetSnapshot snapshot : live) {
+						usage += snapshot.getMemoryUsage();
+					}
+				}
+				return usage;
+			}
+
+			@Override
+			public long releaseMemory(final long bytes) {
+				return 0;
+			}
+		});
+	}
+
+	// -- Disposable methods --
+
+	@Override
+	public synchronized void dispose() {
+		for (final Dataset dataset : new ArrayList<Dataset>(histories.keySet())) {
+			clear(dataset);
+		}
+	}
+
+	// -- Event handlers --
+
+	/** Records the changes made by each executed module as an edit. */
+	@EventHandler
+	protected void onEvent(final ModuleStartedEvent event) {
+		final Module module = event.getModule();
+		if (module.getInfo().is(NO_UNDO)) return;
+		beginEdit();
+		final Recording recording = recordings.get();
+		recording.modules.add(module);
+		include(recording, datasets(module));
+	}
+
+	/** Includes the datasets of inputs as they are resolved. */
+	@EventHandler
+	protected void onEvent(final ModulePreprocessEvent event) {
+		include(event.getModule());
+	}
+
+	@EventHandler
+	protected void onEvent(final ModuleExecutingEvent event) {
+		include(event.getModule());
+	}
+
+	@EventHandler
+	protected void onEvent(final ModuleExecutedEvent event) {
+		if (isRecording(event.getModule())) endEdit();
+	}
+
+	@EventHandler
+	protected void onEvent(final ModuleCanceledEvent event) {
+		if (isRecording(event.getModule())) cancelEdit();
+	}
+
+	@EventHandler
+	protected void onEvent(final ModuleErroredEvent event) {
+		if (isRecording(event.getModule())) cancelEdit();
+	}
+
+	@EventHandler
+	protected void onEvent(final DatasetDeletedEvent event) {
+		clear(event.getObject());
+	}
+
+	// -- Helper methods --
+
+	/**
+	 * Ends an edit of the calling thread, returning its recording if it was the
+	 * outermost edit.
+	 */
+	private Recording finish() {
+		final Recording recording = recordings.get();
+		if (recording == null) {
+			throw new IllegalStateException("No edit in progress");
+		}
+		if (--recording.depth > 0) return null;
+		recordings.remove();
+		return recording;
+	}
+
+	/**
+	 * Gets whether the given module's execution is being recorded, and stops
+	 * recording it.
+	 */
+	private boolean isRecording(final Module module) {
+		final Recording recording = recordings.get();
+		return recording != null && recording.modules.remove(module);
+	}
+
+	/** Includes the datasets of the given module in its edit, if recorded. */
+	private void include(final Module module) {
+		final Recording recording = recordings.get();
+		if (recording == null || !recording.modules.contains(module)) return;
+		include(recording, datasets(module));
+	}
+
+	/** Takes snapshots of the given datasets, unless already taken. */
+	private void include(final Recording recording,
+		final Collection<Dataset> datasets)
+	{
+		for (final Dataset dataset : datasets) {
+			if (recording.snapshots.containsKey(dataset)) continue;
+			final DatasetSnapshot snapshot = dataset.snapshot(true);
+			recording.snapshots.put(dataset, snapshot);
+			synchronized (live) {
+				live.add(snapshot);
+			}
+		}
+	}
+
+	/**
+	 * Gets the datasets among the inputs and outputs of the given module,
+	 * including those of image displays and dataset views.
+	 */
+	private List<Dataset> datasets(final Module module) {
+		final List<Dataset> datasets = new ArrayList<Dataset>();
+		for (final Object value : module.getInputs().values()) {
+			addDatasets(value, datasets);
+		}
+		for (final Object value : module.getOutputs().values()) {
+			addDatasets(value, datasets);
+		}
+		return datasets;
+	}
+
+	private void addDatasets(final Object value, final List<Dataset> datasets) {
+		if (value instanceof Dataset) datasets.add((Dataset) value);
+		else if (value instanceof DatasetView) {
+			datasets.add(((DatasetView) value).getData());
+		}
+		else if (value instanceof ImageDisplay) {
+			for (final DataView view : (ImageDisplay) value) {
+				if (view.getData() instanceof Dataset) {
+					datasets.add((Dataset) view.getData());
+				}
+			}
+		}
+	}
+
+	/** Adds the changes made since the given snapshot to its history. */
+	private void record(final DatasetSnapshot snapshot) {
+		final Dataset dataset = snapshot.getDataset();
+		if (dataset.getModificationStamp() == snapshot.getStamp()) return;
+		if (!snapshot.isIntact()) {
+			// NB: Earlier edits of other planes remain applicable; those of the
+			// changed planes are found stale when undone.
+			log.warn(dataset.getName() + " was changed without preparing the " +
+				"changed planes for writing; the change cannot be undone");
+			return;
+		}
+		if (snapshot.getCopiedPlaneCount() == 0) return;
+		final Edit edit;
+		try {
+			edit = new Edit(snapshot);
+		}
+		catch (final IOException exc) {
+			log.warn("Cannot record changes to " + dataset.getName(), exc);
+			clear(dataset);
+			return;
+		}
+		add(edit);
+	}
+
+	private void dispose(final DatasetSnapshot snapshot) {
+		synchronized (live) {
+			live.remove(snapshot);
+		}
+		snapshot.dispose();
+	}
+
+	private synchronized void add(final Edit edit) {
+		History history = histories.get(edit.getDataset());
+		if (history == null) {
+			history = new History();
+			histories.put(edit.getDataset(), history);
+		}
+		for (final Edit undone : history.undone) {
+			discard(undone);
+		}
+		history.undone.clear();
+		history.done.addLast(edit);
+		edits.add(edit);
+		historySize += edit.getSize();
+
+		final int levels = getLevels();
+		while (history.done.size() > levels) {
+			discard(history.done.removeFirst());
+		}
+		while (historySize > MAX_HISTORY_BYTES && !edits.isEmpty()) {
+			final Edit oldest = edits.iterator().next();
+			final History h = histories.get(oldest.getDataset());
+			h.done.remove(oldest);
+			h.undone.remove(oldest);
+			discard(oldest);
+		}
+	}
+
+	/**
+	 * Applies the given edit, which was moved between its history's stacks. If
+	 * the dataset has changed since it was last applied, the history is cleared
+	 * instead.
+	 */
+	private boolean apply(final Edit edit) {
+		final Dataset dataset = edit.getDataset();
+		try {
+			if (edit.isApplicable()) {
+				edit.apply();
+				return true;
+			}
+		}
+		catch (final IOException exc) {
+			log.warn("Cannot read changes to " + dataset.getName(), exc);
+		}
+		clear(dataset);
+		return false;
+	}
+
+	private synchronized void discard(final Edit edit) {
+		if (!edits.remove(edit)) return;
+		historySize -= edit.getSize();
+		edit.discard();
+	}
+
+	private int getLevels() {
+		if (optionsService == null) return 1;
+		final OptionsMemoryAndThreads options =
+			optionsService.getOptions(OptionsMemoryAndThreads.class);
+		return options != null && options.isMultipleBuffers() ? MAX_LEVELS : 1;
+	}
+
+	// -- Helper classes --
+
+	/** The snapshots of the datasets of an edit in progress on a thread. */
+	private static class Recording {
+
+		private int depth;
+
+		private final Map<Dataset, DatasetSnapshot> snapshots =
+			new LinkedHashMap<Dataset, DatasetSnapshot>();
+
+		private final Set<Module> modules = new HashSet<Module>();
+	}
+
+	/** The edits of a dataset which can be undone, and those which were. */
+	private static class History {
+
+		private final LinkedList<Edit> done = new LinkedList<Edit>();
+
+		private final LinkedList<Edit> undone = new LinkedList<Edit>();
+	}
+
+}
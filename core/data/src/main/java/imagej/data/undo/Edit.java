@@ -0,0 +1,178 @@
+/*
+ * #%L
+ * ImageJ software for multidimensional image processing and analysis.
+ * %%
+ * Copyright (C) 2009 - 2013 Board of Regents of the University of
+ * Wisconsin-Madison, Broad Institute of MIT and Harvard, and Max Planck
+ * Institute of Molecular Cell Biology and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are
+ * those of the authors and should not be interpreted as representing official
+ * policies, either expressed or implied, of any organization.
+ * #L%
+ */
+
+package imagej.data.undo;
+
+import imagej.data.Dataset;
+import imagej.data.DatasetSnapshot;
+import imagej.data.PlaneCopier;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * One recorded edit of a {@link Dataset}: the differences between the planes
+ * it changed before and after, stored in a temporary file. The same
+ * differences undo and redo the edit; which of the two applying them does
+ * depends on the current state of the planes.
+ * 
+ * @author Lee Kamentsky
+ */
+class Edit {
+
+	private final Dataset dataset;
+
+	private final long[] dims;
+
+	private final File file;
+
+	private final long[] planes;
+
+	/** Modification stamps of the planes after the edit was last applied. */
+	private final long[] stamps;
+
+	private final long size;
+
+	/**
+	 * Records the differences between the planes copied by the given snapshot,
+	 * as they were before the edit, and the planes of its dataset now. The
+	 * planes are read one at a time.
+	 */
+	Edit(final DatasetSnapshot snapshot) throws IOException {
+		dataset = snapshot.getDataset();
+		final List<Long> copied = snapshot.getCopiedPlanes();
+		planes = new long[copied.size()];
+		for (int i = 0; i < planes.length; i++) {
+			planes[i] = copied.get(i);
+		}
+		dims = new long[dataset.numDimensions()];
+		dataset.dimensions(dims);
+		stamps = new long[planes.length];
+		final PlaneCopier copier = new PlaneCopier(dataset);
+		file = File.createTempFile("imagej", ".undo");
+		file.deleteOnExit();
+		final DataOutputStream out =
+			new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+		boolean written = false;
+		try {
+			for (int i = 0; i < planes.length; i++) {
+				final Object before;
+				try {
+					before = snapshot.getCopiedPlane(planes[i]);
+				}
+				catch (final IllegalStateException exc) {
+					throw new IOException(exc);
+				}
+				final byte[] delta =
+					PlaneDeltas.encode(before, copier.read(planes[i]));
+				out.writeInt(delta.length);
+				out.write(delta);
+				stamps[i] = dataset.getModificationStamp(planes[i]);
+			}
+			written = true;
+		}
+		finally {
+			out.close();
+			if (!written) discard();
+		}
+		size = file.length();
+	}
+
+	// -- Edit methods --
+
+	public Dataset getDataset() {
+		return dataset;
+	}
+
+	/** Gets the number of bytes used to store the edit. */
+	public long getSize() {
+		return size;
+	}
+
+	/**
+	 * Gets whether the planes of the edit are as they were when it was last
+	 * applied, such that applying it again restores their other version.
+	 */
+	public boolean isApplicable() {
+		final long[] current = new long[dataset.numDimensions()];
+		dataset.dimensions(current);
+		if (!Arrays.equals(dims, current)) return false;
+		for (int i = 0; i < planes.length; i++) {
+			if (dataset.getModificationStamp(planes[i]) != stamps[i]) return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Applies the differences to the planes of the dataset, undoing the edit if
+	 * it was done, or redoing it if it was undone. The dataset then updates.
+	 */
+	public void apply() throws IOException {
+		final PlaneCopier copier = new PlaneCopier(dataset);
+		final DataInputStream in =
+			new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+		try {
+			for (final long p : planes) {
+				final byte[] delta = new byte[in.readInt()];
+				in.readFully(delta);
+				final Object plane = copier.read(p);
+				PlaneDeltas.apply(delta, plane);
+				dataset.prepareWrite(copier.interval(p));
+				copier.write(p, plane);
+			}
+		}
+		finally {
+			in.close();
+		}
+		for (int i = 0; i < planes.length; i++) {
+			dataset.update(copier.interval(planes[i]));
+			stamps[i] = dataset.getModificationStamp(planes[i]);
+		}
+	}
+
+	/** Deletes the stored differences; the edit can no longer be applied. */
+	public void discard() {
+		if (!file.delete()) file.deleteOnExit();
+	}
+
+}
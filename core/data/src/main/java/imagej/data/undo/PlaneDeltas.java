@@ -0,0 +1,119 @@
+/*
+ * #%L
+ * ImageJ software for multidimensional image processing and analysis.
+ * %%
+ * Copyright (C) 2009 - 2013 Board of Regents of the University of
+ * Wisconsin-Madison, Broad Institute of MIT and Harvard, and Max Planck
+ * Institute of Molecular Cell Biology and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are
+ * those of the authors and should not be interpreted as representing official
+ * policies, either expressed or implied, of any organization.
+ * #L%
+ */
+
+package imagej.data.undo;
+
+import imagej.data.PlaneCopier;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Encodes the difference between two versions of a plane, as returned by
+ * {@link imagej.data.PlaneCopier}, as the compressed exclusive or of their
+ * bytes. Unchanged samples are zero in the difference, so it compresses to
+ * little more than the changed samples; and the same difference turns either
+ * version into the other.
+ * 
+ * @author Lee Kamentsky
+ */
+final class PlaneDeltas {
+
+	private static final int BUFFER_SIZE = 8192;
+
+	private PlaneDeltas() {
+		// prevent instantiation of utility class
+	}
+
+	/** Encodes the difference between the given planes of the same type. */
+	static byte[] encode(final Object before, final Object after) {
+		final byte[] delta = PlaneCopier.toBytes(before).array();
+		final byte[] bytes = PlaneCopier.toBytes(after).array();
+		if (delta.length != bytes.length) {
+			throw new IllegalArgumentException("Planes differ in size");
+		}
+		for (int i = 0; i < delta.length; i++) {
+			delta[i] ^= bytes[i];
+		}
+		final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+		try {
+			deflater.setInput(delta);
+			deflater.finish();
+			final ByteArrayOutputStream out = new ByteArrayOutputStream();
+			final byte[] buffer = new byte[BUFFER_SIZE];
+			while (!deflater.finished()) {
+				out.write(buffer, 0, deflater.deflate(buffer));
+			}
+			return out.toByteArray();
+		}
+		finally {
+			deflater.end();
+		}
+	}
+
+	/**
+	 * Applies an encoded difference to the given plane in place, turning one
+	 * version of it into the other.
+	 */
+	static void apply(final byte[] delta, final Object plane) {
+		final ByteBuffer buffer = PlaneCopier.toBytes(plane);
+		final byte[] bytes = buffer.array();
+		final byte[] xor = new byte[bytes.length];
+		final Inflater inflater = new Inflater();
+		try {
+			inflater.setInput(delta);
+			int n = 0;
+			while (n < xor.length && !inflater.finished()) {
+				final int inflated = inflater.inflate(xor, n, xor.length - n);
+				if (inflated == 0 && inflater.needsInput()) break;
+				n += inflated;
+			}
+		}
+		catch (final DataFormatException exc) {
+			throw new IllegalArgumentException("Corrupt plane difference", exc);
+		}
+		finally {
+			inflater.end();
+		}
+		for (int i = 0; i < bytes.length; i++) {
+			bytes[i] ^= xor[i];
+		}
+		PlaneCopier.fromBytes(buffer, plane);
+	}
+
+}
@@ -0,0 +1,117 @@
+/*
+ * #%L
+ * ImageJ software for multidimensional image processing and analysis.
+ * %%
+ * Copyright (C) 2009 - 2013 Board of Regents of the University of
+ * Wisconsin-Madison, Broad Institute of MIT and Harvard, and Max Planck
+ * Institute of Molecular Cell Biology and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are
+ * those of the authors and should not be interpreted as representing official
+ * policies, either expressed or implied, of any organization.
+ * #L%
+ */
+
+package imagej.data.undo;
+
+import imagej.data.Dataset;
+import imagej.service.ImageJService;
+
+/**
+ * Interface for services that keep a multi-level history of the changes made
+ * to {@link Dataset}s, so that they can be undone and redone.
+ * <p>
+ * Changes are recorded per edit, of the datasets it was begun with: by
+ * default, each executed module is one edit of the datasets among its inputs
+ * and outputs, excluding modules whose info has the {@link #NO_UNDO}
+ * attribute. Only the planes which were prepared for writing (see
+ * {@link Dataset#prepareWrite(net.imglib2.Interval)}) are recorded, as
+ * compressed differences kept out of the Java heap. An edit which wrote planes
+ * without preparing them is not recorded, and the earlier edits of those
+ * planes can then no longer be undone; those of other planes still can.
+ * </p>
+ * <p>
+ * Writes through {@link imagej.data.DrawingTool},
+ * {@link Dataset#setPlane(int, Object)}, {@link Dataset#copyInto(Dataset)} and
+ * {@link imagej.data.DatasetSnapshot#restore()} are prepared, as are those of
+ * the in-place math commands; so is {@link Dataset#setImgPlus} and hence
+ * {@link Dataset#copyDataFrom(Dataset)}, when the new image has the same
+ * dimensions and type. Changes of a dataset's dimensions or type, such as
+ * crops and type conversions, and writes made by the legacy layer or by
+ * commands editing an image's samples directly, cannot be undone.
+ * </p>
+ * 
+ * @author Lee Kamentsky
+ */
+public interface UndoService extends ImageJService {
+
+	/** Attribute of modules whose execution is not recorded as an edit. */
+	String NO_UNDO = "no-undo";
+
+	/**
+	 * Starts an edit on the calling thread, after which the changes made to the
+	 * given datasets are recorded. Edits may be nested, the datasets of inner
+	 * edits joining the outermost edit; each call must be matched by a call to
+	 * {@link #endEdit()} or {@link #cancelEdit()}.
+	 */
+	void beginEdit(Dataset... datasets);
+
+	/**
+	 * Ends an edit started by the calling thread. When the outermost edit ends,
+	 * the changes made during it are added to the history of each dataset.
+	 */
+	void endEdit();
+
+	/** Ends an edit started by the calling thread, without recording it. */
+	void cancelEdit();
+
+	/** Gets whether the given dataset has an edit which can be undone. */
+	boolean canUndo(Dataset dataset);
+
+	/** Gets whether the given dataset has an undone edit which can be redone. */
+	boolean canRedo(Dataset dataset);
+
+	/**
+	 * Undoes the latest edit of the given dataset.
+	 * 
+	 * @return false if there was no edit to undo, or the dataset changed such
+	 *         that it could not be undone; the history is then cleared.
+	 */
+	boolean undo(Dataset dataset);
+
+	/**
+	 * Redoes the latest undone edit of the given dataset.
+	 * 
+	 * @return false if there was no edit to redo, or the dataset changed such
+	 *         that it could not be redone; the history is then cleared.
+	 */
+	boolean redo(Dataset dataset);
+
+	/** Discards the history of the given dataset. */
+	void clear(Dataset dataset);
+
+	/** Gets the number of bytes of history held, across all datasets. */
+	long getHistorySize();
+
+}
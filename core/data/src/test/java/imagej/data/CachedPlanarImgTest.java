@@ -0,0 +1,146 @@
+/*
+ * #%L
+ * ImageJ software for multidimensional image processing and analysis.
+ * %%
+ * Copyright (C) 2009 - 2013 Board of Regents of the University of
+ * Wisconsin-Madison, Broad Institute of MIT and Harvard, and Max Planck
+ * Institute of Molecular Cell Biology and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are
+ * those of the authors and should not be interpreted as representing official
+ * policies, either expressed or implied, of any organization.
+ * #L%
+ */
+
+package imagej.data;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import net.imglib2.Cursor;
+import net.imglib2.RandomAccess;
+import net.imglib2.img.Img;
+import net.imglib2.img.array.ArrayImgFactory;
+import net.imglib2.type.numeric.real.FloatType;
+
+import org.junit.Test;
+
+/**
+ * Unit tests for {@link CachedPlanarImg}.
+ * 
+ * @author Lee Kamentsky
+ */
+public class CachedPlanarImgTest {
+
+	private static final long[] DIMENSIONS = { 8, 8, 10 };
+
+	private static final long PLANE_BYTES = 8 * 8 * 4;
+
+	@Test
+	public void testReadThrough() {
+		final Img<FloatType> source = createSource();
+		final CachedPlanarImg<FloatType, ?> img =
+			CachedPlanarImg.create(source, 3 * PLANE_BYTES);
+		assertEquals(0, img.getHeldPlaneCount());
+		final Cursor<FloatType> cursor = img.localizingCursor();
+		final RandomAccess<FloatType> access = source.randomAccess();
+		while (cursor.hasNext()) {
+			cursor.fwd();
+			access.setPosition(cursor);
+			assertEquals(access.get().get(), cursor.get().get(), 0);
+			assertTrue(img.getHeldPlaneCount() <= 3);
+		}
+	}
+
+	@Test
+	public void testModifiedPlanesKept() {
+		final Img<FloatType> source = createSource();
+		final CachedPlanarImg<FloatType, ?> img =
+			CachedPlanarImg.create(source, 2 * PLANE_BYTES);
+		final RandomAccess<FloatType> access = img.randomAccess();
+		access.setPosition(new long[] { 1, 2, 0 });
+		access.get().set(-1);
+		// visit every other plane, which would otherwise discard plane 0
+		for (int z = 1; z < DIMENSIONS[2]; z++) {
+			access.setPosition(z, 2);
+			access.get().get();
+		}
+		assertEquals(3, img.getHeldPlaneCount());
+		access.setPosition(new long[] { 1, 2, 0 });
+		assertEquals(-1, access.get().get(), 0);
+	}
+
+	@Test
+	public void testPositionedPlanesKept() {
+		final Img<FloatType> source = createSource();
+		final CachedPlanarImg<FloatType, ?> img =
+			CachedPlanarImg.create(source, 2 * PLANE_BYTES);
+		final RandomAccess<FloatType> writer = img.randomAccess();
+		writer.setPosition(new long[] { 1, 2, 0 });
+		writer.get().get();
+		// visit every other plane, which would otherwise discard plane 0
+		final RandomAccess<FloatType> reader = img.randomAccess();
+		for (int z = 1; z < DIMENSIONS[2]; z++) {
+			reader.setPosition(new long[] { 0, 0, z });
+			reader.get().get();
+		}
+		// the writer is still positioned in plane 0, without reloading it
+		writer.get().set(-1);
+		reader.setPosition(new long[] { 1, 2, 0 });
+		assertEquals(-1, reader.get().get(), 0);
+	}
+
+	@Test
+	public void testReleasePlanes() {
+		final Img<FloatType> source = createSource();
+		final CachedPlanarImg<FloatType, ?> img =
+			CachedPlanarImg.create(source, 4 * PLANE_BYTES);
+		final RandomAccess<FloatType> access = img.randomAccess();
+		access.setPosition(new long[] { 1, 2, 0 });
+		access.get().set(-1);
+		for (int z = 1; z < 3; z++) {
+			access.setPosition(z, 2);
+			access.get().get();
+		}
+		// plane 0 is modified and plane 2 in use, so only plane 1 goes
+		assertEquals(1, img.releasePlanes());
+		assertEquals(2, img.getHeldPlaneCount());
+		access.setPosition(new long[] { 1, 2, 0 });
+		assertEquals(-1, access.get().get(), 0);
+	}
+
+	// -- Helper methods --
+
+	private Img<FloatType> createSource() {
+		final Img<FloatType> source =
+			new ArrayImgFactory<FloatType>().create(DIMENSIONS, new FloatType());
+		final Cursor<FloatType> cursor = source.localizingCursor();
+		while (cursor.hasNext()) {
+			cursor.fwd();
+			cursor.get().set(cursor.getIntPosition(0) + 10 * cursor.getIntPosition(1) +
+				100 * cursor.getIntPosition(2));
+		}
+		return source;
+	}
+
+}
@@ -0,0 +1,164 @@
+/*
+ * #%L
+ * ImageJ software for multidimensional image processing and analysis.
+ * %%
+ * Copyright (C) 2009 - 2013 Board of Regents of the University of
+ * Wisconsin-Madison, Broad Institute of MIT and Harvard, and Max Planck
+ * Institute of Molecular Cell Biology and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are
+ * those of the authors and should not be interpreted as representing official
+ * policies, either expressed or implied, of any organization.
+ * #L%
+ */
+
+package imagej.data;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import net.imglib2.Cursor;
+import net.imglib2.FinalInterval;
+import net.imglib2.RandomAccess;
+import net.imglib2.img.Img;
+import net.imglib2.img.ImgFactory;
+import net.imglib2.img.cell.CellImgFactory;
+import net.imglib2.img.planar.PlanarImgFactory;
+import net.imglib2.meta.ImgPlus;
+import net.imglib2.type.numeric.integer.LongType;
+
+import org.junit.Test;
+import org.scijava.Context;
+
+/**
+ * Unit tests for {@link DatasetSnapshot}.
+ * 
+ * @author Lee Kamentsky
+ */
+public class DatasetSnapshotTest {
+
+	private static final long[] DIMENSIONS = { 5, 4, 3 };
+
+	@Test
+	public void testPlanarRestore() {
+		testRestore(new PlanarImgFactory<LongType>(), false);
+	}
+
+	@Test
+	public void testCellRestore() {
+		testRestore(new CellImgFactory<LongType>(2), false);
+	}
+
+	@Test
+	public void testFileRestore() {
+		testRestore(new PlanarImgFactory<LongType>(), true);
+	}
+
+	@Test
+	public void testUnpreparedWrite() {
+		final Dataset dataset = createDataset(new PlanarImgFactory<LongType>());
+		final DatasetSnapshot snapshot = dataset.snapshot();
+		final FinalInterval plane2 = plane(2);
+		fill(dataset, plane2, 7);
+		dataset.update(plane2);
+		assertFalse(snapshot.isIntact());
+	}
+
+	// -- Helper methods --
+
+	private void testRestore(final ImgFactory<LongType> factory,
+		final boolean toFile)
+	{
+		final Dataset dataset = createDataset(factory);
+		final DatasetSnapshot snapshot = dataset.snapshot(toFile);
+		assertEquals(0, snapshot.getCopiedPlaneCount());
+
+		final FinalInterval plane1 = plane(1);
+		dataset.prepareWrite(plane1);
+		fill(dataset, plane1, Long.MAX_VALUE);
+		dataset.update(plane1);
+		assertEquals(1, snapshot.getCopiedPlaneCount());
+		// NB: Planes copied to a file take no heap.
+		assertEquals(toFile, snapshot.getMemoryUsage() == 0);
+		assertTrue(snapshot.isIntact());
+
+		snapshot.restore();
+		final RandomAccess<LongType> access = typed(dataset).randomAccess();
+		final long[] pos = new long[DIMENSIONS.length];
+		for (pos[2] = 0; pos[2] < DIMENSIONS[2]; pos[2]++) {
+			for (pos[1] = 0; pos[1] < DIMENSIONS[1]; pos[1]++) {
+				for (pos[0] = 0; pos[0] < DIMENSIONS[0]; pos[0]++) {
+					access.setPosition(pos);
+					assertEquals(value(pos), access.get().get());
+				}
+			}
+		}
+		// NB: Restoring leaves the snapshot intact, for restoring again.
+		assertTrue(snapshot.isIntact());
+	}
+
+	private Dataset createDataset(final ImgFactory<LongType> factory) {
+		final Context context = new Context(DatasetService.class);
+		final DatasetService datasetService =
+			context.getService(DatasetService.class);
+		final Img<LongType> img = factory.create(DIMENSIONS, new LongType());
+		final Cursor<LongType> cursor = img.localizingCursor();
+		final long[] pos = new long[DIMENSIONS.length];
+		while (cursor.hasNext()) {
+			cursor.fwd();
+			cursor.localize(pos);
+			cursor.get().set(value(pos));
+		}
+		return datasetService.create(new ImgPlus<LongType>(img));
+	}
+
+	/** Gets a distinct value for each position, beyond double precision. */
+	private long value(final long[] pos) {
+		return (1L << 60) + 100 * pos[2] + 10 * pos[1] + pos[0];
+	}
+
+	private FinalInterval plane(final long z) {
+		return new FinalInterval(new long[] { 0, 0, z }, new long[] {
+			DIMENSIONS[0] - 1, DIMENSIONS[1] - 1, z });
+	}
+
+	private void fill(final Dataset dataset, final FinalInterval region,
+		final long value)
+	{
+		final RandomAccess<LongType> access = typed(dataset).randomAccess();
+		final long[] pos = new long[DIMENSIONS.length];
+		pos[2] = region.min(2);
+		for (pos[1] = 0; pos[1] < DIMENSIONS[1]; pos[1]++) {
+			for (pos[0] = 0; pos[0] < DIMENSIONS[0]; pos[0]++) {
+				access.setPosition(pos);
+				access.get().set(value);
+			}
+		}
+	}
+
+	private ImgPlus<LongType> typed(final Dataset dataset) {
+		return dataset.typedImg(new LongType());
+	}
+
+}
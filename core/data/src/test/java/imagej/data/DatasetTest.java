@@ -37,13 +37,19 @@
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import net.imglib2.FinalInterval;
 import net.imglib2.RandomAccess;
 import net.imglib2.img.Img;
 import net.imglib2.img.ImgFactory;
+import net.imglib2.img.array.ArrayImgFactory;
 import net.imglib2.meta.ImgPlus;
 import net.imglib2.img.cell.CellImgFactory;
 import net.imglib2.img.planar.PlanarImgFactory;
+import net.imglib2.meta.Axes;
+import net.imglib2.meta.DefaultCalibratedAxis;
 import net.imglib2.type.numeric.RealType;
 import net.imglib2.type.numeric.integer.IntType;
 
@@ -169,6 +175,50 @@ private void testNonplanarCase() {
 		}
 	}
 
+	private void fillPlanes(final Dataset ds) {
+		final RandomAccess<? extends RealType<?>> accessor =
+			ds.getImgPlus().randomAccess();
+		final long[] pos = new long[DIMENSIONS.length];
+		for (pos[4] = 0; pos[4] < TPLANES; pos[4]++) {
+			for (pos[3] = 0; pos[3] < ZPLANES; pos[3]++) {
+				for (pos[2] = 0; pos[2] < CPLANES; pos[2]++) {
+					for (pos[1] = 0; pos[1] < DIMENSIONS[1]; pos[1]++) {
+						for (pos[0] = 0; pos[0] < DIMENSIONS[0]; pos[0]++) {
+							accessor.setPosition(pos);
+							accessor.get().setReal(
+								planeValue((int) pos[2], (int) pos[3], (int) pos[4]));
+						}
+					}
+				}
+			}
+		}
+	}
+
+	private void testPlaneBuffers(final Dataset ds) {
+		fillPlanes(ds);
+		final int planeSize = (int) (DIMENSIONS[0] * DIMENSIONS[1]);
+		int planeNum = 0;
+		for (int t = 0; t < TPLANES; t++) {
+			for (int z = 0; z < ZPLANES; z++) {
+				for (int c = 0; c < CPLANES; c++) {
+					final PlaneBuffer buffer = ds.getPlaneBuffer(planeNum++);
+					assertEquals(planeSize, buffer.getLength());
+					final int[] array = (int[]) buffer.getArray();
+					for (int i = 0; i < planeSize; i++) {
+						assertEquals(planeValue(c, z, t), array[buffer.getOffset() + i]);
+					}
+				}
+			}
+		}
+		// NB: Buffers are views of the dataset's own storage.
+		final PlaneBuffer buffer = ds.getPlaneBuffer(5);
+		((int[]) buffer.getArray())[buffer.getOffset() + 3] = -1;
+		final RandomAccess<? extends RealType<?>> accessor =
+			ds.getImgPlus().randomAccess();
+		accessor.setPosition(new long[] { 3, 0, 1, 2, 0 });
+		assertEquals(-1, accessor.get().getRealDouble(), 0);
+	}
+
 	// -- public tests --
 
 	@Test
@@ -176,4 +226,64 @@ public void testGetPlane() {
 		testPlanarCase();
 		testNonplanarCase();
 	}
+
+	@Test
+	public void testPlaneBuffers() {
+		testPlaneBuffers(createDataset(new ArrayImgFactory<IntType>()));
+		testPlaneBuffers(createDataset(new CellImgFactory<IntType>(new int[] { 4,
+			4, 1, 2, 1 })));
+		final Dataset unaligned =
+			createDataset(new CellImgFactory<IntType>(new int[] { 2, 4, 1, 1, 1 }));
+		assertNull(unaligned.getPlaneBuffer(0));
+		assertNull(unaligned.getPlane(0, false));
+	}
+
+	@Test
+	public void testModificationStamps() {
+		final Dataset ds = createPlanarDataset();
+		final long start = ds.getModificationStamp();
+
+		// only the plane at c=1, z=2, t=0 changes
+		ds.update(new FinalInterval(new long[] { 0, 0, 1, 2, 0 }, new long[] { 3,
+			3, 1, 2, 0 }));
+		final long stamp = ds.getModificationStamp();
+		assertTrue(stamp > start);
+		assertEquals(stamp, ds.getModificationStamp(5));
+		assertTrue(ds.getModificationStamp(4) <= start);
+
+		ds.setPlane(4, new int[16]);
+		assertTrue(ds.getModificationStamp(4) > stamp);
+		assertEquals(stamp, ds.getModificationStamp(5));
+
+		// every plane changes
+		ds.update();
+		assertEquals(ds.getModificationStamp(), ds.getModificationStamp(4));
+		assertEquals(ds.getModificationStamp(), ds.getModificationStamp(5));
+	}
+
+	@Test
+	public void testStaleChannelRange() {
+		final Dataset ds = createPlanarDataset();
+		ds.setChannelMinimum(0, 1);
+		ds.setChannelMaximum(0, 10);
+		assertEquals(1, ds.getChannelMinimum(0), 0);
+		assertEquals(10, ds.getChannelMaximum(0), 0);
+		ds.update();
+		assertTrue(Double.isNaN(ds.getChannelMinimum(0)));
+		assertTrue(Double.isNaN(ds.getChannelMaximum(0)));
+	}
+
+	@Test
+	public void testChannelRangeOfUnchangedChannel() {
+		final Dataset ds = createPlanarDataset();
+		ds.setAxis(new DefaultCalibratedAxis(Axes.CHANNEL), 2);
+		ds.setChannelMinimum(0, 1);
+		ds.setChannelMinimum(1, 2);
+
+		// only the plane at c=1, z=2, t=0 changes
+		ds.update(new FinalInterval(new long[] { 0, 0, 1, 2, 0 }, new long[] { 3,
+			3, 1, 2, 0 }));
+		assertEquals(1, ds.getChannelMinimum(0), 0);
+		assertTrue(Double.isNaN(ds.getChannelMinimum(1)));
+	}
 }
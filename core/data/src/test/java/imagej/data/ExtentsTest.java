@@ -115,4 +115,20 @@ public void testNumElements() {
 		assertEquals(105, ext.numElements());
 	}
 
+	@Test
+	public void testIndexMath() {
+		ext = new Extents(new long[] { 1, -2, 0 }, new long[] { 3, 1, 4 });
+		assertEquals(1, ext.stride(0));
+		assertEquals(3, ext.stride(1));
+		assertEquals(12, ext.stride(2));
+		final long[] pos = new long[3];
+		for (long i = 0; i < ext.numElements(); i++) {
+			ext.indexToPosition(i, pos);
+			assertEquals(1 + i % 3, pos[0]);
+			assertEquals(-2 + i / 3 % 4, pos[1]);
+			assertEquals(i / 12, pos[2]);
+			assertEquals(i, ext.positionToIndex(pos));
+		}
+	}
+
 }
@@ -0,0 +1,133 @@
+/*
+ * #%L
+ * ImageJ software for multidimensional image processing and analysis.
+ * %%
+ * Copyright (C) 2009 - 2013 Board of Regents of the University of
+ * Wisconsin-Madison, Broad Institute of MIT and Harvard, and Max Planck
+ * Institute of Molecular Cell Biology and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are
+ * those of the authors and should not be interpreted as representing official
+ * policies, either expressed or implied, of any organization.
+ * #L%
+ */
+
+package imagej.data;
+
+import static org.junit.Assert.assertEquals;
+import net.imglib2.Cursor;
+import net.imglib2.RandomAccess;
+import net.imglib2.img.Img;
+import net.imglib2.img.array.ArrayImgFactory;
+import net.imglib2.img.cell.CellImgFactory;
+import net.imglib2.img.planar.PlanarImgFactory;
+import net.imglib2.type.numeric.RealType;
+import net.imglib2.type.numeric.integer.IntType;
+import net.imglib2.type.numeric.integer.UnsignedByteType;
+import net.imglib2.type.numeric.real.FloatType;
+
+import org.junit.Test;
+import org.scijava.Context;
+import org.scijava.thread.ThreadService;
+
+/**
+ * Unit tests for {@link ImgCopier}.
+ * 
+ * @author Lee Kamentsky
+ */
+public class ImgCopierTest {
+
+	private static final long[] DIMENSIONS = { 512, 256, 3, 4 };
+
+	private final Context context = new Context(ThreadService.class);
+
+	private final ImgCopier copier =
+		new ImgCopier(context.getService(ThreadService.class), 4);
+
+	@Test
+	public void testPlanarToArray() {
+		final Img<IntType> input =
+			new PlanarImgFactory<IntType>().create(DIMENSIONS, new IntType());
+		fill(input);
+		final Img<IntType> output =
+			new ArrayImgFactory<IntType>().create(DIMENSIONS, new IntType());
+		copier.copy(input, output);
+		assertSameValues(input, output);
+	}
+
+	@Test
+	public void testConversion() {
+		final Img<UnsignedByteType> input =
+			new PlanarImgFactory<UnsignedByteType>().create(DIMENSIONS,
+				new UnsignedByteType());
+		fill(input);
+		final Img<FloatType> output =
+			new PlanarImgFactory<FloatType>().create(DIMENSIONS, new FloatType());
+		copier.copy(input, output);
+		assertSameValues(input, output);
+	}
+
+	@Test
+	public void testDifferentIterationOrder() {
+		final Img<IntType> input =
+			new CellImgFactory<IntType>(64).create(DIMENSIONS, new IntType());
+		fill(input);
+		final Img<IntType> output =
+			new PlanarImgFactory<IntType>().create(DIMENSIONS, new IntType());
+		copier.copy(input, output);
+		assertSameValues(input, output);
+	}
+
+	// -- Helper methods --
+
+	private void fill(final Img<? extends RealType<?>> img) {
+		final Cursor<? extends RealType<?>> cursor = img.localizingCursor();
+		while (cursor.hasNext()) {
+			cursor.fwd();
+			cursor.get().setReal(value(cursor));
+		}
+	}
+
+	private double value(final Cursor<?> cursor) {
+		double value = 0;
+		for (int d = cursor.numDimensions() - 1; d >= 0; d--) {
+			value = 7 * value + cursor.getLongPosition(d);
+		}
+		return value % 256;
+	}
+
+	private void assertSameValues(final Img<? extends RealType<?>> expected,
+		final Img<? extends RealType<?>> actual)
+	{
+		final Cursor<? extends RealType<?>> cursor = actual.localizingCursor();
+		final RandomAccess<? extends RealType<?>> access = expected.randomAccess();
+		while (cursor.hasNext()) {
+			cursor.fwd();
+			access.setPosition(cursor);
+			assertEquals(access.get().getRealDouble(), cursor.get()
+				.getRealDouble(), 0);
+		}
+	}
+
+}
@@ -545,4 +545,28 @@ public void testGetDoublePosition() {
 		assertEquals(2, pos.getDoublePosition(2), 0);
 	}
 
+	@Test
+	public void testIndexFollowsMoves() {
+		extents = new Extents(new long[] { 2, 3, 4 });
+		pos = extents.createPosition();
+		final long[] coords = new long[3];
+		long i = 0;
+		while (pos.hasNext()) {
+			pos.fwd();
+			pos.localize(coords);
+			assertEquals(i++, pos.getIndex());
+			assertEquals(extents.positionToIndex(coords), pos.getIndex());
+		}
+		assertEquals(extents.numElements(), i);
+		pos.setPosition(new long[] { 1, 1, 1 });
+		pos.move(2, 2);
+		pos.bck(0);
+		pos.setPosition(0, 1);
+		pos.localize(coords);
+		assertEquals(extents.positionToIndex(coords), pos.getIndex());
+		final Position copy = new Position(pos);
+		copy.fwd();
+		assertEquals(pos.getIndex() + 1, copy.getIndex());
+	}
+
 }
@@ -0,0 +1,126 @@
+/*
+ * #%L
+ * ImageJ software for multidimensional image processing and analysis.
+ * %%
+ * Copyright (C) 2009 - 2013 Board of Regents of the University of
+ * Wisconsin-Madison, Broad Institute of MIT and Harvard, and Max Planck
+ * Institute of Molecular Cell Biology and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are
+ * those of the authors and should not be interpreted as representing official
+ * policies, either expressed or implied, of any organization.
+ * #L%
+ */
+
+package imagej.data;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+/**
+ * Compares the speed of {@link Position}'s index math with that of the
+ * previous implementation, which recomputed indices from the coordinates.
+ * 
+ * @author Lee Kamentsky
+ */
+public class TestPositionSpeeds {
+
+	private static final long[] DIMS = { 3, 4, 5, 6, 7 };
+
+	private static final int REPS = 2000;
+
+	@Test
+	public void testPositionSpeeds() {
+		final Extents extents = new Extents(DIMS);
+		for (int i = 0; i < 5; i++) {
+			speedTest(extents, "ignore - reference");
+			speedTest(extents, "ignore - position");
+		}
+		final long expected = speedTest(extents, "reference");
+		assertEquals(expected, speedTest(extents, "position"));
+	}
+
+	// -- helpers --
+
+	private long speedTest(final Extents extents, final String testName) {
+		final boolean reference = testName.endsWith("reference");
+		final Position pos = extents.createPosition();
+		final long[] coords = new long[extents.numDimensions()];
+		long sum = 0;
+
+		final long start = System.currentTimeMillis();
+
+		for (int r = 0; r < REPS; r++) {
+			pos.reset();
+			while (pos.hasNext()) {
+				pos.fwd();
+				if (reference) {
+					pos.localize(coords);
+					final long index = referenceGetIndex(extents, coords);
+					referenceSetIndex(extents, index, coords);
+					sum += index;
+				}
+				else {
+					final long index = pos.getIndex();
+					pos.setIndex(index);
+					sum += index;
+				}
+			}
+		}
+
+		final long stop = System.currentTimeMillis();
+
+		System.out.println(testName + " : elapsed time = " + (stop - start));
+		return sum;
+	}
+
+	/** The index computation of the previous implementation. */
+	private long referenceGetIndex(final Extents extents, final long[] position)
+	{
+		long offset = 1;
+		long index1D = 0;
+		for (int i = 0; i < position.length; i++) {
+			index1D += offset * (position[i] - extents.min(i));
+			offset *= extents.dimension(i);
+		}
+		return index1D;
+	}
+
+	/** The position computation of the previous implementation. */
+	private void referenceSetIndex(final Extents extents, final long index,
+		final long[] position)
+	{
+		long offset = 1;
+		long r = index;
+		for (int i = 0; i < position.length; i++) {
+			final long offset1 = offset * extents.dimension(i);
+			final long q = i < position.length - 1 ? r % offset1 : r;
+			position[i] = (q / offset) + extents.min(i);
+			r -= q;
+			offset = offset1;
+		}
+	}
+
+}
@@ -0,0 +1,131 @@
+/*
+ * #%L
+ * ImageJ software for multidimensional image processing and analysis.
+ * %%
+ * Copyright (C) 2009 - 2013 Board of Regents of the University of
+ * Wisconsin-Madison, Broad Institute of MIT and Harvard, and Max Planck
+ * Institute of Molecular Cell Biology and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are
+ * those of the authors and should not be interpreted as representing official
+ * policies, either expressed or implied, of any organization.
+ * #L%
+ */
+
+package imagej.data.batch;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import imagej.data.Dataset;
+import imagej.data.DatasetService;
+import imagej.data.event.DatasetUpdatedEvent;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import net.imglib2.FinalInterval;
+import net.imglib2.Interval;
+import net.imglib2.meta.Axes;
+import net.imglib2.meta.AxisType;
+import net.imglib2.type.numeric.integer.UnsignedByteType;
+
+import org.junit.Test;
+import org.scijava.Context;
+import org.scijava.event.EventHandler;
+import org.scijava.event.EventService;
+
+/**
+ * Unit tests for {@link DefaultUpdateBatchService}.
+ * 
+ * @author Lee Kamentsky
+ */
+public class DefaultUpdateBatchServiceTest {
+
+	private final Context context = new Context(DatasetService.class,
+		UpdateBatchService.class, EventService.class);
+
+	private final UpdateBatchService updateBatchService = context
+		.getService(UpdateBatchService.class);
+
+	private final List<DatasetUpdatedEvent> events = Collections
+		.synchronizedList(new ArrayList<DatasetUpdatedEvent>());
+
+	// NB: The event service holds its subscribers weakly.
+	private final Object subscriber = new Object() {
+
+		@EventHandler
+		protected void onEvent(final DatasetUpdatedEvent event) {
+			events.add(event);
+		}
+	};
+
+	public DefaultUpdateBatchServiceTest() {
+		context.getService(EventService.class).subscribe(subscriber);
+	}
+
+	@Test
+	public void testBatch() {
+		final Dataset dataset = createDataset();
+		updateBatchService.beginBatch();
+		updateBatchService.beginBatch();
+		dataset.update(new FinalInterval(new long[] { 1, 2 }, new long[] { 3, 4 }));
+		updateBatchService.endBatch();
+		dataset.update(new FinalInterval(new long[] { 5, 0 }, new long[] { 6, 1 }));
+		assertTrue(events.isEmpty());
+		updateBatchService.endBatch();
+
+		assertEquals(1, events.size());
+		final Interval region = events.get(0).getRegion();
+		assertEquals(1, region.min(0));
+		assertEquals(0, region.min(1));
+		assertEquals(6, region.max(0));
+		assertEquals(4, region.max(1));
+	}
+
+	@Test
+	public void testBurst() {
+		final Dataset dataset = createDataset();
+		dataset.update(new FinalInterval(new long[] { 1, 2 }, new long[] { 3, 4 }));
+		dataset.update();
+		dataset.update();
+		updateBatchService.flush();
+
+		// NB: The first update is published at once, the others at the end of
+		// the frame.
+		assertEquals(2, events.size());
+		assertNull(events.get(1).getRegion());
+	}
+
+	// -- Helper methods --
+
+	private Dataset createDataset() {
+		final DatasetService datasetService =
+			context.getService(DatasetService.class);
+		return datasetService.create(new UnsignedByteType(), new long[] { 8, 8 },
+			"batch", new AxisType[] { Axes.X, Axes.Y });
+	}
+
+}
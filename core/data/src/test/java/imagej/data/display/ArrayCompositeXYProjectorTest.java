@@ -0,0 +1,194 @@
+/*
+ * #%L
+ * ImageJ software for multidimensional image processing and analysis.
+ * %%
+ * Copyright (C) 2009 - 2013 Board of Regents of the University of
+ * Wisconsin-Madison, Broad Institute of MIT and Harvard, and Max Planck
+ * Institute of Molecular Cell Biology and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are
+ * those of the authors and should not be interpreted as representing official
+ * policies, either expressed or implied, of any organization.
+ * #L%
+ */
+
+package imagej.data.display;
+
+import static org.junit.Assert.assertArrayEquals;
+import imagej.data.Dataset;
+import imagej.data.DatasetService;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+import net.imglib2.Cursor;
+import net.imglib2.converter.Converter;
+import net.imglib2.display.ARGBScreenImage;
+import net.imglib2.display.CompositeXYProjector;
+import net.imglib2.display.RealLUTConverter;
+import net.imglib2.meta.Axes;
+import net.imglib2.meta.AxisType;
+import net.imglib2.meta.ImgPlus;
+import net.imglib2.type.NativeType;
+import net.imglib2.type.numeric.ARGBType;
+import net.imglib2.type.numeric.RealType;
+import net.imglib2.type.numeric.integer.UnsignedShortType;
+import net.imglib2.type.numeric.real.FloatType;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.scijava.Context;
+
+/**
+ * Unit tests for {@link ArrayCompositeXYProjector}, including a comparison of
+ * its speed against {@link CompositeXYProjector}.
+ * 
+ * @author Lee Kamentsky
+ */
+public class ArrayCompositeXYProjectorTest {
+
+	private static final int X = 512;
+	private static final int Y = 512;
+	private static final int C = 3;
+
+	private Context context;
+	private DatasetService datasetService;
+
+	@Before
+	public void setUp() {
+		context = new Context(DatasetService.class);
+		datasetService = context.getService(DatasetService.class);
+	}
+
+	@After
+	public void tearDown() {
+		context.dispose();
+	}
+
+	@Test
+	public void testUnsignedShortComposite() {
+		final Dataset ds = createDataset(new UnsignedShortType());
+		assertSameProjection(ds, 1000, 40000, true);
+		assertSameProjection(ds, 1000, 40000, false);
+	}
+
+	@Test
+	public void testFloatComposite() {
+		final Dataset ds = createDataset(new FloatType());
+		assertSameProjection(ds, 5000, 60000, true);
+	}
+
+	@Test
+	public void testProjectorSpeeds() {
+		final Dataset ds = createDataset(new UnsignedShortType());
+		final ARGBScreenImage target1 = new ARGBScreenImage(X, Y);
+		final ARGBScreenImage target2 = new ARGBScreenImage(X, Y);
+		final CompositeXYProjector<?> composite =
+			createCompositeProjector(ds, target1, 0, 65535);
+		final CompositeXYProjector<?> array =
+			createArrayProjector(ds, target2, 0, 65535);
+		for (int i = 0; i < 5; i++) {
+			speedTest(composite, "ignore - composite projector");
+			speedTest(array, "ignore - array projector");
+		}
+		speedTest(composite, "composite projector");
+		speedTest(array, "array projector");
+		assertArrayEquals(target1.getData(), target2.getData());
+	}
+
+	// -- Helper methods --
+
+	private <T extends RealType<T> & NativeType<T>> Dataset createDataset(
+		final T type)
+	{
+		final Dataset ds =
+			datasetService.create(type, new long[] { X, Y, C }, "test",
+				new AxisType[] { Axes.X, Axes.Y, Axes.CHANNEL });
+		final Random random = new Random(0);
+		final Cursor<? extends RealType<?>> cursor = ds.getImgPlus().cursor();
+		while (cursor.hasNext()) {
+			cursor.next().setReal(random.nextInt(65536));
+		}
+		return ds;
+	}
+
+	private void assertSameProjection(final Dataset ds, final double min,
+		final double max, final boolean composite)
+	{
+		final ARGBScreenImage expected = new ARGBScreenImage(X, Y);
+		final ARGBScreenImage actual = new ARGBScreenImage(X, Y);
+		final CompositeXYProjector<?> p1 =
+			createCompositeProjector(ds, expected, min, max);
+		final CompositeXYProjector<?> p2 =
+			createArrayProjector(ds, actual, min, max);
+		p1.setComposite(composite);
+		p2.setComposite(composite);
+		p1.map();
+		p2.map();
+		assertArrayEquals(expected.getData(), actual.getData());
+	}
+
+	@SuppressWarnings({ "rawtypes", "unchecked" })
+	private CompositeXYProjector<?> createCompositeProjector(final Dataset ds,
+		final ARGBScreenImage target, final double min, final double max)
+	{
+		final ImgPlus img = ds.getImgPlus();
+		return new CompositeXYProjector(img, target, createConverters(min, max),
+			2);
+	}
+
+	@SuppressWarnings({ "rawtypes", "unchecked" })
+	private CompositeXYProjector<?> createArrayProjector(final Dataset ds,
+		final ARGBScreenImage target, final double min, final double max)
+	{
+		return new ArrayCompositeXYProjector(ds, target,
+			createConverters(min, max), 2);
+	}
+
+	@SuppressWarnings({ "rawtypes", "unchecked" })
+	private ArrayList<Converter<?, ARGBType>> createConverters(final double min,
+		final double max)
+	{
+		final ArrayList<Converter<?, ARGBType>> converters =
+			new ArrayList<Converter<?, ARGBType>>();
+		for (int c = 0; c < C; c++) {
+			converters.add(new RealLUTConverter(min, max, ColorTables
+				.getDefaultColorTable(c)));
+		}
+		return converters;
+	}
+
+	private void speedTest(final CompositeXYProjector<?> projector,
+		final String testName)
+	{
+		final long start = System.currentTimeMillis();
+		for (int i = 0; i < 10; i++) {
+			projector.map();
+		}
+		final long stop = System.currentTimeMillis();
+		System.out.println(testName + " : elapsed time = " + (stop - start));
+	}
+
+}
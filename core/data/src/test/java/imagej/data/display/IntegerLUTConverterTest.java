@@ -0,0 +1,102 @@
+/*
+ * #%L
+ * ImageJ software for multidimensional image processing and analysis.
+ * %%
+ * Copyright (C) 2009 - 2013 Board of Regents of the University of
+ * Wisconsin-Madison, Broad Institute of MIT and Harvard, and Max Planck
+ * Institute of Molecular Cell Biology and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are
+ * those of the authors and should not be interpreted as representing official
+ * policies, either expressed or implied, of any organization.
+ * #L%
+ */
+
+package imagej.data.display;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import net.imglib2.display.RealLUTConverter;
+import net.imglib2.type.numeric.ARGBType;
+import net.imglib2.type.numeric.integer.ByteType;
+import net.imglib2.type.numeric.integer.IntType;
+import net.imglib2.type.numeric.integer.UnsignedShortType;
+import net.imglib2.type.numeric.real.FloatType;
+
+import org.junit.Test;
+
+/**
+ * Unit tests for {@link IntegerLUTConverter}.
+ * 
+ * @author Lee Kamentsky
+ */
+public class IntegerLUTConverterTest {
+
+	@Test
+	public void testSupported() {
+		assertTrue(IntegerLUTConverter.isSupported(new ByteType()));
+		assertTrue(IntegerLUTConverter.isSupported(new UnsignedShortType()));
+		assertFalse(IntegerLUTConverter.isSupported(new IntType()));
+		assertFalse(IntegerLUTConverter.isSupported(new FloatType()));
+	}
+
+	@Test
+	public void testMatchesRealLUTConverter() {
+		final ByteType type = new ByteType();
+		final IntegerLUTConverter<ByteType> table =
+			new IntegerLUTConverter<ByteType>(type, -50, 100, ColorTables.FIRE);
+		final RealLUTConverter<ByteType> real =
+			new RealLUTConverter<ByteType>(-50, 100, ColorTables.FIRE);
+		assertSameConversions(table, real);
+
+		// changing the range must rebuild the table
+		table.setMin(0);
+		table.setMax(20);
+		real.setMin(0);
+		real.setMax(20);
+		assertSameConversions(table, real);
+
+		// as must changing the color table
+		table.setLUT(ColorTables.GRAYS);
+		real.setLUT(ColorTables.GRAYS);
+		assertSameConversions(table, real);
+	}
+
+	// -- Helper methods --
+
+	private void assertSameConversions(final IntegerLUTConverter<ByteType> c1,
+		final RealLUTConverter<ByteType> c2)
+	{
+		final ByteType value = new ByteType();
+		final ARGBType argb1 = new ARGBType(), argb2 = new ARGBType();
+		for (int i = Byte.MIN_VALUE; i <= Byte.MAX_VALUE; i++) {
+			value.set((byte) i);
+			c1.convert(value, argb1);
+			c2.convert(value, argb2);
+			assertEquals(argb2.get(), argb1.get());
+		}
+	}
+
+}
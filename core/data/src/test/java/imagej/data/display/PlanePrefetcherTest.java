@@ -0,0 +1,141 @@
+/*
+ * #%L
+ * ImageJ software for multidimensional image processing and analysis.
+ * %%
+ * Copyright (C) 2009 - 2013 Board of Regents of the University of
+ * Wisconsin-Madison, Broad Institute of MIT and Harvard, and Max Planck
+ * Institute of Molecular Cell Biology and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are
+ * those of the authors and should not be interpreted as representing official
+ * policies, either expressed or implied, of any organization.
+ * #L%
+ */
+
+package imagej.data.display;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.util.ArrayList;
+
+import net.imglib2.Cursor;
+import net.imglib2.converter.Converter;
+import net.imglib2.display.ARGBScreenImage;
+import net.imglib2.display.CompositeXYProjector;
+import net.imglib2.display.RealLUTConverter;
+import net.imglib2.img.array.ArrayImg;
+import net.imglib2.img.array.ArrayImgs;
+import net.imglib2.img.basictypeaccess.array.ByteArray;
+import net.imglib2.type.numeric.ARGBType;
+import net.imglib2.type.numeric.integer.UnsignedByteType;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.scijava.Context;
+import org.scijava.thread.ThreadService;
+
+/**
+ * Unit tests for {@link PlanePrefetcher}.
+ * 
+ * @author Lee Kamentsky
+ */
+public class PlanePrefetcherTest {
+
+	private Context context;
+	private PlanePrefetcher prefetcher;
+
+	@Before
+	public void setUp() {
+		context = new Context(ThreadService.class);
+		final ArrayImg<UnsignedByteType, ByteArray> img =
+			ArrayImgs.unsignedBytes(2, 2, 4);
+		final Cursor<UnsignedByteType> cursor = img.localizingCursor();
+		while (cursor.hasNext()) {
+			cursor.fwd();
+			// each plane holds its own index
+			cursor.get().set(cursor.getIntPosition(2));
+		}
+		final ArrayList<Converter<UnsignedByteType, ARGBType>> converters =
+			new ArrayList<Converter<UnsignedByteType, ARGBType>>();
+		converters.add(new RealLUTConverter<UnsignedByteType>(0, 255,
+			ColorTables.GRAYS));
+		prefetcher =
+			new PlanePrefetcher(context.getService(ThreadService.class),
+				new PlanePrefetcher.ProjectorFactory() {
+
+					@Override
+					public CompositeXYProjector<?> createProjector(
+						final ARGBScreenImage target)
+					{
+						return new CompositeXYProjector<UnsignedByteType>(img, target,
+							converters, -1);
+					}
+				}, 2, 2, 2);
+	}
+
+	@After
+	public void tearDown() {
+		context.dispose();
+	}
+
+	@Test
+	public void testPrefetch() throws InterruptedException {
+		prefetcher.prefetch(new long[] { 0, 0, 0 }, 2, 1, 2, 4, false, false);
+		final PlanePrefetcher.PlaneBuffer buffer = take(new long[] { 0, 0, 2 });
+		assertNotNull(buffer);
+		assertEquals(2, ARGBType.red(buffer.getImage().getData()[0]));
+		// planes beyond the prefetch depth are not rendered
+		assertNull(take(new long[] { 0, 0, 3 }));
+	}
+
+	@Test
+	public void testInvalidate() throws InterruptedException {
+		prefetcher.prefetch(new long[] { 0, 0, 0 }, 2, 1, 1, 4, false, false);
+		assertNotNull(take(new long[] { 0, 0, 1 }));
+		prefetcher.prefetch(new long[] { 0, 0, 1 }, 2, 1, 1, 4, false, false);
+		assertNotNull(take(new long[] { 0, 0, 2 }));
+		prefetcher.prefetch(new long[] { 0, 0, 2 }, 2, 1, 1, 4, false, false);
+		prefetcher.invalidate();
+		assertNull(take(new long[] { 0, 0, 3 }));
+	}
+
+	// -- Helper methods --
+
+	/** Waits briefly for the plane at the given position to be prefetched. */
+	private PlanePrefetcher.PlaneBuffer take(final long[] position)
+		throws InterruptedException
+	{
+		for (int i = 0; i < 50; i++) {
+			final PlanePrefetcher.PlaneBuffer buffer =
+				prefetcher.take(position, new ARGBScreenImage(2, 2), null);
+			if (buffer != null) return buffer;
+			Thread.sleep(10);
+		}
+		return null;
+	}
+
+}
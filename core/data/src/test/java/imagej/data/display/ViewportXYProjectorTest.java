@@ -0,0 +1,143 @@
+/*
+ * #%L
+ * ImageJ software for multidimensional image processing and analysis.
+ * %%
+ * Copyright (C) 2009 - 2013 Board of Regents of the University of
+ * Wisconsin-Madison, Broad Institute of MIT and Harvard, and Max Planck
+ * Institute of Molecular Cell Biology and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are
+ * those of the authors and should not be interpreted as representing official
+ * policies, either expressed or implied, of any organization.
+ * #L%
+ */
+
+package imagej.data.display;
+
+import static org.junit.Assert.assertEquals;
+import imagej.util.IntRect;
+
+import java.util.ArrayList;
+
+import net.imglib2.Cursor;
+import net.imglib2.converter.Converter;
+import net.imglib2.display.ARGBScreenImage;
+import net.imglib2.display.RealLUTConverter;
+import net.imglib2.img.array.ArrayImg;
+import net.imglib2.img.array.ArrayImgs;
+import net.imglib2.img.basictypeaccess.array.ByteArray;
+import net.imglib2.type.numeric.ARGBType;
+import net.imglib2.type.numeric.integer.UnsignedByteType;
+
+import org.junit.Test;
+
+/**
+ * Unit tests for {@link ViewportXYProjector}.
+ * 
+ * @author Lee Kamentsky
+ */
+public class ViewportXYProjectorTest {
+
+	@Test
+	public void testFullRegion() {
+		final ArrayImg<UnsignedByteType, ByteArray> img = createImage(4, 4);
+		final ARGBScreenImage target = new ARGBScreenImage(4, 4);
+		final ViewportXYProjector<UnsignedByteType> projector =
+			createProjector(img, target);
+		projector.map();
+		for (int y = 0; y < 4; y++) {
+			for (int x = 0; x < 4; x++) {
+				assertEquals(value(x, y), red(target, x, y));
+			}
+		}
+	}
+
+	@Test
+	public void testSubregion() {
+		final ArrayImg<UnsignedByteType, ByteArray> img = createImage(4, 4);
+		final ARGBScreenImage target = new ARGBScreenImage(2, 2);
+		final ViewportXYProjector<UnsignedByteType> projector =
+			createProjector(img, target);
+		projector.setRegion(new IntRect(1, 2, 2, 2));
+		projector.map();
+		for (int y = 0; y < 2; y++) {
+			for (int x = 0; x < 2; x++) {
+				assertEquals(value(x + 1, y + 2), red(target, x, y));
+			}
+		}
+	}
+
+	@Test
+	public void testDownsampledRegion() {
+		final ArrayImg<UnsignedByteType, ByteArray> img = createImage(4, 4);
+		final ARGBScreenImage target = new ARGBScreenImage(2, 2);
+		final ViewportXYProjector<UnsignedByteType> projector =
+			createProjector(img, target);
+		projector.setRegion(new IntRect(0, 0, 4, 4));
+		projector.map();
+		// NB: each target pixel samples the center of its 2x2 source block
+		assertEquals(value(1, 1), red(target, 0, 0));
+		assertEquals(value(3, 1), red(target, 1, 0));
+		assertEquals(value(1, 3), red(target, 0, 1));
+		assertEquals(value(3, 3), red(target, 1, 1));
+	}
+
+	// -- Helper methods --
+
+	private ArrayImg<UnsignedByteType, ByteArray> createImage(final int w,
+		final int h)
+	{
+		final ArrayImg<UnsignedByteType, ByteArray> img =
+			ArrayImgs.unsignedBytes(w, h);
+		final Cursor<UnsignedByteType> cursor = img.localizingCursor();
+		while (cursor.hasNext()) {
+			cursor.fwd();
+			cursor.get().set(
+				value(cursor.getIntPosition(0), cursor.getIntPosition(1)));
+		}
+		return img;
+	}
+
+	private ViewportXYProjector<UnsignedByteType> createProjector(
+		final ArrayImg<UnsignedByteType, ByteArray> img,
+		final ARGBScreenImage target)
+	{
+		final ArrayList<Converter<UnsignedByteType, ARGBType>> converters =
+			new ArrayList<Converter<UnsignedByteType, ARGBType>>();
+		converters.add(new RealLUTConverter<UnsignedByteType>(0, 255,
+			ColorTables.GRAYS));
+		return new ViewportXYProjector<UnsignedByteType>(img, target, converters,
+			-1);
+	}
+
+	private int value(final int x, final int y) {
+		return 10 * y + x;
+	}
+
+	private int red(final ARGBScreenImage image, final int x, final int y) {
+		final int w = (int) image.dimension(0);
+		return ARGBType.red(image.getData()[y * w + x]);
+	}
+
+}
@@ -0,0 +1,125 @@
+/*
+ * #%L
+ * ImageJ software for multidimensional image processing and analysis.
+ * %%
+ * Copyright (C) 2009 - 2013 Board of Regents of the University of
+ * Wisconsin-Madison, Broad Institute of MIT and Harvard, and Max Planck
+ * Institute of Molecular Cell Biology and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are
+ * those of the authors and should not be interpreted as representing official
+ * policies, either expressed or implied, of any organization.
+ * #L%
+ */
+
+package imagej.data.mapped;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import net.imglib2.Cursor;
+import net.imglib2.img.Img;
+import net.imglib2.type.logic.BitType;
+import net.imglib2.type.numeric.integer.UnsignedShortType;
+
+import org.junit.Test;
+
+/**
+ * Unit tests for {@link MappedImgFactory}.
+ * 
+ * @author Lee Kamentsky
+ */
+public class MappedImgFactoryTest {
+
+	private static final long[] DIMENSIONS = { 64, 32, 3 };
+
+	@Test
+	public void testReadWrite() {
+		final Img<UnsignedShortType> img =
+			new MappedImgFactory<UnsignedShortType>().create(DIMENSIONS,
+				new UnsignedShortType());
+		assertTrue(img instanceof MappedPlanarImg);
+		fill(img);
+		assertValues(img);
+	}
+
+	@Test
+	public void testCopy() {
+		final Img<UnsignedShortType> img =
+			new MappedImgFactory<UnsignedShortType>().create(DIMENSIONS,
+				new UnsignedShortType());
+		fill(img);
+		final Img<UnsignedShortType> copy = img.copy();
+		assertTrue(copy instanceof MappedPlanarImg);
+		assertValues(copy);
+	}
+
+	@Test
+	public void testStorageArrayIsCopy() {
+		final Img<UnsignedShortType> img =
+			new MappedImgFactory<UnsignedShortType>().create(DIMENSIONS,
+				new UnsignedShortType());
+		fill(img);
+		final MappedPlanarImg<?, ?> planar = (MappedPlanarImg<?, ?>) img;
+		final short[] samples =
+			(short[]) planar.getPlane(1).getCurrentStorageArray();
+		assertEquals(DIMENSIONS[0] * DIMENSIONS[1], samples.length);
+		final Cursor<UnsignedShortType> cursor = img.localizingCursor();
+		cursor.jumpFwd(samples.length + 5);
+		assertEquals(samples[5] & 0xffff, cursor.get().get());
+		samples[5]++;
+		assertValues(img);
+	}
+
+	@Test
+	public void testUnsupportedType() {
+		final Img<BitType> img =
+			new MappedImgFactory<BitType>().create(DIMENSIONS, new BitType());
+		assertFalse(img instanceof MappedPlanarImg);
+	}
+
+	// -- Helper methods --
+
+	private void fill(final Img<UnsignedShortType> img) {
+		final Cursor<UnsignedShortType> cursor = img.localizingCursor();
+		while (cursor.hasNext()) {
+			cursor.fwd();
+			cursor.get().set(value(cursor));
+		}
+	}
+
+	private void assertValues(final Img<UnsignedShortType> img) {
+		final Cursor<UnsignedShortType> cursor = img.localizingCursor();
+		while (cursor.hasNext()) {
+			cursor.fwd();
+			assertEquals(value(cursor), cursor.get().get());
+		}
+	}
+
+	private int value(final Cursor<?> cursor) {
+		return cursor.getIntPosition(0) + 64 * cursor.getIntPosition(1) + 2048 *
+			cursor.getIntPosition(2);
+	}
+
+}
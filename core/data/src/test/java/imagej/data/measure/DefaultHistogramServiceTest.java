@@ -0,0 +1,173 @@
+/*
+ * #%L
+ * ImageJ software for multidimensional image processing and analysis.
+ * %%
+ * Copyright (C) 2009 - 2013 Board of Regents of the University of
+ * Wisconsin-Madison, Broad Institute of MIT and Harvard, and Max Planck
+ * Institute of Molecular Cell Biology and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are
+ * those of the authors and should not be interpreted as representing official
+ * policies, either expressed or implied, of any organization.
+ * #L%
+ */
+
+package imagej.data.measure;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import imagej.data.Dataset;
+import imagej.data.DatasetService;
+import imagej.data.PlaneCopier;
+
+import net.imglib2.Cursor;
+import net.imglib2.FinalInterval;
+import net.imglib2.histogram.Histogram1d;
+import net.imglib2.meta.Axes;
+import net.imglib2.meta.AxisType;
+import net.imglib2.type.numeric.RealType;
+import net.imglib2.type.numeric.integer.UnsignedByteType;
+import net.imglib2.view.Views;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.scijava.Context;
+
+/**
+ * Unit tests for {@link DefaultHistogramService}.
+ * 
+ * @author Lee Kamentsky
+ */
+public class DefaultHistogramServiceTest {
+
+	private Context context;
+
+	private HistogramService histogramService;
+
+	private Dataset ds;
+
+	@Before
+	public void setUp() {
+		context = new Context(DatasetService.class, HistogramService.class);
+		histogramService = context.getService(HistogramService.class);
+		// 2 channels by 3 slices, so 6 planes
+		ds =
+			context.getService(DatasetService.class).create(
+				new UnsignedByteType(), new long[] { 5, 4, 2, 3 }, "histograms",
+				new AxisType[] { Axes.X, Axes.Y, Axes.CHANNEL, Axes.Z });
+		int i = 0;
+		for (final RealType<?> value : ds.getImgPlus()) {
+			value.setReal(i++ % 16);
+		}
+	}
+
+	@After
+	public void tearDown() {
+		context.dispose();
+	}
+
+	@Test
+	public void testStatistics() {
+		final Statistics all = histogramService.getStatistics(ds);
+		assertEquals(120, all.getCount());
+		assertEquals(0, all.get(Stat.MINIMUM), 0);
+		assertEquals(15, all.get(Stat.MAXIMUM), 0);
+		assertEquals(0, histogramService.getDataRange(ds).getMin(), 0);
+		assertEquals(15, histogramService.getDataRange(ds).getMax(), 0);
+		long count = 0;
+		for (long c = 0; c < 2; c++) {
+			count += histogramService.getChannelStatistics(ds, c).getCount();
+		}
+		assertEquals(120, count);
+		assertSame(all, histogramService.getStatistics(ds));
+	}
+
+	@Test
+	public void testMergedHistograms() {
+		final Histogram1d<UnsignedByteType> stack =
+			histogramService.getHistogram(ds, 0, 16, 16);
+		final long[] expected = new long[16];
+		for (long p = 0; p < 6; p++) {
+			final long[] plane =
+				histogramService.getPlaneHistogram(ds, p, 0, 16, 16).toLongArray();
+			for (int bin = 0; bin < plane.length; bin++) {
+				expected[bin] += plane[bin];
+			}
+		}
+		assertArrayEquals(expected, stack.toLongArray());
+		final long[] channels = new long[16];
+		for (long c = 0; c < 2; c++) {
+			final long[] channel =
+				histogramService.getChannelHistogram(ds, c, 0, 16, 16).toLongArray();
+			for (int bin = 0; bin < channel.length; bin++) {
+				channels[bin] += channel[bin];
+			}
+		}
+		assertArrayEquals(expected, channels);
+	}
+
+	@Test
+	public void testChangedPlanesOnly() {
+		final Histogram1d<?> plane0 =
+			histogramService.getPlaneHistogram(ds, 0, 0, 16, 16);
+		final Histogram1d<?> plane1 =
+			histogramService.getPlaneHistogram(ds, 1, 0, 16, 16);
+		assertSame(plane0, histogramService.getPlaneHistogram(ds, 0, 0, 16, 16));
+
+		// change every sample of plane 1 to 15
+		final FinalInterval interval = new PlaneCopier(ds).interval(1);
+		final Cursor<? extends RealType<?>> cursor =
+			Views.iterable(Views.interval(ds.getImgPlus(), interval)).cursor();
+		while (cursor.hasNext()) {
+			cursor.next().setReal(15);
+		}
+		ds.update(interval);
+
+		assertSame(plane0, histogramService.getPlaneHistogram(ds, 0, 0, 16, 16));
+		final Histogram1d<?> changed =
+			histogramService.getPlaneHistogram(ds, 1, 0, 16, 16);
+		assertNotSame(plane1, changed);
+		assertEquals(20, changed.toLongArray()[15]);
+		assertEquals(15, histogramService.getPlaneStatistics(ds, 1).get(
+			Stat.MINIMUM), 0);
+	}
+
+	@Test
+	public void testLatestBinsOnly() {
+		final Histogram1d<?> fine =
+			histogramService.getPlaneHistogram(ds, 0, 0, 16, 16);
+		final Histogram1d<?> coarse =
+			histogramService.getPlaneHistogram(ds, 0, 0, 16, 8);
+		assertEquals(8, coarse.toLongArray().length);
+		// NB: The counts of the earlier bins were dropped, and are recounted.
+		final Histogram1d<?> recounted =
+			histogramService.getPlaneHistogram(ds, 0, 0, 16, 16);
+		assertNotSame(fine, recounted);
+		assertArrayEquals(fine.toLongArray(), recounted.toLongArray());
+	}
+
+}
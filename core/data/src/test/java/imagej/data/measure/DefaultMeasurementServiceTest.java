@@ -0,0 +1,125 @@
+/*
+ * #%L
+ * ImageJ software for multidimensional image processing and analysis.
+ * %%
+ * Copyright (C) 2009 - 2013 Board of Regents of the University of
+ * Wisconsin-Madison, Broad Institute of MIT and Harvard, and Max Planck
+ * Institute of Molecular Cell Biology and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are
+ * those of the authors and should not be interpreted as representing official
+ * policies, either expressed or implied, of any organization.
+ * #L%
+ */
+
+package imagej.data.measure;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import imagej.data.Dataset;
+import imagej.data.DatasetService;
+import imagej.data.table.ResultsTable;
+
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+
+import net.imglib2.meta.Axes;
+import net.imglib2.meta.AxisType;
+import net.imglib2.ops.pointset.HyperVolumePointSet;
+import net.imglib2.ops.pointset.PointSet;
+import net.imglib2.type.numeric.RealType;
+import net.imglib2.type.numeric.real.FloatType;
+
+import org.junit.Test;
+import org.scijava.Context;
+
+/**
+ * Unit tests for {@link DefaultMeasurementService}.
+ * 
+ * @author Lee Kamentsky
+ */
+public class DefaultMeasurementServiceTest {
+
+	@Test
+	public void testMeasureRegions() {
+		final Context context =
+			new Context(DatasetService.class, MeasurementService.class,
+				StatisticsService.class);
+		final Dataset ds =
+			context.getService(DatasetService.class).create(new FloatType(),
+				new long[] { 40, 30, 3 }, "regions",
+				new AxisType[] { Axes.X, Axes.Y, Axes.Z });
+		int i = 0;
+		for (final RealType<?> value : ds.getImgPlus()) {
+			value.setReal((i * 7919) % 101);
+			i++;
+		}
+		final List<PointSet> regions = new ArrayList<PointSet>();
+		// overlapping boxes, in different planes
+		regions.add(box(new long[] { 2, 3, 0 }, new long[] { 20, 12, 1 }));
+		regions.add(box(new long[] { 10, 5, 1 }, new long[] { 39, 29, 2 }));
+		regions.add(box(new long[] { 15, 0, 0 }, new long[] { 15, 29, 2 }));
+		// a plane-less region, measured in the first plane
+		regions.add(box(new long[] { 0, 0 }, new long[] { 3, 3 }));
+		// a region entirely outside the image
+		regions.add(box(new long[] { 50, 50, 0 }, new long[] { 60, 60, 0 }));
+
+		final EnumSet<Stat> stats =
+			EnumSet.of(Stat.COUNT, Stat.ARITHMETIC_MEAN, Stat.MAXIMUM);
+		final ResultsTable table =
+			context.getService(MeasurementService.class).measure(ds, regions,
+				stats);
+		assertEquals(stats.size(), table.getColumnCount());
+		assertEquals(regions.size(), table.getRowCount());
+		assertEquals("Arithmetic mean", table.getColumnHeader(1));
+
+		final StatisticsService statisticsService =
+			context.getService(StatisticsService.class);
+		for (int row = 0; row < 3; row++) {
+			final Statistics expected =
+				statisticsService.compute(ds, regions.get(row), stats);
+			int col = 0;
+			for (final Stat stat : stats) {
+				assertEquals(expected.get(stat), table.getValue(col++, row), 1e-9);
+			}
+		}
+		final Statistics firstPlane =
+			statisticsService.compute(ds, box(new long[] { 0, 0, 0 }, new long[] {
+				3, 3, 0 }), stats);
+		assertEquals(16, table.getValue(0, 3), 0);
+		assertEquals(firstPlane.get(Stat.ARITHMETIC_MEAN), table.getValue(1, 3),
+			1e-9);
+		assertEquals(0, table.getValue(0, 4), 0);
+		assertTrue(Double.isNaN(table.getValue(1, 4)));
+		context.dispose();
+	}
+
+	// -- Helper methods --
+
+	private PointSet box(final long[] min, final long[] max) {
+		return new HyperVolumePointSet(min, max);
+	}
+
+}
@@ -0,0 +1,183 @@
+/*
+ * #%L
+ * ImageJ software for multidimensional image processing and analysis.
+ * %%
+ * Copyright (C) 2009 - 2013 Board of Regents of the University of
+ * Wisconsin-Madison, Broad Institute of MIT and Harvard, and Max Planck
+ * Institute of Molecular Cell Biology and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are
+ * those of the authors and should not be interpreted as representing official
+ * policies, either expressed or implied, of any organization.
+ * #L%
+ */
+
+package imagej.data.measure;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import imagej.data.Dataset;
+import imagej.data.DatasetService;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import net.imglib2.meta.Axes;
+import net.imglib2.meta.AxisType;
+import net.imglib2.type.numeric.RealType;
+import net.imglib2.type.numeric.integer.UnsignedShortType;
+
+import org.junit.Test;
+import org.scijava.Context;
+
+/**
+ * Unit tests for {@link QuantileSketch} and {@link IntegerHistogram}.
+ * 
+ * @author Lee Kamentsky
+ */
+public class QuantileSketchTest {
+
+	private static final double EPSILON = 0.01;
+
+	@Test
+	public void testRankError() {
+		final double[] data = randomData(1000000, 1);
+		final QuantileSketch sketch = new QuantileSketch(EPSILON);
+		for (final double x : data) {
+			sketch.add(x);
+		}
+		assertEquals(data.length, sketch.getCount());
+		assertQuantiles(sketch, data);
+	}
+
+	@Test
+	public void testMerge() {
+		final double[] data = randomData(300000, 2);
+		final QuantileSketch[] parts = new QuantileSketch[3];
+		for (int p = 0; p < parts.length; p++) {
+			parts[p] = new QuantileSketch(EPSILON);
+			for (int i = p; i < data.length; i += parts.length) {
+				parts[p].add(data[i]);
+			}
+		}
+		parts[0].merge(parts[1]);
+		parts[0].merge(parts[2]);
+		assertEquals(data.length, parts[0].getCount());
+		assertQuantiles(parts[0], data);
+	}
+
+	@Test
+	public void testSmall() {
+		final QuantileSketch sketch = new QuantileSketch(EPSILON);
+		assertTrue(Double.isNaN(sketch.quantile(0.5)));
+		for (final double x : new double[] { 5, 1, 4, 2, 3 }) {
+			sketch.add(x);
+		}
+		assertEquals(1, sketch.quantile(0), 0);
+		assertEquals(3, sketch.quantile(0.5), 0);
+		assertEquals(5, sketch.quantile(1), 0);
+	}
+
+	@Test
+	public void testHistogram() {
+		final IntegerHistogram histogram = new IntegerHistogram(-5, 10);
+		for (final double x : new double[] { 2, 4, 4, 4, 5, 5, 7, 9 }) {
+			histogram.add(x);
+		}
+		assertEquals(8, histogram.getCount());
+		assertEquals(3, histogram.getCount(4));
+		assertEquals(4.5, histogram.median(), 0);
+		assertEquals(4.5, histogram.trimmedMean(2), 1e-12);
+		assertTrue(Double.isNaN(histogram.trimmedMean(4)));
+		final IntegerHistogram other = new IntegerHistogram(-5, 10);
+		other.add(-5);
+		histogram.merge(other);
+		assertEquals(4, histogram.median(), 0);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testHistogramTooWide() {
+		new IntegerHistogram(0, IntegerHistogram.MAX_BINS);
+	}
+
+	@Test
+	public void testService() {
+		final Context context =
+			new Context(DatasetService.class, StatisticsService.class);
+		final Dataset ds =
+			context.getService(DatasetService.class).create(
+				new UnsignedShortType(), new long[] { 301, 200 }, "quantiles",
+				new AxisType[] { Axes.X, Axes.Y });
+		final double[] data = randomData(301 * 200, 3);
+		int i = 0;
+		for (final RealType<?> value : ds.getImgPlus()) {
+			data[i] = Math.floor(data[i] * 65535);
+			value.setReal(data[i++]);
+		}
+		final double[] sorted = data.clone();
+		Arrays.sort(sorted);
+		final int mid = sorted.length / 2;
+		final StatisticsService service =
+			context.getService(StatisticsService.class);
+		assertEquals(sorted[mid], service.median(ds), 0);
+		assertEquals(sorted[mid], service.median(ds, service.allOf(ds)), 0);
+		double sum = 0;
+		for (int j = 10; j < sorted.length - 10; j++) {
+			sum += sorted[j];
+		}
+		assertEquals(sum / (sorted.length - 20), service.trimmedMean(ds, 10),
+			1e-6);
+		final double q = service.quantile(ds, 0.25, EPSILON);
+		final int rank = Arrays.binarySearch(sorted, q);
+		assertTrue(Math.abs(rank - 0.25 * sorted.length) <= EPSILON *
+			sorted.length + 1);
+		context.dispose();
+	}
+
+	// -- Helper methods --
+
+	private double[] randomData(final int count, final long seed) {
+		final Random random = new Random(seed);
+		final double[] data = new double[count];
+		for (int i = 0; i < count; i++) {
+			data[i] = random.nextDouble();
+		}
+		return data;
+	}
+
+	/** Checks that each estimated quantile is within the rank error bound. */
+	private void assertQuantiles(final QuantileSketch sketch,
+		final double[] data)
+	{
+		final double[] sorted = data.clone();
+		Arrays.sort(sorted);
+		for (double q = 0; q <= 1; q += 0.05) {
+			final int rank = Arrays.binarySearch(sorted, sketch.quantile(q));
+			assertTrue("rank " + rank + " for q = " + q, rank >= 0);
+			assertTrue("rank " + rank + " for q = " + q, Math.abs(rank - q *
+				sorted.length) <= EPSILON * sorted.length + 1);
+		}
+	}
+
+}
@@ -0,0 +1,184 @@
+/*
+ * #%L
+ * ImageJ software for multidimensional image processing and analysis.
+ * %%
+ * Copyright (C) 2009 - 2013 Board of Regents of the University of
+ * Wisconsin-Madison, Broad Institute of MIT and Harvard, and Max Planck
+ * Institute of Molecular Cell Biology and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are
+ * those of the authors and should not be interpreted as representing official
+ * policies, either expressed or implied, of any organization.
+ * #L%
+ */
+
+package imagej.data.measure;
+
+import static org.junit.Assert.assertEquals;
+import imagej.data.Dataset;
+import imagej.data.DatasetService;
+
+import java.util.EnumSet;
+import java.util.List;
+
+import net.imglib2.meta.Axes;
+import net.imglib2.meta.AxisType;
+import net.imglib2.ops.pointset.HyperVolumePointSet;
+import net.imglib2.ops.pointset.PointSet;
+import net.imglib2.type.numeric.RealType;
+import net.imglib2.type.numeric.real.DoubleType;
+
+import org.junit.Test;
+import org.scijava.Context;
+
+/**
+ * Unit tests for {@link Statistics}.
+ * 
+ * @author Lee Kamentsky
+ */
+public class StatisticsTest {
+
+	private static final double[] DATA = { 2, 4, 4, 4, 5, 5, 7, 9 };
+
+	@Test
+	public void testMoments() {
+		final Statistics stats = gather(EnumSet.allOf(Stat.class));
+		assertEquals(8, stats.get(Stat.COUNT), 0);
+		assertEquals(40, stats.get(Stat.SUM), 0);
+		assertEquals(2, stats.get(Stat.MINIMUM), 0);
+		assertEquals(9, stats.get(Stat.MAXIMUM), 0);
+		assertEquals(5.5, stats.get(Stat.MIDPOINT), 0);
+		assertEquals(5, stats.get(Stat.ARITHMETIC_MEAN), 1e-12);
+		assertEquals(32, stats.get(Stat.SUM_OF_SQUARED_DEVIATIONS), 1e-12);
+		assertEquals(4, stats.get(Stat.POPULATION_VARIANCE), 1e-12);
+		assertEquals(2, stats.get(Stat.POPULATION_STD_DEV), 1e-12);
+		assertEquals(32.0 / 7, stats.get(Stat.SAMPLE_VARIANCE), 1e-12);
+
+		// compare the higher moments with a two pass computation
+		double m3 = 0, m4 = 0;
+		for (final double x : DATA) {
+			m3 += Math.pow(x - 5, 3);
+			m4 += Math.pow(x - 5, 4);
+		}
+		final double skew = m3 / 8 / Math.pow(4, 1.5);
+		final double kurtosis = m4 / 8 / 16;
+		assertEquals(skew, stats.get(Stat.POPULATION_SKEW), 1e-12);
+		assertEquals(kurtosis, stats.get(Stat.POPULATION_KURTOSIS), 1e-12);
+		assertEquals(kurtosis - 3, stats.get(Stat.POPULATION_KURTOSIS_EXCESS),
+			1e-12);
+
+		double logs = 0, reciprocals = 0;
+		for (final double x : DATA) {
+			logs += Math.log(x);
+			reciprocals += 1 / x;
+		}
+		assertEquals(Math.exp(logs / 8), stats.get(Stat.GEOMETRIC_MEAN), 1e-12);
+		assertEquals(8 / reciprocals, stats.get(Stat.HARMONIC_MEAN), 1e-12);
+	}
+
+	@Test
+	public void testLargeOffset() {
+		// NB: A naive sum of squares loses all precision here.
+		final Statistics stats =
+			new Statistics(EnumSet.of(Stat.POPULATION_VARIANCE));
+		for (final double x : DATA) {
+			stats.add(1e9 + x);
+		}
+		assertEquals(4, stats.get(Stat.POPULATION_VARIANCE), 1e-6);
+	}
+
+	@Test
+	public void testMerge() {
+		final EnumSet<Stat> all = EnumSet.allOf(Stat.class);
+		final Statistics whole = gather(all);
+		for (int split = 0; split <= DATA.length; split++) {
+			final Statistics first = new Statistics(all);
+			final Statistics second = new Statistics(all);
+			for (int i = 0; i < DATA.length; i++) {
+				(i < split ? first : second).add(DATA[i]);
+			}
+			first.merge(second);
+			for (final Stat stat : all) {
+				assertEquals(stat.toString(), whole.get(stat), first.get(stat), 1e-9);
+			}
+		}
+	}
+
+	@Test
+	public void testSplit() {
+		final PointSet region =
+			new HyperVolumePointSet(new long[] { 0, 0, 0 }, new long[] { 9, 4, 0 });
+		final List<PointSet> parts = Partitions.split(region, 3);
+		assertEquals(3, parts.size());
+		long size = 0;
+		for (final PointSet part : parts) {
+			// NB: The last dimension has one point, so slabs are split along Y.
+			assertEquals(10, part.findBoundMax()[0] - part.findBoundMin()[0] + 1);
+			size += part.size();
+		}
+		assertEquals(region.size(), size);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testUngathered() {
+		gather(EnumSet.of(Stat.ARITHMETIC_MEAN)).get(Stat.MAXIMUM);
+	}
+
+	@Test
+	public void testService() {
+		final Context context =
+			new Context(DatasetService.class, StatisticsService.class);
+		final Dataset ds =
+			context.getService(DatasetService.class).create(new DoubleType(),
+				new long[] { 4, 2 }, "stats", new AxisType[] { Axes.X, Axes.Y });
+		int i = 0;
+		for (final RealType<?> value : ds.getImgPlus()) {
+			value.setReal(DATA[i++]);
+		}
+		final StatisticsService service =
+			context.getService(StatisticsService.class);
+		final EnumSet<Stat> which =
+			EnumSet.of(Stat.ARITHMETIC_MEAN, Stat.SAMPLE_STD_DEV, Stat.MAXIMUM);
+		final Statistics all = service.compute(ds, which);
+		final Statistics region =
+			service.compute(ds, new HyperVolumePointSet(new long[] { 4, 2 }), which);
+		for (final Stat stat : which) {
+			assertEquals(all.get(stat), region.get(stat), 1e-12);
+		}
+		assertEquals(5, service.arithmeticMean(ds), 1e-12);
+		assertEquals(9, service.maximum(ds), 0);
+		context.dispose();
+	}
+
+	// -- Helper methods --
+
+	private Statistics gather(final EnumSet<Stat> which) {
+		final Statistics stats = new Statistics(which);
+		for (final double x : DATA) {
+			stats.add(x);
+		}
+		return stats;
+	}
+
+}
@@ -0,0 +1,125 @@
+/*
+ * #%L
+ * ImageJ software for multidimensional image processing and analysis.
+ * %%
+ * Copyright (C) 2009 - 2013 Board of Regents of the University of
+ * Wisconsin-Madison, Broad Institute of MIT and Harvard, and Max Planck
+ * Institute of Molecular Cell Biology and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are
+ * those of the authors and should not be interpreted as representing official
+ * policies, either expressed or implied, of any organization.
+ * #L%
+ */
+
+package imagej.data.memory;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import imagej.data.Dataset;
+import imagej.data.DatasetService;
+import imagej.data.mapped.MappedPlanarImg;
+import net.imglib2.Cursor;
+import net.imglib2.meta.Axes;
+import net.imglib2.meta.AxisType;
+import net.imglib2.type.numeric.RealType;
+import net.imglib2.type.numeric.integer.UnsignedByteType;
+
+import org.junit.Test;
+import org.scijava.Context;
+
+/**
+ * Unit tests for {@link DefaultMemoryService}.
+ * 
+ * @author Lee Kamentsky
+ */
+public class DefaultMemoryServiceTest {
+
+	private final Context context = new Context(DatasetService.class,
+		MemoryService.class);
+
+	private final MemoryService memoryService =
+		context.getService(MemoryService.class);
+
+	@Test
+	public void testAccounting() {
+		final long before = memoryService.getUsage();
+		final Dataset dataset = createDataset("a");
+		assertEquals(before + 64 * 64 * 2, memoryService.getUsage());
+		dataset.decrementReferences();
+		assertEquals(before, memoryService.getUsage());
+	}
+
+	@Test
+	public void testSpilling() {
+		final Dataset older = createDataset("older");
+		final Dataset newer = createDataset("newer");
+		// NB: Modifying the older dataset makes it the most recently viewed.
+		older.update();
+		older.setDirty(false);
+
+		// make room for the newer dataset only
+		// NB: without a thread service, the samples are moved straight away
+		final long stamp = newer.getModificationStamp();
+		assertTrue(memoryService.reserve(memoryService.getBudget() -
+			memoryService.getUsage() + 64 * 64));
+		assertTrue(newer.getImgPlus().getImg() instanceof MappedPlanarImg);
+		assertFalse(older.getImgPlus().getImg() instanceof MappedPlanarImg);
+		assertFalse(newer.isDirty());
+		assertEquals(stamp, newer.getModificationStamp());
+
+		// the samples survive the move to disk
+		long i = 0;
+		for (final RealType<?> sample : newer.getImgPlus()) {
+			assertEquals(i++ % 64, sample.getRealDouble(), 0);
+		}
+	}
+
+	@Test
+	public void testAvailable() {
+		final Dataset dataset = createDataset("idle");
+		// NB: An idle dataset could be moved to disk, but querying moves nothing.
+		assertEquals(memoryService.getBudget() - memoryService.getUsage() +
+			64 * 64 * 2, memoryService.getAvailable());
+		assertFalse(dataset.getImgPlus().getImg() instanceof MappedPlanarImg);
+	}
+
+	// -- Helper methods --
+
+	private Dataset createDataset(final String name) {
+		final DatasetService datasetService =
+			context.getService(DatasetService.class);
+		final Dataset dataset =
+			datasetService.create(new UnsignedByteType(), new long[] { 64, 64, 2 },
+				name, new AxisType[] { Axes.X, Axes.Y, Axes.Z });
+		final Cursor<? extends RealType<?>> c = dataset.getImgPlus().cursor();
+		while (c.hasNext()) {
+			c.next().setReal(c.getLongPosition(0));
+		}
+		dataset.incrementReferences();
+		return dataset;
+	}
+
+}
@@ -0,0 +1,157 @@
+/*
+ * #%L
+ * ImageJ software for multidimensional image processing and analysis.
+ * %%
+ * Copyright (C) 2009 - 2013 Board of Regents of the University of
+ * Wisconsin-Madison, Broad Institute of MIT and Harvard, and Max Planck
+ * Institute of Molecular Cell Biology and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are
+ * those of the authors and should not be interpreted as representing official
+ * policies, either expressed or implied, of any organization.
+ * #L%
+ */
+
+package imagej.data.pyramid;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import imagej.data.Dataset;
+import imagej.data.DatasetService;
+import net.imglib2.Cursor;
+import net.imglib2.FinalInterval;
+import net.imglib2.meta.Axes;
+import net.imglib2.meta.AxisType;
+import net.imglib2.type.numeric.RealType;
+
+import org.junit.Test;
+import org.scijava.Context;
+
+/**
+ * Unit tests for {@link DatasetPyramid}.
+ * 
+ * @author Lee Kamentsky
+ */
+public class DatasetPyramidTest {
+
+	private final Context context = new Context(DatasetService.class,
+		PyramidService.class);
+
+	@Test
+	public void testLevels() {
+		final DatasetPyramid pyramid = createPyramid(5, 4);
+		assertEquals(4, pyramid.getLevelCount());
+		assertEquals(3, pyramid.getWidth(1));
+		assertEquals(2, pyramid.getHeight(1));
+		assertEquals(2, pyramid.getWidth(2));
+		assertEquals(1, pyramid.getHeight(2));
+		assertEquals(0, pyramid.getLevel(1));
+		assertEquals(1, pyramid.getLevel(0.5));
+		assertEquals(1, pyramid.getLevel(0.3));
+		assertEquals(2, pyramid.getLevel(0.25));
+		assertEquals(3, pyramid.getLevel(0.01));
+	}
+
+	@Test
+	public void testAveraging() {
+		final DatasetPyramid pyramid = createPyramid(5, 4);
+		final long[] pos = new long[2];
+		final float[] level1 = pyramid.getPlane(pos, 1);
+		assertEquals(6, level1.length);
+		assertEquals(5.5, level1[0], 0);
+		assertEquals(7.5, level1[1], 0);
+		assertEquals(9, level1[2], 0);
+		assertEquals(25.5, level1[3], 0);
+		// NB: Level 2 is computed from the cached level 1 plane.
+		final float[] level2 = pyramid.getPlane(pos, 2);
+		assertEquals(2, level2.length);
+		assertEquals(16.5, level2[0], 0);
+		assertEquals(19, level2[1], 0);
+	}
+
+	@Test
+	public void testCaching() {
+		final DatasetPyramid pyramid = createPyramid(8, 8);
+		final long[] pos = new long[2];
+		final float[] plane = pyramid.getPlane(pos, 1);
+		assertSame(plane, pyramid.getPlane(pos, 1));
+		pyramid.invalidate();
+		assertNotSame(plane, pyramid.getPlane(pos, 1));
+	}
+
+	@Test
+	public void testRegionInvalidation() {
+		final DatasetPyramid pyramid =
+			createPyramid(new long[] { 8, 8, 3 }, new AxisType[] { Axes.X, Axes.Y,
+				Axes.Z });
+		final long[] pos0 = { 0, 0, 0 };
+		final long[] pos2 = { 0, 0, 2 };
+		final float[] plane0 = pyramid.getPlane(pos0, 1);
+		final float[] plane2 = pyramid.getPlane(pos2, 1);
+		pyramid.invalidate(new FinalInterval(new long[] { 2, 2, 2 }, new long[] {
+			3, 3, 2 }));
+		assertSame(plane0, pyramid.getPlane(pos0, 1));
+		assertNotSame(plane2, pyramid.getPlane(pos2, 1));
+	}
+
+	@Test
+	public void testMemoryBudget() {
+		final PyramidService pyramidService =
+			context.getService(PyramidService.class);
+		final DatasetPyramid pyramid = createPyramid(8, 8);
+		final long[] pos = new long[2];
+		pyramidService.setMemoryBudget(4 * 16);
+		pyramid.getPlane(pos, 1); // 4x4 floats
+		assertEquals(4 * 16, pyramidService.getMemoryUsage());
+		pyramid.getPlane(pos, 2); // 2x2 floats, evicting level 1
+		assertEquals(4 * 4, pyramidService.getMemoryUsage());
+	}
+
+	// -- Helper methods --
+
+	private DatasetPyramid createPyramid(final int w, final int h) {
+		return createPyramid(new long[] { w, h }, new AxisType[] { Axes.X,
+			Axes.Y });
+	}
+
+	private DatasetPyramid createPyramid(final long[] dims,
+		final AxisType[] axes)
+	{
+		final DatasetService datasetService =
+			context.getService(DatasetService.class);
+		final Dataset dataset =
+			datasetService.create(dims, "pyramid", axes, 32, true, true);
+		final Cursor<? extends RealType<?>> cursor =
+			dataset.getImgPlus().localizingCursor();
+		while (cursor.hasNext()) {
+			cursor.fwd();
+			final int x = cursor.getIntPosition(0);
+			final int y = cursor.getIntPosition(1);
+			cursor.get().setReal(x + 10 * y);
+		}
+		return context.getService(PyramidService.class).getPyramid(dataset);
+	}
+
+}
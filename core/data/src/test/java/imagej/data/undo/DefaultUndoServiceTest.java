@@ -0,0 +1,219 @@
+/*
+ * #%L
+ * ImageJ software for multidimensional image processing and analysis.
+ * %%
+ * Copyright (C) 2009 - 2013 Board of Regents of the University of
+ * Wisconsin-Madison, Broad Institute of MIT and Harvard, and Max Planck
+ * Institute of Molecular Cell Biology and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * 
+ * The views and conclusions contained in the software and documentation are
+ * those of the authors and should not be interpreted as representing official
+ * policies, either expressed or implied, of any organization.
+ * #L%
+ */
+
+package imagej.data.undo;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import imagej.data.Dataset;
+import imagej.data.DatasetService;
+import net.imglib2.FinalInterval;
+import net.imglib2.RandomAccess;
+import net.imglib2.meta.Axes;
+import net.imglib2.meta.AxisType;
+import net.imglib2.type.numeric.RealType;
+import net.imglib2.type.numeric.real.FloatType;
+
+import org.junit.After;
+import org.junit.Test;
+import org.scijava.Context;
+
+/**
+ * Unit tests for {@link DefaultUndoService}.
+ * 
+ * @author Lee Kamentsky
+ */
+public class DefaultUndoServiceTest {
+
+	private static final long[] DIMENSIONS = { 16, 8, 3 };
+
+	private final Context context = new Context(DatasetService.class,
+		UndoService.class);
+
+	private final UndoService undoService =
+		context.getService(UndoService.class);
+
+	private final Dataset dataset = createDataset();
+
+	@After
+	public void tearDown() {
+		context.dispose();
+	}
+
+	@Test
+	public void testUndoRedo() {
+		assertFalse(undoService.canUndo(dataset));
+		edit(1, 0.5);
+		assertTrue(undoService.canUndo(dataset));
+		assertFalse(undoService.canRedo(dataset));
+		assertTrue(undoService.getHistorySize() > 0);
+
+		assertTrue(undoService.undo(dataset));
+		assertSamples(-1, 0);
+		assertTrue(undoService.canRedo(dataset));
+
+		assertTrue(undoService.redo(dataset));
+		assertSamples(1, 0.5);
+		assertFalse(undoService.canRedo(dataset));
+	}
+
+	@Test
+	public void testUnpreparedWrite() {
+		edit(1, 0.5);
+		undoService.beginEdit(dataset);
+		fill(2, 7);
+		dataset.update(plane(2));
+		undoService.endEdit();
+		// NB: The unprepared edit is skipped; the earlier one remains.
+		assertTrue(undoService.canUndo(dataset));
+		assertTrue(undoService.undo(dataset));
+		final RandomAccess<? extends RealType<?>> access =
+			dataset.getImgPlus().randomAccess();
+		access.setPosition(new long[] { 3, 0, 1 });
+		assertEquals(0, access.get().getRealDouble(), 0);
+		access.setPosition(new long[] { 3, 0, 2 });
+		assertEquals(10, access.get().getRealDouble(), 0);
+		assertFalse(undoService.canUndo(dataset));
+	}
+
+	@Test
+	public void testSetImgPlus() {
+		final Dataset source = createDataset();
+		fill(source, 1, 0.5);
+		undoService.beginEdit(dataset);
+		dataset.setImgPlus(source.getImgPlus());
+		undoService.endEdit();
+		assertSamples(1, 0.5);
+
+		assertTrue(undoService.undo(dataset));
+		assertSamples(-1, 0);
+	}
+
+	@Test
+	public void testUnrecordedChange() {
+		edit(1, 0.5);
+		// NB: A change made outside of any edit can not be undone past.
+		dataset.prepareWrite(plane(1));
+		fill(1, 7);
+		dataset.update(plane(1));
+		assertFalse(undoService.undo(dataset));
+		assertFalse(undoService.canUndo(dataset));
+	}
+
+	@Test
+	public void testCopyInto() {
+		final Dataset source = createDataset();
+		fill(source, 1, 0.5);
+		undoService.beginEdit(dataset);
+		source.copyInto(dataset);
+		undoService.endEdit();
+		assertSamples(1, 0.5);
+
+		assertTrue(undoService.undo(dataset));
+		assertSamples(-1, 0);
+	}
+
+	@Test
+	public void testDatasetOutsideEdit() {
+		final Dataset other = createDataset();
+		undoService.beginEdit(dataset);
+		other.prepareWrite(plane(1));
+		fill(other, 1, 0.5);
+		other.update(plane(1));
+		undoService.endEdit();
+		assertFalse(undoService.canUndo(other));
+		assertEquals(0, undoService.getHistorySize());
+	}
+
+	// -- Helper methods --
+
+	private Dataset createDataset() {
+		final DatasetService datasetService =
+			context.getService(DatasetService.class);
+		final Dataset ds =
+			datasetService.create(new FloatType(), DIMENSIONS, "undo",
+				new AxisType[] { Axes.X, Axes.Y, Axes.Z });
+		ds.incrementReferences();
+		return ds;
+	}
+
+	/** Offsets the samples of a plane as one recorded edit. */
+	private void edit(final long z, final double offset) {
+		undoService.beginEdit(dataset);
+		dataset.prepareWrite(plane(z));
+		fill(z, offset);
+		dataset.update(plane(z));
+		undoService.endEdit();
+	}
+
+	private void fill(final long z, final double offset) {
+		fill(dataset, z, offset);
+	}
+
+	private void fill(final Dataset ds, final long z, final double offset) {
+		final RandomAccess<? extends RealType<?>> access =
+			ds.getImgPlus().randomAccess();
+		final long[] pos = { 0, 0, z };
+		for (pos[1] = 0; pos[1] < DIMENSIONS[1]; pos[1]++) {
+			for (pos[0] = 0; pos[0] < DIMENSIONS[0]; pos[0]++) {
+				access.setPosition(pos);
+				access.get().setReal(pos[0] + offset);
+			}
+		}
+	}
+
+	/** Checks the samples of every plane, offset in the given one. */
+	private void assertSamples(final long z, final double offset) {
+		final RandomAccess<? extends RealType<?>> access =
+			dataset.getImgPlus().randomAccess();
+		final long[] pos = new long[DIMENSIONS.length];
+		for (pos[2] = 0; pos[2] < DIMENSIONS[2]; pos[2]++) {
+			for (pos[1] = 0; pos[1] < DIMENSIONS[1]; pos[1]++) {
+				for (pos[0] = 0; pos[0] < DIMENSIONS[0]; pos[0]++) {
+					access.setPosition(pos);
+					final double expected = pos[2] == z ? pos[0] + offset : 0;
+					assertEquals(expected, access.get().getRealDouble(), 0);
+				}
+			}
+		}
+	}
+
+	private FinalInterval plane(final long z) {
+		return new FinalInterval(new long[] { 0, 0, z }, new long[] {
+			DIMENSIONS[0] - 1, DIMENSIONS[1] - 1, z });
+	}
+
+}
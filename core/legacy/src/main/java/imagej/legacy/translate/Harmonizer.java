@@ -39,6 +39,7 @@
 import ij.ImageStack;
 import ij.process.ImageProcessor;
 import imagej.data.Dataset;
+import imagej.data.batch.UpdateBatchService;
 import imagej.data.display.ImageDisplay;
 import imagej.data.display.ImageDisplayService;
 import imagej.legacy.LegacyService;
@@ -84,6 +85,9 @@ public class Harmonizer extends AbstractContextual {
 	@Parameter
 	private LogService log;
 
+	@Parameter(required = false)
+	private UpdateBatchService updateBatchService;
+
 	// -- constructor --
 
 	public Harmonizer(final LegacyService legacyService,
@@ -177,6 +181,40 @@ public void updateDisplay(final ImageDisplay display, final ImagePlus imp) {
 		// virtual stacks.
 		saveCurrentSlice(imp);
 
+		// NB - the harmonizers below update the dataset several times; refresh
+		// its displays only once they are all done.
+		if (updateBatchService != null) updateBatchService.beginBatch();
+		try {
+			harmonizeDisplay(display, imp);
+		}
+		finally {
+			if (updateBatchService != null) updateBatchService.endBatch();
+		}
+	}
+
+	/**
+	 * Remembers the type of an {@link ImagePlus}. This type can be checked after
+	 * a call to a plugin to see if the ImagePlus underwent a type change.
+	 */
+	public void registerType(final ImagePlus imp) {
+		if (imp == null) return;
+		bitDepthMap.put(imp, imp.getBitDepth());
+	}
+
+	/**
+	 * Forgets the types of all {@link ImagePlus}es. Called before a plugin is run
+	 * to reset the tracking of types.
+	 */
+	public void resetTypeTracking() {
+		bitDepthMap.clear();
+	}
+
+	// -- private interface --
+
+	/** Runs the harmonizers which update the display from the ImagePlus. */
+	private void harmonizeDisplay(final ImageDisplay display,
+		final ImagePlus imp)
+	{
 		final Dataset ds = imageDisplayService.getActiveDataset(display);
 
 		// did type of ImagePlus change?
@@ -229,25 +267,6 @@ else if (LegacyUtils.datasetIsIJ1Compatible(ds)) {
 		//ds.update();
 	}
 
-	/**
-	 * Remembers the type of an {@link ImagePlus}. This type can be checked after
-	 * a call to a plugin to see if the ImagePlus underwent a type change.
-	 */
-	public void registerType(final ImagePlus imp) {
-		if (imp == null) return;
-		bitDepthMap.put(imp, imp.getBitDepth());
-	}
-
-	/**
-	 * Forgets the types of all {@link ImagePlus}es. Called before a plugin is run
-	 * to reset the tracking of types.
-	 */
-	public void resetTypeTracking() {
-		bitDepthMap.clear();
-	}
-
-	// -- private interface --
-
 	/**
 	 * Returns true if an {@link ImagePlus}' type is the best fit for a given
 	 * {@link Dataset}. Best fit means the legacy ImageJ type that is the best at
@@ -40,6 +40,8 @@
 import ij.gui.ImageWindow;
 import ij.macro.Interpreter;
 import imagej.data.Dataset;
+import imagej.data.mapped.MappedPlanarImg;
+import net.imglib2.img.Img;
 import net.imglib2.img.basictypeaccess.PlanarAccess;
 import net.imglib2.meta.Axes;
 import net.imglib2.meta.AxisType;
@@ -374,9 +376,13 @@ else throw new IllegalArgumentException(
 			"incompatible dimension type specified");
 	}
 
-	/** Returns true if a {@link Dataset} is backed by {@link PlanarAccess}. */
+	/**
+	 * Returns true if a {@link Dataset} is backed by {@link PlanarAccess} to
+	 * primitive arrays.
+	 */
 	private static boolean ij1StorageCompatible(final Dataset ds) {
-		return ds.getImgPlus().getImg() instanceof PlanarAccess<?>;
+		final Img<?> img = ds.getImgPlus().getImg();
+		return img instanceof PlanarAccess<?> && !(img instanceof MappedPlanarImg);
 	}
 
 	/**
@@ -69,6 +69,12 @@ public class OptionsInputOutput extends OptionsPlugin {
 	@Parameter(label = "Save TIFF and raw in Intel byte order")
 	private boolean saveOrderIntel = false;
 
+	@Parameter(label = "Open images lazily, reading planes as needed")
+	private boolean lazyOpening = false;
+
+	@Parameter(label = "Lazily opened plane cache (MB)", min = "1")
+	private int lazyCacheSize = 256;
+
 	// TODO - in IJ1 these were grouped visually. How is this now done?
 
 	@Parameter(label = "Result Table: Copy column headers")
@@ -105,6 +111,14 @@ public boolean isSaveOrderIntel() {
 		return saveOrderIntel;
 	}
 
+	public boolean isLazyOpening() {
+		return lazyOpening;
+	}
+
+	public int getLazyCacheSize() {
+		return lazyCacheSize;
+	}
+
 	public boolean isCopyColumnHeaders() {
 		return copyColumnHeaders;
 	}
@@ -141,6 +155,14 @@ public void setSaveOrderIntel(final boolean saveOrderIntel) {
 		this.saveOrderIntel = saveOrderIntel;
 	}
 
+	public void setLazyOpening(final boolean lazyOpening) {
+		this.lazyOpening = lazyOpening;
+	}
+
+	public void setLazyCacheSize(final int lazyCacheSize) {
+		this.lazyCacheSize = lazyCacheSize;
+	}
+
 	public void setCopyColumnHeaders(final boolean copyColumnHeaders) {
 		this.copyColumnHeaders = copyColumnHeaders;
 	}
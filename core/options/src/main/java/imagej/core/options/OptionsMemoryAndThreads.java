@@ -69,6 +69,13 @@ public class OptionsMemoryAndThreads extends OptionsPlugin {
 	@Parameter(label = "Run garbage collector on status bar click")
 	private boolean runGcOnClick = true;
 
+	@Parameter(label = "Store large new images in temporary files")
+	private boolean fileBackedImages = false;
+
+	@Parameter(label = "File backing threshold (MB, 0 = when short of memory)",
+		min = "0")
+	private int fileBackedThreshold = 0;
+
 	// -- private instance variables --
 
 	private final ConfigFileParameters params = new ConfigFileParameters();
@@ -148,6 +155,38 @@ public void setRunGcOnClick(final boolean runGcOnClick) {
 		this.runGcOnClick = runGcOnClick;
 	}
 
+	/**
+	 * Returns true if new images too large to be held comfortably in memory
+	 * will be stored in memory-mapped temporary files instead. Off by default,
+	 * since the planes of such images cannot be shared by reference, as the
+	 * legacy layer requires.
+	 */
+	public boolean isFileBackedImages() {
+		return fileBackedImages;
+	}
+
+	/**
+	 * Returns the size, in megabytes, beyond which new images are stored in
+	 * temporary files. If 0, images are stored in temporary files only if they
+	 * would not otherwise fit in the available memory.
+	 */
+	public int getFileBackedThreshold() {
+		return fileBackedThreshold;
+	}
+
+	/** Sets whether large new images are stored in temporary files. */
+	public void setFileBackedImages(final boolean fileBackedImages) {
+		this.fileBackedImages = fileBackedImages;
+	}
+
+	/**
+	 * Sets the size, in megabytes, beyond which new images are stored in
+	 * temporary files; 0 for only when they would not fit in memory.
+	 */
+	public void setFileBackedThreshold(final int fileBackedThreshold) {
+		this.fileBackedThreshold = fileBackedThreshold;
+	}
+
 	// -- private helpers --
 
 	/** Loads the maxMemory instance variable from persistent storage. */
@@ -45,6 +45,9 @@
 import imagej.menu.MenuConstants;
 import imagej.ui.UserInterface;
 import imagej.util.ARGBPlane;
+import imagej.util.IntRect;
+
+import net.imglib2.display.ARGBScreenImage;
 
 import org.scijava.app.StatusService;
 import org.scijava.plugin.Menu;
@@ -101,7 +104,12 @@ private ARGBPlane getARGBPixels() {
 		final Overlay overlay = overlayService.getActiveOverlay(display);
 		final int imageWidth = (int) display.dimension(0);
 		final int imageHeight = (int) display.dimension(1);
-		final int[] argbPixels = view.getScreenImage().getData();
+		final ARGBScreenImage screenImage = view.getScreenImage();
+		final int[] argbPixels = screenImage.getData();
+		// the screen image may cover only a resampled region of the plane
+		final IntRect region = view.getScreenImageRegion();
+		final int screenWidth = (int) screenImage.dimension(0);
+		final int screenHeight = (int) screenImage.dimension(1);
 		final int x, y, w, h;
 		if (overlay == null) { // no active overlay
 			x = 0;
@@ -123,7 +131,11 @@ private ARGBPlane getARGBPixels() {
 		final ARGBPlane plane = new ARGBPlane(w, h);
 		for (int u = 0; u < w; u++) {
 			for (int v = 0; v < h; v++) {
-				final int argbLoc = (y+v)*imageWidth + (x+u);
+				int sx = (int) ((long) (x + u - region.x) * screenWidth / region.width);
+				int sy = (int) ((long) (y + v - region.y) * screenHeight / region.height);
+				sx = Math.max(0, Math.min(screenWidth - 1, sx));
+				sy = Math.max(0, Math.min(screenHeight - 1, sy));
+				final int argbLoc = sy * screenWidth + sx;
 				final int argb = argbPixels[argbLoc];
 				plane.setARGB(u, v, argb);
 			}
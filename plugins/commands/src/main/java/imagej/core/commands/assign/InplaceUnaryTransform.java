@@ -39,6 +39,8 @@
 import imagej.data.Position;
 import imagej.data.display.ImageDisplay;
 import imagej.data.overlay.Overlay;
+import net.imglib2.FinalInterval;
+import net.imglib2.Interval;
 import net.imglib2.img.Img;
 import net.imglib2.meta.Axes;
 import net.imglib2.ops.condition.Condition;
@@ -71,6 +73,7 @@
 	private long[] origin;
 	private long[] span;
 	private Condition<long[]> condition;
+	private Interval region;
 
 	// -- constructor --
 
@@ -97,6 +100,7 @@ public InplaceUnaryTransform(
 					condition, factory);
 		assigner2 = null;
 		assigner3 = null;
+		region = regionOf(origin, span);
 	}
 
 	/** Single plane versions */
@@ -123,6 +127,15 @@ public InplaceUnaryTransform(
 		if (rgb) {
 			origin[chIndex] = 0;
 		}
+		region = regionOf(origin, span);
+		if (rgb) {
+			final long[] min = new long[region.numDimensions()];
+			final long[] max = new long[region.numDimensions()];
+			region.min(min);
+			region.max(max);
+			max[chIndex] = 2;
+			region = new FinalInterval(min, max);
+		}
 		assigner1 =
 			new ImageAssignment<I,O, long[]>(img, origin, span, function,
 					condition, factory);
@@ -146,10 +159,11 @@ public InplaceUnaryTransform(
 	// -- public interface --
 
 	public void run() {
+		dataset.prepareWrite(region);
 		if (assigner1 != null) assigner1.assign();
 		if (assigner2 != null) assigner2.assign();
 		if (assigner3 != null) assigner3.assign();
-		dataset.update();
+		dataset.update(region);
 	}
 
 	public long[] getRegionOrigin() { return origin; }
@@ -158,6 +172,14 @@ public void run() {
 
 	// -- private helpers --
 
+	/** Gets the interval of the dataset modified by the transform. */
+	private Interval regionOf(long[] regionOrigin, long[] regionSpan) {
+		final long[] max = new long[regionOrigin.length];
+		for (int i = 0; i < max.length; i++)
+			max[i] = regionOrigin[i] + regionSpan[i] - 1;
+		return new FinalInterval(regionOrigin.clone(), max);
+	}
+
 	/** All planes version */
 	private void setRegion(Dataset ds, Overlay overlay) {
 
@@ -38,23 +38,15 @@
 import imagej.command.ContextCommand;
 import imagej.command.Previewable;
 import imagej.data.Dataset;
+import imagej.data.DatasetSnapshot;
 import imagej.data.Position;
 import imagej.data.display.DatasetView;
 import imagej.data.display.ImageDisplay;
 import imagej.data.display.ImageDisplayService;
 import imagej.data.display.OverlayService;
 import imagej.data.overlay.Overlay;
-import net.imglib2.RandomAccess;
-import net.imglib2.img.Img;
-import net.imglib2.img.array.ArrayImgFactory;
-import net.imglib2.meta.Axes;
 import net.imglib2.ops.operation.complex.unary.ComplexUnaryOperation;
-import net.imglib2.ops.pointset.HyperVolumePointSet;
-import net.imglib2.ops.pointset.PointSet;
-import net.imglib2.ops.pointset.PointSetIterator;
 import net.imglib2.type.numeric.ComplexType;
-import net.imglib2.type.numeric.RealType;
-import net.imglib2.type.numeric.real.DoubleType;
 
 import org.scijava.ItemIO;
 import org.scijava.plugin.Parameter;
@@ -87,10 +79,7 @@
 	// -- instance variables --
 
 	private O outType;
-	private Img<DoubleType> dataBackup;
-	private PointSetIterator iter;
-	private RandomAccess<? extends RealType<?>> dataAccess;
-	private RandomAccess<? extends RealType<?>> backupAccess;
+	private DatasetSnapshot snapshot;
 	private Dataset dataset;
 	private Overlay overlay;
 	private Position planePos;
@@ -109,6 +98,7 @@ public void run() {
 		else if (preview) {
 			restorePreviewRegion();
 		}
+		if (snapshot != null) snapshot.dispose();
 		transformFullRegion();
 	}
 
@@ -125,6 +115,7 @@ public void preview() {
 	@Override
 	public void cancel() {
 		if (preview) restorePreviewRegion();
+		if (snapshot != null) snapshot.dispose();
 	}
 
 	public ImageDisplay getDisplay() {
@@ -152,23 +143,6 @@ private void initialize() {
 		overlay = overlayService.getActiveOverlay(display);
 		DatasetView view = displayService.getActiveDatasetView(display);
 		planePos = view.getPlanePosition();
-
-		InplaceUnaryTransform<?,?> xform =
-				getPreviewTransform(dataset, overlay);
-		PointSet region =
-			determineRegion(dataset, xform.getRegionOrigin(), xform.getRegionSpan());
-		iter = region.iterator();
-		ArrayImgFactory<DoubleType> factory = new ArrayImgFactory<DoubleType>();
-		dataBackup = factory.create(new long[] { region.size() }, new DoubleType());
-		backupAccess = dataBackup.randomAccess();
-		dataAccess = dataset.getImgPlus().randomAccess();
-
-		// check dimensions of Dataset
-		final long w = xform.getRegionSpan()[0];
-		final long h = xform.getRegionSpan()[1];
-		if (w * h > Integer.MAX_VALUE)
-			throw new IllegalArgumentException(
-				"preview region too large to copy into memory");
 	}
 
 	private InplaceUnaryTransform<I,O> getPreviewTransform(
@@ -187,49 +161,17 @@ private InplaceUnaryTransform<I,O> getFinalTransform(
 		return getPreviewTransform(ds, ov);
 	}
 
-	private PointSet determineRegion(Dataset ds, long[] planeOrigin,
-		long[] planeSpan)
-	{
-		// copy data to a double[]
-		final long[] origin = planeOrigin.clone();
-		final long[] offsets = planeSpan.clone();
-		if (ds.isRGBMerged()) {
-			int chIndex = ds.dimensionIndex(Axes.CHANNEL);
-			origin[chIndex] = 0;
-			offsets[chIndex] = 3;
-		}
-		for (int i = 0; i < offsets.length; i++)
-			offsets[i]--;
-		return new HyperVolumePointSet(origin, new long[origin.length], offsets);
-	}
-	
 	// NB
-	// We are backing up preview region to doubles. This can cause precision
-	// loss for long backed datasets with large values. But using dataset's
-	// getPlane()/setPlane() code takes more ram/time than needed. And it has
-	// various container limitations.
+	// The preview is backed up with a copy-on-write snapshot of the dataset,
+	// which copies the previewed planes in their native type as the preview
+	// transform prepares to write them.
 
 	private void savePreviewRegion() {
-		iter.reset();
-		long pos = 0;
-		while (iter.hasNext()) {
-			dataAccess.setPosition(iter.next());
-			double value = dataAccess.get().getRealDouble();
-			backupAccess.setPosition(pos++, 0);
-			backupAccess.get().setReal(value);
-		}
+		snapshot = dataset.snapshot();
 	}
 
 	private void restorePreviewRegion() {
-		iter.reset();
-		long pos = 0;
-		while (iter.hasNext()) {
-			backupAccess.setPosition(pos++, 0);
-			double value = backupAccess.get().getRealDouble();
-			dataAccess.setPosition(iter.next());
-			dataAccess.get().setReal(value);
-		}
-		dataset.update();
+		snapshot.restore();
 	}
 
 	private void transformFullRegion() {
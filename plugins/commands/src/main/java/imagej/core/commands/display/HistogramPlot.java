@@ -43,6 +43,9 @@
 import imagej.data.display.OverlayService;
 import imagej.data.event.DatasetRestructuredEvent;
 import imagej.data.event.DatasetUpdatedEvent;
+import imagej.data.measure.HistogramService;
+import imagej.data.measure.Stat;
+import imagej.data.measure.Statistics;
 import imagej.data.widget.HistogramBundle;
 import imagej.module.MutableModuleItem;
 import imagej.ui.UIService;
@@ -100,6 +103,9 @@
 	@Parameter
 	private OverlayService overlayService;
 
+	@Parameter
+	private HistogramService histogramService;
+
 	@Parameter
 	private ImageDisplay display;
 
@@ -151,8 +157,6 @@
 	private double[] stdDevs;
 	private double[] mins;
 	private double[] maxes;
-	private double[] sum1s;
-	private double[] sum2s;
 	private long sampleCount;
 	private double binWidth;
 	private double dataMin;
@@ -349,16 +353,11 @@ private void setTitle(int histNum) {
 	}
 
 	private void calcBinInfo() {
-		// calc the data ranges - 1st pass thru data
-		dataMin = Double.POSITIVE_INFINITY;
-		dataMax = Double.NEGATIVE_INFINITY;
-		Cursor<? extends RealType<?>> cursor = dataset.getImgPlus().cursor();
-		while (cursor.hasNext()) {
-			double val = cursor.next().getRealDouble();
-			if (val < dataMin) dataMin = val;
-			if (val > dataMax) dataMax = val;
-		}
-		if (dataMin > dataMax) {
+		// the data range is gathered once and shared via the HistogramService
+		Statistics stats = histogramService.getStatistics(dataset);
+		dataMin = stats.get(Stat.MINIMUM);
+		dataMax = stats.get(Stat.MAXIMUM);
+		if (!(dataMin <= dataMax)) {
 			dataMin = 0;
 			dataMax = 0;
 		}
@@ -380,11 +379,15 @@ private void calcBinInfo() {
 		}
 	}
 
-	// NB : this plugin uses low level access. Histograms are
-	// designed to be fed an iterable data source. But in the case of this
-	// plugin we do direct computations on the histograms' bins for efficency
-	// reasons (so we can calc stats from the same data). Histograms thus have
-	// both a high level generic API and a low level nongeneric API.
+	// NB : the channel histograms and stats come from the HistogramService,
+	// which caches them per plane. Only the composite histogram of channel
+	// averages needs a pass of its own, and only when there are several
+	// channels. When channels are interleaved within planes (a channel axis
+	// among the first two) the service cannot split them, so one direct pass
+	// computes everything. In that pass we do direct computations on the histogram's bins
+	// for efficiency reasons (so we can calc stats from the same data).
+	// Histograms thus have both a high level generic API and a low level
+	// nongeneric API.
 
 	@SuppressWarnings("unchecked")
 	private void allocateDataStructures() {
@@ -392,30 +395,100 @@ private void allocateDataStructures() {
 		int chIndex = dataset.dimensionIndex(Axes.CHANNEL);
 		channels = (chIndex < 0) ? 1 : dataset.dimension(chIndex);
 		histograms = new Histogram1d[(int) channels + 1]; // +1 for chan compos
-		Real1dBinMapper<T> mapper =
-			new Real1dBinMapper<T>(dataMin, dataMax, binCount, false);
-		for (int i = 0; i < histograms.length; i++)
-			histograms[i] = new Histogram1d<T>(mapper);
 		means = new double[histograms.length];
 		stdDevs = new double[histograms.length];
-		sum1s = new double[histograms.length];
-		sum2s = new double[histograms.length];
 		mins = new double[histograms.length];
 		maxes = new double[histograms.length];
-		for (int i = 0; i < histograms.length; i++) {
-			mins[i] = Double.POSITIVE_INFINITY;
-			maxes[i] = Double.NEGATIVE_INFINITY;
-		}
 	}
 
 	private void computeStats() {
-		// calc stats - 2nd pass thru data
 		int chIndex = dataset.dimensionIndex(Axes.CHANNEL);
+		if (chIndex == 0 || chIndex == 1) {
+			computeAllStats(chIndex);
+			return;
+		}
+		sampleCount = 0;
+		for (int c = 0; c < channels; c++) {
+			histograms[c] =
+				histogramService.getChannelHistogram(dataset, c, dataMin, dataMax,
+					binCount);
+			Statistics stats = histogramService.getChannelStatistics(dataset, c);
+			means[c] = stats.get(Stat.ARITHMETIC_MEAN);
+			stdDevs[c] = stats.get(Stat.SAMPLE_STD_DEV);
+			mins[c] = stats.get(Stat.MINIMUM);
+			maxes[c] = stats.get(Stat.MAXIMUM);
+			sampleCount += stats.getCount();
+		}
 		int composH = histograms.length - 1;
+		if (channels == 1) {
+			// the average of a single channel is the channel itself
+			histograms[composH] = histograms[0];
+			means[composH] = means[0];
+			stdDevs[composH] = stdDevs[0];
+			mins[composH] = mins[0];
+			maxes[composH] = maxes[0];
+		}
+		else computeCompositeStats();
+	}
+
+	private void computeCompositeStats() {
+		int chIndex = dataset.dimensionIndex(Axes.CHANNEL);
+		int composH = histograms.length - 1;
+		Real1dBinMapper<T> mapper =
+			new Real1dBinMapper<T>(dataMin, dataMax, binCount, false);
+		histograms[composH] = new Histogram1d<T>(mapper);
+		double sum1 = 0;
+		double sum2 = 0;
+		double min = Double.POSITIVE_INFINITY;
+		double max = Double.NEGATIVE_INFINITY;
+		RandomAccess<? extends RealType<?>> accessor =
+			dataset.getImgPlus().randomAccess();
+		long[] span = IntervalUtils.getDims(dataset);
+		span[chIndex] = 1; // iterate channels elsewhere
+		HyperVolumePointSet pixelSpace = new HyperVolumePointSet(span);
+		PointSetIterator pixelSpaceIter = pixelSpace.iterator();
+		while (pixelSpaceIter.hasNext()) {
+			long[] pos = pixelSpaceIter.next();
+			accessor.setPosition(pos);
+			// determine composite pixel value (by channel averaging)
+			double composVal = 0;
+			for (long chan = 0; chan < channels; chan++) {
+				accessor.setPosition(chan, chIndex);
+				composVal += accessor.get().getRealDouble();
+			}
+			composVal /= channels;
+			long index = (long) ((composVal - dataMin) / binWidth);
+			// NB in float case the max data point overflows the index range
+			if (index >= binCount) index = binCount - 1;
+			histograms[composH].increment(index);
+			sum1 += composVal;
+			sum2 += composVal * composVal;
+			if (composVal < min) min = composVal;
+			if (composVal > max) max = composVal;
+		}
+		long pixels = sampleCount / channels;
+		means[composH] = sum1 / pixels;
+		stdDevs[composH] =
+			Math.sqrt((sum2 - ((sum1 * sum1) / pixels)) / (pixels - 1));
+		mins[composH] = min;
+		maxes[composH] = max;
+	}
+
+	private void computeAllStats(int chIndex) {
+		int composH = histograms.length - 1;
+		Real1dBinMapper<T> mapper =
+			new Real1dBinMapper<T>(dataMin, dataMax, binCount, false);
+		double[] sum1s = new double[histograms.length];
+		double[] sum2s = new double[histograms.length];
+		for (int i = 0; i < histograms.length; i++) {
+			histograms[i] = new Histogram1d<T>(mapper);
+			mins[i] = Double.POSITIVE_INFINITY;
+			maxes[i] = Double.NEGATIVE_INFINITY;
+		}
 		RandomAccess<? extends RealType<?>> accessor =
 			dataset.getImgPlus().randomAccess();
 		long[] span = IntervalUtils.getDims(dataset);
-		if (chIndex >= 0) span[chIndex] = 1; // iterate channels elsewhere
+		span[chIndex] = 1; // iterate channels elsewhere
 		HyperVolumePointSet pixelSpace = new HyperVolumePointSet(span);
 		PointSetIterator pixelSpaceIter = pixelSpace.iterator();
 		sampleCount = 0;
@@ -426,7 +499,7 @@ private void computeStats() {
 			// channel averaging)
 			double composVal = 0;
 			for (long chan = 0; chan < channels; chan++) {
-				if (chIndex >= 0) accessor.setPosition(chan, chIndex);
+				accessor.setPosition(chan, chIndex);
 				double val = accessor.get().getRealDouble();
 				composVal += val;
 				long index = (long) ((val - dataMin) / binWidth);
@@ -36,22 +36,19 @@
 package imagej.core.commands.display.interactive;
 
 import imagej.command.Command;
-import imagej.data.autoscale.AutoscaleService;
+import imagej.data.Dataset;
 import imagej.data.autoscale.DataRange;
 import imagej.data.command.InteractiveImageCommand;
 import imagej.data.display.DatasetView;
+import imagej.data.measure.HistogramService;
 import imagej.data.widget.HistogramBundle;
 import imagej.menu.MenuConstants;
 import imagej.module.MutableModuleItem;
 import imagej.widget.Button;
 import imagej.widget.ChoiceWidget;
 import imagej.widget.NumberWidget;
-import net.imglib2.RandomAccessibleInterval;
-import net.imglib2.histogram.BinMapper1d;
 import net.imglib2.histogram.Histogram1d;
-import net.imglib2.histogram.Real1dBinMapper;
 import net.imglib2.type.numeric.RealType;
-import net.imglib2.view.Views;
 
 import org.scijava.ItemIO;
 import org.scijava.plugin.Menu;
@@ -99,7 +96,7 @@
 	// -- Parameter fields --
 
 	@Parameter
-	private AutoscaleService autoscaleService;
+	private HistogramService histogramService;
 
 	@Parameter(type = ItemIO.BOTH, callback = "viewChanged")
 	private DatasetView view;
@@ -204,12 +201,13 @@ protected void initValues() {
 
 	/** Called when view changes. Updates everything to match. */
 	protected void viewChanged() {
-		RandomAccessibleInterval<? extends RealType<?>> interval;
-		
-		if (rangeChoice.equals(PLANE)) interval = view.xyPlane();
-		else interval = view.getData().getImgPlus();
-		
-		computeDataMinMax(interval);
+		final long planeNumber;
+		if (rangeChoice.equals(PLANE)) {
+			planeNumber = view.getPlanePosition().getIndex();
+		}
+		else planeNumber = -1; // the whole dataset
+
+		computeDataMinMax(view.getData(), planeNumber);
 		computeInitialMinMax();
 		if (Double.isNaN(min)) min = initialMin;
 		if (Double.isNaN(max)) max = initialMax;
@@ -248,9 +246,7 @@ protected void setDefault() {
 	// rather than using something like equals(). Or a isChanged() interface
 	// (since in this case equals() would not work either).
 
-	private void computeDataMinMax(
-		final RandomAccessibleInterval<? extends RealType<?>> img)
-	{
+	private void computeDataMinMax(final Dataset ds, final long planeNumber) {
 		// FIXME: Reconcile this with DefaultDatasetView.autoscale(int). There is
 		// no reason to hardcode the usage of ComputeMinMax twice. Rather, there
 		// should be a single entry point for obtain the channel min/maxes from
@@ -258,7 +254,11 @@ private void computeDataMinMax(
 		// Dataset (not DatasetView) is a good place for it, because it is metadata
 		// independent of the visualization settings.
 
-		DataRange range = autoscaleService.getDefaultRandomAccessRange(img);
+		// The HistogramService caches the range and histogram of each plane, so
+		// they are shared with other tools and only recomputed after changes.
+		DataRange range =
+			planeNumber < 0 ? histogramService.getDataRange(ds) : histogramService
+				.getPlaneDataRange(ds, planeNumber);
 		dataMin = range.getMin();
 		dataMax = range.getMax();
 
@@ -274,13 +274,10 @@ private void computeDataMinMax(
 		// System.out.println("IN HERE!!!!!!");
 		// System.out.println(" dataMin = " + dataMin);
 		// System.out.println(" dataMax = " + dataMax);
-		@SuppressWarnings({ "unchecked", "rawtypes" })
-		Iterable<T> iterable =
-			Views
-				.iterable((RandomAccessibleInterval<T>) (RandomAccessibleInterval) img);
-		BinMapper1d<T> mapper =
-			new Real1dBinMapper<T>(dataMin, dataMax, 256, false);
-		Histogram1d<T> histogram = new Histogram1d<T>(iterable, mapper);
+		Histogram1d<T> histogram =
+			planeNumber < 0 ? histogramService.<T> getHistogram(ds, dataMin,
+				dataMax, 256) : histogramService.<T> getPlaneHistogram(ds,
+				planeNumber, dataMin, dataMax, 256);
 		if (bundle == null) {
 			bundle = new HistogramBundle(histogram);
 		}
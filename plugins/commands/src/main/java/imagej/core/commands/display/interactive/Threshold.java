@@ -37,12 +37,12 @@
 
 import imagej.command.Command;
 import imagej.data.Dataset;
-import imagej.data.autoscale.AutoscaleService;
 import imagej.data.autoscale.DataRange;
 import imagej.data.command.InteractiveImageCommand;
 import imagej.data.display.ImageDisplay;
 import imagej.data.display.ImageDisplayService;
 import imagej.data.display.event.AxisPositionEvent;
+import imagej.data.measure.HistogramService;
 import imagej.data.overlay.ThresholdOverlay;
 import imagej.data.threshold.ThresholdMethod;
 import imagej.data.threshold.ThresholdService;
@@ -55,15 +55,9 @@
 import imagej.widget.Button;
 import imagej.widget.NumberWidget;
 import net.imglib2.Cursor;
-import net.imglib2.IterableInterval;
 import net.imglib2.histogram.Histogram1d;
-import net.imglib2.histogram.Real1dBinMapper;
-import net.imglib2.img.Img;
-import net.imglib2.meta.AxisType;
 import net.imglib2.meta.ImgPlus;
 import net.imglib2.type.numeric.RealType;
-import net.imglib2.view.IntervalView;
-import net.imglib2.view.Views;
 
 import org.scijava.ItemIO;
 import org.scijava.event.EventHandler;
@@ -176,7 +170,7 @@
 	private ImageDisplayService imgDispSrv;
 
 	@Parameter
-	private AutoscaleService autoscaleService;
+	private HistogramService histogramService;
 
 	@Parameter
 	private UIService uiSrv;
@@ -218,7 +212,7 @@ protected void initValues() {
 
 		minMax = calcDataRange();
 
-		fullHistogram = buildHistogram(true, null);
+		fullHistogram = buildHistogram(true);
 		planeHistogram = null;
 		invalidPlaneHist = true;
 
@@ -373,9 +367,9 @@ private ThresholdOverlay getThreshold() {
 	private Histogram1d<T> histogram() {
 		if (stackHistogram) return fullHistogram;
 		if (invalidPlaneHist) {
-			// null is on purpose. we want new histograms to certainly update the
-			// HistogramBundle so plane changes always reflected in panel.
-			planeHistogram = buildHistogram(false, null);
+			// NB - each plane has its own histogram, so plane changes always update
+			// the HistogramBundle and are reflected in the panel.
+			planeHistogram = buildHistogram(false);
 			invalidPlaneHist = false;
 		}
 		return planeHistogram;
@@ -403,80 +397,38 @@ else if (displayType.equals(OVER_UNDER)) {
 
 	private DataRange calcDataRange() {
 		Dataset ds = imgDispSrv.getActiveDataset(display);
-		return autoscaleService.getDefaultIntervalRange(ds.getImgPlus());
+		return histogramService.getDataRange(ds);
 	}
 
-	// builds the histogram from either the whole data range or the currently
-	// viewed plane
+	// gets the histogram of either the whole data range or the currently viewed
+	// plane. Histograms are shared with other tools via the HistogramService so
+	// the data is only scanned when it has changed.
 
-	private Histogram1d<T> buildHistogram(boolean allData,
-		Histogram1d<T> existingHist)
-	{
-		// return buildHistogramFromPointSets(allData, existingHist);
-		return buildHistogramFromViews(allData, existingHist);
-	}
-
-	private Histogram1d<T> buildHistogramFromViews(boolean allData,
-		Histogram1d<T> existingHist)
-	{
+	private Histogram1d<T> buildHistogram(boolean allData) {
 		Dataset ds = imgDispSrv.getActiveDataset(display);
-		long[] min = new long[ds.numDimensions()];
-		long[] max = min.clone();
-		max[0] = ds.dimension(0) - 1;
-		max[1] = ds.dimension(1) - 1;
-		for (int d = 2; d < ds.numDimensions(); d++) {
-			if (allData) {
-				min[d] = 0;
-				max[d] = ds.dimension(d) - 1;
-			}
-			else { // viewed data only
-				AxisType axisType = ds.axis(d).type();
-				long pos = display.getLongPosition(axisType);
-				min[d] = pos;
-				max[d] = pos;
-			}
+		long binCount = calcBinCount(ds.isInteger(), minMax);
+		if (allData) {
+			return histogramService.getHistogram(ds, minMax.getMin(), minMax
+				.getMax(), binCount);
 		}
-		@SuppressWarnings("unchecked")
-		Img<T> img = (Img<T>) ds.getImgPlus();
-		IntervalView<T> view = Views.interval(img, min, max);
-		IterableInterval<T> data = Views.iterable(view);
-		final Histogram1d<T> histogram;
-		if (existingHist == null) {
-			// +1 needed for int but maybe not float
-			histogram = allocateHistogram(ds.isInteger(), minMax);
-		}
-		else {
-			existingHist.resetCounters();
-			histogram = existingHist;
-		}
-		histogram.countData(data);
-		return histogram;
+		// viewed data only
+		long planeNumber =
+			imgDispSrv.getActiveDatasetView(display).getPlanePosition().getIndex();
+		return histogramService.getPlaneHistogram(ds, planeNumber,
+			minMax.getMin(), minMax.getMax(), binCount);
 	}
 
-	private Histogram1d<T> allocateHistogram(boolean dataIsIntegral,
-		DataRange dataRange)
-	{
+	private long calcBinCount(boolean dataIsIntegral, DataRange dataRange) {
 		double range = dataRange.getExtent();
 		if (dataIsIntegral) range++;
-		Real1dBinMapper<T> binMapper = null;
 		// TODO - size of histogram affects speed of all autothresh methods
 		// What is the best way to determine size?
 		// Do we want some power of two as size? For now yes.
 		final int MaxBinCount = 16384;
 		for (int binCount = 256; binCount <= MaxBinCount; binCount *= 2) {
-			if (range <= binCount) {
-				binMapper =
-					new Real1dBinMapper<T>(minMax.getMin(), minMax.getMax(), binCount,
-						false);
-				break;
-			}
-		}
-		if (binMapper == null) {
-			binMapper =
-				new Real1dBinMapper<T>(minMax.getMin(), minMax.getMax(), MaxBinCount,
-					false);
+			if (range <= binCount) return binCount;
 		}
-		return new Histogram1d<T>(binMapper);
+		return MaxBinCount;
 	}
 
 	private long calcBin(long binCount, double val) {
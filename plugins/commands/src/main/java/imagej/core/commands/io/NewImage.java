@@ -39,6 +39,7 @@
 import imagej.command.DynamicCommand;
 import imagej.data.Dataset;
 import imagej.data.DatasetService;
+import imagej.data.mapped.MappedImgFactory;
 import imagej.data.types.DataType;
 import imagej.data.types.DataTypeService;
 import imagej.menu.MenuConstants;
@@ -111,6 +112,9 @@
 	@Parameter(label = "Fill With", choices = { MAX, MIN, ZERO, RAMP })
 	private String fillType = MAX;
 
+	@Parameter(label = "Store in temporary files")
+	private boolean fileBacked = false;
+
 	@Parameter(type = ItemIO.OUTPUT)
 	private Dataset dataset;
 
@@ -132,6 +136,19 @@ public String getFillType() {
 		return fillType;
 	}
 
+	/**
+	 * Returns true if the image will be stored in memory-mapped temporary files
+	 * regardless of its size. Otherwise only images too large to hold in memory
+	 * are.
+	 */
+	public boolean isFileBacked() {
+		return fileBacked;
+	}
+
+	public void setFileBacked(final boolean fileBacked) {
+		this.fileBacked = fileBacked;
+	}
+
 	// TODO - extend to support types unknown to the DataTypeService?
 
 	public void setDataType(DataType<?> dataType) {
@@ -199,7 +216,12 @@ public void run() {
 		@SuppressWarnings("unchecked")
 		DataType<U> dataType = (DataType<U>) getDataType();
 		U variable = dataType.createVariable();
-		dataset = datasetService.create(variable, dims, name, axes);
+		if (fileBacked) {
+			dataset =
+				datasetService.create(new MappedImgFactory<U>(), variable, dims, name,
+					axes);
+		}
+		else dataset = datasetService.create(variable, dims, name, axes);
 
 		// initialize the image data
 		
@@ -41,7 +41,6 @@
 import imagej.data.display.ImageCanvas;
 import imagej.data.display.ImageDisplay;
 import imagej.data.display.ImageDisplayService;
-import imagej.data.event.DatasetUpdatedEvent;
 import imagej.data.options.OptionsChannels;
 import imagej.display.event.input.MsButtonEvent;
 import imagej.display.event.input.MsDraggedEvent;
@@ -53,7 +52,6 @@
 import imagej.util.IntCoords;
 import imagej.util.RealCoords;
 
-import org.scijava.event.EventService;
 import org.scijava.plugin.Parameter;
 
 /**
@@ -75,9 +73,6 @@ public abstract class AbstractLineTool extends AbstractTool {
 	@Parameter
 	private RenderingService renderingService;
 
-	@Parameter(required = false)
-	private EventService eventService;
-
 	private DrawingTool drawingTool;
 	private long lineWidth = 1;
 
@@ -118,10 +113,7 @@ public void onMouseDown(final MsPressedEvent evt) {
 	public void onMouseUp(final MsReleasedEvent evt) {
 		if (evt.getButton() != MsButtonEvent.LEFT_BUTTON) return;
 		if (drawingTool != null) {
-			Dataset dataset = drawingTool.getDataset();
-			if (eventService != null) {
-				eventService.publish(new DatasetUpdatedEvent(dataset, false));
-			}
+			drawingTool.update();
 			drawingTool = null;
 		}
 		evt.consume();
@@ -139,7 +131,7 @@ public void onMouseDrag(final MsDraggedEvent evt) {
 		long modelX = realCoords.getLongX();
 		long modelY = realCoords.getLongY();
 		drawingTool.lineTo(modelX, modelY);
-		evt.getDisplay().update();
+		drawingTool.update();
 		evt.consume();
 	}
 
@@ -41,7 +41,6 @@
 import imagej.data.DrawingTool;
 import imagej.data.FloodFiller;
 import imagej.data.display.ImageDisplay;
-import imagej.data.event.DatasetUpdatedEvent;
 import imagej.data.options.OptionsChannels;
 import imagej.display.event.input.MsButtonEvent;
 import imagej.display.event.input.MsClickedEvent;
@@ -50,7 +49,6 @@
 import imagej.tool.AbstractTool;
 import imagej.tool.Tool;
 
-import org.scijava.event.EventService;
 import org.scijava.plugin.Parameter;
 import org.scijava.plugin.Plugin;
 
@@ -81,9 +79,6 @@ enum Connectivity {
 	@Parameter
 	private OptionsService optionsService;
 
-	@Parameter(required = false)
-	private EventService eventService;
-
 	private Connectivity connectivity = Connectivity.EIGHT;
 
 	// -- public interface --
@@ -116,10 +111,7 @@ public void onMouseClick(final MsClickedEvent evt) {
 						initDrawingTool(recorder.wasAltKeyDown(), recorder.getDataset());
 					final long[] currPos = getCurrPosition(imageDisplay);
 					floodFill(recorder.getCX(), recorder.getCY(), currPos, connectivity, drawingTool);
-					Dataset dataset = drawingTool.getDataset();
-					if (eventService != null) {
-						eventService.publish(new DatasetUpdatedEvent(dataset, false));
-					}
+					drawingTool.update();
 				}
 				recorder.releaseDataset();
 			}
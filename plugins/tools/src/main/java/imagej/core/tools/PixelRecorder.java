@@ -48,6 +48,7 @@
 import imagej.util.ColorRGB;
 import imagej.util.Colors;
 import imagej.util.IntCoords;
+import imagej.util.IntRect;
 import imagej.util.RealCoords;
 
 import java.util.LinkedList;
@@ -158,7 +159,13 @@ public boolean record(final MsEvent evt) {
 					imageDisplayService.getActiveDatasetView(imageDisplay);
 			ARGBScreenImage screenImage = view.getScreenImage();
 			int[] argbPixels = view.getScreenImage().getData();
-			int pixelIndex = (int) (cy*screenImage.dimension(0) + cx);
+			// the screen image may cover only a resampled region of the plane
+			IntRect region = view.getScreenImageRegion();
+			long sx = (cx - region.x) * screenImage.dimension(0) / region.width;
+			long sy = (cy - region.y) * screenImage.dimension(1) / region.height;
+			sx = Math.max(0, Math.min(screenImage.dimension(0) - 1, sx));
+			sy = Math.max(0, Math.min(screenImage.dimension(1) - 1, sy));
+			int pixelIndex = (int) (sy*screenImage.dimension(0) + sx);
 			int argb = argbPixels[pixelIndex];
 			int r = (argb >> 16) & 0xff;
 			int g = (argb >>  8) & 0xff;
@@ -42,7 +42,6 @@
 import imagej.data.display.ImageCanvas;
 import imagej.data.display.ImageDisplay;
 import imagej.data.display.ImageDisplayService;
-import imagej.data.event.DatasetUpdatedEvent;
 import imagej.data.options.OptionsChannels;
 import imagej.display.event.input.MsButtonEvent;
 import imagej.display.event.input.MsDraggedEvent;
@@ -60,7 +59,6 @@
 
 import net.imglib2.meta.Axes;
 
-import org.scijava.event.EventService;
 import org.scijava.plugin.Parameter;
 import org.scijava.plugin.Plugin;
 
@@ -88,9 +86,6 @@ public class SprayCanTool extends AbstractTool {
 	@Parameter
 	private RenderingService renderingService;
 
-	@Parameter(required = false)
-	private EventService eventService;
-
 	private DrawingTool drawingTool;
 	private int width=100, rate=6, dotSize=1;
 	private long numPixels = 1;
@@ -114,10 +109,7 @@ public void onMouseDown(final MsPressedEvent evt) {
 	public void onMouseUp(final MsReleasedEvent evt) {
 		if (evt.getButton() != MsButtonEvent.LEFT_BUTTON) return;
 		if (drawingTool != null) {
-			Dataset dataset = drawingTool.getDataset();
-			if (eventService != null) {
-				eventService.publish(new DatasetUpdatedEvent(dataset, false));
-			}
+			drawingTool.update();
 			drawingTool = null;
 		}
 		evt.consume();
@@ -169,7 +161,7 @@ private void doOneSpray(MsEvent evt) {
 		IntCoords panelCoords = new IntCoords(evt.getX(), evt.getY());
 		RealCoords realCoords = canv.panelToDataCoords(panelCoords);
 		drawPixels(realCoords.getLongX(), realCoords.getLongY());
-		evt.getDisplay().update();
+		drawingTool.update();
 	}
 	
 	// NB: adapted from IJ1's SprayCanTool.txt macro courtesy Wayne Rasband
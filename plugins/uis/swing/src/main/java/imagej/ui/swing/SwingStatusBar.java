@@ -36,10 +36,12 @@
 package imagej.ui.swing;
 
 import imagej.core.options.OptionsMemoryAndThreads;
+import imagej.data.memory.MemoryUsageEvent;
 import imagej.options.OptionsService;
 import imagej.ui.DialogPrompt.MessageType;
 import imagej.ui.StatusBar;
 import imagej.ui.UIService;
+import imagej.util.UnitUtils;
 
 import java.awt.BorderLayout;
 import java.awt.event.MouseEvent;
@@ -64,6 +66,7 @@
 public class SwingStatusBar extends JPanel implements StatusBar, MouseListener {
 
 	private final JLabel statusText;
+	private final JLabel memoryText;
 	private final JProgressBar progressBar;
 
 	@Parameter
@@ -80,11 +83,17 @@ public SwingStatusBar(final Context context) {
 
 		statusText = new JLabel(uiService.getApp().getInfo(false));
 		statusText.setBorder(new BevelBorder(BevelBorder.LOWERED));
+		memoryText = new JLabel();
+		memoryText.setBorder(new BevelBorder(BevelBorder.LOWERED));
+		memoryText.setVisible(false);
 		progressBar = new JProgressBar();
 		progressBar.setVisible(false);
+		final JPanel eastPanel = new JPanel(new BorderLayout());
+		eastPanel.add(memoryText, BorderLayout.WEST);
+		eastPanel.add(progressBar, BorderLayout.EAST);
 		setLayout(new BorderLayout());
 		add(statusText, BorderLayout.CENTER);
-		add(progressBar, BorderLayout.EAST);
+		add(eastPanel, BorderLayout.EAST);
 		statusText.addMouseListener(this);
 	}
 
@@ -166,4 +175,12 @@ protected void onEvent(final StatusEvent event) {
 		}
 	}
 
+	/** Shows the memory held by images and caches, out of the budget. */
+	@EventHandler
+	protected void onEvent(final MemoryUsageEvent event) {
+		memoryText.setText(UnitUtils.getAbbreviatedByteLabel(event.getUsage()) +
+			" of " + UnitUtils.getAbbreviatedByteLabel(event.getBudget()));
+		memoryText.setVisible(true);
+	}
+
 }
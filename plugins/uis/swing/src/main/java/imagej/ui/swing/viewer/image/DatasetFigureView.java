@@ -38,12 +38,18 @@
 import imagej.data.Dataset;
 import imagej.data.display.DatasetView;
 import imagej.data.display.event.DataViewUpdatedEvent;
-import imagej.util.awt.AWTImageTools;
+import imagej.util.IntRect;
 
-import java.awt.Image;
 import java.awt.geom.Point2D;
 import java.awt.geom.Rectangle2D;
 import java.awt.image.BufferedImage;
+import java.awt.image.ColorModel;
+import java.awt.image.DataBufferInt;
+import java.awt.image.DirectColorModel;
+import java.awt.image.Raster;
+import java.awt.image.WritableRaster;
+
+import net.imglib2.display.ARGBScreenImage;
 
 import org.jhotdraw.draw.Drawing;
 import org.jhotdraw.draw.ImageFigure;
@@ -63,7 +69,10 @@ public class DatasetFigureView extends AbstractContextual implements FigureView
 {
 
 	private final DatasetView datasetView;
-	private final ImageFigure figure;
+	private final ScreenImageFigure figure;
+
+	/** The screen image currently wrapped by the figure's buffered image. */
+	private ARGBScreenImage screenImage;
 
 	@Parameter
 	private LogService log;
@@ -75,7 +84,7 @@ public DatasetFigureView(final SwingImageDisplayViewer displayViewer,
 		this.datasetView = datasetView;
 		final JHotDrawImageCanvas canvas = displayViewer.getCanvas();
 		final Drawing drawing = canvas.getDrawing();
-		figure = new ImageFigure();
+		figure = new ScreenImageFigure();
 		figure.setSelectable(false);
 		figure.setTransformable(false);
 		final Dataset dataset = datasetView.getData();
@@ -90,17 +99,12 @@ public DatasetFigureView(final SwingImageDisplayViewer displayViewer,
 
 	@EventHandler
 	protected void onDataViewUpdatedEvent(final DataViewUpdatedEvent event) {
-		if (event.getView() == datasetView) update();
+		if (event.getView() == datasetView) update(event.getRegion());
 	}
 
 	@Override
 	public void update() {
-		log.debug("Updating image figure: " + this);
-		final Image image = datasetView.getScreenImage().image();
-		final BufferedImage bufImage = AWTImageTools.makeBuffered(image);
-		figure.setBounds(new Rectangle2D.Double(0, 0, bufImage.getWidth(),
-			bufImage.getHeight()));
-		figure.setBufferedImage(bufImage);
+		update(null);
 	}
 
 	// -- FigureView methods --
@@ -120,4 +124,61 @@ public void dispose() {
 		getFigure().requestRemove();
 	}
 
+	// -- Helper methods --
+
+	/**
+	 * Updates the figure, repainting only the given area in data coordinates,
+	 * or the whole figure if the area is null.
+	 */
+	private void update(final IntRect dirty) {
+		log.debug("Updating image figure: " + this);
+		// NB: The screen image may cover only part of the plane, possibly at a
+		// reduced resolution; its bounds are always given in data coordinates.
+		final IntRect region = datasetView.getScreenImageRegion();
+		final Rectangle2D.Double bounds =
+			new Rectangle2D.Double(region.x, region.y, region.width, region.height);
+		final ARGBScreenImage image = datasetView.getScreenImage();
+		if (image != screenImage || !bounds.equals(figure.getBounds())) {
+			// the view has a new screen image; wrap it without copying
+			screenImage = image;
+			figure.setBounds(bounds);
+			figure.setBufferedImage(wrap(image));
+		}
+		else {
+			// the wrapped pixels are already current; just repaint them
+			figure.invalidateArea(dirty == null ? bounds : new Rectangle2D.Double(
+				dirty.x, dirty.y, dirty.width, dirty.height));
+		}
+	}
+
+	/**
+	 * Wraps the pixels of the given screen image in a {@link BufferedImage},
+	 * without copying them. Since the image's data buffer is created over an
+	 * existing array, Java2D never caches it, so later changes to the screen
+	 * image are always painted.
+	 */
+	private BufferedImage wrap(final ARGBScreenImage image) {
+		final int width = (int) image.dimension(0);
+		final int height = (int) image.dimension(1);
+		final DataBufferInt buffer =
+			new DataBufferInt(image.getData(), width * height);
+		final DirectColorModel colorModel =
+			(DirectColorModel) ColorModel.getRGBdefault();
+		final WritableRaster raster =
+			Raster.createPackedRaster(buffer, width, height, width, colorModel
+				.getMasks(), null);
+		return new BufferedImage(colorModel, raster, false, null);
+	}
+
+	// -- Helper classes --
+
+	/** An image figure which can repaint part of its area on demand. */
+	private static class ScreenImageFigure extends ImageFigure {
+
+		/** Repaints the given area of the figure, in drawing coordinates. */
+		public void invalidateArea(final Rectangle2D.Double area) {
+			fireAreaInvalidated(area);
+		}
+	}
+
 }